@@ -0,0 +1,99 @@
+/*
+ *
+ */
+package org.jenkinsci.plugins.websphere.services.deployment;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures finding the context root of a WAR and generating the
+ * application.xml, once with the archive analysis of the artifact reused and
+ * once with the WAR analyzed again.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ApplicationXmlBenchmark {
+
+	/** The size of the WAR in KB. */
+	@Param({ "256", "16384" })
+	public int warSizeKb;
+
+	/** The service. */
+	private WebSphereDeploymentService service;
+
+	/** The artifact. */
+	private Artifact artifact;
+
+	/**
+	 * Creates the WAR.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		service = new WebSphereDeploymentService();
+		artifact = new Artifact();
+		artifact.setType(Artifact.TYPE_WAR);
+		artifact.setAppName("benchmark");
+		artifact.setSourcePath(BenchmarkWars.create("benchmark.war", warSizeKb));
+	}
+
+	/**
+	 * Deletes the WAR.
+	 */
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		artifact.getSourcePath().delete();
+	}
+
+	/**
+	 * Gets the context root from the analysis of a previous call.
+	 *
+	 * @return the context root
+	 */
+	@Benchmark
+	public String contextRootAnalyzed() {
+		return service.getContextRoot(artifact);
+	}
+
+	/**
+	 * Gets the context root, analyzing the WAR again.
+	 *
+	 * @return the context root
+	 */
+	@Benchmark
+	public String contextRootUnanalyzed() {
+		artifact.setAnalysis(null);
+		return service.getContextRoot(artifact);
+	}
+
+	/**
+	 * Generates the application.xml.
+	 *
+	 * @return the application.xml
+	 */
+	@Benchmark
+	public String applicationXML() {
+		return service.getApplicationXML(artifact, "6");
+	}
+}
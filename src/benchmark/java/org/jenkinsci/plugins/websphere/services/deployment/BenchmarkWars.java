@@ -0,0 +1,68 @@
+/*
+ *
+ */
+package org.jenkinsci.plugins.websphere.services.deployment;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Creates the WARs the benchmarks work on.
+ */
+final class BenchmarkWars {
+
+	/** The Constant ENTRY_SIZE. */
+	private static final int ENTRY_SIZE = 64 * 1024;
+
+	/**
+	 * Instantiates a new benchmark wars.
+	 */
+	private BenchmarkWars() {
+	}
+
+	/**
+	 * Creates a WAR with an IBM web extension descriptor and incompressible
+	 * classes.
+	 *
+	 * @param name
+	 *            the name of the WAR, e.g. <code>small.war</code>
+	 * @param sizeKb
+	 *            the approximate size in KB
+	 * @return the WAR, deleted on exit
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	static File create(String name, int sizeKb) throws IOException {
+		File directory = File.createTempFile("benchmark", "");
+		directory.delete();
+		directory.mkdirs();
+		directory.deleteOnExit();
+		File war = new File(directory, name);
+		war.deleteOnExit();
+		Random random = new Random(42);
+		byte[] content = new byte[ENTRY_SIZE];
+		try (ZipOutputStream out = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(war)))) {
+			out.putNextEntry(new ZipEntry("WEB-INF/web.xml"));
+			out.write(("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+					+ "<web-app xmlns=\"http://java.sun.com/xml/ns/javaee\" version=\"3.0\"/>\n").getBytes("UTF-8"));
+			out.closeEntry();
+			out.putNextEntry(new ZipEntry("WEB-INF/ibm-web-ext.xml"));
+			out.write(("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+					+ "<web-ext xmlns=\"http://websphere.ibm.com/xml/ns/javaee\" version=\"1.0\">\n"
+					+ "  <context-root uri=\"benchmark\"/>\n" + "</web-ext>\n").getBytes("UTF-8"));
+			out.closeEntry();
+			for (int i = 0; i < Math.max(1, sizeKb * 1024 / ENTRY_SIZE); i++) {
+				random.nextBytes(content);
+				out.putNextEntry(new ZipEntry("WEB-INF/classes/benchmark/Class" + i + ".class"));
+				out.write(content);
+				out.closeEntry();
+			}
+		}
+		return war;
+	}
+}
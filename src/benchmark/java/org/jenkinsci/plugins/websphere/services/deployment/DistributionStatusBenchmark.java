@@ -0,0 +1,72 @@
+/*
+ *
+ */
+package org.jenkinsci.plugins.websphere.services.deployment;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.management.MalformedObjectNameException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures parsing the composite distribution status WebSphere reports for
+ * every server an application is deployed to.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DistributionStatusBenchmark {
+
+	/** The number of servers. */
+	@Param({ "10", "100", "1000" })
+	public int servers;
+
+	/** The tracker. */
+	private DistributionTracker tracker;
+
+	/** The composite status, with the last server not yet distributed. */
+	private String compositeStatus;
+
+	/**
+	 * Builds the composite status.
+	 */
+	@Setup
+	public void setUp() {
+		tracker = new DistributionTracker(null, "benchmark", null, false);
+		StringBuilder status = new StringBuilder();
+		for (int i = 0; i < servers; i++) {
+			if (i > 0) {
+				status.append('+');
+			}
+			status.append("WebSphere:cell=cell01,node=node").append(i / 4).append(",distribution=")
+					.append(i == servers - 1 ? "false" : "true").append(",expansion=notprocessing");
+		}
+		compositeStatus = status.toString();
+	}
+
+	/**
+	 * Parses the composite status.
+	 *
+	 * @return the distribution state
+	 * @throws MalformedObjectNameException
+	 *             the malformed object name exception
+	 */
+	@Benchmark
+	public String checkDistributionStatus() throws MalformedObjectNameException {
+		return tracker.checkDistributionStatus(compositeStatus);
+	}
+}
@@ -0,0 +1,84 @@
+/*
+ *
+ */
+package org.jenkinsci.plugins.websphere.services.deployment;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures wrapping a WAR into an EAR, including the CRC pass over the WAR
+ * and the generation of the application.xml.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class EarGenerationBenchmark {
+
+	/** The size of the WAR in KB. */
+	@Param({ "256", "65536" })
+	public int warSizeKb;
+
+	/** The service. */
+	private WebSphereDeploymentService service;
+
+	/** The artifact. */
+	private Artifact artifact;
+
+	/** The EAR. */
+	private File ear;
+
+	/**
+	 * Creates the WAR.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		service = new WebSphereDeploymentService();
+		artifact = new Artifact();
+		artifact.setType(Artifact.TYPE_WAR);
+		artifact.setAppName("benchmark");
+		artifact.setSourcePath(BenchmarkWars.create("benchmark.war", warSizeKb));
+		ear = new File(artifact.getSourcePath().getParentFile(), "benchmark.ear");
+	}
+
+	/**
+	 * Deletes the EAR.
+	 */
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		ear.delete();
+		artifact.getSourcePath().delete();
+	}
+
+	/**
+	 * Generates the EAR.
+	 *
+	 * @return the EAR
+	 */
+	@Benchmark
+	public File generateEAR() {
+		service.generateEAR(artifact, ear, "6");
+		return ear;
+	}
+}
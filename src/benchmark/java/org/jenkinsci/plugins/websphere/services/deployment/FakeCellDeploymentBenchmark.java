@@ -0,0 +1,120 @@
+/*
+ *
+ */
+package org.jenkinsci.plugins.websphere.services.deployment;
+
+import java.io.OutputStream;
+import java.util.Hashtable;
+import java.util.concurrent.TimeUnit;
+
+import org.jenkinsci.plugins.websphere.services.deployment.fake.FakeWebSphereCell;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import hudson.model.StreamBuildListener;
+
+/**
+ * Measures a full deployment cycle of the service against a
+ * {@link FakeWebSphereCell}: install, wait for the distribution, start, stop
+ * and uninstall. The deployment preferences are prepared up front, as
+ * building them needs the WebSphere libraries to read the archive.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class FakeCellDeploymentBenchmark {
+
+	/** The number of nodes of the cell. */
+	@Param({ "1", "8", "32" })
+	public int nodes;
+
+	/** The latency of every call to the cell in milliseconds. */
+	@Param({ "0", "5" })
+	public long callLatencyMillis;
+
+	/** The cell. */
+	private FakeWebSphereCell cell;
+
+	/** The service. */
+	private WebSphereDeploymentService service;
+
+	/** The remote calls. */
+	private RemoteCallStatistics remoteCalls;
+
+	/** The artifact. */
+	private Artifact artifact;
+
+	/**
+	 * Connects to the cell.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		cell = new FakeWebSphereCell("benchmarkCell", nodes, 2);
+		cell.setCallLatencyMillis(callLatencyMillis);
+		cell.setOperationMillis(20);
+		cell.setDistributionMillis(50);
+		remoteCalls = new RemoteCallStatistics();
+		service = new WebSphereDeploymentService();
+		service.setConnectionFactory(cell.getConnectionFactory());
+		service.setRemoteCalls(remoteCalls);
+		service.setBuildListener(new StreamBuildListener(new OutputStream() {
+			@Override
+			public void write(int b) {
+			}
+		}));
+		service.setHost("localhost");
+		service.setPort("8879");
+		service.setConnectorType("SOAP");
+		service.connect();
+		service.loadInventory();
+		artifact = new Artifact();
+		artifact.setType(Artifact.TYPE_WAR);
+		artifact.setAppName("benchmark");
+		artifact.setSourcePath(BenchmarkWars.create("benchmark.war", 64));
+		artifact.setDeploymentPreferences(new Hashtable<String, Object>());
+	}
+
+	/**
+	 * Disconnects and reports the remote calls.
+	 */
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		service.disconnect();
+		cell.shutdown();
+		artifact.getSourcePath().delete();
+		for (String line : remoteCalls.getSummary()) {
+			System.out.println(line);
+		}
+	}
+
+	/**
+	 * Deploys the artifact and removes it again.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Benchmark
+	public void deploymentCycle() throws Exception {
+		service.installArtifact(artifact);
+		service.startArtifact(artifact.getAppName(), 1);
+		service.stopArtifact(artifact.getAppName());
+		service.uninstallArtifact(artifact.getAppName());
+	}
+}
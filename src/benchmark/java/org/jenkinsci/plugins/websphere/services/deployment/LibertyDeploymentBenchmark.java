@@ -0,0 +1,176 @@
+/*
+ *
+ */
+package org.jenkinsci.plugins.websphere.services.deployment;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.security.KeyStore;
+import java.util.concurrent.TimeUnit;
+
+import org.jenkinsci.plugins.websphere.services.deployment.fake.FakeLibertyServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ibm.websphere.application.ApplicationMBean;
+
+/**
+ * Measures a full deployment cycle of the Liberty service against a
+ * {@link FakeLibertyServer}: upload to the dropins directory, wait for the
+ * application to be installed and started, stop it and delete it again.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LibertyDeploymentBenchmark {
+
+	/** The Constant USERNAME. */
+	private static final String USERNAME = "admin";
+
+	/** The Constant PASSWORD. */
+	private static final String PASSWORD = "secret";
+
+	/** The Constant POLL_MILLIS, how often the application state is checked. */
+	private static final long POLL_MILLIS = 10;
+
+	/** The Constant TIMEOUT_MILLIS. */
+	private static final long TIMEOUT_MILLIS = 60000;
+
+	/** The approximate size of the WAR in KB. */
+	@Param({ "64", "4096" })
+	public int sizeKb;
+
+	/** The latency of every call to the server in milliseconds. */
+	@Param({ "0", "5" })
+	public long callLatencyMillis;
+
+	/** The server. */
+	private FakeLibertyServer server;
+
+	/** The service. */
+	private LibertyDeploymentService service;
+
+	/** The remote calls. */
+	private RemoteCallStatistics remoteCalls;
+
+	/** The artifact. */
+	private Artifact artifact;
+
+	/** The trust store of the connection. */
+	private File trustStore;
+
+	/**
+	 * Connects to the server.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		server = new FakeLibertyServer(USERNAME, PASSWORD);
+		server.setCallLatencyMillis(callLatencyMillis);
+		server.setMonitorIntervalMillis(50);
+		server.setStartMillis(20);
+		remoteCalls = new RemoteCallStatistics();
+		service = new LibertyDeploymentService();
+		service.setConnectionFactory(server.getConnectionFactory());
+		service.setRemoteCalls(remoteCalls);
+		service.setHost("localhost");
+		service.setPort("9443");
+		service.setUsername(USERNAME);
+		service.setPassword(PASSWORD);
+		trustStore = createTrustStore();
+		service.setTrustStoreLocation(trustStore);
+		service.setTrustStorePassword(PASSWORD);
+		service.connect();
+		artifact = new Artifact();
+		artifact.setType(Artifact.TYPE_WAR);
+		artifact.setAppName("benchmark");
+		artifact.setSourcePath(BenchmarkWars.create("benchmark.war", sizeKb));
+	}
+
+	/**
+	 * Disconnects and reports the remote calls.
+	 */
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		service.disconnect();
+		server.shutdown();
+		artifact.getSourcePath().delete();
+		trustStore.delete();
+		for (String line : remoteCalls.getSummary()) {
+			System.out.println(line);
+		}
+	}
+
+	/**
+	 * Deploys the artifact and removes it again.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Benchmark
+	public void deploymentCycle() throws Exception {
+		service.installArtifact(artifact);
+		awaitState(ApplicationMBean.STATE_STARTED);
+		service.stopArtifact(artifact.getAppName());
+		// the archive is deleted by its file name, the application is known
+		// by the name without the extension
+		service.uninstallArtifact(artifact.getSourcePath().getName());
+		awaitState(null);
+	}
+
+	/**
+	 * Creates an empty trust store, as the fake server is not reached over
+	 * SSL.
+	 *
+	 * @return the trust store
+	 * @throws Exception
+	 *             the exception
+	 */
+	private static File createTrustStore() throws Exception {
+		File file = File.createTempFile("benchmark-trust", ".jks");
+		KeyStore keyStore = KeyStore.getInstance(KeyStore.getDefaultType());
+		keyStore.load(null, null);
+		try (OutputStream out = new FileOutputStream(file)) {
+			keyStore.store(out, PASSWORD.toCharArray());
+		}
+		return file;
+	}
+
+	/**
+	 * Waits until the application has reached a state, polling the service
+	 * for the installation and the server for the state.
+	 *
+	 * @param state
+	 *            the state, null to wait until the application is removed
+	 * @throws Exception
+	 *             the exception
+	 */
+	private void awaitState(String state) throws Exception {
+		long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+		while (service.isArtifactInstalled(artifact.getAppName()) != (state != null)
+				|| (state != null && !state.equals(server.getState(artifact.getAppName())))) {
+			if (System.currentTimeMillis() > deadline) {
+				throw new IllegalStateException("'" + artifact.getAppName() + "' did not reach state " + state
+						+ ", it is " + server.getState(artifact.getAppName()));
+			}
+			Thread.sleep(POLL_MILLIS);
+		}
+	}
+}
@@ -0,0 +1,80 @@
+/*
+ *
+ */
+package org.jenkinsci.plugins.websphere.services.deployment;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures formatting the configured targets for the deployment preferences
+ * and the server names reported by WebSphere as targets.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TargetFormattingBenchmark {
+
+	/** The number of configured targets. */
+	@Param({ "1", "50" })
+	public int targetCount;
+
+	/** The service. */
+	private WebSphereDeploymentService service;
+
+	/** The configured targets, one per line. */
+	private String targets;
+
+	/** The object name of a server. */
+	private String serverName;
+
+	/**
+	 * Builds the targets.
+	 */
+	@Setup
+	public void setUp() {
+		service = new WebSphereDeploymentService();
+		StringBuilder lines = new StringBuilder();
+		for (int i = 0; i < targetCount; i++) {
+			lines.append("WebSphere:cell=cell01,node=node").append(i).append(",server=server").append(i)
+					.append("\r\n");
+		}
+		targets = lines.toString();
+		serverName = "WebSphere:name=server1,process=server1,platform=common,node=node01,"
+				+ "j2eeType=J2EEServer,version=8.5.5.0,processType=ManagedProcess,cell=cell01";
+	}
+
+	/**
+	 * Formats the configured targets.
+	 *
+	 * @return the formatted targets
+	 */
+	@Benchmark
+	public String formattedTargets() {
+		return service.getFormattedTargets(targets);
+	}
+
+	/**
+	 * Formats a server name.
+	 *
+	 * @return the formatted target
+	 */
+	@Benchmark
+	public String formattedTarget() {
+		return service.getFormattedTarget(serverName);
+	}
+}
@@ -4,13 +4,52 @@
 package org.jenkinsci.plugins.websphere.services.deployment;
 
 import java.io.File;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * The Class AbstractDeploymentService.
+ * <p>
+ * The asynchronous operations run the blocking operations of the service on a
+ * shared executor. Services that are told about the completion of an operation
+ * by the server override them to complete the future without a waiting
+ * thread. The executor has a bounded number of threads; operations beyond
+ * that wait in its queue.
  *
  * @author Greg Peters
  */
-public abstract class AbstractDeploymentService implements DeploymentService {
+public abstract class AbstractDeploymentService implements DeploymentService, AsyncDeploymentService {
+
+	/** The Constant DEFAULT_DEPLOYMENT_TIMEOUT, in minutes. */
+	public static final int DEFAULT_DEPLOYMENT_TIMEOUT = 5;
+
+	/** The Constant MAX_THREADS, the most blocking operations of all services running at the same time. */
+	static final int MAX_THREADS = 32;
+
+	/** The executor that runs blocking operations of all services. */
+	private static final ThreadPoolExecutor EXECUTOR = new ThreadPoolExecutor(MAX_THREADS, MAX_THREADS, 60,
+			TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+
+				private final AtomicInteger count = new AtomicInteger();
+
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "WebSphere Deployer operation " + count.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+
+	static {
+		EXECUTOR.allowCoreThreadTimeOut(true);
+	}
 
 	/** The trust store location. */
 	private File trustStoreLocation;
@@ -36,6 +75,9 @@ public abstract class AbstractDeploymentService implements DeploymentService {
 	/** The port. */
 	private String port;
 
+	/** The deployment timeout in minutes. */
+	private int deploymentTimeout = DEFAULT_DEPLOYMENT_TIMEOUT;
+
 	/**
 	 * Gets the trust store location.
 	 *
@@ -108,6 +150,26 @@ public abstract class AbstractDeploymentService implements DeploymentService {
 		return port;
 	}
 
+	/**
+	 * Gets the deployment timeout.
+	 *
+	 * @return the deployment timeout in minutes
+	 */
+	public int getDeploymentTimeout() {
+		return deploymentTimeout;
+	}
+
+	/**
+	 * Sets the deployment timeout, the longest time the blocking operations
+	 * wait for an operation to complete.
+	 *
+	 * @param deploymentTimeout
+	 *            the deployment timeout in minutes
+	 */
+	public void setDeploymentTimeout(int deploymentTimeout) {
+		this.deploymentTimeout = deploymentTimeout;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -196,4 +258,159 @@ public abstract class AbstractDeploymentService implements DeploymentService {
 		this.keyStorePassword = password;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * org.jenkinsci.plugins.websphere.services.deployment.AsyncDeploymentService
+	 * #installArtifactAsync(org.jenkinsci.plugins.websphere.services.deployment.
+	 * Artifact)
+	 */
+	public DeploymentFuture<Void> installArtifactAsync(final Artifact artifact) {
+		return submit(new Callable<Void>() {
+			public Void call() throws Exception {
+				installArtifact(artifact);
+				return null;
+			}
+		});
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * org.jenkinsci.plugins.websphere.services.deployment.AsyncDeploymentService
+	 * #updateArtifactAsync(org.jenkinsci.plugins.websphere.services.deployment.
+	 * Artifact)
+	 */
+	public DeploymentFuture<Void> updateArtifactAsync(final Artifact artifact) {
+		return submit(new Callable<Void>() {
+			public Void call() throws Exception {
+				updateArtifact(artifact);
+				return null;
+			}
+		});
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * org.jenkinsci.plugins.websphere.services.deployment.AsyncDeploymentService
+	 * #uninstallArtifactAsync(java.lang.String)
+	 */
+	public DeploymentFuture<Void> uninstallArtifactAsync(final String name) {
+		return submit(new Callable<Void>() {
+			public Void call() throws Exception {
+				uninstallArtifact(name);
+				return null;
+			}
+		});
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * org.jenkinsci.plugins.websphere.services.deployment.AsyncDeploymentService
+	 * #startArtifactAsync(java.lang.String)
+	 */
+	public DeploymentFuture<Void> startArtifactAsync(final String name) {
+		return submit(new Callable<Void>() {
+			public Void call() throws Exception {
+				startArtifact(name);
+				return null;
+			}
+		});
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * org.jenkinsci.plugins.websphere.services.deployment.AsyncDeploymentService
+	 * #stopArtifactAsync(java.lang.String)
+	 */
+	public DeploymentFuture<Void> stopArtifactAsync(final String name) {
+		return submit(new Callable<Void>() {
+			public Void call() throws Exception {
+				stopArtifact(name);
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * Runs a blocking operation on the shared executor.
+	 *
+	 * @param <V>
+	 *            the type of the result
+	 * @param operation
+	 *            the operation
+	 * @return the future of the operation
+	 */
+	protected static <V> DeploymentFuture<V> submit(final Callable<V> operation) {
+		final DeploymentFuture<V> future = new DeploymentFuture<V>();
+		getExecutor().execute(new Runnable() {
+			public void run() {
+				if (future.isDone()) {
+					return;
+				}
+				try {
+					future.set(operation.call());
+				} catch (Throwable e) {
+					future.fail(e);
+				}
+			}
+		});
+		return future;
+	}
+
+	/**
+	 * Waits for the result of an asynchronous operation, for the blocking
+	 * variants of the operations. The operation is given up after the
+	 * deployment timeout, unless checking its outcome shows it is done.
+	 *
+	 * @param <V>
+	 *            the type of the result
+	 * @param future
+	 *            the future
+	 * @param errorMessage
+	 *            the message prefix of the exception thrown on failure
+	 * @return the result
+	 */
+	protected <V> V await(Future<V> future, String errorMessage) {
+		try {
+			try {
+				return future.get(getDeploymentTimeout(), TimeUnit.MINUTES);
+			} catch (TimeoutException e) {
+				// the end of the operation may have been missed
+				if (!(future instanceof DeploymentFuture) || !((DeploymentFuture<?>) future).checkOutcome()) {
+					throw e;
+				}
+				return future.get();
+			}
+		} catch (InterruptedException e) {
+			future.cancel(true);
+			Thread.currentThread().interrupt();
+			throw new DeploymentServiceException(errorMessage + "interrupted", e);
+		} catch (TimeoutException e) {
+			future.cancel(true);
+			throw new DeploymentServiceException(
+					errorMessage + "did not complete within " + getDeploymentTimeout() + " minutes", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			String message = cause.getMessage() != null ? cause.getMessage() : cause.getClass().getName();
+			throw new DeploymentServiceException(errorMessage + message, cause);
+		}
+	}
+
+	/**
+	 * Gets the executor that runs blocking operations.
+	 *
+	 * @return the executor
+	 */
+	protected static Executor getExecutor() {
+		return EXECUTOR;
+	}
 }
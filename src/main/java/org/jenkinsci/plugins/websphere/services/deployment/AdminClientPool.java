@@ -0,0 +1,309 @@
+/*
+ *
+ */
+package org.jenkinsci.plugins.websphere.services.deployment;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.logging.Logger;
+
+import com.ibm.websphere.management.AdminClient;
+
+/**
+ * A pool of AdminClient connections shared by all builds. Connections are
+ * keyed by their complete connector configuration (host, port, connector type,
+ * credentials and SSL settings), checked with isAlive() before they are handed
+ * out again and dropped after they have been idle for too long.
+ */
+public class AdminClientPool {
+
+	/** The Constant DEFAULT_MAX_IDLE_MILLIS. */
+	public static final long DEFAULT_MAX_IDLE_MILLIS = 5 * 60 * 1000L;
+
+	/** The Constant DEFAULT_MAX_IDLE_PER_KEY. */
+	public static final int DEFAULT_MAX_IDLE_PER_KEY = 4;
+
+	/** The log. */
+	private static Logger log = Logger.getLogger(AdminClientPool.class.getName());
+
+	/** The idle connections by key. */
+	private final Map<String, LinkedList<PooledClient>> idle = new HashMap<String, LinkedList<PooledClient>>();
+
+	/** The keys of the leased connections. */
+	private final Map<AdminClient, String> leased = new IdentityHashMap<AdminClient, String>();
+
+	/** The max idle millis. */
+	private final long maxIdleMillis;
+
+	/** The max idle connections per key. */
+	private final int maxIdlePerKey;
+
+	/**
+	 * Instantiates a new admin client pool with the default limits.
+	 */
+	public AdminClientPool() {
+		this(DEFAULT_MAX_IDLE_MILLIS, DEFAULT_MAX_IDLE_PER_KEY);
+	}
+
+	/**
+	 * Instantiates a new admin client pool.
+	 *
+	 * @param maxIdleMillis
+	 *            the time after which an idle connection is evicted
+	 * @param maxIdlePerKey
+	 *            the max idle connections kept per configuration
+	 */
+	public AdminClientPool(long maxIdleMillis, int maxIdlePerKey) {
+		this.maxIdleMillis = maxIdleMillis;
+		this.maxIdlePerKey = maxIdlePerKey;
+	}
+
+	/**
+	 * Leases a connection for the given connector configuration. An idle
+	 * connection that is still alive is reused, otherwise a new one is
+	 * created.
+	 *
+	 * @param config
+	 *            the connector configuration
+	 * @param factory
+	 *            the factory creating a new connection
+	 * @return the admin client
+	 * @throws Exception
+	 *             the exception
+	 */
+	public AdminClient lease(Properties config, AdminConnectionFactory factory) throws Exception {
+		String key = getKey(config);
+		PooledClient candidate;
+		while ((candidate = pollIdle(key)) != null) {
+			if (isAlive(candidate.client)) {
+				markLeased(candidate.client, key);
+				return candidate.client;
+			}
+			log.fine("Dropping dead connection to " + describe(config));
+			close(candidate.client);
+		}
+		AdminClient client = factory.createAdminClient(config);
+		if (client != null) {
+			markLeased(client, key);
+		}
+		return client;
+	}
+
+	/**
+	 * Returns a leased connection to the pool.
+	 *
+	 * @param client
+	 *            the client
+	 */
+	public void release(AdminClient client) {
+		List<PooledClient> evicted = new ArrayList<PooledClient>();
+		synchronized (this) {
+			String key = leased.remove(client);
+			if (key == null) {
+				return; // not leased from this pool
+			}
+			LinkedList<PooledClient> clients = idle.get(key);
+			if (clients == null) {
+				clients = new LinkedList<PooledClient>();
+				idle.put(key, clients);
+			}
+			clients.addFirst(new PooledClient(client, System.currentTimeMillis()));
+			while (clients.size() > maxIdlePerKey) {
+				evicted.add(clients.removeLast());
+			}
+		}
+		for (PooledClient pooled : evicted) {
+			close(pooled.client);
+		}
+		evictIdle();
+	}
+
+	/**
+	 * Drops a leased connection that must not be reused, e.g. after it failed.
+	 *
+	 * @param client
+	 *            the client
+	 */
+	public void invalidate(AdminClient client) {
+		synchronized (this) {
+			if (leased.remove(client) == null) {
+				return;
+			}
+		}
+		close(client);
+	}
+
+	/**
+	 * Evicts all connections that have been idle for longer than the allowed
+	 * idle time.
+	 */
+	public void evictIdle() {
+		long oldest = System.currentTimeMillis() - maxIdleMillis;
+		List<PooledClient> evicted = new ArrayList<PooledClient>();
+		synchronized (this) {
+			for (Iterator<LinkedList<PooledClient>> it = idle.values().iterator(); it.hasNext();) {
+				LinkedList<PooledClient> clients = it.next();
+				while (!clients.isEmpty() && clients.getLast().idleSince < oldest) {
+					evicted.add(clients.removeLast());
+				}
+				if (clients.isEmpty()) {
+					it.remove();
+				}
+			}
+		}
+		for (PooledClient pooled : evicted) {
+			close(pooled.client);
+		}
+	}
+
+	/**
+	 * Closes all idle connections.
+	 */
+	public void clear() {
+		List<PooledClient> evicted = new ArrayList<PooledClient>();
+		synchronized (this) {
+			for (LinkedList<PooledClient> clients : idle.values()) {
+				evicted.addAll(clients);
+			}
+			idle.clear();
+		}
+		for (PooledClient pooled : evicted) {
+			close(pooled.client);
+		}
+	}
+
+	/**
+	 * Gets the number of idle connections.
+	 *
+	 * @return the idle count
+	 */
+	public synchronized int getIdleCount() {
+		int count = 0;
+		for (LinkedList<PooledClient> clients : idle.values()) {
+			count += clients.size();
+		}
+		return count;
+	}
+
+	/**
+	 * Gets the number of leased connections.
+	 *
+	 * @return the leased count
+	 */
+	public synchronized int getLeasedCount() {
+		return leased.size();
+	}
+
+	/**
+	 * Poll idle.
+	 *
+	 * @param key
+	 *            the key
+	 * @return the most recently used idle connection, null if there is none
+	 */
+	private synchronized PooledClient pollIdle(String key) {
+		LinkedList<PooledClient> clients = idle.get(key);
+		if (clients == null || clients.isEmpty()) {
+			return null;
+		}
+		PooledClient pooled = clients.removeFirst();
+		if (pooled.idleSince < System.currentTimeMillis() - maxIdleMillis) {
+			// all remaining connections are even older
+			clients.addFirst(pooled);
+			return null;
+		}
+		return pooled;
+	}
+
+	/**
+	 * Mark leased.
+	 *
+	 * @param client
+	 *            the client
+	 * @param key
+	 *            the key
+	 */
+	private synchronized void markLeased(AdminClient client, String key) {
+		leased.put(client, key);
+	}
+
+	/**
+	 * Checks if is alive.
+	 *
+	 * @param client
+	 *            the client
+	 * @return true, if is alive
+	 */
+	private boolean isAlive(AdminClient client) {
+		try {
+			return client.isAlive() != null;
+		} catch (Exception e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Close.
+	 *
+	 * @param client
+	 *            the client
+	 */
+	private void close(AdminClient client) {
+		AdminConnectionFactory.closeAdminClient(client);
+	}
+
+	/**
+	 * Gets the key of a connector configuration. Every setting is part of the
+	 * key, so connections are never shared between different credentials.
+	 *
+	 * @param config
+	 *            the config
+	 * @return the key
+	 */
+	private String getKey(Properties config) {
+		return new TreeMap<Object, Object>(config).toString();
+	}
+
+	/**
+	 * Describe.
+	 *
+	 * @param config
+	 *            the config
+	 * @return the host and port of the configuration
+	 */
+	private String describe(Properties config) {
+		return config.getProperty(AdminClient.CONNECTOR_HOST) + ":" + config.getProperty(AdminClient.CONNECTOR_PORT);
+	}
+
+	/**
+	 * An idle connection.
+	 */
+	private static final class PooledClient {
+
+		/** The client. */
+		private final AdminClient client;
+
+		/** The time since the connection is idle. */
+		private final long idleSince;
+
+		/**
+		 * Instantiates a new pooled client.
+		 *
+		 * @param client
+		 *            the client
+		 * @param idleSince
+		 *            the idle since
+		 */
+		private PooledClient(AdminClient client, long idleSince) {
+			this.client = client;
+			this.idleSince = idleSince;
+		}
+	}
+}
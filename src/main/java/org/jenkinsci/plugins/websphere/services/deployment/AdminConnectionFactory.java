@@ -0,0 +1,162 @@
+/*
+ *
+ */
+package org.jenkinsci.plugins.websphere.services.deployment;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.logging.Logger;
+
+import com.ibm.websphere.management.AdminClient;
+import com.ibm.websphere.management.AdminClientFactory;
+import com.ibm.websphere.management.application.AppManagement;
+import com.ibm.websphere.management.application.AppManagementProxy;
+
+/**
+ * Creates the connections of a {@link WebSphereDeploymentService} to a
+ * deployment manager. Connections are created by the WebSphere admin client
+ * libraries unless a subclass connects to something else, e.g. a simulated
+ * cell.
+ * <p>
+ * Every connection is configured by its connector properties, including the
+ * <code>com.ibm.ssl.*</code> and <code>javax.net.ssl.*</code> settings, but
+ * the admin client libraries still copy some of them into the system
+ * properties while a client is created and the connector reads them from
+ * there again later. Clients are therefore created one at a time, the SSL and
+ * ORB system properties the libraries set are recorded, and their previous
+ * values are restored once the last connection relying on them is closed.
+ * System properties outside of these namespaces are never touched.
+ */
+public class AdminConnectionFactory {
+
+	/** The prefixes of the system properties set by the admin client libraries. */
+	private static final String[] ADMIN_CLIENT_PROPERTY_PREFIXES = { "com.ibm.ssl.", "com.ibm.SSL.", "com.ibm.CORBA.",
+			"javax.net.ssl." };
+
+	/** The log. */
+	private static Logger log = Logger.getLogger(AdminConnectionFactory.class.getName());
+
+	/** The lock held while the admin client libraries may change system properties. */
+	private static final Object SYSTEM_PROPERTIES_LOCK = new Object();
+
+	/** The values of the changed system properties before the first open connection, null if unset. */
+	private static final Map<String, String> replacedProperties = new HashMap<String, String>();
+
+	/** The open connections relying on the changed system properties. */
+	private static final Set<AdminClient> openClients = Collections
+			.newSetFromMap(new IdentityHashMap<AdminClient, Boolean>());
+
+	/**
+	 * Creates an admin client.
+	 *
+	 * @param config
+	 *            the connector properties
+	 * @return the admin client, null if no connection could be made
+	 * @throws Exception
+	 *             the exception
+	 */
+	public AdminClient createAdminClient(Properties config) throws Exception {
+		synchronized (SYSTEM_PROPERTIES_LOCK) {
+			Map<String, String> before = getAdminClientProperties();
+			AdminClient client = null;
+			try {
+				client = AdminClientFactory.createAdminClient(config);
+				return client;
+			} finally {
+				Map<String, String> after = getAdminClientProperties();
+				Set<String> keys = new TreeSet<String>(before.keySet());
+				keys.addAll(after.keySet());
+				for (String key : keys) {
+					String value = before.get(key);
+					if (!(value == null ? after.get(key) == null : value.equals(after.get(key)))
+							&& !replacedProperties.containsKey(key)) {
+						replacedProperties.put(key, value);
+					}
+				}
+				if (client != null) {
+					openClients.add(client);
+				} else if (openClients.isEmpty()) {
+					restoreSystemProperties();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Creates the app management proxy of an admin client.
+	 *
+	 * @param adminClient
+	 *            the admin client
+	 * @return the app management
+	 * @throws Exception
+	 *             the exception
+	 */
+	public AppManagement createAppManagement(AdminClient adminClient) throws Exception {
+		return AppManagementProxy.getJMXProxyForClient(adminClient);
+	}
+
+	/**
+	 * Closes an admin client. The system properties set while the client was
+	 * created are restored when no other open client relies on them anymore.
+	 *
+	 * @param client
+	 *            the client
+	 */
+	public static void closeAdminClient(AdminClient client) {
+		DeploymentNotificationDispatcher.close(client);
+		try {
+			client.getConnectorProperties().clear();
+		} catch (Exception e) {
+			log.fine("Failed to close connection: " + e.getMessage());
+		}
+		synchronized (SYSTEM_PROPERTIES_LOCK) {
+			if (openClients.remove(client) && openClients.isEmpty()) {
+				restoreSystemProperties();
+			}
+		}
+	}
+
+	/**
+	 * Gets the system properties the admin client libraries may set.
+	 *
+	 * @return the properties by key
+	 */
+	private static Map<String, String> getAdminClientProperties() {
+		Map<String, String> properties = new HashMap<String, String>();
+		Properties system = System.getProperties();
+		for (String key : system.stringPropertyNames()) {
+			for (String prefix : ADMIN_CLIENT_PROPERTY_PREFIXES) {
+				if (key.startsWith(prefix)) {
+					properties.put(key, system.getProperty(key));
+					break;
+				}
+			}
+		}
+		return properties;
+	}
+
+	/**
+	 * Restores the system properties changed by the admin client libraries to
+	 * the values they had before. Must be called holding the lock.
+	 */
+	private static void restoreSystemProperties() {
+		if (replacedProperties.isEmpty()) {
+			return;
+		}
+		for (Map.Entry<String, String> entry : replacedProperties.entrySet()) {
+			if (entry.getValue() == null) {
+				System.clearProperty(entry.getKey());
+			} else {
+				System.setProperty(entry.getKey(), entry.getValue());
+			}
+		}
+		// only the keys, the values may be passwords
+		log.fine("Restored system properties set by the admin client: " + new TreeSet<String>(replacedProperties.keySet()));
+		replacedProperties.clear();
+	}
+}
@@ -0,0 +1,252 @@
+/*
+ *
+ */
+package org.jenkinsci.plugins.websphere.services.deployment;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * The result of a single pass over a deployable archive. The archive is opened
+ * once, the central directory gives the entries and their checksums, and only
+ * the small deployment descriptors are read and parsed with a streaming
+ * parser. Every later step that needs to know something about the archive
+ * asks the analysis instead of opening the archive again.
+ */
+public class ArchiveAnalysis {
+
+	/** The Constant XML_INPUT_FACTORY. */
+	private static final XMLInputFactory XML_INPUT_FACTORY = createXMLInputFactory();
+
+	/** The archive. */
+	private final File archive;
+
+	/** The CRC-32 of every entry by name. */
+	private final Map<String, Long> entryChecksums = new LinkedHashMap<String, Long>();
+
+	/** The modules of an enterprise archive. */
+	private final List<String> modules = new ArrayList<String>();
+
+	/** The deployment descriptors by entry name. */
+	private final Map<String, byte[]> descriptors = new LinkedHashMap<String, byte[]>();
+
+	/** The context root declared in ibm-web-ext.xml. */
+	private String contextRoot;
+
+	/** The app name WebSphere derives from the archive, null until it was derived. */
+	private String appName;
+
+	/**
+	 * Instantiates a new archive analysis.
+	 *
+	 * @param archive
+	 *            the archive
+	 */
+	private ArchiveAnalysis(File archive) {
+		this.archive = archive;
+	}
+
+	/**
+	 * Analyzes an archive.
+	 *
+	 * @param archive
+	 *            the archive
+	 * @return the archive analysis
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public static ArchiveAnalysis analyze(File archive) throws IOException {
+		ArchiveAnalysis analysis = new ArchiveAnalysis(archive);
+		try (ZipFile zipFile = new ZipFile(archive)) {
+			Enumeration<? extends ZipEntry> entries = zipFile.entries();
+			while (entries.hasMoreElements()) {
+				ZipEntry entry = entries.nextElement();
+				String name = entry.getName();
+				analysis.entryChecksums.put(name, entry.getCrc());
+				if (isModule(name)) {
+					analysis.modules.add(name);
+				} else if (isDescriptor(name)) {
+					try (InputStream in = zipFile.getInputStream(entry)) {
+						analysis.descriptors.put(name, readFully(in));
+					}
+				}
+			}
+		}
+		analysis.contextRoot = analysis.findAttribute("WEB-INF/ibm-web-ext.xml", "context-root", "uri");
+		return analysis;
+	}
+
+	/**
+	 * Gets the archive.
+	 *
+	 * @return the archive
+	 */
+	public File getArchive() {
+		return archive;
+	}
+
+	/**
+	 * Gets the CRC-32 of every entry by name.
+	 *
+	 * @return the entry checksums
+	 */
+	public Map<String, Long> getEntryChecksums() {
+		return Collections.unmodifiableMap(entryChecksums);
+	}
+
+	/**
+	 * Gets the modules of an enterprise archive.
+	 *
+	 * @return the modules
+	 */
+	public List<String> getModules() {
+		return Collections.unmodifiableList(modules);
+	}
+
+	/**
+	 * Gets the deployment descriptors by entry name.
+	 *
+	 * @return the descriptors
+	 */
+	public Map<String, byte[]> getDescriptors() {
+		return Collections.unmodifiableMap(descriptors);
+	}
+
+	/**
+	 * Gets the context root declared in ibm-web-ext.xml.
+	 *
+	 * @return the context root, null if none is declared
+	 */
+	public String getContextRoot() {
+		return contextRoot;
+	}
+
+	/**
+	 * Gets the app name WebSphere derives from the archive.
+	 *
+	 * @return the app name, null if it was not derived yet
+	 */
+	public String getAppName() {
+		return appName;
+	}
+
+	/**
+	 * Sets the app name WebSphere derives from the archive, so it is derived
+	 * only once.
+	 *
+	 * @param appName
+	 *            the app name
+	 */
+	public void setAppName(String appName) {
+		this.appName = appName;
+	}
+
+	/**
+	 * Checks if an entry is a descriptor.
+	 *
+	 * @param name
+	 *            the name
+	 * @return true, if is descriptor
+	 */
+	static boolean isDescriptor(String name) {
+		int slash = name.indexOf('/');
+		if (slash < 0 || slash != name.lastIndexOf('/')) {
+			return false;
+		}
+		String dir = name.substring(0, slash);
+		return (dir.equals("META-INF") || dir.equals("WEB-INF")) && (name.endsWith(".xml") || name.endsWith(".xmi"));
+	}
+
+	/**
+	 * Checks if an entry is a module of an enterprise archive.
+	 *
+	 * @param name
+	 *            the name
+	 * @return true, if is module
+	 */
+	static boolean isModule(String name) {
+		return name.indexOf('/') < 0 && (name.endsWith(".war") || name.endsWith(".jar") || name.endsWith(".rar"));
+	}
+
+	/**
+	 * Finds an attribute of the first element with the given name.
+	 *
+	 * @param descriptor
+	 *            the descriptor
+	 * @param element
+	 *            the element
+	 * @param attribute
+	 *            the attribute
+	 * @return the attribute value, null if not found
+	 */
+	private String findAttribute(String descriptor, String element, String attribute) {
+		byte[] content = descriptors.get(descriptor);
+		if (content == null) {
+			return null;
+		}
+		try {
+			XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(new ByteArrayInputStream(content));
+			try {
+				while (reader.hasNext()) {
+					if (reader.next() == XMLStreamConstants.START_ELEMENT && element.equals(reader.getLocalName())) {
+						return reader.getAttributeValue(null, attribute);
+					}
+				}
+			} finally {
+				reader.close();
+			}
+		} catch (XMLStreamException e) {
+			e.printStackTrace();
+		}
+		return null;
+	}
+
+	/**
+	 * Read fully.
+	 *
+	 * @param in
+	 *            the in
+	 * @return the bytes
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private static byte[] readFully(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buf = new byte[8192];
+		int len;
+		while ((len = in.read(buf)) > 0) {
+			out.write(buf, 0, len);
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * Creates the XML input factory. External DTDs of old descriptors are
+	 * not fetched.
+	 *
+	 * @return the XML input factory
+	 */
+	private static XMLInputFactory createXMLInputFactory() {
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+		factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+		factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.TRUE);
+		return factory;
+	}
+}
@@ -0,0 +1,150 @@
+/*
+ *
+ */
+package org.jenkinsci.plugins.websphere.services.deployment;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The changes between the deployed and a new version of an enterprise
+ * archive. Paths of files within a module are prefixed with the module URI,
+ * as expected by a partial application update.
+ */
+public class ArchiveDelta {
+
+	/** The added or changed files. */
+	private final List<String> updatedFiles = new ArrayList<String>();
+
+	/** The deleted files. */
+	private final List<String> deletedFiles = new ArrayList<String>();
+
+	/** The modules that are replaced as a whole. */
+	private final List<String> replacedModules = new ArrayList<String>();
+
+	/** The reason a full redeployment is required, null if none is. */
+	private String fullRedeployReason;
+
+	/** The changed bytes. */
+	private long changedBytes;
+
+	/** The total bytes. */
+	private long totalBytes;
+
+	/**
+	 * Gets the added or changed files.
+	 *
+	 * @return the updated files
+	 */
+	public List<String> getUpdatedFiles() {
+		return updatedFiles;
+	}
+
+	/**
+	 * Gets the deleted files.
+	 *
+	 * @return the deleted files
+	 */
+	public List<String> getDeletedFiles() {
+		return deletedFiles;
+	}
+
+	/**
+	 * Gets the modules that are replaced as a whole.
+	 *
+	 * @return the replaced modules
+	 */
+	public List<String> getReplacedModules() {
+		return replacedModules;
+	}
+
+	/**
+	 * Checks if is full redeploy.
+	 *
+	 * @return true, if is full redeploy
+	 */
+	public boolean isFullRedeploy() {
+		return fullRedeployReason != null;
+	}
+
+	/**
+	 * Checks if is empty.
+	 *
+	 * @return true, if nothing has changed
+	 */
+	public boolean isEmpty() {
+		return !isFullRedeploy() && updatedFiles.isEmpty() && deletedFiles.isEmpty() && replacedModules.isEmpty();
+	}
+
+	/**
+	 * Gets the full redeploy reason.
+	 *
+	 * @return the full redeploy reason
+	 */
+	public String getFullRedeployReason() {
+		return fullRedeployReason;
+	}
+
+	/**
+	 * Sets the full redeploy reason.
+	 *
+	 * @param fullRedeployReason
+	 *            the new full redeploy reason
+	 */
+	public void setFullRedeployReason(String fullRedeployReason) {
+		this.fullRedeployReason = fullRedeployReason;
+	}
+
+	/**
+	 * Gets the changed bytes.
+	 *
+	 * @return the changed bytes
+	 */
+	public long getChangedBytes() {
+		return changedBytes;
+	}
+
+	/**
+	 * Sets the changed bytes.
+	 *
+	 * @param changedBytes
+	 *            the new changed bytes
+	 */
+	public void setChangedBytes(long changedBytes) {
+		this.changedBytes = changedBytes;
+	}
+
+	/**
+	 * Gets the total bytes.
+	 *
+	 * @return the total bytes
+	 */
+	public long getTotalBytes() {
+		return totalBytes;
+	}
+
+	/**
+	 * Sets the total bytes.
+	 *
+	 * @param totalBytes
+	 *            the new total bytes
+	 */
+	public void setTotalBytes(long totalBytes) {
+		this.totalBytes = totalBytes;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		if (isFullRedeploy()) {
+			return "full redeployment, " + fullRedeployReason;
+		}
+		return updatedFiles.size() + " updated file(s), " + deletedFiles.size() + " deleted file(s), "
+				+ replacedModules.size() + " replaced module(s), " + (changedBytes / 1024) + " of "
+				+ (totalBytes / 1024) + " KB";
+	}
+}
@@ -0,0 +1,235 @@
+/*
+ *
+ */
+package org.jenkinsci.plugins.websphere.services.deployment;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+/**
+ * The checksum and size of every entry of an enterprise archive, including
+ * the entries of its modules. The manifest of the deployed version is all
+ * that is needed to find out which parts of a new version have changed.
+ */
+public class ArchiveManifest {
+
+	/** The separator between a module and an entry of the module. */
+	public static final String MODULE_SEPARATOR = "!/";
+
+	/** The signatures (crc:size) by entry name. */
+	private final Map<String, String> entries = new TreeMap<String, String>();
+
+	/**
+	 * Reads the manifest of an archive.
+	 *
+	 * @param archive
+	 *            the archive
+	 * @return the archive manifest
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public static ArchiveManifest read(File archive) throws IOException {
+		ArchiveManifest manifest = new ArchiveManifest();
+		byte[] buf = new byte[64 * 1024];
+		try (ZipFile zipFile = new ZipFile(archive)) {
+			Enumeration<? extends ZipEntry> zipEntries = zipFile.entries();
+			while (zipEntries.hasMoreElements()) {
+				ZipEntry entry = zipEntries.nextElement();
+				if (entry.isDirectory()) {
+					continue;
+				}
+				manifest.entries.put(entry.getName(), signature(entry.getCrc(), entry.getSize()));
+				if (ArchiveAnalysis.isModule(entry.getName())) {
+					try (ZipInputStream module = new ZipInputStream(zipFile.getInputStream(entry))) {
+						ZipEntry moduleEntry;
+						while ((moduleEntry = module.getNextEntry()) != null) {
+							if (moduleEntry.isDirectory()) {
+								continue;
+							}
+							CRC32 crc = new CRC32();
+							long size = 0;
+							int len;
+							while ((len = module.read(buf)) > 0) {
+								crc.update(buf, 0, len);
+								size += len;
+							}
+							manifest.entries.put(entry.getName() + MODULE_SEPARATOR + moduleEntry.getName(),
+									signature(crc.getValue(), size));
+						}
+					}
+				}
+			}
+		}
+		return manifest;
+	}
+
+	/**
+	 * Loads a stored manifest.
+	 *
+	 * @param file
+	 *            the file
+	 * @return the archive manifest, null if the file does not exist
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public static ArchiveManifest load(File file) throws IOException {
+		if (!file.isFile()) {
+			return null;
+		}
+		Properties properties = new Properties();
+		try (InputStream in = new FileInputStream(file)) {
+			properties.load(in);
+		}
+		ArchiveManifest manifest = new ArchiveManifest();
+		for (String name : properties.stringPropertyNames()) {
+			manifest.entries.put(name, properties.getProperty(name));
+		}
+		return manifest;
+	}
+
+	/**
+	 * Stores the manifest.
+	 *
+	 * @param file
+	 *            the file
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public void store(File file) throws IOException {
+		Properties properties = new Properties();
+		properties.putAll(entries);
+		try (OutputStream out = new FileOutputStream(file)) {
+			properties.store(out, null);
+		}
+	}
+
+	/**
+	 * Gets the signatures by entry name.
+	 *
+	 * @return the entries
+	 */
+	public Map<String, String> getEntries() {
+		return Collections.unmodifiableMap(entries);
+	}
+
+	/**
+	 * Computes the changes from a deployed version to this version.
+	 *
+	 * @param deployed
+	 *            the manifest of the deployed version, null if unknown
+	 * @param maxChangeRatio
+	 *            the share of the archive that may change before a full
+	 *            redeployment is preferred, also applied to every module
+	 * @return the delta
+	 */
+	public ArchiveDelta diff(ArchiveManifest deployed, double maxChangeRatio) {
+		ArchiveDelta delta = new ArchiveDelta();
+		if (deployed == null) {
+			delta.setFullRedeployReason("the deployed version is unknown");
+			return delta;
+		}
+		long totalBytes = 0;
+		long changedBytes = 0;
+		TreeSet<String> names = new TreeSet<String>(entries.keySet());
+		names.addAll(deployed.entries.keySet());
+		for (String name : names) {
+			if (name.contains(MODULE_SEPARATOR)) {
+				continue; // compared with their module
+			}
+			String current = entries.get(name);
+			String previous = deployed.entries.get(name);
+			totalBytes += current == null ? 0 : sizeOf(current);
+			if (current != null && current.equals(previous)) {
+				continue;
+			}
+			if (ArchiveAnalysis.isModule(name)) {
+				if (current == null || previous == null) {
+					delta.setFullRedeployReason("module " + name + (current == null ? " was removed" : " was added"));
+					return delta;
+				}
+				long moduleChangedBytes = 0;
+				ArchiveDelta moduleDelta = new ArchiveDelta();
+				String prefix = name + MODULE_SEPARATOR;
+				for (String entry : names.subSet(prefix, prefix + Character.MAX_VALUE)) {
+					String currentEntry = entries.get(entry);
+					String previousEntry = deployed.entries.get(entry);
+					if (currentEntry != null && currentEntry.equals(previousEntry)) {
+						continue;
+					}
+					String path = name + "/" + entry.substring(prefix.length());
+					if (ArchiveAnalysis.isDescriptor(entry.substring(prefix.length()))) {
+						delta.setFullRedeployReason("deployment descriptor " + path + " was changed");
+						return delta;
+					}
+					if (currentEntry == null) {
+						moduleDelta.getDeletedFiles().add(path);
+					} else {
+						moduleDelta.getUpdatedFiles().add(path);
+						moduleChangedBytes += sizeOf(currentEntry);
+					}
+				}
+				if (moduleChangedBytes > maxChangeRatio * sizeOf(current)) {
+					delta.getReplacedModules().add(name);
+					changedBytes += sizeOf(current);
+				} else {
+					delta.getUpdatedFiles().addAll(moduleDelta.getUpdatedFiles());
+					delta.getDeletedFiles().addAll(moduleDelta.getDeletedFiles());
+					changedBytes += moduleChangedBytes;
+				}
+			} else if (name.startsWith("META-INF/")) {
+				delta.setFullRedeployReason("deployment descriptor " + name + " was changed");
+				return delta;
+			} else if (current == null) {
+				delta.getDeletedFiles().add(name);
+			} else {
+				delta.getUpdatedFiles().add(name);
+				changedBytes += sizeOf(current);
+			}
+		}
+		delta.setChangedBytes(changedBytes);
+		delta.setTotalBytes(totalBytes);
+		if (changedBytes > maxChangeRatio * totalBytes) {
+			delta.setFullRedeployReason(
+					(totalBytes == 0 ? 100 : changedBytes * 100 / totalBytes) + "% of the archive was changed");
+		}
+		return delta;
+	}
+
+	/**
+	 * Signature.
+	 *
+	 * @param crc
+	 *            the crc
+	 * @param size
+	 *            the size
+	 * @return the signature
+	 */
+	private static String signature(long crc, long size) {
+		return Long.toHexString(crc) + ":" + size;
+	}
+
+	/**
+	 * Gets the size from a signature.
+	 *
+	 * @param signature
+	 *            the signature
+	 * @return the size
+	 */
+	private static long sizeOf(String signature) {
+		return Long.parseLong(signature.substring(signature.indexOf(':') + 1));
+	}
+}
@@ -4,6 +4,7 @@
 package org.jenkinsci.plugins.websphere.services.deployment;
 
 import java.io.File;
+import java.util.Hashtable;
 
 /**
  * The Class Artifact.
@@ -62,6 +63,9 @@ public class Artifact {
 	/** The distribute. */
 	private boolean distribute;
 
+	/** Whether WebSphere restarts the application itself once it was updated. */
+	private boolean restartOnUpdate = true;
+
 	/** The precompile. */
 	private boolean precompile;
 
@@ -80,6 +84,15 @@ public class Artifact {
 	/** The class loader policy. */
 	private String classLoaderPolicy;
 
+	/** The deployment preferences of a prepared artifact. */
+	private Hashtable<String, Object> deploymentPreferences;
+
+	/** The digest of the content of the archive, null until computed. */
+	private String digest;
+
+	/** The analysis of the archive, null until analyzed. */
+	private ArchiveAnalysis analysis;
+
 	/**
 	 * Gets the type name.
 	 *
@@ -274,6 +287,67 @@ public class Artifact {
 	 */
 	public void setSourcePath(File sourcePath) {
 		this.sourcePath = sourcePath;
+		this.deploymentPreferences = null; // prepared for the previous source
+	}
+
+	/**
+	 * Gets the deployment preferences.
+	 *
+	 * @return the deployment preferences, null if the artifact has not been
+	 *         prepared
+	 */
+	public Hashtable<String, Object> getDeploymentPreferences() {
+		return deploymentPreferences;
+	}
+
+	/**
+	 * Sets the deployment preferences.
+	 *
+	 * @param deploymentPreferences
+	 *            the deployment preferences
+	 */
+	public void setDeploymentPreferences(Hashtable<String, Object> deploymentPreferences) {
+		this.deploymentPreferences = deploymentPreferences;
+	}
+
+	/**
+	 * Gets the digest of the content of the archive that was built, i.e. of
+	 * the WAR and not of the EAR generated for it.
+	 *
+	 * @return the digest, null if not computed
+	 */
+	public String getDigest() {
+		return digest;
+	}
+
+	/**
+	 * Sets the digest of the content of the archive.
+	 *
+	 * @param digest
+	 *            the new digest
+	 */
+	public void setDigest(String digest) {
+		this.digest = digest;
+	}
+
+	/**
+	 * Gets the analysis of the archive. It may belong to a previous source
+	 * path, e.g. to the WAR an EAR was generated for.
+	 *
+	 * @return the analysis, null if the archive has not been analyzed
+	 */
+	public ArchiveAnalysis getAnalysis() {
+		return analysis;
+	}
+
+	/**
+	 * Sets the analysis of the archive.
+	 *
+	 * @param analysis
+	 *            the new analysis
+	 */
+	public void setAnalysis(ArchiveAnalysis analysis) {
+		this.analysis = analysis;
 	}
 
 	/**
@@ -314,6 +388,27 @@ public class Artifact {
 		this.distribute = distribute;
 	}
 
+	/**
+	 * Checks if is restart on update.
+	 *
+	 * @return true, if WebSphere restarts the application itself once it was
+	 *         updated
+	 */
+	public boolean isRestartOnUpdate() {
+		return restartOnUpdate;
+	}
+
+	/**
+	 * Sets the restart on update.
+	 *
+	 * @param restartOnUpdate
+	 *            false to leave restarting the updated application to the
+	 *            caller, e.g. wave by wave
+	 */
+	public void setRestartOnUpdate(boolean restartOnUpdate) {
+		this.restartOnUpdate = restartOnUpdate;
+	}
+
 	/**
 	 * Gets the install path.
 	 *
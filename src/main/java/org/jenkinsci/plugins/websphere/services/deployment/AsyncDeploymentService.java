@@ -0,0 +1,57 @@
+/*
+ *
+ */
+package org.jenkinsci.plugins.websphere.services.deployment;
+
+/**
+ * The asynchronous variant of the {@link DeploymentService}. Every operation
+ * returns immediately with a future that is completed once the operation has
+ * finished on the server.
+ */
+public interface AsyncDeploymentService {
+
+	/**
+	 * Install artifact.
+	 *
+	 * @param artifact
+	 *            the artifact
+	 * @return the future of the installation
+	 */
+	DeploymentFuture<Void> installArtifactAsync(Artifact artifact);
+
+	/**
+	 * Update artifact.
+	 *
+	 * @param artifact
+	 *            the artifact
+	 * @return the future of the update
+	 */
+	DeploymentFuture<Void> updateArtifactAsync(Artifact artifact);
+
+	/**
+	 * Uninstall artifact.
+	 *
+	 * @param name
+	 *            the name
+	 * @return the future of the uninstallation
+	 */
+	DeploymentFuture<Void> uninstallArtifactAsync(String name);
+
+	/**
+	 * Start artifact.
+	 *
+	 * @param name
+	 *            the name
+	 * @return the future of the start
+	 */
+	DeploymentFuture<Void> startArtifactAsync(String name);
+
+	/**
+	 * Stop artifact.
+	 *
+	 * @param name
+	 *            the name
+	 * @return the future of the stop
+	 */
+	DeploymentFuture<Void> stopArtifactAsync(String name);
+}
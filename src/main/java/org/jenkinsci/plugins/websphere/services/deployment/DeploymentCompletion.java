@@ -0,0 +1,159 @@
+/*
+ *
+ */
+package org.jenkinsci.plugins.websphere.services.deployment;
+
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.Notification;
+import javax.management.NotificationListener;
+
+import com.ibm.websphere.management.application.AppNotification;
+
+import hudson.model.BuildListener;
+
+/**
+ * The completion handle of an application management operation. It is
+ * completed by the {@link DeploymentNotificationDispatcher} as soon as the
+ * operation reports that it has completed or failed. On success the value of
+ * the future are the properties of the final notification. However the
+ * handle is done, also when it is cancelled because the build was aborted,
+ * it stops listening for notifications.
+ * <p>
+ * If the final notification cannot be routed to the handle, the operation can
+ * be checked with the server by an outcome check, e.g. whether an installed
+ * application exists.
+ */
+public class DeploymentCompletion extends DeploymentFuture<Properties> implements NotificationListener {
+
+	/** The log. */
+	private static Logger log = Logger.getLogger(DeploymentCompletion.class.getName());
+
+	/** The dispatcher. */
+	private final DeploymentNotificationDispatcher dispatcher;
+
+	/** The task name. */
+	private final String taskName;
+
+	/** The app name. */
+	private final String appName;
+
+	/** The listener. */
+	private final BuildListener listener;
+
+	/** The verbose. */
+	private final boolean verbose;
+
+	/** The message. */
+	private final StringBuilder message = new StringBuilder();
+
+	/** The check telling whether the operation has completed, null if it cannot be checked. */
+	private volatile Callable<Boolean> outcomeCheck;
+
+	/**
+	 * Instantiates a new deployment completion.
+	 *
+	 * @param dispatcher
+	 *            the dispatcher
+	 * @param taskName
+	 *            the task name
+	 * @param appName
+	 *            the app name
+	 * @param listener
+	 *            the listener
+	 * @param verbose
+	 *            the verbose
+	 */
+	DeploymentCompletion(final DeploymentNotificationDispatcher dispatcher, String taskName, String appName,
+			BuildListener listener, boolean verbose) {
+		this.dispatcher = dispatcher;
+		this.taskName = taskName;
+		this.appName = appName;
+		this.listener = listener;
+		this.verbose = verbose;
+		addListener(new Runnable() {
+			public void run() {
+				dispatcher.unsubscribe(DeploymentCompletion.this);
+			}
+		});
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * javax.management.NotificationListener#handleNotification(javax.management
+	 * .Notification, java.lang.Object)
+	 */
+	public void handleNotification(Notification notification, Object handback) {
+		AppNotification appNotification = (AppNotification) notification.getUserData();
+		if (verbose) {
+			listener.getLogger().println(
+					appNotification.taskName + "] " + appNotification.message + "[" + appNotification.taskStatus + "]");
+		}
+		synchronized (this) {
+			message.append("\n").append(appNotification.message);
+		}
+		if (appNotification.taskStatus.equals(AppNotification.STATUS_FAILED)) {
+			fail(new DeploymentServiceException(taskName + " of '" + appName + "' failed: " + getMessage()));
+		} else if (appNotification.taskStatus.equals(AppNotification.STATUS_COMPLETED)) {
+			set(appNotification.props != null ? appNotification.props : new Properties());
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.jenkinsci.plugins.websphere.services.deployment.DeploymentFuture#
+	 * checkOutcome()
+	 */
+	@Override
+	public boolean checkOutcome() {
+		Callable<Boolean> check = outcomeCheck;
+		if (!isDone() && check != null) {
+			try {
+				if (Boolean.TRUE.equals(check.call())) {
+					if (verbose) {
+						listener.getLogger().println(taskName + "] Checked that '" + appName + "' has completed");
+					}
+					set(new Properties());
+				}
+			} catch (Exception e) {
+				log.log(Level.WARNING, "Could not check the outcome of " + taskName + " of '" + appName + "'", e);
+			}
+		}
+		return isDone();
+	}
+
+	/**
+	 * Sets the check telling whether the operation has completed.
+	 *
+	 * @param outcomeCheck
+	 *            the check, returning true once the operation has completed
+	 */
+	public void setOutcomeCheck(Callable<Boolean> outcomeCheck) {
+		this.outcomeCheck = outcomeCheck;
+	}
+
+	/**
+	 * Gets the message.
+	 *
+	 * @return the message
+	 */
+	public synchronized String getMessage() {
+		return message.toString();
+	}
+
+	/**
+	 * Gets the app name.
+	 *
+	 * @return the app name
+	 */
+	public String getAppName() {
+		return appName;
+	}
+}
@@ -0,0 +1,243 @@
+/*
+ *
+ */
+package org.jenkinsci.plugins.websphere.services.deployment;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * The result of an asynchronous deployment operation. The future is completed
+ * by whoever observes the end of the operation, e.g. a notification from
+ * WebSphere, so waiting callers do not need a thread per operation. Listeners
+ * can be added to chain further work to the completion.
+ *
+ * @param <V>
+ *            the type of the result
+ */
+public class DeploymentFuture<V> implements Future<V> {
+
+	/** The listeners to run on completion. */
+	private final List<Runnable> listeners = new ArrayList<Runnable>();
+
+	/** The done. */
+	private boolean done;
+
+	/** The cancelled. */
+	private boolean cancelled;
+
+	/** The value. */
+	private V value;
+
+	/** The failure. */
+	private Throwable failure;
+
+	/**
+	 * Completes the future successfully.
+	 *
+	 * @param value
+	 *            the value
+	 * @return true, if the future was not completed before
+	 */
+	public boolean set(V value) {
+		synchronized (this) {
+			if (done) {
+				return false;
+			}
+			this.value = value;
+			done = true;
+			notifyAll();
+		}
+		runListeners();
+		return true;
+	}
+
+	/**
+	 * Completes the future with a failure.
+	 *
+	 * @param failure
+	 *            the failure
+	 * @return true, if the future was not completed before
+	 */
+	public boolean fail(Throwable failure) {
+		synchronized (this) {
+			if (done) {
+				return false;
+			}
+			this.failure = failure;
+			done = true;
+			notifyAll();
+		}
+		runListeners();
+		return true;
+	}
+
+	/**
+	 * Adds a listener that is run once the future is done. If the future is
+	 * already done, the listener is run immediately.
+	 *
+	 * @param listener
+	 *            the listener
+	 */
+	public void addListener(Runnable listener) {
+		synchronized (this) {
+			if (!done) {
+				listeners.add(listener);
+				return;
+			}
+		}
+		listener.run();
+	}
+
+	/**
+	 * Checks the outcome of the operation with the server, for when its end
+	 * was not observed, e.g. because its notification could not be told apart
+	 * from the ones of other operations. Futures that cannot check their
+	 * operation just tell whether they are done.
+	 *
+	 * @return true, if the future is done
+	 */
+	public boolean checkOutcome() {
+		return isDone();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.util.concurrent.Future#cancel(boolean)
+	 */
+	public boolean cancel(boolean mayInterruptIfRunning) {
+		synchronized (this) {
+			if (done) {
+				return false;
+			}
+			cancelled = true;
+			done = true;
+			notifyAll();
+		}
+		runListeners();
+		return true;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.util.concurrent.Future#isCancelled()
+	 */
+	public synchronized boolean isCancelled() {
+		return cancelled;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.util.concurrent.Future#isDone()
+	 */
+	public synchronized boolean isDone() {
+		return done;
+	}
+
+	/**
+	 * Checks if the future completed successfully.
+	 *
+	 * @return true, if is successful
+	 */
+	public synchronized boolean isSuccessful() {
+		return done && !cancelled && failure == null;
+	}
+
+	/**
+	 * Waits until the future is done.
+	 *
+	 * @throws InterruptedException
+	 *             the interrupted exception
+	 */
+	public synchronized void await() throws InterruptedException {
+		while (!done) {
+			wait();
+		}
+	}
+
+	/**
+	 * Waits until the future is done or the timeout has elapsed.
+	 *
+	 * @param timeout
+	 *            the timeout
+	 * @param unit
+	 *            the unit
+	 * @return true, if the future is done
+	 * @throws InterruptedException
+	 *             the interrupted exception
+	 */
+	public synchronized boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + unit.toMillis(timeout);
+		long remaining;
+		while (!done && (remaining = deadline - System.currentTimeMillis()) > 0) {
+			wait(remaining);
+		}
+		return done;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.util.concurrent.Future#get()
+	 */
+	public V get() throws InterruptedException, ExecutionException {
+		await();
+		return getResult();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.util.concurrent.Future#get(long,
+	 * java.util.concurrent.TimeUnit)
+	 */
+	public V get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+		if (!await(timeout, unit)) {
+			throw new TimeoutException("Deployment operation did not complete in time");
+		}
+		return getResult();
+	}
+
+	/**
+	 * Gets the result.
+	 *
+	 * @return the value
+	 * @throws ExecutionException
+	 *             if the operation failed
+	 */
+	private synchronized V getResult() throws ExecutionException {
+		if (cancelled) {
+			throw new CancellationException("Deployment operation was cancelled");
+		}
+		if (failure != null) {
+			throw new ExecutionException(failure.getMessage(), failure);
+		}
+		return value;
+	}
+
+	/**
+	 * Run listeners.
+	 */
+	private void runListeners() {
+		List<Runnable> toRun;
+		synchronized (this) {
+			toRun = new ArrayList<Runnable>(listeners);
+			listeners.clear();
+		}
+		for (Runnable listener : toRun) {
+			try {
+				listener.run();
+			} catch (RuntimeException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+}
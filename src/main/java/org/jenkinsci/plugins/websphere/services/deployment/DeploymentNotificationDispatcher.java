@@ -0,0 +1,317 @@
+/*
+ *
+ */
+package org.jenkinsci.plugins.websphere.services.deployment;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.management.Notification;
+import javax.management.NotificationFilterSupport;
+import javax.management.NotificationListener;
+import javax.management.ObjectName;
+
+import com.ibm.websphere.management.AdminClient;
+import com.ibm.websphere.management.application.AppConstants;
+import com.ibm.websphere.management.application.AppNotification;
+
+import hudson.model.BuildListener;
+
+/**
+ * Receives all application management notifications of one AdminClient. The
+ * dispatcher is registered with the AppManagement MBean once per connection
+ * and routes every AppNotification by task name and application name to the
+ * operations waiting for it.
+ * <p>
+ * Operations must call {@link #expect(String, String, BuildListener, boolean)}
+ * before they are submitted, so that no notification can be missed. A
+ * notification that does not name an application is routed to a subscription
+ * of its task if no other one is pending or if its message names exactly one
+ * of the pending applications. Otherwise it cannot be told which operation it
+ * belongs to, and if it ends an operation, the pending completion handles of
+ * its task check their outcome with the server instead.
+ * <p>
+ * Dispatchers are kept until their connection is closed with
+ * {@link #close(AdminClient)}.
+ */
+public class DeploymentNotificationDispatcher implements NotificationListener {
+
+	/** The dispatchers by connection, removed when the connection is closed. */
+	private static final Map<AdminClient, DeploymentNotificationDispatcher> DISPATCHERS = new HashMap<AdminClient, DeploymentNotificationDispatcher>();
+
+	/** The admin client. */
+	private final AdminClient adminClient;
+
+	/** The object name of the AppManagement MBean. */
+	private final ObjectName objectName;
+
+	/** The subscriptions. */
+	private final List<Subscription> subscriptions = new CopyOnWriteArrayList<Subscription>();
+
+	/**
+	 * Instantiates a new deployment notification dispatcher.
+	 *
+	 * @param adminClient
+	 *            the admin client
+	 * @throws Exception
+	 *             the exception
+	 */
+	private DeploymentNotificationDispatcher(AdminClient adminClient) throws Exception {
+		this.adminClient = adminClient;
+		this.objectName = (ObjectName) adminClient.queryNames(new ObjectName("WebSphere:type=AppManagement,*"), null)
+				.iterator().next();
+		NotificationFilterSupport filterSupport = new NotificationFilterSupport();
+		filterSupport.enableType(AppConstants.NotificationType);
+		adminClient.addNotificationListener(objectName, this, filterSupport, null);
+	}
+
+	/**
+	 * Gets the dispatcher of a connection, registering it on first use.
+	 *
+	 * @param adminClient
+	 *            the admin client
+	 * @return the dispatcher
+	 * @throws Exception
+	 *             the exception
+	 */
+	public static synchronized DeploymentNotificationDispatcher getInstance(AdminClient adminClient)
+			throws Exception {
+		DeploymentNotificationDispatcher dispatcher = DISPATCHERS.get(adminClient);
+		if (dispatcher == null) {
+			dispatcher = new DeploymentNotificationDispatcher(adminClient);
+			DISPATCHERS.put(adminClient, dispatcher);
+		}
+		return dispatcher;
+	}
+
+	/**
+	 * Unregisters the dispatcher of a connection that is closed.
+	 *
+	 * @param adminClient
+	 *            the admin client
+	 */
+	public static void close(AdminClient adminClient) {
+		DeploymentNotificationDispatcher dispatcher;
+		synchronized (DeploymentNotificationDispatcher.class) {
+			dispatcher = DISPATCHERS.remove(adminClient);
+		}
+		if (dispatcher != null) {
+			dispatcher.subscriptions.clear();
+			try {
+				adminClient.removeNotificationListener(dispatcher.objectName, dispatcher);
+			} catch (Exception e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Registers the completion handle of an operation that is about to be
+	 * submitted.
+	 *
+	 * @param taskName
+	 *            the task name of the notification that completes the
+	 *            operation
+	 * @param appName
+	 *            the app name
+	 * @param listener
+	 *            the listener
+	 * @param verbose
+	 *            the verbose
+	 * @return the completion handle
+	 */
+	public DeploymentCompletion expect(String taskName, String appName, BuildListener listener, boolean verbose) {
+		DeploymentCompletion completion = new DeploymentCompletion(this, taskName, appName, listener, verbose);
+		subscribe(taskName, appName, completion);
+		return completion;
+	}
+
+	/**
+	 * Subscribes a listener to the notifications of a task and application.
+	 *
+	 * @param taskName
+	 *            the task name
+	 * @param appName
+	 *            the app name, null for all applications
+	 * @param listener
+	 *            the listener
+	 */
+	public void subscribe(String taskName, String appName, NotificationListener listener) {
+		subscriptions.add(new Subscription(taskName, appName, listener));
+	}
+
+	/**
+	 * Unsubscribes a listener.
+	 *
+	 * @param listener
+	 *            the listener
+	 */
+	public void unsubscribe(NotificationListener listener) {
+		List<Subscription> removed = new ArrayList<Subscription>();
+		for (Subscription subscription : subscriptions) {
+			if (subscription.listener == listener) {
+				removed.add(subscription);
+			}
+		}
+		subscriptions.removeAll(removed);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * javax.management.NotificationListener#handleNotification(javax.management
+	 * .Notification, java.lang.Object)
+	 */
+	public void handleNotification(Notification notification, Object handback) {
+		if (!(notification.getUserData() instanceof AppNotification)) {
+			return;
+		}
+		AppNotification appNotification = (AppNotification) notification.getUserData();
+		String appName = appNotification.props == null ? null
+				: appNotification.props.getProperty(AppConstants.APPDEPL_APPNAME);
+		List<Subscription> matching = new ArrayList<Subscription>();
+		int pending = 0;
+		for (Subscription subscription : subscriptions) {
+			if (subscription.matches(appNotification.taskName, appName)) {
+				matching.add(subscription);
+				if (subscription.appName != null) {
+					pending++;
+				}
+			}
+		}
+		Subscription named = null;
+		if (appName == null && pending > 1) {
+			named = findNamedIn(matching, appNotification.message);
+		}
+		for (Subscription subscription : matching) {
+			if (appName != null || subscription.appName == null || pending == 1 || subscription == named) {
+				try {
+					subscription.listener.handleNotification(notification, handback);
+				} catch (Exception e) {
+					e.printStackTrace();
+				}
+			}
+		}
+		if (appName == null && pending > 1 && named == null
+				&& (AppNotification.STATUS_COMPLETED.equals(appNotification.taskStatus)
+						|| AppNotification.STATUS_FAILED.equals(appNotification.taskStatus))) {
+			checkOutcomes(matching);
+		}
+	}
+
+	/**
+	 * Finds the only subscription whose application is named in the message of
+	 * a notification.
+	 *
+	 * @param subscriptions
+	 *            the subscriptions
+	 * @param message
+	 *            the message, may be null
+	 * @return the subscription, null if no or several applications are named
+	 */
+	private Subscription findNamedIn(List<Subscription> subscriptions, String message) {
+		Subscription named = null;
+		if (message != null) {
+			for (Subscription subscription : subscriptions) {
+				if (subscription.appName != null && message.contains(subscription.appName)) {
+					if (named != null) {
+						return null;
+					}
+					named = subscription;
+				}
+			}
+		}
+		return named;
+	}
+
+	/**
+	 * Makes the completion handles that may have been ended by a notification
+	 * check their outcome with the server. The checks are remote calls, so
+	 * they do not run on the thread delivering notifications.
+	 *
+	 * @param subscriptions
+	 *            the subscriptions
+	 */
+	private void checkOutcomes(List<Subscription> subscriptions) {
+		for (Subscription subscription : subscriptions) {
+			if (subscription.appName != null && subscription.listener instanceof DeploymentCompletion) {
+				final DeploymentCompletion completion = (DeploymentCompletion) subscription.listener;
+				AbstractDeploymentService.getExecutor().execute(new Runnable() {
+					public void run() {
+						completion.checkOutcome();
+					}
+				});
+			}
+		}
+	}
+
+	/**
+	 * Gets the admin client.
+	 *
+	 * @return the admin client
+	 */
+	public AdminClient getAdminClient() {
+		return adminClient;
+	}
+
+	/**
+	 * Gets the object name.
+	 *
+	 * @return the object name
+	 */
+	public ObjectName getObjectName() {
+		return objectName;
+	}
+
+	/**
+	 * A listener waiting for the notifications of a task.
+	 */
+	private static final class Subscription {
+
+		/** The task name. */
+		private final String taskName;
+
+		/** The app name. */
+		private final String appName;
+
+		/** The listener. */
+		private final NotificationListener listener;
+
+		/**
+		 * Instantiates a new subscription.
+		 *
+		 * @param taskName
+		 *            the task name
+		 * @param appName
+		 *            the app name
+		 * @param listener
+		 *            the listener
+		 */
+		private Subscription(String taskName, String appName, NotificationListener listener) {
+			this.taskName = taskName;
+			this.appName = appName;
+			this.listener = listener;
+		}
+
+		/**
+		 * Matches.
+		 *
+		 * @param notifiedTask
+		 *            the notified task
+		 * @param notifiedApp
+		 *            the notified app, null if the notification does not name
+		 *            an application
+		 * @return true, if successful
+		 */
+		private boolean matches(String notifiedTask, String notifiedApp) {
+			if (taskName != null && !taskName.equals(notifiedTask)) {
+				return false;
+			}
+			return appName == null || notifiedApp == null || appName.equals(notifiedApp);
+		}
+	}
+}
@@ -0,0 +1,513 @@
+/*
+ *
+ */
+package org.jenkinsci.plugins.websphere.services.deployment;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executor;
+
+/**
+ * Limits the admin operations that change the configuration of a cell, like
+ * installing, updating and uninstalling applications, that run at the same
+ * time. Cells are told apart by the host and port of their deployment
+ * manager. Operations beyond the limit are queued; whenever one ends, the
+ * queued operation of the owner (e.g. the build) with the fewest running
+ * operations in the cell is admitted, taking turns between owners and the
+ * longest waiting operation of an owner first, so a build deploying many
+ * artifacts cannot crowd out the others.
+ */
+public class DeploymentScheduler {
+
+	/** The Constant DEFAULT_MAX_CONCURRENT_OPERATIONS. */
+	public static final int DEFAULT_MAX_CONCURRENT_OPERATIONS = 2;
+
+	/** The max concurrent operations per cell. */
+	private final int maxConcurrentOperations;
+
+	/** The queues by cell. */
+	private final Map<String, CellQueue> cells = new TreeMap<String, CellQueue>();
+
+	/**
+	 * Instantiates a new deployment scheduler with the default limit.
+	 */
+	public DeploymentScheduler() {
+		this(DEFAULT_MAX_CONCURRENT_OPERATIONS);
+	}
+
+	/**
+	 * Instantiates a new deployment scheduler.
+	 *
+	 * @param maxConcurrentOperations
+	 *            the max concurrent operations per cell
+	 */
+	public DeploymentScheduler(int maxConcurrentOperations) {
+		this.maxConcurrentOperations = Math.max(1, maxConcurrentOperations);
+	}
+
+	/**
+	 * Gets the max concurrent operations per cell.
+	 *
+	 * @return the max concurrent operations
+	 */
+	public int getMaxConcurrentOperations() {
+		return maxConcurrentOperations;
+	}
+
+	/**
+	 * Queues an operation. The operation may run once the returned permit is
+	 * admitted, see {@link Permit#await()} and
+	 * {@link Permit#whenAdmitted(Runnable, Executor)}, and must release the
+	 * permit when it ends.
+	 *
+	 * @param cell
+	 *            the cell, e.g. <code>host:port</code> of the deployment
+	 *            manager
+	 * @param owner
+	 *            the owner, e.g. the build
+	 * @param operation
+	 *            the operation, e.g. <code>install 'app'</code>
+	 * @return the permit
+	 */
+	public synchronized Permit enqueue(String cell, String owner, String operation) {
+		CellQueue queue = cells.get(cell);
+		if (queue == null) {
+			queue = new CellQueue(cell);
+			cells.put(cell, queue);
+		}
+		Permit permit = new Permit(queue, owner != null ? owner : "", operation,
+				queue.running.size() + queue.waiting.size());
+		queue.waiting.add(permit);
+		admit(queue);
+		return permit;
+	}
+
+	/**
+	 * Gets the state of every cell operations were scheduled for.
+	 *
+	 * @return the cells, by name
+	 */
+	public synchronized List<CellStatus> getCells() {
+		List<CellStatus> statuses = new ArrayList<CellStatus>();
+		long now = System.currentTimeMillis();
+		for (CellQueue queue : cells.values()) {
+			List<String> running = new ArrayList<String>();
+			for (Permit permit : queue.running) {
+				running.add(permit.describe(now - permit.admittedAt));
+			}
+			List<String> waiting = new ArrayList<String>();
+			for (Permit permit : queue.waiting) {
+				waiting.add(permit.describe(now - permit.queuedAt));
+			}
+			statuses.add(new CellStatus(queue.cell, running, waiting, queue.admitted, queue.totalWaitMillis,
+					queue.maxWaitMillis));
+		}
+		return statuses;
+	}
+
+	/**
+	 * Admits queued operations while the cell has room for them.
+	 *
+	 * @param queue
+	 *            the queue of the cell
+	 */
+	private void admit(CellQueue queue) {
+		boolean admitted = false;
+		while (queue.running.size() < maxConcurrentOperations && !queue.waiting.isEmpty()) {
+			Permit next = null;
+			int nextRunning = Integer.MAX_VALUE;
+			long nextTurn = Long.MAX_VALUE;
+			for (Permit permit : queue.waiting) {
+				int running = queue.countRunning(permit.owner);
+				Long turn = queue.lastTurns.get(permit.owner);
+				if (running < nextRunning || (running == nextRunning && (turn == null ? -1 : turn) < nextTurn)) {
+					next = permit;
+					nextRunning = running;
+					nextTurn = turn == null ? -1 : turn;
+				}
+			}
+			queue.waiting.remove(next);
+			queue.running.add(next);
+			queue.lastTurns.put(next.owner, queue.admitted);
+			next.admittedAt = System.currentTimeMillis();
+			next.runAdmittedAction();
+			long waitMillis = next.admittedAt - next.queuedAt;
+			queue.admitted++;
+			queue.totalWaitMillis += waitMillis;
+			queue.maxWaitMillis = Math.max(queue.maxWaitMillis, waitMillis);
+			admitted = true;
+		}
+		if (admitted) {
+			notifyAll();
+		}
+	}
+
+	/**
+	 * Waits until a permit is admitted.
+	 *
+	 * @param permit
+	 *            the permit
+	 * @throws InterruptedException
+	 *             if the thread was interrupted, the permit is withdrawn then
+	 */
+	private synchronized void await(Permit permit) throws InterruptedException {
+		try {
+			while (permit.admittedAt == 0 && !permit.released) {
+				wait();
+			}
+		} catch (InterruptedException e) {
+			release(permit);
+			throw e;
+		}
+	}
+
+	/**
+	 * Releases a permit, admitting the next queued operation.
+	 *
+	 * @param permit
+	 *            the permit
+	 */
+	private synchronized void release(Permit permit) {
+		if (permit.released) {
+			return;
+		}
+		permit.released = true;
+		permit.admittedAction = null;
+		permit.queue.waiting.remove(permit);
+		permit.queue.running.remove(permit);
+		if (!permit.queue.hasOperations(permit.owner)) {
+			permit.queue.lastTurns.remove(permit.owner);
+		}
+		admit(permit.queue);
+	}
+
+	/**
+	 * The operations of a cell.
+	 */
+	private static final class CellQueue {
+
+		/** The cell. */
+		private final String cell;
+
+		/** The running operations. */
+		private final List<Permit> running = new ArrayList<Permit>();
+
+		/** The waiting operations, the longest waiting first. */
+		private final LinkedList<Permit> waiting = new LinkedList<Permit>();
+
+		/** The number of admitted operations. */
+		private long admitted;
+
+		/** The total wait of the admitted operations. */
+		private long totalWaitMillis;
+
+		/** The longest wait of an admitted operation. */
+		private long maxWaitMillis;
+
+		/** The number of the last admission of every owner with operations. */
+		private final Map<String, Long> lastTurns = new HashMap<String, Long>();
+
+		/**
+		 * Instantiates a new cell queue.
+		 *
+		 * @param cell
+		 *            the cell
+		 */
+		private CellQueue(String cell) {
+			this.cell = cell;
+		}
+
+		/**
+		 * Counts the running operations of an owner.
+		 *
+		 * @param owner
+		 *            the owner
+		 * @return the count
+		 */
+		private int countRunning(String owner) {
+			int count = 0;
+			for (Permit permit : running) {
+				if (permit.owner.equals(owner)) {
+					count++;
+				}
+			}
+			return count;
+		}
+
+		/**
+		 * Checks if an owner has running or waiting operations.
+		 *
+		 * @param owner
+		 *            the owner
+		 * @return true, if it has operations
+		 */
+		private boolean hasOperations(String owner) {
+			for (Permit permit : running) {
+				if (permit.owner.equals(owner)) {
+					return true;
+				}
+			}
+			for (Permit permit : waiting) {
+				if (permit.owner.equals(owner)) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * The permission of an operation to run.
+	 */
+	public final class Permit {
+
+		/** The queue. */
+		private final CellQueue queue;
+
+		/** The owner. */
+		private final String owner;
+
+		/** The operation. */
+		private final String operation;
+
+		/** The number of operations running or queued ahead. */
+		private final int queueDepth;
+
+		/** The time the operation was queued. */
+		private final long queuedAt = System.currentTimeMillis();
+
+		/** The time the operation was admitted, 0 if it was not yet. */
+		private long admittedAt;
+
+		/** Whether the permit was released. */
+		private boolean released;
+
+		/** The action to run once the permit is admitted, null if there is none. */
+		private Runnable admittedAction;
+
+		/** The executor running the action. */
+		private Executor admittedExecutor;
+
+		/**
+		 * Instantiates a new permit.
+		 *
+		 * @param queue
+		 *            the queue
+		 * @param owner
+		 *            the owner
+		 * @param operation
+		 *            the operation
+		 * @param queueDepth
+		 *            the number of operations running or queued ahead
+		 */
+		private Permit(CellQueue queue, String owner, String operation, int queueDepth) {
+			this.queue = queue;
+			this.owner = owner;
+			this.operation = operation;
+			this.queueDepth = queueDepth;
+		}
+
+		/**
+		 * Checks if the operation may run.
+		 *
+		 * @return true, if is admitted
+		 */
+		public boolean isAdmitted() {
+			synchronized (DeploymentScheduler.this) {
+				return admittedAt != 0 && !released;
+			}
+		}
+
+		/**
+		 * Waits until the operation may run.
+		 *
+		 * @throws InterruptedException
+		 *             if the thread was interrupted, the permit is withdrawn then
+		 */
+		public void await() throws InterruptedException {
+			DeploymentScheduler.this.await(this);
+		}
+
+		/**
+		 * Runs an action once the operation may run, without a thread waiting
+		 * for it. The action is not run if the permit is withdrawn before.
+		 *
+		 * @param action
+		 *            the action
+		 * @param executor
+		 *            the executor running the action
+		 */
+		public void whenAdmitted(Runnable action, Executor executor) {
+			synchronized (DeploymentScheduler.this) {
+				if (released) {
+					return;
+				}
+				admittedAction = action;
+				admittedExecutor = executor;
+				if (admittedAt != 0) {
+					runAdmittedAction();
+				}
+			}
+		}
+
+		/**
+		 * Hands the action to run once admitted to its executor. Must be called
+		 * holding the lock of the scheduler.
+		 */
+		private void runAdmittedAction() {
+			if (admittedAction != null) {
+				admittedExecutor.execute(admittedAction);
+				admittedAction = null;
+				admittedExecutor = null;
+			}
+		}
+
+		/**
+		 * Releases the permit once the operation ended, or withdraws it if it
+		 * was not admitted yet. Releasing a permit again has no effect.
+		 */
+		public void release() {
+			DeploymentScheduler.this.release(this);
+		}
+
+		/**
+		 * Gets the number of operations that were running or queued in the
+		 * cell when this one was queued.
+		 *
+		 * @return the queue depth
+		 */
+		public int getQueueDepth() {
+			return queueDepth;
+		}
+
+		/**
+		 * Gets the time the operation waited to be admitted.
+		 *
+		 * @return the milliseconds, up to now if it was not admitted yet
+		 */
+		public long getWaitMillis() {
+			synchronized (DeploymentScheduler.this) {
+				return (admittedAt != 0 ? admittedAt : System.currentTimeMillis()) - queuedAt;
+			}
+		}
+
+		/**
+		 * Describes the operation.
+		 *
+		 * @param millis
+		 *            the milliseconds it has been running or waiting
+		 * @return the description
+		 */
+		private String describe(long millis) {
+			return owner + ": " + operation + " (" + (millis / 1000) + " s)";
+		}
+	}
+
+	/**
+	 * The state of the operations of a cell.
+	 */
+	public static final class CellStatus {
+
+		/** The cell. */
+		private final String cell;
+
+		/** The running operations. */
+		private final List<String> running;
+
+		/** The waiting operations. */
+		private final List<String> waiting;
+
+		/** The number of admitted operations. */
+		private final long admitted;
+
+		/** The total wait of the admitted operations. */
+		private final long totalWaitMillis;
+
+		/** The longest wait of an admitted operation. */
+		private final long maxWaitMillis;
+
+		/**
+		 * Instantiates a new cell status.
+		 *
+		 * @param cell
+		 *            the cell
+		 * @param running
+		 *            the running operations
+		 * @param waiting
+		 *            the waiting operations
+		 * @param admitted
+		 *            the number of admitted operations
+		 * @param totalWaitMillis
+		 *            the total wait of the admitted operations
+		 * @param maxWaitMillis
+		 *            the longest wait of an admitted operation
+		 */
+		private CellStatus(String cell, List<String> running, List<String> waiting, long admitted,
+				long totalWaitMillis, long maxWaitMillis) {
+			this.cell = cell;
+			this.running = running;
+			this.waiting = waiting;
+			this.admitted = admitted;
+			this.totalWaitMillis = totalWaitMillis;
+			this.maxWaitMillis = maxWaitMillis;
+		}
+
+		/**
+		 * Gets the cell.
+		 *
+		 * @return the cell
+		 */
+		public String getCell() {
+			return cell;
+		}
+
+		/**
+		 * Gets the running operations.
+		 *
+		 * @return the running operations
+		 */
+		public List<String> getRunning() {
+			return running;
+		}
+
+		/**
+		 * Gets the waiting operations, the longest waiting first.
+		 *
+		 * @return the waiting operations
+		 */
+		public List<String> getWaiting() {
+			return waiting;
+		}
+
+		/**
+		 * Gets the number of admitted operations.
+		 *
+		 * @return the admitted operations
+		 */
+		public long getAdmitted() {
+			return admitted;
+		}
+
+		/**
+		 * Gets the average wait of the admitted operations.
+		 *
+		 * @return the milliseconds
+		 */
+		public long getAverageWaitMillis() {
+			return admitted == 0 ? 0 : totalWaitMillis / admitted;
+		}
+
+		/**
+		 * Gets the longest wait of an admitted operation.
+		 *
+		 * @return the milliseconds
+		 */
+		public long getMaxWaitMillis() {
+			return maxWaitMillis;
+		}
+	}
+}
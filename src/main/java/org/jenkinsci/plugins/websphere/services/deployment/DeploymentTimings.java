@@ -0,0 +1,268 @@
+/*
+ *
+ */
+package org.jenkinsci.plugins.websphere.services.deployment;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The time spent in every phase of a deployment, per artifact, the time
+ * every target needed to receive an artifact and the time every node needed
+ * to synchronize. Phases that do not belong to
+ * a single artifact, like connecting, are recorded for {@link #ALL_ARTIFACTS}.
+ * Timings can be recorded by several threads at once.
+ */
+public class DeploymentTimings implements Serializable {
+
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
+
+	/** The artifact name for phases that do not belong to a single artifact. */
+	public static final String ALL_ARTIFACTS = "*";
+
+	/** The Constant CONNECT. */
+	public static final String CONNECT = "connect";
+
+	/** The Constant DISCOVERY. */
+	public static final String DISCOVERY = "discovery";
+
+	/** The Constant EAR_GENERATION. */
+	public static final String EAR_GENERATION = "EAR generation";
+
+	/** The Constant PREFERENCES. */
+	public static final String PREFERENCES = "preferences";
+
+	/** The Constant ADMISSION, the wait for the deployment scheduler. */
+	public static final String ADMISSION = "admission";
+
+	/** The Constant STOP. */
+	public static final String STOP = "stop";
+
+	/** The Constant UNINSTALL. */
+	public static final String UNINSTALL = "uninstall";
+
+	/** The Constant INSTALL, covering the upload and installation or update. */
+	public static final String INSTALL = "upload/install";
+
+	/** The Constant SYNC, the explicit synchronization of the nodes. */
+	public static final String SYNC = "node sync";
+
+	/** The Constant DISTRIBUTION. */
+	public static final String DISTRIBUTION = "distribution";
+
+	/** The Constant START. */
+	public static final String START = "start";
+
+	/** The Constant ROLLBACK_SAVE. */
+	public static final String ROLLBACK_SAVE = "rollback save";
+
+	/** The Constant PHASES, in the order they happen. */
+	public static final List<String> PHASES = Arrays.asList(CONNECT, DISCOVERY, EAR_GENERATION, PREFERENCES,
+			ADMISSION, STOP, UNINSTALL, INSTALL, SYNC, DISTRIBUTION, START, ROLLBACK_SAVE);
+
+	/** The milliseconds by phase, by artifact. */
+	private final LinkedHashMap<String, LinkedHashMap<String, Long>> phases = new LinkedHashMap<String, LinkedHashMap<String, Long>>();
+
+	/** The milliseconds by target, by artifact. */
+	private final LinkedHashMap<String, LinkedHashMap<String, Long>> targets = new LinkedHashMap<String, LinkedHashMap<String, Long>>();
+
+	/** The milliseconds by synchronized node, by artifact, null in timings recorded before. */
+	private LinkedHashMap<String, LinkedHashMap<String, Long>> syncs = new LinkedHashMap<String, LinkedHashMap<String, Long>>();
+
+	/**
+	 * Records the time spent in a phase. Time spent in the same phase before
+	 * is added up.
+	 *
+	 * @param artifact
+	 *            the artifact, {@link #ALL_ARTIFACTS} if the phase does not
+	 *            belong to a single artifact
+	 * @param phase
+	 *            the phase
+	 * @param millis
+	 *            the milliseconds
+	 */
+	public synchronized void record(String artifact, String phase, long millis) {
+		add(phases, artifact, phase, millis);
+	}
+
+	/**
+	 * Records the time since a phase started.
+	 *
+	 * @param artifact
+	 *            the artifact
+	 * @param phase
+	 *            the phase
+	 * @param start
+	 *            the start, see {@link System#currentTimeMillis()}
+	 */
+	public void recordSince(String artifact, String phase, long start) {
+		record(artifact, phase, System.currentTimeMillis() - start);
+	}
+
+	/**
+	 * Records the time a target needed to receive an artifact.
+	 *
+	 * @param artifact
+	 *            the artifact
+	 * @param target
+	 *            the target, e.g. a node
+	 * @param millis
+	 *            the milliseconds
+	 */
+	public synchronized void recordTarget(String artifact, String target, long millis) {
+		add(targets, artifact, target, millis);
+	}
+
+	/**
+	 * Records the time a node needed to synchronize after an artifact was
+	 * saved.
+	 *
+	 * @param artifact
+	 *            the artifact
+	 * @param node
+	 *            the node
+	 * @param millis
+	 *            the milliseconds
+	 */
+	public synchronized void recordSync(String artifact, String node, long millis) {
+		if (syncs == null) {
+			syncs = new LinkedHashMap<String, LinkedHashMap<String, Long>>();
+		}
+		add(syncs, artifact, node, millis);
+	}
+
+	/**
+	 * Adds the timings recorded elsewhere, e.g. on an agent.
+	 *
+	 * @param other
+	 *            the other timings
+	 */
+	public void merge(DeploymentTimings other) {
+		for (String artifact : other.getArtifacts()) {
+			for (Map.Entry<String, Long> phase : other.getPhases(artifact).entrySet()) {
+				record(artifact, phase.getKey(), phase.getValue());
+			}
+			for (Map.Entry<String, Long> target : other.getTargets(artifact).entrySet()) {
+				recordTarget(artifact, target.getKey(), target.getValue());
+			}
+			for (Map.Entry<String, Long> node : other.getSyncs(artifact).entrySet()) {
+				recordSync(artifact, node.getKey(), node.getValue());
+			}
+		}
+	}
+
+	/**
+	 * Gets the artifacts.
+	 *
+	 * @return the artifacts, in the order they were first recorded
+	 */
+	public synchronized List<String> getArtifacts() {
+		List<String> artifacts = new ArrayList<String>(phases.keySet());
+		for (String artifact : targets.keySet()) {
+			if (!phases.containsKey(artifact)) {
+				artifacts.add(artifact);
+			}
+		}
+		return artifacts;
+	}
+
+	/**
+	 * Gets the milliseconds by phase of an artifact.
+	 *
+	 * @param artifact
+	 *            the artifact
+	 * @return the phases
+	 */
+	public synchronized Map<String, Long> getPhases(String artifact) {
+		return copy(phases.get(artifact));
+	}
+
+	/**
+	 * Gets the milliseconds by target of an artifact.
+	 *
+	 * @param artifact
+	 *            the artifact
+	 * @return the targets
+	 */
+	public synchronized Map<String, Long> getTargets(String artifact) {
+		return copy(targets.get(artifact));
+	}
+
+	/**
+	 * Gets the milliseconds by synchronized node of an artifact.
+	 *
+	 * @param artifact
+	 *            the artifact
+	 * @return the nodes
+	 */
+	public synchronized Map<String, Long> getSyncs(String artifact) {
+		return copy(syncs != null ? syncs.get(artifact) : null);
+	}
+
+	/**
+	 * Gets the milliseconds of a phase, added up for all artifacts.
+	 *
+	 * @param phase
+	 *            the phase
+	 * @return the milliseconds
+	 */
+	public synchronized long getTotal(String phase) {
+		long total = 0;
+		for (Map<String, Long> artifactPhases : phases.values()) {
+			Long millis = artifactPhases.get(phase);
+			total += millis == null ? 0 : millis;
+		}
+		return total;
+	}
+
+	/**
+	 * Gets the milliseconds of all phases of all artifacts.
+	 *
+	 * @return the milliseconds
+	 */
+	public synchronized long getTotal() {
+		long total = 0;
+		for (String phase : PHASES) {
+			total += getTotal(phase);
+		}
+		return total;
+	}
+
+	/**
+	 * Adds milliseconds to a map.
+	 *
+	 * @param map
+	 *            the map
+	 * @param artifact
+	 *            the artifact
+	 * @param key
+	 *            the key
+	 * @param millis
+	 *            the milliseconds
+	 */
+	private static void add(Map<String, LinkedHashMap<String, Long>> map, String artifact, String key, long millis) {
+		LinkedHashMap<String, Long> values = map.get(artifact);
+		if (values == null) {
+			values = new LinkedHashMap<String, Long>();
+			map.put(artifact, values);
+		}
+		Long previous = values.get(key);
+		values.put(key, (previous == null ? 0 : previous) + millis);
+	}
+
+	/**
+	 * Copies values.
+	 *
+	 * @param values
+	 *            the values, may be null
+	 * @return the copy
+	 */
+	private static Map<String, Long> copy(Map<String, Long> values) {
+		return values == null ? new LinkedHashMap<String, Long>() : new LinkedHashMap<String, Long>(values);
+	}
+}
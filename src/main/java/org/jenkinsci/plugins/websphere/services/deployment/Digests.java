@@ -0,0 +1,128 @@
+/*
+ *
+ */
+package org.jenkinsci.plugins.websphere.services.deployment;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * SHA-256 digests of archives and of deployment settings.
+ */
+public final class Digests {
+
+	/** The size of the buffer used to digest archives. */
+	private static final int DIGEST_BUFFER_SIZE = 1024 * 1024;
+
+	/**
+	 * Instantiates a new digests.
+	 */
+	private Digests() {
+	}
+
+	/**
+	 * Computes the digest of a file.
+	 *
+	 * @param file
+	 *            the file
+	 * @return the digest in hex
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public static String digest(File file) throws IOException {
+		MessageDigest digest = newDigest();
+		update(file, digest);
+		return toHex(digest.digest());
+	}
+
+	/**
+	 * Updates several digests with the content of a file, reading it once.
+	 *
+	 * @param file
+	 *            the file
+	 * @param digests
+	 *            the digests
+	 * @return the number of bytes read
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public static long update(File file, MessageDigest... digests) throws IOException {
+		byte[] buf = new byte[DIGEST_BUFFER_SIZE];
+		long size = 0;
+		try (InputStream in = new FileInputStream(file)) {
+			int len;
+			while ((len = in.read(buf)) > 0) {
+				for (MessageDigest digest : digests) {
+					digest.update(buf, 0, len);
+				}
+				size += len;
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Computes the digest of a list of values. Null values are digested like
+	 * empty strings.
+	 *
+	 * @param values
+	 *            the values
+	 * @return the digest in hex
+	 */
+	public static String digest(String... values) {
+		MessageDigest digest = newDigest();
+		try {
+			for (String value : values) {
+				digest.update((value == null ? "" : value).getBytes("UTF-8"));
+				digest.update((byte) '\n');
+			}
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+		return toHex(digest.digest());
+	}
+
+	/**
+	 * Creates a SHA-256 digest.
+	 *
+	 * @return the message digest
+	 */
+	public static MessageDigest newDigest() {
+		return newDigest("SHA-256");
+	}
+
+	/**
+	 * Creates a digest.
+	 *
+	 * @param algorithm
+	 *            the algorithm
+	 * @return the message digest
+	 */
+	public static MessageDigest newDigest(String algorithm) {
+		try {
+			return MessageDigest.getInstance(algorithm);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Converts bytes to hex.
+	 *
+	 * @param bytes
+	 *            the bytes
+	 * @return the hex string
+	 */
+	public static String toHex(byte[] bytes) {
+		StringBuilder hex = new StringBuilder(bytes.length * 2);
+		for (byte b : bytes) {
+			hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+		}
+		return hex.toString();
+	}
+}
@@ -0,0 +1,257 @@
+/*
+ *
+ */
+package org.jenkinsci.plugins.websphere.services.deployment;
+
+import java.util.Hashtable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.management.MalformedObjectNameException;
+import javax.management.Notification;
+import javax.management.NotificationListener;
+import javax.management.ObjectName;
+
+import com.ibm.websphere.management.application.AppManagement;
+import com.ibm.websphere.management.application.AppNotification;
+
+import hudson.model.BuildListener;
+
+/**
+ * Tracks the distribution of an application to all nodes. The tracker is
+ * subscribed to the notification dispatcher of the connection for the whole
+ * wait and reacts to every distribution status notification as soon as it
+ * arrives. The distribution status is only requested again when the last
+ * answer was not complete yet, starting with a short delay that grows with
+ * every unsuccessful poll.
+ */
+public class DistributionTracker implements NotificationListener {
+
+	/** The Constant INITIAL_POLL_DELAY. */
+	static final long INITIAL_POLL_DELAY = 100;
+
+	/** The Constant MAX_POLL_DELAY. */
+	static final long MAX_POLL_DELAY = 5000;
+
+	/** The Constant RESPONSE_TIMEOUT, after which a status request is repeated. */
+	static final long RESPONSE_TIMEOUT = 30000;
+
+	/** The dispatcher. */
+	private final DeploymentNotificationDispatcher dispatcher;
+
+	/** The app name. */
+	private final String appName;
+
+	/** The listener. */
+	private final BuildListener listener;
+
+	/** The verbose. */
+	private final boolean verbose;
+
+	/** The last reported distribution state. */
+	private String state = AppNotification.DISTRIBUTION_UNKNOWN;
+
+	/** The time of the outstanding status request, 0 if there is none. */
+	private long requestedAt;
+
+	/** The number of status requests. */
+	private int requests;
+
+	/** The time the wait started. */
+	private long startedAt;
+
+	/** The milliseconds until the application was distributed, by node. */
+	private final Map<String, Long> distributionTimes = new LinkedHashMap<String, Long>();
+
+	/**
+	 * Instantiates a new distribution tracker.
+	 *
+	 * @param dispatcher
+	 *            the notification dispatcher of the connection
+	 * @param appName
+	 *            the app name
+	 * @param listener
+	 *            the listener
+	 * @param verbose
+	 *            the verbose
+	 */
+	public DistributionTracker(DeploymentNotificationDispatcher dispatcher, String appName, BuildListener listener,
+			boolean verbose) {
+		this.dispatcher = dispatcher;
+		this.appName = appName;
+		this.listener = listener;
+		this.verbose = verbose;
+	}
+
+	/**
+	 * Waits until every node reports the application as distributed.
+	 *
+	 * @param appManagement
+	 *            the app management
+	 * @param timeoutMillis
+	 *            the timeout in milliseconds
+	 * @return true, if the application was distributed in time
+	 * @throws Exception
+	 *             the exception
+	 */
+	public boolean await(AppManagement appManagement, long timeoutMillis) throws Exception {
+		synchronized (this) {
+			startedAt = System.currentTimeMillis();
+		}
+		dispatcher.subscribe(AppNotification.DISTRIBUTION_STATUS_NODE, appName, this);
+		try {
+			long deadline = System.currentTimeMillis() + timeoutMillis;
+			long delay = INITIAL_POLL_DELAY;
+			long nextPoll = 0;
+			while (true) {
+				synchronized (this) {
+					long now = System.currentTimeMillis();
+					while (!isDistributed() && now < deadline && (isRequestPending(now) || now < nextPoll)) {
+						long wakeUp = isRequestPending(now) ? requestedAt + RESPONSE_TIMEOUT : nextPoll;
+						wait(Math.max(1, Math.min(wakeUp, deadline) - now));
+						now = System.currentTimeMillis();
+					}
+					if (isDistributed()) {
+						return true;
+					}
+					if (now >= deadline) {
+						return false;
+					}
+					requestedAt = now;
+					requests++;
+					nextPoll = now + delay;
+					delay = Math.min(delay * 2, MAX_POLL_DELAY);
+				}
+				// the status is reported asynchronously by notification
+				appManagement.getDistributionStatus(appName, new Hashtable<Object, Object>(), null);
+			}
+		} finally {
+			dispatcher.unsubscribe(this);
+			if (verbose) {
+				listener.getLogger().println("Distribution status of '" + appName + "' was requested " + requests
+						+ " time(s), last state: " + state);
+			}
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * javax.management.NotificationListener#handleNotification(javax.management
+	 * .Notification, java.lang.Object)
+	 */
+	public void handleNotification(Notification notification, Object handback) {
+		AppNotification appNotification = (AppNotification) notification.getUserData();
+		if (!AppNotification.STATUS_COMPLETED.equals(appNotification.taskStatus)
+				&& !AppNotification.STATUS_FAILED.equals(appNotification.taskStatus)) {
+			return;
+		}
+		String newState = AppNotification.DISTRIBUTION_UNKNOWN;
+		try {
+			if (AppNotification.STATUS_COMPLETED.equals(appNotification.taskStatus)
+					&& appNotification.props != null) {
+				newState = checkDistributionStatus(
+						appNotification.props.getProperty(AppNotification.DISTRIBUTION_STATUS_COMPOSITE));
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+		synchronized (this) {
+			state = newState;
+			requestedAt = 0;
+			notifyAll();
+		}
+	}
+
+	/**
+	 * Checks the aggregate distribution status of all nodes.
+	 *
+	 * @param compositeServers
+	 *            the composite distribution status reported by WebSphere
+	 * @return the distribution state
+	 * @throws MalformedObjectNameException
+	 *             the malformed object name exception
+	 */
+	String checkDistributionStatus(String compositeServers) throws MalformedObjectNameException {
+		String distributionState = AppNotification.DISTRIBUTION_UNKNOWN;
+		if (compositeServers != null) {
+			if (verbose) {
+				listener.getLogger().println("Server Composite: " + compositeServers);
+			}
+			String[] servers = compositeServers.split("\\+");
+			int countTrue = 0;
+			int countFalse = 0;
+			int countUnknown = 0;
+			for (String server : servers) {
+				ObjectName serverObject = new ObjectName(server);
+				distributionState = serverObject.getKeyProperty("distribution");
+				if (verbose) {
+					listener.getLogger().println("Distributed to " + server + ": " + distributionState);
+				}
+				if (distributionState.equals("true")) {
+					distributed(serverObject.getKeyProperty("node") != null ? serverObject.getKeyProperty("node")
+							: server);
+					countTrue++;
+				}
+				if (distributionState.equals("false"))
+					countFalse++;
+				if (distributionState.equals("unknown"))
+					countUnknown++;
+			}
+			if (countUnknown > 0) {
+				distributionState = AppNotification.DISTRIBUTION_UNKNOWN;
+			} else if (countFalse > 0) {
+				distributionState = AppNotification.DISTRIBUTION_NOT_DONE;
+			} else if (countTrue > 0) {
+				distributionState = AppNotification.DISTRIBUTION_DONE;
+			} else {
+				throw new DeploymentServiceException("Reported distribution status is invalid.");
+			}
+		}
+		return distributionState;
+	}
+
+	/**
+	 * Records when the application was first reported as distributed to a
+	 * node.
+	 *
+	 * @param node
+	 *            the node
+	 */
+	private synchronized void distributed(String node) {
+		if (!distributionTimes.containsKey(node)) {
+			distributionTimes.put(node, System.currentTimeMillis() - startedAt);
+		}
+	}
+
+	/**
+	 * Gets the milliseconds from the start of the wait until the application
+	 * was reported as distributed, by node.
+	 *
+	 * @return the distribution times
+	 */
+	public synchronized Map<String, Long> getDistributionTimes() {
+		return new LinkedHashMap<String, Long>(distributionTimes);
+	}
+
+	/**
+	 * Checks if is distributed.
+	 *
+	 * @return true, if is distributed
+	 */
+	private boolean isDistributed() {
+		return AppNotification.DISTRIBUTION_DONE.equals(state);
+	}
+
+	/**
+	 * Checks if a status request is still waiting for its answer.
+	 *
+	 * @param now
+	 *            the current time
+	 * @return true, if is request pending
+	 */
+	private boolean isRequestPending(long now) {
+		return requestedAt != 0 && now - requestedAt < RESPONSE_TIMEOUT;
+	}
+}
@@ -0,0 +1,289 @@
+/*
+ *
+ */
+package org.jenkinsci.plugins.websphere.services.deployment;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An on-disk cache of the EARs generated for WARs. An EAR is stored under a
+ * key made of the digest of the WAR and of everything else that goes into the
+ * generated application.xml, so an unchanged WAR is only wrapped once. The
+ * cache is bounded in size, the least recently used EARs are evicted first.
+ * An EAR handed out by {@link #get(String, String)} or
+ * {@link #put(String, String, File)} is never evicted until it is given back
+ * with {@link #release(File)}, however long the deployment using it takes.
+ */
+public class EarCache {
+
+	/** The Constant DEFAULT_MAX_SIZE. */
+	public static final long DEFAULT_MAX_SIZE = 2L * 1024 * 1024 * 1024;
+
+	/**
+	 * The time an entry is protected from eviction after it was used, and the
+	 * age at which a temporary file is considered abandoned.
+	 */
+	static final long EVICTION_GRACE_PERIOD = 10 * 60 * 1000;
+
+	/** The directory. */
+	private final File directory;
+
+	/** The max size in bytes. */
+	private final long maxSize;
+
+	/** The hits. */
+	private final AtomicLong hits = new AtomicLong();
+
+	/** The misses. */
+	private final AtomicLong misses = new AtomicLong();
+
+	/** The number of deployments using an entry, by key. */
+	private final Map<String, Integer> pins = new HashMap<String, Integer>();
+
+	/**
+	 * Instantiates a new EAR cache.
+	 *
+	 * @param directory
+	 *            the directory
+	 * @param maxSize
+	 *            the max size in bytes
+	 */
+	public EarCache(File directory, long maxSize) {
+		this.directory = directory;
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * Computes the cache key of the EAR generated for a WAR.
+	 *
+	 * @param warDigest
+	 *            the digest of the war
+	 * @param warName
+	 *            the file name of the war
+	 * @param earLevel
+	 *            the ear level
+	 * @param context
+	 *            the configured context root, may be null
+	 * @param appName
+	 *            the app name
+	 * @return the key
+	 */
+	public static String key(String warDigest, String warName, String earLevel, String context, String appName) {
+		return Digests.digest(warDigest, warName, earLevel, context, appName);
+	}
+
+	/**
+	 * Gets a cached EAR. It is kept in the cache until it is released.
+	 *
+	 * @param key
+	 *            the key
+	 * @param fileName
+	 *            the file name of the EAR
+	 * @return the cached EAR, null on a cache miss
+	 */
+	public synchronized File get(String key, String fileName) {
+		File entry = new File(directory, key);
+		File ear = new File(entry, fileName);
+		if (!ear.isFile()) {
+			misses.incrementAndGet();
+			return null;
+		}
+		entry.setLastModified(System.currentTimeMillis());
+		pin(key);
+		hits.incrementAndGet();
+		return ear;
+	}
+
+	/**
+	 * Creates a temporary file in the cache directory, to generate an EAR
+	 * into before it is put into the cache.
+	 *
+	 * @return the file
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public File createTempFile() throws IOException {
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Cannot create EAR cache directory " + directory.getAbsolutePath());
+		}
+		return File.createTempFile("ear", ".tmp", directory);
+	}
+
+	/**
+	 * Puts a generated EAR into the cache, evicting the least recently used
+	 * EARs if the cache grows too large. It is kept in the cache until it is
+	 * released.
+	 *
+	 * @param key
+	 *            the key
+	 * @param fileName
+	 *            the file name of the EAR
+	 * @param generated
+	 *            the generated EAR, created by {@link #createTempFile()}
+	 * @return the cached EAR
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public synchronized File put(String key, String fileName, File generated) throws IOException {
+		File entry = new File(directory, key);
+		File ear = new File(entry, fileName);
+		if (!entry.isDirectory() && !entry.mkdirs()) {
+			generated.delete();
+			throw new IOException("Cannot create EAR cache entry " + entry.getAbsolutePath());
+		}
+		if (ear.exists() && !ear.delete() || !generated.renameTo(ear)) {
+			generated.delete();
+			throw new IOException("Cannot store EAR in cache " + ear.getAbsolutePath());
+		}
+		entry.setLastModified(System.currentTimeMillis());
+		pin(key);
+		evict();
+		return ear;
+	}
+
+	/**
+	 * Releases a cached EAR that is no longer used by a deployment, so it can
+	 * be evicted again.
+	 *
+	 * @param ear
+	 *            the EAR, files that are not in the cache are ignored
+	 */
+	public synchronized void release(File ear) {
+		File entry = ear.getAbsoluteFile().getParentFile();
+		if (entry == null || !directory.getAbsoluteFile().equals(entry.getParentFile())) {
+			return;
+		}
+		Integer count = pins.get(entry.getName());
+		if (count == null) {
+			return;
+		}
+		if (count > 1) {
+			pins.put(entry.getName(), count - 1);
+		} else {
+			pins.remove(entry.getName());
+		}
+		entry.setLastModified(System.currentTimeMillis());
+	}
+
+	/**
+	 * Marks an entry as used by one more deployment.
+	 *
+	 * @param key
+	 *            the key
+	 */
+	private void pin(String key) {
+		Integer count = pins.get(key);
+		pins.put(key, count == null ? 1 : count + 1);
+	}
+
+	/**
+	 * Evicts the least recently used entries that are not in use until the
+	 * cache fits its size, and deletes the temporary files of EARs whose
+	 * generation was abandoned.
+	 */
+	private void evict() {
+		File[] entries = directory.listFiles();
+		if (entries == null) {
+			return;
+		}
+		List<File> candidates = new ArrayList<File>();
+		long size = 0;
+		long protectedSince = System.currentTimeMillis() - EVICTION_GRACE_PERIOD;
+		for (File entry : entries) {
+			if (entry.isDirectory()) {
+				size += sizeOf(entry);
+				candidates.add(entry);
+			} else if (entry.getName().startsWith("ear") && entry.getName().endsWith(".tmp")
+					&& entry.lastModified() <= protectedSince) {
+				entry.delete();
+			}
+		}
+		Collections.sort(candidates, new Comparator<File>() {
+			public int compare(File o1, File o2) {
+				return Long.valueOf(o1.lastModified()).compareTo(o2.lastModified());
+			}
+		});
+		for (File entry : candidates) {
+			if (size <= maxSize) {
+				break;
+			}
+			if (pins.containsKey(entry.getName()) || entry.lastModified() > protectedSince) {
+				continue;
+			}
+			long entrySize = sizeOf(entry);
+			if (delete(entry)) {
+				size -= entrySize;
+			}
+		}
+	}
+
+	/**
+	 * Gets the size of an entry.
+	 *
+	 * @param entry
+	 *            the entry
+	 * @return the size
+	 */
+	private long sizeOf(File entry) {
+		long size = 0;
+		File[] files = entry.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				size += file.length();
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Deletes an entry.
+	 *
+	 * @param entry
+	 *            the entry
+	 * @return true, if successful
+	 */
+	private boolean delete(File entry) {
+		File[] files = entry.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				file.delete();
+			}
+		}
+		return entry.delete();
+	}
+
+	/**
+	 * Gets the hits.
+	 *
+	 * @return the hits
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * Gets the misses.
+	 *
+	 * @return the misses
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * Gets the directory.
+	 *
+	 * @return the directory
+	 */
+	public File getDirectory() {
+		return directory;
+	}
+}
@@ -0,0 +1,35 @@
+/*
+ *
+ */
+package org.jenkinsci.plugins.websphere.services.deployment;
+
+import java.io.IOException;
+import java.util.Map;
+
+import javax.management.remote.JMXConnector;
+import javax.management.remote.JMXConnectorFactory;
+import javax.management.remote.JMXServiceURL;
+
+/**
+ * Creates the JMX connectors of a {@link LibertyDeploymentService}.
+ * Connectors are created by the JMX remote API, which finds the REST
+ * connector of the Liberty client libraries, unless a subclass connects to
+ * something else, e.g. a simulated server.
+ */
+public class LibertyConnectionFactory {
+
+	/**
+	 * Creates an unconnected JMX connector.
+	 *
+	 * @param url
+	 *            the url of the REST connector
+	 * @param environment
+	 *            the environment, e.g. the credentials
+	 * @return the connector
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public JMXConnector createConnector(JMXServiceURL url, Map<String, ?> environment) throws IOException {
+		return JMXConnectorFactory.newJMXConnector(url, environment);
+	}
+}
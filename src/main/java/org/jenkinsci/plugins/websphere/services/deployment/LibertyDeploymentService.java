@@ -3,15 +3,21 @@
  */
 package org.jenkinsci.plugins.websphere.services.deployment;
 
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
 import java.util.HashMap;
 
 import javax.management.JMX;
 import javax.management.MBeanServerConnection;
 import javax.management.ObjectName;
 import javax.management.remote.JMXConnector;
-import javax.management.remote.JMXConnectorFactory;
 import javax.management.remote.JMXServiceURL;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.TrustManagerFactory;
 
 import com.ibm.websphere.application.ApplicationMBean;
 import com.ibm.websphere.filetransfer.FileTransferMBean;
@@ -26,12 +32,41 @@ public class LibertyDeploymentService extends AbstractDeploymentService {
 	/** The Constant WEB_SPHERE_SERVICE_M_BEAN_NAME. */
 	private static final String WEB_SPHERE_SERVICE_M_BEAN_NAME = "WebSphere:service=com.ibm.websphere.application.ApplicationMBean,name=";
 
+	/** The Constant CUSTOM_SSLSOCKETFACTORY, the SSL socket factory of the REST connector. */
+	private static final String CUSTOM_SSLSOCKETFACTORY = "com.ibm.ws.jmx.connector.client.CUSTOM_SSLSOCKETFACTORY";
+
 	/** The connector. */
 	private JMXConnector connector;
 
 	/** The client. */
 	private MBeanServerConnection client;
 
+	/** The statistics to record remote calls in, may be null. */
+	private RemoteCallStatistics remoteCalls;
+
+	/** The factory creating the connector. */
+	private LibertyConnectionFactory connectionFactory = new LibertyConnectionFactory();
+
+	/**
+	 * Sets the statistics to record the remote calls of this service in.
+	 *
+	 * @param remoteCalls
+	 *            the new remote calls, null to record nothing
+	 */
+	public void setRemoteCalls(RemoteCallStatistics remoteCalls) {
+		this.remoteCalls = remoteCalls;
+	}
+
+	/**
+	 * Sets the factory creating the connector to the server.
+	 *
+	 * @param connectionFactory
+	 *            the new connection factory
+	 */
+	public void setConnectionFactory(LibertyConnectionFactory connectionFactory) {
+		this.connectionFactory = connectionFactory;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -152,22 +187,47 @@ public class LibertyDeploymentService extends AbstractDeploymentService {
 			// Liberty jars won't be found unless the following happens
 			Thread.currentThread().setContextClassLoader(loader);
 		}
-		System.setProperty("javax.net.ssl.trustStore", getTrustStoreLocation().getAbsolutePath());
-		System.setProperty("javax.net.ssl.trustStorePassword", getTrustStorePassword());
-
 		HashMap<String, Object> environment = new HashMap<String, Object>();
 		environment.put("jmx.remote.protocol.provider.pkgs", "com.ibm.ws.jmx.connector.client");
 		environment.put("com.ibm.ws.jmx.connector.client.disableURLHostnameVerification", true);
+		// the trust store of this connection, instead of the one of the JVM
+		environment.put(CUSTOM_SSLSOCKETFACTORY, createSocketFactory());
 		environment.put(JMXConnector.CREDENTIALS, new String[] { getUsername(), getPassword() });
 
 		JMXServiceURL url = new JMXServiceURL(
 				"service:jmx:rest://" + getHost() + ":" + getPort() + "/IBMJMXConnectorREST");
-		connector = JMXConnectorFactory.newJMXConnector(url, environment);
+		connector = connectionFactory.createConnector(url, environment);
 		connector.connect();
 		client = connector.getMBeanServerConnection();
 		if (client == null) {
 			throw new Exception("Failed to connect to IBM WebSphere Liberty Profile");
 		}
+		if (remoteCalls != null) {
+			client = remoteCalls.instrument(client, MBeanServerConnection.class);
+		}
+	}
+
+	/**
+	 * Creates the SSL socket factory of the connection, trusting the
+	 * certificates of the trust store.
+	 *
+	 * @return the SSL socket factory
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 * @throws GeneralSecurityException
+	 *             the general security exception
+	 */
+	private SSLSocketFactory createSocketFactory() throws IOException, GeneralSecurityException {
+		KeyStore trustStore = KeyStore.getInstance(KeyStore.getDefaultType());
+		try (InputStream in = new FileInputStream(getTrustStoreLocation())) {
+			trustStore.load(in, getTrustStorePassword() != null ? getTrustStorePassword().toCharArray() : null);
+		}
+		TrustManagerFactory trustManagerFactory = TrustManagerFactory
+				.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+		trustManagerFactory.init(trustStore);
+		SSLContext context = SSLContext.getInstance("TLS");
+		context.init(null, trustManagerFactory.getTrustManagers(), null);
+		return context.getSocketFactory();
 	}
 
 	/*
@@ -0,0 +1,208 @@
+/*
+ *
+ */
+package org.jenkinsci.plugins.websphere.services.deployment;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.management.ObjectName;
+
+import com.ibm.websphere.management.AdminClient;
+
+import hudson.model.BuildListener;
+
+/**
+ * Synchronizes the configuration of nodes right after it was saved, instead
+ * of leaving it to the node agents to pick up the changes at their next sync
+ * interval. The <code>sync</code> operation of the NodeSync MBean of every
+ * node agent is invoked at the same time, each on a thread of its own, and
+ * the time every node took is recorded. The threads are shared by all
+ * synchronizations and end when they have been idle for a while.
+ */
+public class NodeSynchronizer {
+
+	/** The Constant MAX_THREADS, the most nodes synchronized at the same time. */
+	static final int MAX_THREADS = 16;
+
+	/** The Constant DEFAULT_TIMEOUT_MILLIS. */
+	public static final long DEFAULT_TIMEOUT_MILLIS = 10 * 60 * 1000L;
+
+	/** The executor invoking the sync operations of all synchronizations. */
+	private static final ThreadPoolExecutor EXECUTOR = new ThreadPoolExecutor(MAX_THREADS, MAX_THREADS, 60,
+			TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+
+				private final AtomicInteger count = new AtomicInteger();
+
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "WebSphere node sync " + count.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+
+	static {
+		EXECUTOR.allowCoreThreadTimeOut(true);
+	}
+
+	/** The admin client. */
+	private final AdminClient adminClient;
+
+	/** The listener. */
+	private final BuildListener listener;
+
+	/** The milliseconds every synchronized node took, by node. */
+	private final Map<String, Long> syncTimes = new TreeMap<String, Long>();
+
+	/** The reasons nodes were not synchronized, by node. */
+	private final Map<String, String> failures = new TreeMap<String, String>();
+
+	/**
+	 * Instantiates a new node synchronizer.
+	 *
+	 * @param adminClient
+	 *            the admin client of the deployment manager
+	 * @param listener
+	 *            the listener
+	 */
+	public NodeSynchronizer(AdminClient adminClient, BuildListener listener) {
+		this.adminClient = adminClient;
+		this.listener = listener;
+	}
+
+	/**
+	 * Synchronizes nodes and waits until every one of them is done.
+	 *
+	 * @param nodes
+	 *            the nodes, null for all nodes of the cell
+	 * @param timeoutMillis
+	 *            the timeout in milliseconds
+	 * @return true, if every node was synchronized in time
+	 * @throws Exception
+	 *             the exception
+	 */
+	public boolean synchronize(Set<String> nodes, long timeoutMillis) throws Exception {
+		Set<ObjectName> nodeSyncs = adminClient.queryNames(new ObjectName("WebSphere:type=NodeSync,*"), null);
+		Map<String, ObjectName> nodeSyncsByNode = new TreeMap<String, ObjectName>();
+		for (ObjectName nodeSync : nodeSyncs) {
+			String node = nodeSync.getKeyProperty("node");
+			if (node != null && (nodes == null || nodes.contains(node))) {
+				nodeSyncsByNode.put(node, nodeSync);
+			}
+		}
+		if (nodeSyncsByNode.isEmpty()) {
+			listener.getLogger().println("No node agent found to synchronize");
+			return true;
+		}
+		listener.getLogger().println("Synchronizing nodes " + nodeSyncsByNode.keySet());
+		Map<String, Future<Boolean>> results = new LinkedHashMap<String, Future<Boolean>>();
+		try {
+			for (final Map.Entry<String, ObjectName> nodeSync : nodeSyncsByNode.entrySet()) {
+				results.put(nodeSync.getKey(), EXECUTOR.submit(new Callable<Boolean>() {
+					public Boolean call() throws Exception {
+						long start = System.currentTimeMillis();
+						Boolean done = (Boolean) adminClient.invoke(nodeSync.getValue(), "sync",
+								new Object[0], new String[0]);
+						if (Boolean.TRUE.equals(done)) {
+							recordSyncTime(nodeSync.getKey(), System.currentTimeMillis() - start);
+						}
+						return done;
+					}
+				}));
+			}
+			long deadline = System.currentTimeMillis() + timeoutMillis;
+			for (Map.Entry<String, Future<Boolean>> result : results.entrySet()) {
+				String node = result.getKey();
+				try {
+					Boolean done = result.getValue()
+							.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+					if (Boolean.TRUE.equals(done)) {
+						listener.getLogger().println("Synchronized node " + node + " in " + getSyncTimes().get(node)
+								+ " ms");
+					} else {
+						failed(node, "the node agent did not synchronize");
+					}
+				} catch (TimeoutException e) {
+					failed(node, "no answer within " + timeoutMillis + " ms");
+				} catch (ExecutionException e) {
+					failed(node, describe(e.getCause()));
+				}
+			}
+		} finally {
+			// nodes that did not answer in time are left to their regular synchronization
+			for (Future<Boolean> result : results.values()) {
+				result.cancel(true);
+			}
+		}
+		return getFailures().isEmpty();
+	}
+
+	/**
+	 * Describes why a sync operation failed, including its causes.
+	 *
+	 * @param failure
+	 *            the failure
+	 * @return the description
+	 */
+	private static String describe(Throwable failure) {
+		StringBuilder description = new StringBuilder(failure.toString());
+		for (Throwable cause = failure.getCause(); cause != null; cause = cause.getCause()) {
+			description.append(", caused by ").append(cause);
+		}
+		return description.toString();
+	}
+
+	/**
+	 * Records the time a node took to synchronize.
+	 *
+	 * @param node
+	 *            the node
+	 * @param millis
+	 *            the milliseconds
+	 */
+	private synchronized void recordSyncTime(String node, long millis) {
+		syncTimes.put(node, millis);
+	}
+
+	/**
+	 * Records a node that could not be synchronized.
+	 *
+	 * @param node
+	 *            the node
+	 * @param reason
+	 *            the reason
+	 */
+	private synchronized void failed(String node, String reason) {
+		failures.put(node, reason);
+		listener.getLogger().println("Could not synchronize node " + node + ": " + reason);
+	}
+
+	/**
+	 * Gets the milliseconds every synchronized node took.
+	 *
+	 * @return the milliseconds, by node
+	 */
+	public synchronized Map<String, Long> getSyncTimes() {
+		return new TreeMap<String, Long>(syncTimes);
+	}
+
+	/**
+	 * Gets the reasons nodes were not synchronized.
+	 *
+	 * @return the reasons, by node
+	 */
+	public synchronized Map<String, String> getFailures() {
+		return new TreeMap<String, String>(failures);
+	}
+}
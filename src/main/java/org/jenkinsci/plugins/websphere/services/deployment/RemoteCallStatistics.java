@@ -0,0 +1,423 @@
+/*
+ *
+ */
+package org.jenkinsci.plugins.websphere.services.deployment;
+
+import java.io.Serializable;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Counts and times the calls made to a deployment manager or server. A
+ * connection is instrumented by wrapping it in a proxy that records every
+ * call by method; operations invoked on MBeans and attributes read from them
+ * are recorded by operation and attribute name, so e.g. every call of
+ * <code>getDistributionStatus</code> through an
+ * <code>AppManagementProxy</code> is counted separately. Calls can be
+ * recorded by several threads at once.
+ */
+public class RemoteCallStatistics implements Serializable {
+
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
+
+	/** The Constant MAX_SLOWEST_CALLS. */
+	public static final int MAX_SLOWEST_CALLS = 10;
+
+	/** The Constant MAX_DETAIL_LENGTH. */
+	private static final int MAX_DETAIL_LENGTH = 160;
+
+	/** The statistics by method. */
+	private final LinkedHashMap<String, MethodStatistics> methods = new LinkedHashMap<String, MethodStatistics>();
+
+	/** The slowest calls, slowest first. */
+	private final ArrayList<Call> slowest = new ArrayList<Call>();
+
+	/**
+	 * Wraps a connection in a proxy recording every call made through it.
+	 *
+	 * @param <T>
+	 *            the type of the connection
+	 * @param target
+	 *            the connection
+	 * @param type
+	 *            the interface of the connection, e.g. <code>AdminClient</code>
+	 *            or <code>MBeanServerConnection</code>
+	 * @return the instrumented connection
+	 */
+	public <T> T instrument(final T target, Class<T> type) {
+		final String prefix = type.getSimpleName() + ".";
+		return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type },
+				new InvocationHandler() {
+					public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+						if (method.getName().equals("equals") && args != null && args.length == 1) {
+							return proxy == args[0];
+						} else if (method.getDeclaringClass() == Object.class) {
+							return method.invoke(target, args);
+						}
+						long start = System.nanoTime();
+						boolean failed = true;
+						try {
+							Object result = method.invoke(target, args);
+							failed = false;
+							return result;
+						} catch (InvocationTargetException e) {
+							throw e.getCause();
+						} finally {
+							record(prefix + getMethodName(method, args), getDetail(args), System.nanoTime() - start,
+									failed);
+						}
+					}
+				}));
+	}
+
+	/**
+	 * Gets the name a call is recorded by.
+	 *
+	 * @param method
+	 *            the method
+	 * @param args
+	 *            the args
+	 * @return the method name, with the operation or attribute for MBean
+	 *         calls
+	 */
+	private static String getMethodName(Method method, Object[] args) {
+		String name = method.getName();
+		if ((name.equals("invoke") || name.equals("getAttribute")) && args != null && args.length > 1
+				&& args[1] instanceof String) {
+			return name + "(" + args[1] + ")";
+		}
+		return name;
+	}
+
+	/**
+	 * Gets a short description of the arguments of a call.
+	 *
+	 * @param args
+	 *            the args
+	 * @return the detail
+	 */
+	private static String getDetail(Object[] args) {
+		if (args == null || args.length == 0 || args[0] == null) {
+			return "";
+		}
+		String detail = String.valueOf(args[0]);
+		return detail.length() > MAX_DETAIL_LENGTH ? detail.substring(0, MAX_DETAIL_LENGTH) + "..." : detail;
+	}
+
+	/**
+	 * Records a call.
+	 *
+	 * @param method
+	 *            the method
+	 * @param detail
+	 *            the detail, e.g. the MBean called
+	 * @param nanos
+	 *            the nanoseconds the call took
+	 * @param failed
+	 *            whether the call failed
+	 */
+	public synchronized void record(String method, String detail, long nanos, boolean failed) {
+		MethodStatistics statistics = methods.get(method);
+		if (statistics == null) {
+			statistics = new MethodStatistics();
+			methods.put(method, statistics);
+		}
+		statistics.add(1, nanos, nanos, failed ? 1 : 0);
+		addSlowest(new Call(method, detail, nanos));
+	}
+
+	/**
+	 * Adds a call to the slowest calls, if it is one of them.
+	 *
+	 * @param call
+	 *            the call
+	 */
+	private void addSlowest(Call call) {
+		if (slowest.size() >= MAX_SLOWEST_CALLS && slowest.get(slowest.size() - 1).nanos >= call.nanos) {
+			return;
+		}
+		int i = 0;
+		while (i < slowest.size() && slowest.get(i).nanos >= call.nanos) {
+			i++;
+		}
+		slowest.add(i, call);
+		if (slowest.size() > MAX_SLOWEST_CALLS) {
+			slowest.remove(slowest.size() - 1);
+		}
+	}
+
+	/**
+	 * Adds the calls recorded elsewhere, e.g. on an agent.
+	 *
+	 * @param other
+	 *            the other statistics
+	 */
+	public void merge(RemoteCallStatistics other) {
+		Map<String, MethodStatistics> otherMethods;
+		List<Call> otherSlowest;
+		synchronized (other) {
+			otherMethods = new LinkedHashMap<String, MethodStatistics>(other.methods);
+			otherSlowest = new ArrayList<Call>(other.slowest);
+		}
+		synchronized (this) {
+			for (Map.Entry<String, MethodStatistics> entry : otherMethods.entrySet()) {
+				MethodStatistics statistics = methods.get(entry.getKey());
+				if (statistics == null) {
+					statistics = new MethodStatistics();
+					methods.put(entry.getKey(), statistics);
+				}
+				MethodStatistics added = entry.getValue();
+				statistics.add(added.count, added.totalNanos, added.maxNanos, added.failures);
+			}
+			for (Call call : otherSlowest) {
+				addSlowest(call);
+			}
+		}
+	}
+
+	/**
+	 * Gets the methods called, the most expensive first.
+	 *
+	 * @return the methods
+	 */
+	public synchronized List<String> getMethods() {
+		List<String> names = new ArrayList<String>(methods.keySet());
+		Collections.sort(names, new Comparator<String>() {
+			public int compare(String a, String b) {
+				long totalA = methods.get(a).totalNanos;
+				long totalB = methods.get(b).totalNanos;
+				return totalA < totalB ? 1 : totalA > totalB ? -1 : a.compareTo(b);
+			}
+		});
+		return names;
+	}
+
+	/**
+	 * Gets the number of calls of a method.
+	 *
+	 * @param method
+	 *            the method, e.g. <code>AdminClient.queryNames</code>
+	 * @return the count
+	 */
+	public synchronized int getCount(String method) {
+		MethodStatistics statistics = methods.get(method);
+		return statistics == null ? 0 : statistics.count;
+	}
+
+	/**
+	 * Gets the number of failed calls of a method.
+	 *
+	 * @param method
+	 *            the method
+	 * @return the failures
+	 */
+	public synchronized int getFailures(String method) {
+		MethodStatistics statistics = methods.get(method);
+		return statistics == null ? 0 : statistics.failures;
+	}
+
+	/**
+	 * Gets the time spent in calls of a method.
+	 *
+	 * @param method
+	 *            the method
+	 * @return the milliseconds
+	 */
+	public synchronized double getTotalMillis(String method) {
+		MethodStatistics statistics = methods.get(method);
+		return statistics == null ? 0 : statistics.totalNanos / 1000000.0;
+	}
+
+	/**
+	 * Gets the time of the slowest call of a method.
+	 *
+	 * @param method
+	 *            the method
+	 * @return the milliseconds
+	 */
+	public synchronized double getMaxMillis(String method) {
+		MethodStatistics statistics = methods.get(method);
+		return statistics == null ? 0 : statistics.maxNanos / 1000000.0;
+	}
+
+	/**
+	 * Gets the number of all calls.
+	 *
+	 * @return the count
+	 */
+	public synchronized int getCount() {
+		int count = 0;
+		for (MethodStatistics statistics : methods.values()) {
+			count += statistics.count;
+		}
+		return count;
+	}
+
+	/**
+	 * Gets the time spent in all calls.
+	 *
+	 * @return the milliseconds
+	 */
+	public synchronized double getTotalMillis() {
+		long nanos = 0;
+		for (MethodStatistics statistics : methods.values()) {
+			nanos += statistics.totalNanos;
+		}
+		return nanos / 1000000.0;
+	}
+
+	/**
+	 * Gets the slowest calls.
+	 *
+	 * @return the calls, slowest first
+	 */
+	public synchronized List<Call> getSlowest() {
+		return new ArrayList<Call>(slowest);
+	}
+
+	/**
+	 * Gets a summary of the calls, one line per method followed by the
+	 * slowest calls.
+	 *
+	 * @return the lines
+	 */
+	public List<String> getSummary() {
+		List<String> lines = new ArrayList<String>();
+		lines.add(getCount() + " remote call(s) took " + format(getTotalMillis()) + " ms");
+		for (String method : getMethods()) {
+			lines.add("    " + method + ": " + getCount(method) + " call(s), " + format(getTotalMillis(method))
+					+ " ms, slowest " + format(getMaxMillis(method)) + " ms"
+					+ (getFailures(method) > 0 ? ", " + getFailures(method) + " failed" : ""));
+		}
+		List<Call> calls = getSlowest();
+		if (!calls.isEmpty()) {
+			lines.add("Slowest remote calls:");
+			for (Call call : calls) {
+				lines.add("    " + format(call.getMillis()) + " ms " + call.getMethod() + " " + call.getDetail());
+			}
+		}
+		return lines;
+	}
+
+	/**
+	 * Formats milliseconds.
+	 *
+	 * @param millis
+	 *            the milliseconds
+	 * @return the formatted milliseconds
+	 */
+	public static String format(double millis) {
+		return String.format(Locale.ENGLISH, "%.1f", millis);
+	}
+
+	/**
+	 * The calls of one method.
+	 */
+	private static final class MethodStatistics implements Serializable {
+
+		/** The Constant serialVersionUID. */
+		private static final long serialVersionUID = 1L;
+
+		/** The count. */
+		private int count;
+
+		/** The total nanos. */
+		private long totalNanos;
+
+		/** The max nanos. */
+		private long maxNanos;
+
+		/** The failures. */
+		private int failures;
+
+		/**
+		 * Adds calls.
+		 *
+		 * @param count
+		 *            the count
+		 * @param totalNanos
+		 *            the total nanos
+		 * @param maxNanos
+		 *            the max nanos
+		 * @param failures
+		 *            the failures
+		 */
+		private void add(int count, long totalNanos, long maxNanos, int failures) {
+			this.count += count;
+			this.totalNanos += totalNanos;
+			this.maxNanos = Math.max(this.maxNanos, maxNanos);
+			this.failures += failures;
+		}
+	}
+
+	/**
+	 * A single call.
+	 */
+	public static final class Call implements Serializable {
+
+		/** The Constant serialVersionUID. */
+		private static final long serialVersionUID = 1L;
+
+		/** The method. */
+		private final String method;
+
+		/** The detail. */
+		private final String detail;
+
+		/** The nanos. */
+		private final long nanos;
+
+		/**
+		 * Instantiates a new call.
+		 *
+		 * @param method
+		 *            the method
+		 * @param detail
+		 *            the detail
+		 * @param nanos
+		 *            the nanos
+		 */
+		private Call(String method, String detail, long nanos) {
+			this.method = method;
+			this.detail = detail;
+			this.nanos = nanos;
+		}
+
+		/**
+		 * Gets the method.
+		 *
+		 * @return the method
+		 */
+		public String getMethod() {
+			return method;
+		}
+
+		/**
+		 * Gets the detail, e.g. the MBean called.
+		 *
+		 * @return the detail
+		 */
+		public String getDetail() {
+			return detail;
+		}
+
+		/**
+		 * Gets the time the call took.
+		 *
+		 * @return the milliseconds
+		 */
+		public double getMillis() {
+			return nanos / 1000000.0;
+		}
+	}
+}
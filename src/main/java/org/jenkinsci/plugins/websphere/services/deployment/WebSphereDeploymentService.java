@@ -3,41 +3,53 @@
  */
 package org.jenkinsci.plugins.websphere.services.deployment;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.TreeSet;
+import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Logger;
+import java.util.zip.CRC32;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
 
 import javax.enterprise.deploy.spi.Target;
 import javax.management.MalformedObjectNameException;
-import javax.management.NotificationFilterSupport;
 import javax.management.ObjectName;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
 
 import org.apache.commons.lang.ArrayUtils;
 import org.apache.commons.lang.StringUtils;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
 
 import com.ibm.websphere.management.AdminClient;
-import com.ibm.websphere.management.AdminClientFactory;
 import com.ibm.websphere.management.application.AppConstants;
 import com.ibm.websphere.management.application.AppManagement;
-import com.ibm.websphere.management.application.AppManagementProxy;
 import com.ibm.websphere.management.application.AppNotification;
 import com.ibm.websphere.management.application.client.AppDeploymentController;
 import com.ibm.websphere.management.application.client.AppDeploymentTask;
@@ -56,6 +68,18 @@ public class WebSphereDeploymentService extends AbstractDeploymentService {
 	/** The Constant CONNECTOR_TYPE_SOAP. */
 	public static final String CONNECTOR_TYPE_SOAP = "SOAP";
 
+	/**
+	 * The deployment option setting how an application is restarted once it
+	 * was updated.
+	 */
+	public static final String APPDEPL_RESTART_BEHAVIOR_ON_UPDATE = "restartBehaviorOnUpdate";
+
+	/** The restart behavior leaving the application running the old version until it is restarted. */
+	public static final String RESTART_BEHAVIOR_NONE = "NONE";
+
+	/** The size of the buffers used to copy archives. */
+	private static final int COPY_BUFFER_SIZE = 256 * 1024;
+
 	/** The Constant CLASSNAME. */
 	private static final String CLASSNAME = WebSphereDeploymentService.class.getName();
 
@@ -73,20 +97,50 @@ public class WebSphereDeploymentService extends AbstractDeploymentService {
 
 	/** The build listener. */
 	private BuildListener buildListener;
-	/**
-	 * This is used to prevent weird behaviors caused by IBM wsadmin that
-	 * overrides system properties.
-	 *
-	 * @see <a href=
-	 *      "https://github.com/jenkinsci/websphere-deployer-plugin/pull/11">
-	 *      GitHub discussion</a> for a reference.
-	 */
-	private Properties storedProperties;
+	/** Whether the client is borrowed from another service. */
+	private boolean session;
+
+	/** The connection pool, null if connections are not pooled. */
+	private AdminClientPool connectionPool;
+
+	/** The names of the installed applications, null until loaded. */
+	private Set<String> inventory;
+
+	/** The app management proxy. */
+	private AppManagement appManagement;
+
+	/** The client the app management proxy belongs to. */
+	private AdminClient appManagementClient;
+
+	/** The timings to record the phases of deployments in, may be null. */
+	private DeploymentTimings timings;
+
+	/** The statistics to record remote calls in, may be null. */
+	private RemoteCallStatistics remoteCalls;
+
+	/** The admin client making the remote calls, recording them if remote calls are recorded. */
+	private AdminClient instrumentedClient;
+
+	/** Whether the connection failed, shared with the sessions of this service. */
+	private AtomicBoolean connectionFailed = new AtomicBoolean();
+
+	/** The factory creating the connections. */
+	private AdminConnectionFactory connectionFactory = new AdminConnectionFactory();
+
+	/** The scheduler admitting operations that change the cell, null if they are not limited. */
+	private DeploymentScheduler scheduler;
+
+	/** The owner of the scheduled operations, e.g. the build. */
+	private String schedulerOwner;
+
+	/** Whether the nodes are synchronized right after an application was saved. */
+	private boolean syncNodes;
 
 	/**
-	 * List servers.
+	 * List servers. Every J2EEAppDeployment MBean reports the servers it can
+	 * deploy to, so servers reported by several of them are listed once.
 	 *
-	 * @return the list
+	 * @return the servers, sorted by target
 	 */
 	public List<Server> listServers() {
 		try {
@@ -94,30 +148,29 @@ public class WebSphereDeploymentService extends AbstractDeploymentService {
 				throw new DeploymentServiceException("Cannot list servers, please connect to WebSphere first");
 			}
 			ObjectName targetQuery = new ObjectName("WebSphere:*,type=J2EEAppDeployment");
-			Set<ObjectName> appDeployments = client.queryNames(targetQuery, null);
-			List<Server> servers = new ArrayList<Server>();
+			Set<ObjectName> appDeployments = getAdminClient().queryNames(targetQuery, null);
+			Map<String, Server> serversByName = new HashMap<String, Server>();
 			for (ObjectName appDeployment : appDeployments) {
 				// reference:
 				// http://www-01.ibm.com/support/knowledgecenter/SSEQTP_8.5.5/com.ibm.websphere.wlp.doc/ae/rwlp_mbeans_operation.html?cp=SSEQTP_8.5.5%2F1-3-11-0-3-2-14-2-1
-				Target[] targets = (Target[]) client.invoke(appDeployment, "getTargets", new Object[] { null, null },
+				Target[] targets = (Target[]) getAdminClient().invoke(appDeployment, "getTargets",
+						new Object[] { null, null },
 						new String[] { Hashtable.class.getName(), String.class.getName() });
 				for (Target target : targets) {
-					if (target.getName().contains("J2EEServer")) { // only J2EE
-																	// servers
-																	// can be
-																	// deployed
-																	// to
+					if (target.getName().contains("J2EEServer") && !serversByName.containsKey(target.getName())) {
+						// only J2EE servers can be deployed to
 						Server server = new Server();
 						server.setObjectName(target.getName());
 						server.setTarget(getFormattedTarget(target.getName()));
-						servers.add(server);
+						serversByName.put(target.getName(), server);
 					}
 				}
-				Collections.sort(servers);
-				int i = 0;
-				for (Server server : servers) {
-					server.setIndex(i++); // set index after sort
-				}
+			}
+			List<Server> servers = new ArrayList<Server>(serversByName.values());
+			Collections.sort(servers);
+			int i = 0;
+			for (Server server : servers) {
+				server.setIndex(i++); // set index after sort
 			}
 			return servers;
 		} catch (Exception e) {
@@ -127,7 +180,33 @@ public class WebSphereDeploymentService extends AbstractDeploymentService {
 	}
 
 	/**
-	 * Generate EAR.
+	 * List the clusters of the cell, as far as their cluster MBeans are
+	 * registered.
+	 *
+	 * @return the cluster targets, sorted
+	 */
+	public List<String> listClusters() {
+		try {
+			if (!isConnected()) {
+				throw new DeploymentServiceException("Cannot list clusters, please connect to WebSphere first");
+			}
+			Set<ObjectName> clusterNames = getAdminClient().queryNames(new ObjectName("WebSphere:*,type=Cluster"),
+					null);
+			Set<String> clusters = new TreeSet<String>();
+			for (ObjectName cluster : clusterNames) {
+				clusters.add("WebSphere:cell=" + cluster.getKeyProperty("cell") + ",cluster="
+						+ cluster.getKeyProperty("name"));
+			}
+			return new ArrayList<String>(clusters);
+		} catch (Exception e) {
+			e.printStackTrace();
+			throw new DeploymentServiceException(e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Generate EAR. The WAR is already compressed, so it is stored in the EAR
+	 * as is and only the generated application.xml is deflated.
 	 *
 	 * @param artifact
 	 *            the artifact
@@ -137,27 +216,63 @@ public class WebSphereDeploymentService extends AbstractDeploymentService {
 	 *            the ear level
 	 */
 	public void generateEAR(Artifact artifact, File destination, String earLevel) {
-		byte[] buf = new byte[1024];
-		try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(destination));
-				FileInputStream in = new FileInputStream(artifact.getSourcePath());) {
-			out.putNextEntry(new ZipEntry(artifact.getSourcePath().getName()));
-			int len;
-			while ((len = in.read(buf)) > 0) {
-				out.write(buf, 0, len);
+		long start = System.currentTimeMillis();
+		File war = artifact.getSourcePath();
+		byte[] buf = new byte[COPY_BUFFER_SIZE];
+		try (ZipOutputStream out = new ZipOutputStream(
+				new BufferedOutputStream(new FileOutputStream(destination), COPY_BUFFER_SIZE))) {
+			ZipEntry warEntry = new ZipEntry(war.getName());
+			warEntry.setMethod(ZipEntry.STORED);
+			warEntry.setSize(war.length());
+			warEntry.setCompressedSize(war.length());
+			warEntry.setCrc(computeCrc(war, buf));
+			out.putNextEntry(warEntry);
+			try (FileInputStream in = new FileInputStream(war)) {
+				int len;
+				while ((len = in.read(buf)) > 0) {
+					out.write(buf, 0, len);
+				}
 			}
 			out.closeEntry();
-			in.close();
 			out.putNextEntry(new ZipEntry("META-INF/"));
 			out.closeEntry();
 			out.putNextEntry(new ZipEntry("META-INF/application.xml"));
-			out.write(getApplicationXML(artifact, earLevel).getBytes());
+			out.write(getApplicationXML(artifact, earLevel).getBytes("UTF-8"));
 			out.closeEntry();
-			out.close();
 		} catch (Exception e) {
 			e.printStackTrace();
+			destination.delete();
+			throw new DeploymentServiceException("Failed to generate EAR for " + war.getName() + ": " + e.getMessage(),
+					e);
+		}
+		if (buildListener != null) {
+			buildListener.getLogger().println("Wrapped " + war.getName() + " (" + (war.length() / 1024) + " KB) into "
+					+ destination.getName() + " in " + (System.currentTimeMillis() - start) + " ms");
 		}
 	}
 
+	/**
+	 * Computes the CRC-32 of a file, which a stored ZIP entry needs up front.
+	 *
+	 * @param file
+	 *            the file
+	 * @param buf
+	 *            the buffer to read with
+	 * @return the crc
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private long computeCrc(File file, byte[] buf) throws IOException {
+		CRC32 crc = new CRC32();
+		try (FileInputStream in = new FileInputStream(file)) {
+			int len;
+			while ((len = in.read(buf)) > 0) {
+				crc.update(buf, 0, len);
+			}
+		}
+		return crc.getValue();
+	}
+
 	/**
 	 * Gets the context root.
 	 *
@@ -170,33 +285,45 @@ public class WebSphereDeploymentService extends AbstractDeploymentService {
 	 * context-root. If any exception is thrown, it will fall back to the WAR
 	 * name.
 	 */
-	private String getContextRoot(Artifact artifact) {
-		try (ZipFile zipFile = new ZipFile(artifact.getSourcePath())) {
-			if (artifact.getContext() != null) {
-				return artifact.getContext();
-			}
-			// open WAR and find ibm-web-ext.xml
-			ZipEntry webExt = zipFile.getEntry("WEB-INF/ibm-web-ext.xml");
-			if (webExt != null) { // not an IBM based WAR
-				InputStream webExtContent = zipFile.getInputStream(webExt);
-
-				// parse ibm-web-ext.xml
-				DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
-				DocumentBuilder dBuilder = dbFactory.newDocumentBuilder();
-				Document doc = dBuilder.parse(webExtContent);
-
-				// find uri attribute in context-root element
-				Element contextRoot = (Element) doc.getElementsByTagName("context-root").item(0);
-				String uri = contextRoot.getAttribute("uri");
-				uri = uri.startsWith("/") ? uri : "/" + uri;
-				return uri;
-			}
-			zipFile.close();
-			return getContextRootFromWarName(artifact);
+	String getContextRoot(Artifact artifact) {
+		if (artifact.getContext() != null) {
+			return artifact.getContext();
+		}
+		try {
+			String uri = getAnalysis(artifact).getContextRoot();
+			if (uri != null) { // an IBM based WAR
+				return uri.startsWith("/") ? uri : "/" + uri;
+			}
 		} catch (Exception e) {
 			e.printStackTrace();
-			return getContextRootFromWarName(artifact);
 		}
+		return getContextRootFromWarName(artifact);
+	}
+
+	/**
+	 * Gets the analysis of the current archive of the artifact, analyzing the
+	 * archive only if it has not been analyzed yet.
+	 *
+	 * @param artifact
+	 *            the artifact
+	 * @return the analysis
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public ArchiveAnalysis getAnalysis(Artifact artifact) throws IOException {
+		ArchiveAnalysis analysis = artifact.getAnalysis();
+		if (analysis == null || !analysis.getArchive().equals(artifact.getSourcePath())) {
+			long start = System.currentTimeMillis();
+			analysis = ArchiveAnalysis.analyze(artifact.getSourcePath());
+			artifact.setAnalysis(analysis);
+			if (verbose && buildListener != null) {
+				buildListener.getLogger().println("Analyzed " + artifact.getSourcePath().getName() + " ("
+						+ analysis.getEntryChecksums().size() + " entries, " + analysis.getModules().size()
+						+ " modules, " + analysis.getDescriptors().size() + " descriptors) in "
+						+ (System.currentTimeMillis() - start) + " ms");
+			}
+		}
+		return analysis;
 	}
 
 	/**
@@ -220,7 +347,7 @@ public class WebSphereDeploymentService extends AbstractDeploymentService {
 	 *            the ear level
 	 * @return the application XML
 	 */
-	private String getApplicationXML(Artifact artifact, String earLevel) {
+	String getApplicationXML(Artifact artifact, String earLevel) {
 		String contextRoot = getContextRoot(artifact);
 		String warName = artifact.getSourcePath().getName();
 		String displayName = StringUtils.trimToNull(artifact.getAppName());
@@ -264,6 +391,29 @@ public class WebSphereDeploymentService extends AbstractDeploymentService {
 		return getAppName(new File(path));
 	}
 
+	/**
+	 * Gets the app name of an enterprise archive. The archive is read by
+	 * WebSphere to derive the name, which is kept in the archive analysis so
+	 * the archive is only read once.
+	 *
+	 * @param artifact
+	 *            the artifact
+	 * @return the app name
+	 */
+	public String getAppName(Artifact artifact) {
+		ArchiveAnalysis analysis;
+		try {
+			analysis = getAnalysis(artifact);
+		} catch (IOException e) {
+			e.printStackTrace();
+			return getAppName(artifact.getSourcePath());
+		}
+		if (analysis.getAppName() == null) {
+			analysis.setAppName(getAppName(artifact.getSourcePath()));
+		}
+		return analysis.getAppName();
+	}
+
 	/**
 	 * Gets the app name.
 	 *
@@ -297,6 +447,49 @@ public class WebSphereDeploymentService extends AbstractDeploymentService {
 		}
 	}
 
+	/**
+	 * Prepares the artifact for deployment by reading and validating the
+	 * archive and building the deployment preferences. This does not touch the
+	 * installed application, so it can be done while the previous version is
+	 * still serving requests. The archive is not uploaded here; it is
+	 * transferred to the deployment manager by the install or update itself.
+	 *
+	 * @param artifact
+	 *            the artifact
+	 */
+	public void prepareArtifact(Artifact artifact) {
+		try {
+			long start = System.currentTimeMillis();
+			artifact.setDeploymentPreferences(buildDeploymentPreferences(artifact));
+			time(artifact.getAppName(), DeploymentTimings.PREFERENCES, start);
+		} catch (DeploymentServiceException e) {
+			throw e;
+		} catch (Exception e) {
+			e.printStackTrace();
+			throw new DeploymentServiceException("Failed to prepare artifact: " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Gets the deployment preferences, building them unless the artifact has
+	 * already been prepared.
+	 *
+	 * @param artifact
+	 *            the artifact
+	 * @return the deployment preferences
+	 * @throws Exception
+	 *             the exception
+	 */
+	private Hashtable<String, Object> getDeploymentPreferences(Artifact artifact) throws Exception {
+		if (artifact.getDeploymentPreferences() != null) {
+			return artifact.getDeploymentPreferences();
+		}
+		long start = System.currentTimeMillis();
+		Hashtable<String, Object> preferences = buildDeploymentPreferences(artifact);
+		time(artifact.getAppName(), DeploymentTimings.PREFERENCES, start);
+		return preferences;
+	}
+
 	/**
 	 * Builds the deployment preferences.
 	 *
@@ -377,32 +570,55 @@ public class WebSphereDeploymentService extends AbstractDeploymentService {
 	 * Artifact)
 	 */
 	public void installArtifact(Artifact artifact) {
-		if (!isConnected()) {
-			throw new DeploymentServiceException(
-					"Cannot install artifact, no connection to IBM WebSphere Application Server exists");
-		}
-		try {
-			Hashtable<String, Object> preferences = buildDeploymentPreferences(artifact);
-			AppManagement appManagementProxy = AppManagementProxy.getJMXProxyForClient(getAdminClient());
-			appManagementProxy.installApplication(artifact.getSourcePath().getAbsolutePath(), artifact.getAppName(),
-					preferences, null);
+		await(installArtifactAsync(artifact), "Failed to install artifact: ");
+	}
 
-			NotificationFilterSupport filterSupport = createFilterSupport();
-			DeploymentNotificationListener notifyListener = new DeploymentNotificationListener(getAdminClient(),
-					filterSupport, "Install " + artifact.getAppName(), AppNotification.INSTALL, buildListener, verbose);
+	/**
+	 * Submits the installation of an artifact. The returned future is
+	 * completed by the notification that ends the installation, no thread
+	 * waits for it, or once the nodes are synchronized afterwards, if
+	 * enabled.
+	 *
+	 * @param artifact
+	 *            the artifact
+	 * @return the future of the installation
+	 */
+	@Override
+	public DeploymentFuture<Void> installArtifactAsync(final Artifact artifact) {
+		final String appName = artifact.getAppName();
+		return schedule(appName, "install '" + appName + "'", new Operation(AppNotification.INSTALL) {
+
+			private Hashtable<String, Object> preferences;
+
+			void prepare() throws Exception {
+				if (!isConnected()) {
+					throw new DeploymentServiceException(
+							"Cannot install artifact, no connection to IBM WebSphere Application Server exists");
+				}
+				preferences = getDeploymentPreferences(artifact);
+			}
 
-			synchronized (notifyListener) {
-				notifyListener.wait();
+			void invoke(AppManagement appManagementProxy) throws Exception {
+				appManagementProxy.installApplication(artifact.getSourcePath().getAbsolutePath(), appName,
+						preferences, null);
 			}
 
-			if (!notifyListener.isSuccessful())
-				throw new DeploymentServiceException(
-						"Application not successfully deployed: " + notifyListener.getMessage());
+			Boolean isCompleted(AppManagement appManagementProxy) throws Exception {
+				return appManagementProxy.checkIfAppExists(appName, new Hashtable<Object, Object>(), null);
+			}
 
-		} catch (Exception e) {
-			e.printStackTrace();
-			throw new DeploymentServiceException("Failed to install artifact: " + e.getMessage());
-		}
+			void completed(long submitted) {
+				time(appName, DeploymentTimings.INSTALL, submitted);
+				Set<String> installed = inventory;
+				if (installed != null) {
+					installed.add(appName);
+				}
+			}
+
+			void synchronize() {
+				synchronizeNodes(appName, artifact.getTargets());
+			}
+		});
 	}
 
 	/*
@@ -414,34 +630,258 @@ public class WebSphereDeploymentService extends AbstractDeploymentService {
 	 * Artifact)
 	 */
 	public void updateArtifact(Artifact artifact) {
+		await(updateArtifactAsync(artifact), "Failed to update artifact: ");
+	}
+
+	/**
+	 * Submits the update of an artifact. The returned future is completed by
+	 * the notification that ends the update, no thread waits for it, or once
+	 * the nodes are synchronized afterwards, if enabled. Unless
+	 * the artifact leaves restarting to the caller, WebSphere restarts the
+	 * application on all its servers at once when the update is distributed.
+	 *
+	 * @param artifact
+	 *            the artifact
+	 * @return the future of the update
+	 */
+	@Override
+	public DeploymentFuture<Void> updateArtifactAsync(final Artifact artifact) {
+		final String appName = artifact.getAppName();
+		return schedule(appName, "update '" + appName + "'", new Operation(AppNotification.INSTALL) {
+
+			private Hashtable<String, Object> preferences;
+
+			void prepare() throws Exception {
+				if (!isConnected()) {
+					throw new DeploymentServiceException(
+							"Cannot update artifact, no connection to IBM WebSphere Application Server exists");
+				}
+				preferences = getDeploymentPreferences(artifact);
+				if (!artifact.isRestartOnUpdate()) {
+					preferences = new Hashtable<String, Object>(preferences);
+					preferences.put(APPDEPL_RESTART_BEHAVIOR_ON_UPDATE, RESTART_BEHAVIOR_NONE);
+				}
+			}
+
+			void invoke(AppManagement appManagementProxy) throws Exception {
+				appManagementProxy.redeployApplication(artifact.getSourcePath().getAbsolutePath(), appName,
+						preferences, null);
+			}
+
+			void completed(long submitted) {
+				time(appName, DeploymentTimings.INSTALL, submitted);
+			}
+
+			void synchronize() {
+				synchronizeNodes(appName, artifact.getTargets());
+			}
+		});
+	}
+
+	/**
+	 * Updates an installed application with the changes of an artifact only.
+	 * Changed and deleted files are shipped in one partial application
+	 * update, modules with too many changes are replaced as a whole by a
+	 * module file update each.
+	 *
+	 * @param artifact
+	 *            the artifact
+	 * @param delta
+	 *            the changes from the deployed version, must not require a
+	 *            full redeployment
+	 */
+	public void updateArtifactDelta(Artifact artifact, ArchiveDelta delta) {
 		if (!isConnected()) {
 			throw new DeploymentServiceException(
 					"Cannot update artifact, no connection to IBM WebSphere Application Server exists");
 		}
+		if (delta.isFullRedeploy()) {
+			throw new DeploymentServiceException("Cannot update artifact partially: " + delta.getFullRedeployReason());
+		}
+		String appName = artifact.getAppName();
+		File content = null;
 		try {
-			Hashtable<String, Object> preferences = buildDeploymentPreferences(artifact);
+			if (!delta.getUpdatedFiles().isEmpty() || !delta.getDeletedFiles().isEmpty()) {
+				content = File.createTempFile("partialapp", ".zip");
+				writePartialApp(artifact.getSourcePath(), delta, content);
+				buildListener.getLogger().println("Updating " + delta.getUpdatedFiles().size() + " and deleting "
+						+ delta.getDeletedFiles().size() + " file(s) of '" + appName + "' (" + (content.length() / 1024)
+						+ " KB)");
+				await(updateApplicationAsync(appName, null, content, AppConstants.APPUPDATE_CONTENT_PARTIALAPP,
+						artifact.isRestartOnUpdate()),
+						"Failed to update artifact partially: ");
+				content.delete();
+			}
+			for (String module : delta.getReplacedModules()) {
+				content = File.createTempFile("module", module.substring(module.lastIndexOf('.')));
+				extractEntry(artifact.getSourcePath(), module, content);
+				buildListener.getLogger().println(
+						"Replacing module " + module + " of '" + appName + "' (" + (content.length() / 1024) + " KB)");
+				await(updateApplicationAsync(appName, module, content, AppConstants.APPUPDATE_CONTENT_MODULEFILE,
+						artifact.isRestartOnUpdate()),
+						"Failed to replace module " + module + ": ");
+				content.delete();
+			}
+			synchronizeNodes(appName, artifact.getTargets());
+		} catch (IOException e) {
+			e.printStackTrace();
+			throw new DeploymentServiceException("Failed to update artifact partially: " + e.getMessage(), e);
+		} finally {
+			if (content != null) {
+				content.delete();
+			}
+		}
+	}
 
-			AppManagement appManagementProxy = AppManagementProxy.getJMXProxyForClient(getAdminClient());
+	/**
+	 * Submits an update of a part of an installed application.
+	 *
+	 * @param appName
+	 *            the app name
+	 * @param contentURI
+	 *            the URI of the updated module, null for a partial
+	 *            application
+	 * @param content
+	 *            the content to upload
+	 * @param contentType
+	 *            the content type
+	 * @param restartOnUpdate
+	 *            false to leave restarting the application to the caller
+	 * @return the future of the update
+	 */
+	private DeploymentFuture<Void> updateApplicationAsync(final String appName, final String contentURI,
+			final File content, final String contentType, final boolean restartOnUpdate) {
+		return schedule(appName, "update '" + appName + "'", new Operation(AppNotification.UPDATE) {
+
+			void invoke(AppManagement appManagementProxy) throws Exception {
+				Hashtable<Object, Object> preferences = new Hashtable<Object, Object>();
+				preferences.put(AppConstants.APPDEPL_LOCALE, Locale.getDefault());
+				preferences.put(AppConstants.APPDEPL_ARCHIVE_UPLOAD, Boolean.TRUE);
+				if (!restartOnUpdate) {
+					preferences.put(APPDEPL_RESTART_BEHAVIOR_ON_UPDATE, RESTART_BEHAVIOR_NONE);
+				}
+				appManagementProxy.updateApplication(appName, contentURI, content.getAbsolutePath(), contentType,
+						AppConstants.APPUPDATE_UPDATE, preferences, null);
+			}
 
-			appManagementProxy.redeployApplication(artifact.getSourcePath().getAbsolutePath(), artifact.getAppName(),
-					preferences, null);
+			void completed(long submitted) {
+				time(appName, DeploymentTimings.INSTALL, submitted);
+			}
+		});
+	}
 
-			NotificationFilterSupport filterSupport = createFilterSupport();
-			DeploymentNotificationListener notifyListener = new DeploymentNotificationListener(getAdminClient(),
-					filterSupport, "Update " + artifact.getAppName(), AppNotification.INSTALL, buildListener, verbose);
+	/**
+	 * Writes the content of a partial application update: the updated files at
+	 * their path in the application and the list of deleted files.
+	 *
+	 * @param archive
+	 *            the new archive
+	 * @param delta
+	 *            the delta
+	 * @param destination
+	 *            the destination
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private void writePartialApp(File archive, ArchiveDelta delta, File destination) throws IOException {
+		Set<String> updated = new HashSet<String>(delta.getUpdatedFiles());
+		byte[] buf = new byte[COPY_BUFFER_SIZE];
+		try (ZipFile zipFile = new ZipFile(archive);
+				ZipOutputStream out = new ZipOutputStream(
+						new BufferedOutputStream(new FileOutputStream(destination), COPY_BUFFER_SIZE))) {
+			Enumeration<? extends ZipEntry> entries = zipFile.entries();
+			while (entries.hasMoreElements()) {
+				ZipEntry entry = entries.nextElement();
+				if (updated.contains(entry.getName())) {
+					out.putNextEntry(new ZipEntry(entry.getName()));
+					try (InputStream in = zipFile.getInputStream(entry)) {
+						copy(in, out, buf);
+					}
+					out.closeEntry();
+				} else if (ArchiveAnalysis.isModule(entry.getName()) && containsPrefix(updated, entry.getName() + "/")) {
+					try (ZipInputStream module = new ZipInputStream(zipFile.getInputStream(entry))) {
+						ZipEntry moduleEntry;
+						while ((moduleEntry = module.getNextEntry()) != null) {
+							String path = entry.getName() + "/" + moduleEntry.getName();
+							if (updated.contains(path)) {
+								out.putNextEntry(new ZipEntry(path));
+								copy(module, out, buf);
+								out.closeEntry();
+							}
+						}
+					}
+				}
+			}
+			if (!delta.getDeletedFiles().isEmpty()) {
+				out.putNextEntry(new ZipEntry("META-INF/ibm-partialapp-delete.props"));
+				for (String deleted : delta.getDeletedFiles()) {
+					out.write((deleted + "\n").getBytes("UTF-8"));
+				}
+				out.closeEntry();
+			}
+		}
+	}
 
-			synchronized (notifyListener) {
-				notifyListener.wait();
+	/**
+	 * Extracts an entry of an archive.
+	 *
+	 * @param archive
+	 *            the archive
+	 * @param name
+	 *            the name of the entry
+	 * @param destination
+	 *            the destination
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private void extractEntry(File archive, String name, File destination) throws IOException {
+		try (ZipFile zipFile = new ZipFile(archive)) {
+			ZipEntry entry = zipFile.getEntry(name);
+			if (entry == null) {
+				throw new IOException(name + " not found in " + archive.getName());
+			}
+			try (InputStream in = zipFile.getInputStream(entry);
+					OutputStream out = new FileOutputStream(destination)) {
+				copy(in, out, new byte[COPY_BUFFER_SIZE]);
 			}
+		}
+	}
 
-			if (!notifyListener.isSuccessful())
-				throw new DeploymentServiceException(
-						"Application not successfully updated: " + notifyListener.getMessage());
+	/**
+	 * Copy.
+	 *
+	 * @param in
+	 *            the in
+	 * @param out
+	 *            the out
+	 * @param buf
+	 *            the buf
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private static void copy(InputStream in, OutputStream out, byte[] buf) throws IOException {
+		int len;
+		while ((len = in.read(buf)) > 0) {
+			out.write(buf, 0, len);
+		}
+	}
 
-		} catch (Exception e) {
-			e.printStackTrace();
-			throw new DeploymentServiceException("Failed to update artifact: " + e.getMessage());
+	/**
+	 * Checks if any path starts with a prefix.
+	 *
+	 * @param paths
+	 *            the paths
+	 * @param prefix
+	 *            the prefix
+	 * @return true, if successful
+	 */
+	private static boolean containsPrefix(Set<String> paths, String prefix) {
+		for (String path : paths) {
+			if (path.startsWith(prefix)) {
+				return true;
+			}
 		}
+		return false;
 	}
 
 	/*
@@ -452,29 +892,296 @@ public class WebSphereDeploymentService extends AbstractDeploymentService {
 	 * uninstallArtifact(java.lang.String)
 	 */
 	public void uninstallArtifact(String appName) throws Exception {
-		try {
-			Hashtable<Object, Object> prefs = new Hashtable<Object, Object>();
-			NotificationFilterSupport filterSupport = createFilterSupport();
+		long start = System.currentTimeMillis();
+		await(uninstallArtifactAsync(appName), "Could not undeploy application: ");
+		time(appName, DeploymentTimings.UNINSTALL, start);
+	}
 
-			DeploymentNotificationListener notifyListener = new DeploymentNotificationListener(getAdminClient(),
-					filterSupport, "Uninstall " + appName, AppNotification.UNINSTALL, buildListener, verbose);
+	/**
+	 * Submits the uninstallation of an application. The returned future is
+	 * completed by the notification that ends the uninstallation, no thread
+	 * waits for it.
+	 *
+	 * @param appName
+	 *            the app name
+	 * @return the future of the uninstallation
+	 */
+	@Override
+	public DeploymentFuture<Void> uninstallArtifactAsync(final String appName) {
+		return schedule(appName, "uninstall '" + appName + "'", new Operation(AppNotification.UNINSTALL) {
 
-			AppManagement appManagementProxy = AppManagementProxy.getJMXProxyForClient(getAdminClient());
+			void invoke(AppManagement appManagementProxy) throws Exception {
+				appManagementProxy.uninstallApplication(appName, new Hashtable<Object, Object>(), null);
+			}
 
-			appManagementProxy.uninstallApplication(appName, prefs, null);
+			Boolean isCompleted(AppManagement appManagementProxy) throws Exception {
+				return !appManagementProxy.checkIfAppExists(appName, new Hashtable<Object, Object>(), null);
+			}
 
-			synchronized (notifyListener) {
-				notifyListener.wait();
+			void completed(long submitted) {
+				Set<String> installed = inventory;
+				if (installed != null) {
+					installed.remove(appName);
+				}
 			}
-			if (!notifyListener.isSuccessful()) {
-				throw new DeploymentServiceException(
-						"Application not successfully undeployed: " + notifyListener.getMessage());
+		});
+	}
+
+	/**
+	 * Synchronizes the nodes an application is deployed to right after it was
+	 * saved, if enabled. Nodes that cannot be synchronized receive the
+	 * application with their next regular synchronization, which the start of
+	 * the application waits for anyway.
+	 *
+	 * @param appName
+	 *            the app name
+	 * @param targets
+	 *            the deployment targets, one per line, the nodes of all of them
+	 *            are synchronized
+	 */
+	private void synchronizeNodes(String appName, String targets) {
+		if (!syncNodes) {
+			return;
+		}
+		long start = System.currentTimeMillis();
+		NodeSynchronizer synchronizer = new NodeSynchronizer(getAdminClient(), buildListener);
+		try {
+			if (!synchronizer.synchronize(getNodes(targets), NodeSynchronizer.DEFAULT_TIMEOUT_MILLIS)) {
+				buildListener.getLogger().println("Not all nodes were synchronized, waiting for them to receive '"
+						+ appName + "' on their own");
 			}
 		} catch (Exception e) {
-			throw new DeploymentServiceException("Could not undeploy application", e);
+			e.printStackTrace();
+			buildListener.getLogger().println("Could not synchronize nodes, waiting for them to receive '" + appName
+					+ "' on their own: " + e.getMessage());
+		} finally {
+			time(appName, DeploymentTimings.SYNC, start);
+			if (timings != null) {
+				for (Map.Entry<String, Long> node : synchronizer.getSyncTimes().entrySet()) {
+					timings.recordSync(appName, node.getKey(), node.getValue());
+				}
+			}
 		}
 	}
 
+	/**
+	 * Gets the nodes of deployment targets.
+	 *
+	 * @param targets
+	 *            the targets, one per line
+	 * @return the nodes, null if a target is a cluster, whose members may be
+	 *         on any node
+	 * @throws Exception
+	 *             the exception
+	 */
+	private Set<String> getNodes(String targets) throws Exception {
+		Set<String> nodes = new TreeSet<String>();
+		for (StringTokenizer st = new StringTokenizer(StringUtils.trimToEmpty(targets), "\r\n"); st
+				.hasMoreTokens();) {
+			ObjectName target = new ObjectName(st.nextToken().trim());
+			if (target.getKeyProperty("node") == null) {
+				return null;
+			}
+			nodes.add(target.getKeyProperty("node"));
+		}
+		return nodes.isEmpty() ? null : nodes;
+	}
+
+	/**
+	 * Queues an operation that changes the cell with the scheduler and submits
+	 * it once it is admitted, logging the queue depth and the wait when the
+	 * operation is queued. No thread waits for the admission.
+	 *
+	 * @param appName
+	 *            the app name
+	 * @param description
+	 *            the description of the operation
+	 * @param future
+	 *            the future of the operation, the permit is released once it
+	 *            is done
+	 * @param admitted
+	 *            the submission of the operation, run on the shared executor
+	 *            once the operation is admitted
+	 */
+	private void admit(final String appName, final String description, DeploymentFuture<Void> future,
+			final Admitted admitted) {
+		if (scheduler == null) {
+			admitted.run(null);
+			return;
+		}
+		final String cell = getHost() + ":" + getPort();
+		final DeploymentScheduler.Permit permit = scheduler.enqueue(cell, schedulerOwner, description);
+		releaseWhenDone(future, permit);
+		final boolean queued = !permit.isAdmitted();
+		if (queued) {
+			buildListener.getLogger().println("Waiting to " + description + " on " + cell + ", "
+					+ permit.getQueueDepth() + " operation(s) running or queued ahead");
+		}
+		permit.whenAdmitted(new Runnable() {
+			public void run() {
+				if (queued) {
+					buildListener.getLogger().println(
+							"Admitted to " + description + " on " + cell + " after " + permit.getWaitMillis() + " ms");
+				}
+				if (timings != null) {
+					timings.record(appName, DeploymentTimings.ADMISSION, permit.getWaitMillis());
+				}
+				admitted.run(permit);
+			}
+		}, getExecutor());
+	}
+
+	/**
+	 * Schedules an application management operation. Reading the archive and
+	 * submitting the operation happen on the shared executor and the
+	 * submission is chained to the admission by the scheduler, so the
+	 * returned future is handed out right away and no thread waits for the
+	 * admission. Once submitted, the future is completed by the notification
+	 * that ends the operation, or by checking the outcome of the operation if
+	 * that notification cannot be told apart. Cancelling the future stops
+	 * listening for the operation, an operation already submitted keeps
+	 * running on the server.
+	 *
+	 * @param appName
+	 *            the app name
+	 * @param description
+	 *            the description of the operation, e.g.
+	 *            <code>install 'app'</code>
+	 * @param operation
+	 *            the operation
+	 * @return the future of the operation
+	 */
+	private DeploymentFuture<Void> schedule(final String appName, final String description,
+			final Operation operation) {
+		final AtomicReference<DeploymentCompletion> submittedCompletion = new AtomicReference<DeploymentCompletion>();
+		final DeploymentFuture<Void> future = new DeploymentFuture<Void>() {
+			@Override
+			public boolean checkOutcome() {
+				DeploymentCompletion completion = submittedCompletion.get();
+				return completion != null && completion.checkOutcome() || isDone();
+			}
+		};
+		getExecutor().execute(new Runnable() {
+			public void run() {
+				if (future.isDone()) {
+					return;
+				}
+				try {
+					operation.prepare();
+				} catch (Exception e) {
+					e.printStackTrace();
+					future.fail(e);
+					return;
+				}
+				admit(appName, description, future, new Admitted() {
+					public void run(DeploymentScheduler.Permit permit) {
+						if (future.isDone()) {
+							return;
+						}
+						DeploymentCompletion completion = null;
+						long submitted = System.currentTimeMillis();
+						try {
+							AppManagement appManagementProxy = getAppManagement();
+							completion = getDispatcher().expect(operation.taskName, appName, buildListener, verbose);
+							completion.setOutcomeCheck(operation.getOutcomeCheck(appManagementProxy));
+							submittedCompletion.set(completion);
+							operation.invoke(appManagementProxy);
+						} catch (Exception e) {
+							e.printStackTrace();
+							if (completion != null) {
+								completion.cancel(false);
+							}
+							if (permit != null) {
+								permit.release();
+							}
+							future.fail(e);
+							return;
+						}
+						completeWith(future, completion, operation, submitted, permit);
+					}
+				});
+			}
+		});
+		return future;
+	}
+
+	/**
+	 * Releases a permit once an operation is done, e.g. when it is cancelled.
+	 *
+	 * @param future
+	 *            the future of the operation
+	 * @param permit
+	 *            the permit, may be null
+	 */
+	private void releaseWhenDone(DeploymentFuture<Void> future, final DeploymentScheduler.Permit permit) {
+		if (permit != null) {
+			future.addListener(new Runnable() {
+				public void run() {
+					permit.release();
+				}
+			});
+		}
+	}
+
+	/**
+	 * Completes the future of a submitted operation together with its
+	 * completion handle, after the nodes are synchronized if enabled. The
+	 * permit is released first, so callers waiting for the future find the
+	 * operation no longer running.
+	 *
+	 * @param future
+	 *            the future
+	 * @param completion
+	 *            the completion handle
+	 * @param operation
+	 *            the operation, told when it completed successfully
+	 * @param submitted
+	 *            the time the operation was submitted
+	 * @param permit
+	 *            the permit, may be null
+	 */
+	private void completeWith(final DeploymentFuture<Void> future, final DeploymentCompletion completion,
+			final Operation operation, final long submitted, final DeploymentScheduler.Permit permit) {
+		completion.addListener(new Runnable() {
+			public void run() {
+				if (permit != null) {
+					permit.release();
+				}
+				try {
+					completion.get();
+				} catch (ExecutionException e) {
+					future.fail(e.getCause());
+					return;
+				} catch (Exception e) {
+					future.fail(e);
+					return;
+				}
+				operation.completed(submitted);
+				if (!syncNodes) {
+					future.set(null);
+					return;
+				}
+				// synchronizing waits for the node agents, not on the thread delivering notifications
+				getExecutor().execute(new Runnable() {
+					public void run() {
+						try {
+							operation.synchronize();
+						} finally {
+							future.set(null);
+						}
+					}
+				});
+			}
+		});
+		future.addListener(new Runnable() {
+			public void run() {
+				if (future.isCancelled()) {
+					completion.cancel(false);
+				}
+			}
+		});
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -483,7 +1190,7 @@ public class WebSphereDeploymentService extends AbstractDeploymentService {
 	 * startArtifact(java.lang.String)
 	 */
 	public void startArtifact(String appName) throws Exception {
-		startArtifact(appName, 5);
+		startArtifact(appName, getDeploymentTimeout());
 	}
 
 	/**
@@ -497,12 +1204,37 @@ public class WebSphereDeploymentService extends AbstractDeploymentService {
 	 *             the exception
 	 */
 	public void startArtifact(String appName, int deploymentTimeout) throws Exception {
+		startArtifact(appName, deploymentTimeout, false);
+	}
+
+	/**
+	 * Start artifact.
+	 *
+	 * @param appName
+	 *            the app name
+	 * @param deploymentTimeout
+	 *            the deployment timeout
+	 * @param updatedWhileRunning
+	 *            whether the application was updated without being stopped,
+	 *            WebSphere restarts it by itself then, so it is accepted if
+	 *            it is running already
+	 * @throws Exception
+	 *             the exception
+	 */
+	public void startArtifact(String appName, int deploymentTimeout, boolean updatedWhileRunning)
+			throws Exception {
 		try {
-			AppManagement appManagementProxy = AppManagementProxy.getJMXProxyForClient(getAdminClient());
+			AppManagement appManagementProxy = getAppManagement();
 			if (waitForApplicationDistribution(appManagementProxy, appName, deploymentTimeout * 60)) {
+				long start = System.currentTimeMillis();
 				String targetsStarted = appManagementProxy.startApplication(appName, null, null);
+				time(appName, DeploymentTimings.START, start);
 				log.info("Application was started on the following targets: " + targetsStarted);
-				if (targetsStarted == null) {
+				if (targetsStarted == null && updatedWhileRunning && isArtifactRunning(appName)) {
+					// the application was updated while running and has
+					// already been restarted by WebSphere
+					buildListener.getLogger().println("Application '" + appName + "' is already running");
+				} else if (targetsStarted == null) {
 					// wait X seconds to let deployment settle
 					// TODO check if app really is started, if not throw an
 					// error
@@ -533,21 +1265,18 @@ public class WebSphereDeploymentService extends AbstractDeploymentService {
 	 */
 	private boolean waitForApplicationDistribution(AppManagement appManagementProxy, String appName, int secondsToWait)
 			throws Exception {
-		int totalSeconds = 0;
-		NotificationFilterSupport filterSupport = createFilterSupport();
-		DeploymentNotificationListener distributionListener = null;
-		while (checkDistributionStatus(distributionListener) != AppNotification.DISTRIBUTION_DONE
-				&& totalSeconds < secondsToWait) {
-			Thread.sleep(1000);
-			totalSeconds++;
-			distributionListener = new DeploymentNotificationListener(getAdminClient(), filterSupport, null,
-					AppNotification.DISTRIBUTION_STATUS_NODE, buildListener, verbose);
-			synchronized (distributionListener) {
-				appManagementProxy.getDistributionStatus(appName, new Hashtable<Object, Object>(), null);
-				distributionListener.wait();
+		DistributionTracker tracker = new DistributionTracker(getDispatcher(), appName, buildListener, verbose);
+		long start = System.currentTimeMillis();
+		try {
+			return tracker.await(appManagementProxy, secondsToWait * 1000L);
+		} finally {
+			time(appName, DeploymentTimings.DISTRIBUTION, start);
+			if (timings != null) {
+				for (Map.Entry<String, Long> node : tracker.getDistributionTimes().entrySet()) {
+					timings.recordTarget(appName, node.getKey(), node.getValue());
+				}
 			}
 		}
-		return totalSeconds <= secondsToWait;
 	}
 
 	/*
@@ -559,14 +1288,124 @@ public class WebSphereDeploymentService extends AbstractDeploymentService {
 	 */
 	public void stopArtifact(String appName) throws Exception {
 		try {
-			AppManagementProxy.getJMXProxyForClient(getAdminClient()).stopApplication(appName,
+			long start = System.currentTimeMillis();
+			getAppManagement().stopApplication(appName,
 					new Hashtable<Object, Object>(), null);
+			time(appName, DeploymentTimings.STOP, start);
 		} catch (Exception e) {
 			e.printStackTrace();
 			throw new DeploymentServiceException("Could not stop artifact '" + appName + "': " + e.getMessage());
 		}
 	}
 
+	/**
+	 * Restarts an application wave by wave once it was distributed. The
+	 * members of a wave are stopped and started together, and the next wave
+	 * is only restarted once the application runs on every member of the
+	 * current one, so the members of the other waves keep serving requests.
+	 * The application has to be updated without WebSphere restarting it, see
+	 * {@link Artifact#setRestartOnUpdate(boolean)}, or all members restart at
+	 * once before the waves do.
+	 * The whole rollout has to finish within the deployment timeout; if a
+	 * wave fails, the remaining waves are left untouched.
+	 *
+	 * @param appName
+	 *            the app name
+	 * @param waves
+	 *            the targets of every wave, e.g.
+	 *            <code>WebSphere:cell=c,node=n,server=s</code>
+	 * @param deploymentTimeout
+	 *            the deployment timeout in minutes
+	 * @throws Exception
+	 *             the exception
+	 */
+	public void startArtifactInWaves(String appName, List<List<String>> waves, int deploymentTimeout)
+			throws Exception {
+		try {
+			AppManagement appManagementProxy = getAppManagement();
+			long deadline = System.currentTimeMillis() + deploymentTimeout * 60 * 1000L;
+			if (!waitForApplicationDistribution(appManagementProxy, appName, deploymentTimeout * 60)) {
+				throw new DeploymentServiceException("Distribution of application did not succeed on all nodes.");
+			}
+			int wave = 0;
+			for (List<String> targets : waves) {
+				wave++;
+				String targetList = StringUtils.join(targets, "+");
+				buildListener.getLogger().println("Restarting '" + appName + "' in wave " + wave + " of "
+						+ waves.size() + " on: " + StringUtils.join(targets, ", "));
+				long start = System.currentTimeMillis();
+				appManagementProxy.stopApplication(appName, targetList, new Hashtable<Object, Object>(), null);
+				time(appName, DeploymentTimings.STOP, start);
+				start = System.currentTimeMillis();
+				appManagementProxy.startApplication(appName, targetList, new Hashtable<Object, Object>(), null);
+				Set<String> missing = awaitRunningTargets(appName, targets, deadline);
+				time(appName, DeploymentTimings.START, start);
+				if (!missing.isEmpty()) {
+					throw new DeploymentServiceException("Application did not start in wave " + wave + " of "
+							+ waves.size() + " on " + StringUtils.join(missing, ", ")
+							+ ", the remaining waves were not restarted."
+							+ " WAS JVM logs should contain more detailed information.");
+				}
+				buildListener.getLogger().println("Wave " + wave + " of " + waves.size() + " is running after "
+						+ (System.currentTimeMillis() - start) + " ms");
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+			throw new DeploymentServiceException("Could not start artifact '" + appName + "': " + e.toString());
+		}
+	}
+
+	/**
+	 * Waits until an application runs on a number of targets.
+	 *
+	 * @param appName
+	 *            the app name
+	 * @param targets
+	 *            the targets
+	 * @param deadline
+	 *            the time to give up at
+	 * @return the targets the application does not run on, empty if it runs
+	 *         on all of them
+	 * @throws Exception
+	 *             the exception
+	 */
+	private Set<String> awaitRunningTargets(String appName, List<String> targets, long deadline) throws Exception {
+		Set<String> missing = new TreeSet<String>(targets);
+		long pollMillis = 100;
+		while (true) {
+			missing.removeAll(getRunningTargets(appName));
+			if (missing.isEmpty() || System.currentTimeMillis() >= deadline) {
+				return missing;
+			}
+			Thread.sleep(Math.min(pollMillis, Math.max(1, deadline - System.currentTimeMillis())));
+			pollMillis = Math.min(pollMillis * 2, 2000);
+		}
+	}
+
+	/**
+	 * Gets the servers an application is running on.
+	 *
+	 * @param appName
+	 *            the app name
+	 * @return the targets, e.g. <code>WebSphere:cell=c,node=n,server=s</code>,
+	 *         sorted
+	 */
+	public List<String> getRunningTargets(String appName) {
+		try {
+			Set<ObjectName> applications = getAdminClient().queryNames(getApplicationQuery(appName), null);
+			Set<String> targets = new TreeSet<String>();
+			for (ObjectName application : applications) {
+				targets.add("WebSphere:cell=" + application.getKeyProperty("cell") + ",node="
+						+ application.getKeyProperty("node") + ",server=" + application.getKeyProperty("process"));
+			}
+			return new ArrayList<String>(targets);
+		} catch (Exception e) {
+			e.printStackTrace();
+			throw new DeploymentServiceException(
+					"Could not determine where artifact '" + appName + "' is running: " + e.getMessage());
+		}
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -575,38 +1414,129 @@ public class WebSphereDeploymentService extends AbstractDeploymentService {
 	 * isArtifactInstalled(java.lang.String)
 	 */
 	public boolean isArtifactInstalled(String name) {
-		try {
-			buildListener.getLogger().println("Checking if app, looking up JMX interface...");
-			AppManagement appManagement = AppManagementProxy.getJMXProxyForClient(getAdminClient());
-			buildListener.getLogger().println("Getting JMX proxy client... AppManagementProxy Found: " + appManagement);
-			buildListener.getLogger().println("Checking if app exists via AppMangementProxy...");
-			boolean result = appManagement.checkIfAppExists(name, new Hashtable<Object, Object>(), null);
+		boolean result = getInventory(name).contains(name);
+		if (verbose) {
 			buildListener.getLogger().println(name + " is installed on WebSphere: " + result);
-			return result;
+		}
+		return result;
+	}
+
+	/**
+	 * Loads the names of all installed applications with a single remote call.
+	 * The inventory is kept up to date by the install and uninstall operations
+	 * of this service and its sessions and answers all later existence checks.
+	 */
+	public void loadInventory() {
+		loadInventory(null);
+	}
+
+	/**
+	 * Load inventory.
+	 *
+	 * @param name
+	 *            the app name the inventory is loaded for, only used for error
+	 *            messages
+	 */
+	private void loadInventory(String name) {
+		String subject = name == null ? "installed applications" : "if artifact '" + name + "' is installed";
+		try {
+			Vector<?> applications = getAppManagement().listApplications(new Hashtable<Object, Object>(), null);
+			Set<String> installed = Collections.synchronizedSet(new HashSet<String>());
+			for (Object application : applications) {
+				installed.add(String.valueOf(application));
+			}
+			inventory = installed;
+			buildListener.getLogger()
+					.println("Found " + installed.size() + " installed applications on WebSphere Application Server");
 		} catch (AdminException e) {
 			e.printStackTrace();
 			throw new DeploymentServiceException(
-					"Could not determine if artifact '" + name + "' is installed: AdminException: " + e.getMessage());
+					"Could not determine " + subject + ": AdminException: " + e.getMessage());
 		} catch (ConnectorException e) {
 			e.printStackTrace();
-			throw new DeploymentServiceException("Could not determine if artifact '" + name
-					+ "' is installed: ConnectorException: " + e.getMessage());
+			throw new DeploymentServiceException(
+					"Could not determine " + subject + ": ConnectorException: " + e.getMessage());
 		} catch (Exception e) {
 			e.printStackTrace();
-			throw new DeploymentServiceException("Could not determine if artifact '" + name
-					+ "' is installed: General Exception: " + e.getMessage());
+			throw new DeploymentServiceException(
+					"Could not determine " + subject + ": General Exception: " + e.getMessage());
 		}
 	}
 
 	/**
-	 * Creates the filter support.
+	 * Gets the inventory, loading it on first use.
 	 *
-	 * @return the notification filter support
+	 * @param name
+	 *            the app name the inventory is needed for
+	 * @return the inventory
 	 */
-	private NotificationFilterSupport createFilterSupport() {
-		NotificationFilterSupport filterSupport = new NotificationFilterSupport();
-		filterSupport.enableType(AppConstants.NotificationType);
-		return filterSupport;
+	private Set<String> getInventory(String name) {
+		if (inventory == null) {
+			loadInventory(name);
+		}
+		return inventory;
+	}
+
+	/**
+	 * Gets the notification dispatcher of the current connection.
+	 *
+	 * @return the dispatcher
+	 * @throws Exception
+	 *             the exception
+	 */
+	private DeploymentNotificationDispatcher getDispatcher() throws Exception {
+		getAdminClient();
+		return DeploymentNotificationDispatcher.getInstance(client);
+	}
+
+	/**
+	 * Gets the app management proxy of the current connection.
+	 *
+	 * @return the app management
+	 * @throws Exception
+	 *             the exception
+	 */
+	private AppManagement getAppManagement() throws Exception {
+		AdminClient adminClient = getAdminClient();
+		if (appManagement == null || appManagementClient != adminClient) {
+			appManagement = connectionFactory.createAppManagement(adminClient);
+			appManagementClient = adminClient;
+		}
+		return appManagement;
+	}
+
+	/**
+	 * Checks if the application is running on at least one server.
+	 *
+	 * @param appName
+	 *            the app name
+	 * @return true, if is artifact running
+	 */
+	public boolean isArtifactRunning(String appName) {
+		try {
+			return !getAdminClient().queryNames(getApplicationQuery(appName), null).isEmpty();
+		} catch (Exception e) {
+			e.printStackTrace();
+			throw new DeploymentServiceException(
+					"Could not determine if artifact '" + appName + "' is running: " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Gets the query for the Application MBeans of an application on all
+	 * servers. WebSphere registers them with the app name as is, so the name
+	 * is only quoted if it contains characters that would make the query
+	 * malformed or a wildcard; such a name does not match any application.
+	 *
+	 * @param appName
+	 *            the app name
+	 * @return the query
+	 * @throws MalformedObjectNameException
+	 *             the malformed object name exception
+	 */
+	static ObjectName getApplicationQuery(String appName) throws MalformedObjectNameException {
+		String name = StringUtils.containsNone(appName, ",=:\"*?\n") ? appName : ObjectName.quote(appName);
+		return new ObjectName("WebSphere:type=Application,name=" + name + ",*");
 	}
 
 	/**
@@ -630,11 +1560,13 @@ public class WebSphereDeploymentService extends AbstractDeploymentService {
 	 * connect()
 	 */
 	public void connect() throws Exception {
-		// store the current environment, before that wsadmin client overrides
-		// it
-		storedProperties = (Properties) System.getProperties().clone();
-		if (isConnected()) {
-			log.warning("Already connected to WebSphere Application Server");
+		if (client != null) {
+			// hand the previous connection back, or the pool never gets it again
+			log.warning("Already connected to WebSphere Application Server, closing the previous connection");
+			if (!isConnected()) {
+				connectionFailed.set(true);
+			}
+			disconnect();
 		}
 		Properties config = new Properties();
 		config.put(AdminClient.CONNECTOR_HOST, getHost());
@@ -643,13 +1575,59 @@ public class WebSphereDeploymentService extends AbstractDeploymentService {
 			injectSecurityConfiguration(config);
 		}
 		config.put(AdminClient.CONNECTOR_TYPE, getConnectorType());
-		client = AdminClientFactory.createAdminClient(config);
+		if (connectionPool != null) {
+			client = connectionPool.lease(config, connectionFactory);
+		} else {
+			client = connectionFactory.createAdminClient(config);
+		}
+		connectionFailed.set(false);
 		if (client == null) {
 			throw new DeploymentServiceException(
 					"Unable to connect to IBM WebSphere Application Server @ " + getHost() + ":" + getPort());
 		}
 	}
 
+	/**
+	 * Creates a service that shares the connection of this service but reports
+	 * to its own build listener, so that several artifacts can be deployed
+	 * concurrently. Disconnecting the session leaves the shared connection
+	 * open.
+	 *
+	 * @param listener
+	 *            the listener of the session
+	 * @return the session
+	 */
+	public WebSphereDeploymentService createSession(BuildListener listener) {
+		WebSphereDeploymentService service = new WebSphereDeploymentService();
+		getAdminClient();
+		service.client = client;
+		service.instrumentedClient = instrumentedClient;
+		service.connectionFailed = connectionFailed;
+		service.session = true;
+		service.inventory = inventory;
+		service.appManagement = appManagement;
+		service.appManagementClient = appManagementClient;
+		service.connectorType = connectorType;
+		service.verbose = verbose;
+		service.buildListener = listener;
+		service.timings = timings;
+		service.remoteCalls = remoteCalls;
+		service.connectionFactory = connectionFactory;
+		service.scheduler = scheduler;
+		service.schedulerOwner = schedulerOwner;
+		service.syncNodes = syncNodes;
+		service.setDeploymentTimeout(getDeploymentTimeout());
+		service.setHost(getHost());
+		service.setPort(getPort());
+		service.setUsername(getUsername());
+		service.setPassword(getPassword());
+		service.setKeyStoreLocation(getKeyStoreLocation());
+		service.setKeyStorePassword(getKeyStorePassword());
+		service.setTrustStoreLocation(getTrustStoreLocation());
+		service.setTrustStorePassword(getTrustStorePassword());
+		return service;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -658,13 +1636,22 @@ public class WebSphereDeploymentService extends AbstractDeploymentService {
 	 * disconnect()
 	 */
 	public void disconnect() {
-		// restore environment after execution
-		if (storedProperties != null) {
-			System.setProperties(storedProperties);
-			storedProperties = null;
+		inventory = null;
+		appManagement = null;
+		appManagementClient = null;
+		instrumentedClient = null;
+		if (session) {
+			client = null;
+			return;
 		}
 		if (client != null) {
-			client.getConnectorProperties().clear();
+			if (connectionPool != null && connectionFailed.get()) {
+				connectionPool.invalidate(client);
+			} else if (connectionPool != null) {
+				connectionPool.release(client);
+			} else {
+				AdminConnectionFactory.closeAdminClient(client);
+			}
 			client = null;
 		}
 	}
@@ -686,7 +1673,10 @@ public class WebSphereDeploymentService extends AbstractDeploymentService {
 	}
 
 	/**
-	 * Gets the admin client.
+	 * Gets the admin client. This is a proxy noticing when a remote call fails
+	 * because of the connection and, when remote calls are recorded, recording
+	 * them, while the notification dispatcher and the connection pool keep
+	 * working with the client itself.
 	 *
 	 * @return the admin client
 	 */
@@ -694,11 +1684,48 @@ public class WebSphereDeploymentService extends AbstractDeploymentService {
 		if (client == null) {
 			throw new DeploymentServiceException("No connection to WebSphere exists");
 		}
-		return client;
+		if (instrumentedClient == null) {
+			final AdminClient target = remoteCalls == null ? client : remoteCalls.instrument(client, AdminClient.class);
+			instrumentedClient = (AdminClient) Proxy.newProxyInstance(AdminClient.class.getClassLoader(),
+					new Class<?>[] { AdminClient.class }, new InvocationHandler() {
+						public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+							if (method.getName().equals("equals") && args != null && args.length == 1) {
+								return proxy == args[0];
+							}
+							try {
+								return method.invoke(target, args);
+							} catch (InvocationTargetException e) {
+								checkConnectionFailure(e.getCause());
+								throw e.getCause();
+							}
+						}
+					});
+		}
+		return instrumentedClient;
 	}
 
 	/**
-	 * Inject security configuration.
+	 * Checks if an error was caused by the connection. If so, the connection
+	 * is dropped on disconnect instead of being returned to the connection
+	 * pool.
+	 *
+	 * @param e
+	 *            the error
+	 * @return true, if the connection failed
+	 */
+	public boolean checkConnectionFailure(Throwable e) {
+		for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+			if (cause instanceof ConnectorException) {
+				connectionFailed.set(true);
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Inject security configuration. The settings only go into the connector
+	 * properties of this connection, never into the system properties.
 	 *
 	 * @param config
 	 *            the config
@@ -737,7 +1764,7 @@ public class WebSphereDeploymentService extends AbstractDeploymentService {
 	 *            the targets
 	 * @return the formatted targets
 	 */
-	private String getFormattedTargets(String targets) {
+	String getFormattedTargets(String targets) {
 		List<String> result = new ArrayList<String>();
 		for (StringTokenizer st = new StringTokenizer(targets.trim(), "\r\n"); st.hasMoreTokens();) {
 			result.add(st.nextToken());
@@ -752,7 +1779,7 @@ public class WebSphereDeploymentService extends AbstractDeploymentService {
 	 *            the target
 	 * @return the formatted target
 	 */
-	private String getFormattedTarget(String target) {
+	String getFormattedTarget(String target) {
 		target = target.replace("WebSphere:", "").replace(",j2eeType=J2EEServer", ""); // remove
 																						// 'WebSphere:'
 																						// &
@@ -787,6 +1814,17 @@ public class WebSphereDeploymentService extends AbstractDeploymentService {
 		return this.connectorType;
 	}
 
+	/**
+	 * Sets the connection pool to lease connections from instead of creating
+	 * a new connection on every connect.
+	 *
+	 * @param connectionPool
+	 *            the new connection pool
+	 */
+	public void setConnectionPool(AdminClientPool connectionPool) {
+		this.connectionPool = connectionPool;
+	}
+
 	/**
 	 * Sets the verbose.
 	 *
@@ -808,57 +1846,181 @@ public class WebSphereDeploymentService extends AbstractDeploymentService {
 	}
 
 	/**
-	 * Check distribution status.
+	 * Sets the timings to record the phases of deployments in.
 	 *
-	 * @param listener
-	 *            the listener
-	 * @return the string
-	 * @throws MalformedObjectNameException
-	 *             the malformed object name exception
+	 * @param timings
+	 *            the new timings, null to record nothing
 	 */
-	/*
-	 * Checks the listener and figures out the aggregate distribution status of
-	 * all nodes
-	 */
-	private String checkDistributionStatus(DeploymentNotificationListener listener)
-			throws MalformedObjectNameException {
-		String distributionState = AppNotification.DISTRIBUTION_UNKNOWN;
-		if (listener != null) {
-			String compositeServers = listener.getNotificationProps()
-					.getProperty(AppNotification.DISTRIBUTION_STATUS_COMPOSITE);
-			if (compositeServers != null) {
-				if (verbose) {
-					buildListener.getLogger().println("Server Composite: " + compositeServers);
-				}
-				String[] servers = compositeServers.split("\\+");
-				int countTrue = 0;
-				int countFalse = 0;
-				int countUnknown = 0;
-				for (String server : servers) {
-					ObjectName serverObject = new ObjectName(server);
-					distributionState = serverObject.getKeyProperty("distribution");
-					if (verbose) {
-						buildListener.getLogger().println("Distributed to " + server + ": " + distributionState);
-					}
-					if (distributionState.equals("true"))
-						countTrue++;
-					if (distributionState.equals("false"))
-						countFalse++;
-					if (distributionState.equals("unknown"))
-						countUnknown++;
-				}
-				if (countUnknown > 0) {
-					distributionState = AppNotification.DISTRIBUTION_UNKNOWN;
-				} else if (countFalse > 0) {
-					distributionState = AppNotification.DISTRIBUTION_NOT_DONE;
-				} else if (countTrue > 0) {
-					distributionState = AppNotification.DISTRIBUTION_DONE;
-				} else {
-					throw new DeploymentServiceException("Reported distribution status is invalid.");
-				}
-			}
+	public void setTimings(DeploymentTimings timings) {
+		this.timings = timings;
+	}
+
+	/**
+	 * Gets the timings to record the phases of deployments in.
+	 *
+	 * @return the timings, null if nothing is recorded
+	 */
+	public DeploymentTimings getTimings() {
+		return timings;
+	}
+
+	/**
+	 * Sets the factory creating the connections. Connections leased from the
+	 * connection pool are created by the pool.
+	 *
+	 * @param connectionFactory
+	 *            the new connection factory
+	 */
+	public void setConnectionFactory(AdminConnectionFactory connectionFactory) {
+		this.connectionFactory = connectionFactory;
+	}
+
+	/**
+	 * Sets the statistics to record the remote calls of this service in.
+	 *
+	 * @param remoteCalls
+	 *            the new remote calls, null to record nothing
+	 */
+	public void setRemoteCalls(RemoteCallStatistics remoteCalls) {
+		this.remoteCalls = remoteCalls;
+	}
+
+	/**
+	 * Sets the scheduler admitting the operations that change the cell.
+	 *
+	 * @param scheduler
+	 *            the scheduler, null to not limit operations
+	 * @param owner
+	 *            the owner of the operations, e.g. the build
+	 */
+	public void setScheduler(DeploymentScheduler scheduler, String owner) {
+		this.scheduler = scheduler;
+		this.schedulerOwner = owner;
+	}
+
+	/**
+	 * Sets whether the nodes are synchronized right after an application was
+	 * installed or updated.
+	 *
+	 * @param syncNodes
+	 *            true, to synchronize the nodes
+	 */
+	public void setSyncNodes(boolean syncNodes) {
+		this.syncNodes = syncNodes;
+	}
+
+	/**
+	 * Records the time since a phase of a deployment started.
+	 *
+	 * @param appName
+	 *            the app name
+	 * @param phase
+	 *            the phase
+	 * @param start
+	 *            the start
+	 */
+	private void time(String appName, String phase, long start) {
+		if (timings != null) {
+			timings.recordSince(appName, phase, start);
 		}
-		return distributionState;
 	}
 
+	/**
+	 * The submission of an operation once it was admitted.
+	 */
+	private interface Admitted {
+
+		/**
+		 * Submits the operation.
+		 *
+		 * @param permit
+		 *            the permit to release when the operation ends, null if
+		 *            operations are not limited
+		 */
+		void run(DeploymentScheduler.Permit permit);
+	}
+
+	/**
+	 * An application management operation that ends with a notification.
+	 */
+	private abstract class Operation {
+
+		/** The task name of the notifications of the operation. */
+		private final String taskName;
+
+		/**
+		 * Instantiates a new operation.
+		 *
+		 * @param taskName
+		 *            the task name, e.g. <code>AppNotification.INSTALL</code>
+		 */
+		Operation(String taskName) {
+			this.taskName = taskName;
+		}
+
+		/**
+		 * Prepares the operation before it waits for admission.
+		 *
+		 * @throws Exception
+		 *             the exception
+		 */
+		void prepare() throws Exception {
+		}
+
+		/**
+		 * Submits the operation.
+		 *
+		 * @param appManagementProxy
+		 *            the app management proxy
+		 * @throws Exception
+		 *             the exception
+		 */
+		abstract void invoke(AppManagement appManagementProxy) throws Exception;
+
+		/**
+		 * Checks whether the operation has completed, for when its notification
+		 * cannot be told apart from the ones of other operations.
+		 *
+		 * @param appManagementProxy
+		 *            the app management proxy
+		 * @return true, if the operation has completed, null if it cannot be
+		 *         told
+		 * @throws Exception
+		 *             the exception
+		 */
+		Boolean isCompleted(AppManagement appManagementProxy) throws Exception {
+			return null;
+		}
+
+		/**
+		 * Gets the outcome check of the operation.
+		 *
+		 * @param appManagementProxy
+		 *            the app management proxy
+		 * @return the outcome check
+		 */
+		Callable<Boolean> getOutcomeCheck(final AppManagement appManagementProxy) {
+			return new Callable<Boolean>() {
+				public Boolean call() throws Exception {
+					return isCompleted(appManagementProxy);
+				}
+			};
+		}
+
+		/**
+		 * Called once the operation completed successfully.
+		 *
+		 * @param submitted
+		 *            the time the operation was submitted
+		 */
+		void completed(long submitted) {
+		}
+
+		/**
+		 * Synchronizes the nodes after the operation completed successfully,
+		 * if node synchronization is enabled.
+		 */
+		void synchronize() {
+		}
+	}
 }
@@ -0,0 +1,184 @@
+/*
+ *
+ */
+package org.jenkinsci.plugins.websphere_deployer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+
+import org.jenkinsci.plugins.websphere.services.deployment.Digests;
+
+import hudson.FilePath;
+import hudson.remoting.VirtualChannel;
+import jenkins.MasterToSlaveFileCallable;
+
+/**
+ * Finds the artifacts to deploy in a workspace and digests them where the
+ * workspace is, in the same pass. Only names, sizes and digests are sent back,
+ * so the content of an artifact never has to be read over the remoting
+ * channel.
+ */
+public class ArtifactDiscovery extends MasterToSlaveFileCallable<ArrayList<ArtifactDiscovery.DiscoveredArtifact>> {
+
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
+
+	/** The includes. */
+	private final String includes;
+
+	/**
+	 * Instantiates a new artifact discovery.
+	 *
+	 * @param includes
+	 *            the Ant style includes, relative to the workspace
+	 */
+	public ArtifactDiscovery(String includes) {
+		this.includes = includes;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see hudson.FilePath.FileCallable#invoke(java.io.File,
+	 * hudson.remoting.VirtualChannel)
+	 */
+	public ArrayList<DiscoveredArtifact> invoke(File workspace, VirtualChannel channel)
+			throws IOException, InterruptedException {
+		ArrayList<DiscoveredArtifact> artifacts = new ArrayList<DiscoveredArtifact>();
+		for (FilePath path : new FilePath(workspace).list(includes)) {
+			File file = new File(path.getRemote());
+			MessageDigest sha256 = Digests.newDigest();
+			MessageDigest md5 = Digests.newDigest("MD5");
+			long start = System.nanoTime();
+			long size = Digests.update(file, sha256, md5);
+			artifacts.add(new DiscoveredArtifact(file.getPath(), file.getName(), size, file.lastModified(),
+					Digests.toHex(sha256.digest()), Digests.toHex(md5.digest()), System.nanoTime() - start));
+		}
+		return artifacts;
+	}
+
+	/**
+	 * An artifact found in a workspace.
+	 */
+	public static final class DiscoveredArtifact implements Serializable {
+
+		/** The Constant serialVersionUID. */
+		private static final long serialVersionUID = 1L;
+
+		/** The path, on the machine owning the workspace. */
+		private final String path;
+
+		/** The name. */
+		private final String name;
+
+		/** The size. */
+		private final long size;
+
+		/** The last modified. */
+		private final long lastModified;
+
+		/** The SHA-256 digest. */
+		private final String digest;
+
+		/** The MD5 digest, as used by Jenkins fingerprints. */
+		private final String md5;
+
+		/** The time spent digesting, in nanoseconds. */
+		private final long digestNanos;
+
+		/**
+		 * Instantiates a new discovered artifact.
+		 *
+		 * @param path
+		 *            the path
+		 * @param name
+		 *            the name
+		 * @param size
+		 *            the size
+		 * @param lastModified
+		 *            the last modified
+		 * @param digest
+		 *            the SHA-256 digest
+		 * @param md5
+		 *            the MD5 digest
+		 * @param digestNanos
+		 *            the time spent digesting, in nanoseconds
+		 */
+		private DiscoveredArtifact(String path, String name, long size, long lastModified, String digest, String md5,
+				long digestNanos) {
+			this.path = path;
+			this.name = name;
+			this.size = size;
+			this.lastModified = lastModified;
+			this.digest = digest;
+			this.md5 = md5;
+			this.digestNanos = digestNanos;
+		}
+
+		/**
+		 * Gets the path, on the machine owning the workspace.
+		 *
+		 * @return the path
+		 */
+		public String getPath() {
+			return path;
+		}
+
+		/**
+		 * Gets the name.
+		 *
+		 * @return the name
+		 */
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * Gets the size.
+		 *
+		 * @return the size
+		 */
+		public long getSize() {
+			return size;
+		}
+
+		/**
+		 * Gets the last modified.
+		 *
+		 * @return the last modified
+		 */
+		public long getLastModified() {
+			return lastModified;
+		}
+
+		/**
+		 * Gets the SHA-256 digest.
+		 *
+		 * @return the digest
+		 */
+		public String getDigest() {
+			return digest;
+		}
+
+		/**
+		 * Gets the MD5 digest, as used by Jenkins fingerprints.
+		 *
+		 * @return the md5
+		 */
+		public String getMd5() {
+			return md5;
+		}
+
+		/**
+		 * Gets the time spent digesting.
+		 *
+		 * @return the time spent digesting, in nanoseconds
+		 */
+		public long getDigestNanos() {
+			return digestNanos;
+		}
+	}
+}
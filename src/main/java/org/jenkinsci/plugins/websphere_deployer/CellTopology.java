@@ -0,0 +1,226 @@
+/*
+ *
+ */
+package org.jenkinsci.plugins.websphere_deployer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.jenkinsci.plugins.websphere.services.deployment.Server;
+
+/**
+ * The servers and clusters of a WebSphere cell, indexed by cell, node and
+ * cluster, as loaded at one point in time.
+ */
+public class CellTopology {
+
+	/** The servers, sorted by target. */
+	private final List<Server> servers;
+
+	/** The targets of all servers and clusters, by target. */
+	private final Map<String, WebSphereTarget> targets = new TreeMap<String, WebSphereTarget>();
+
+	/** The servers by cell. */
+	private final Map<String, List<WebSphereTarget>> serversByCell = new TreeMap<String, List<WebSphereTarget>>();
+
+	/** The servers by cell and node, separated by a slash. */
+	private final Map<String, List<WebSphereTarget>> serversByNode = new TreeMap<String, List<WebSphereTarget>>();
+
+	/** The clusters by cell. */
+	private final Map<String, List<WebSphereTarget>> clustersByCell = new TreeMap<String, List<WebSphereTarget>>();
+
+	/** The time the topology was loaded. */
+	private final long loadedAt;
+
+	/**
+	 * Instantiates a new cell topology.
+	 *
+	 * @param servers
+	 *            the servers, see
+	 *            {@link org.jenkinsci.plugins.websphere.services.deployment.WebSphereDeploymentService#listServers()}
+	 * @param clusters
+	 *            the cluster targets, see
+	 *            {@link org.jenkinsci.plugins.websphere.services.deployment.WebSphereDeploymentService#listClusters()}
+	 * @param loadedAt
+	 *            the time the topology was loaded
+	 */
+	public CellTopology(List<Server> servers, List<String> clusters, long loadedAt) {
+		this.servers = Collections.unmodifiableList(new ArrayList<Server>(servers));
+		this.loadedAt = loadedAt;
+		for (Server server : servers) {
+			WebSphereTarget target = WebSphereTarget.parse(server.getTarget());
+			targets.put(target.getTarget(), target);
+			add(serversByCell, target.getCell(), target);
+			add(serversByNode, target.getCell() + "/" + target.getNode(), target);
+		}
+		for (String cluster : clusters) {
+			WebSphereTarget target = WebSphereTarget.parse(cluster);
+			targets.put(target.getTarget(), target);
+			add(clustersByCell, target.getCell(), target);
+		}
+	}
+
+	/**
+	 * Adds a target to an index.
+	 *
+	 * @param index
+	 *            the index
+	 * @param key
+	 *            the key
+	 * @param target
+	 *            the target
+	 */
+	private static void add(Map<String, List<WebSphereTarget>> index, String key, WebSphereTarget target) {
+		List<WebSphereTarget> targets = index.get(key);
+		if (targets == null) {
+			targets = new ArrayList<WebSphereTarget>();
+			index.put(key, targets);
+		}
+		targets.add(target);
+	}
+
+	/**
+	 * Gets the servers.
+	 *
+	 * @return the servers, sorted by target
+	 */
+	public List<Server> getServers() {
+		return servers;
+	}
+
+	/**
+	 * Gets the cells.
+	 *
+	 * @return the cells
+	 */
+	public List<String> getCells() {
+		List<String> cells = new ArrayList<String>(serversByCell.keySet());
+		for (String cell : clustersByCell.keySet()) {
+			if (!serversByCell.containsKey(cell)) {
+				cells.add(cell);
+			}
+		}
+		Collections.sort(cells);
+		return cells;
+	}
+
+	/**
+	 * Gets the servers of a cell.
+	 *
+	 * @param cell
+	 *            the cell
+	 * @return the servers
+	 */
+	public List<WebSphereTarget> getServers(String cell) {
+		return get(serversByCell, cell);
+	}
+
+	/**
+	 * Gets the servers of a node.
+	 *
+	 * @param cell
+	 *            the cell
+	 * @param node
+	 *            the node
+	 * @return the servers
+	 */
+	public List<WebSphereTarget> getServers(String cell, String node) {
+		return get(serversByNode, cell + "/" + node);
+	}
+
+	/**
+	 * Gets the clusters of a cell.
+	 *
+	 * @param cell
+	 *            the cell
+	 * @return the clusters
+	 */
+	public List<WebSphereTarget> getClusters(String cell) {
+		return get(clustersByCell, cell);
+	}
+
+	/**
+	 * Gets an indexed list.
+	 *
+	 * @param index
+	 *            the index
+	 * @param key
+	 *            the key
+	 * @return the list, empty if there is none
+	 */
+	private static List<WebSphereTarget> get(Map<String, List<WebSphereTarget>> index, String key) {
+		List<WebSphereTarget> targets = index.get(key);
+		return targets == null ? Collections.<WebSphereTarget> emptyList() : Collections.unmodifiableList(targets);
+	}
+
+	/**
+	 * Checks if a server or cluster is part of the topology.
+	 *
+	 * @param target
+	 *            the target
+	 * @return true, if the target is known
+	 */
+	public boolean contains(String target) {
+		return targets.containsKey(WebSphereTarget.parse(target).getTarget());
+	}
+
+	/**
+	 * Finds the servers and clusters whose target contains a text, ignoring
+	 * case.
+	 *
+	 * @param text
+	 *            the text
+	 * @param limit
+	 *            the maximum number of targets
+	 * @return the targets, sorted
+	 */
+	public List<String> find(String text, int limit) {
+		String query = text.trim().toLowerCase(Locale.ENGLISH);
+		List<String> found = new ArrayList<String>();
+		for (String target : targets.keySet()) {
+			if (found.size() >= limit) {
+				break;
+			}
+			if (target.toLowerCase(Locale.ENGLISH).contains(query)) {
+				found.add(target);
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Gets the number of servers and clusters.
+	 *
+	 * @return the size
+	 */
+	public int size() {
+		return targets.size();
+	}
+
+	/**
+	 * Gets the time the topology was loaded.
+	 *
+	 * @return the loaded at
+	 */
+	public long getLoadedAt() {
+		return loadedAt;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		int clusters = 0;
+		for (List<WebSphereTarget> cellClusters : clustersByCell.values()) {
+			clusters += cellClusters.size();
+		}
+		return servers.size() + " server(s) and " + clusters + " cluster(s) in cell(s) " + getCells();
+	}
+}
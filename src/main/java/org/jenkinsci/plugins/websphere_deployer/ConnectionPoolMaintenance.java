@@ -0,0 +1,44 @@
+/*
+ *
+ */
+package org.jenkinsci.plugins.websphere_deployer;
+
+import hudson.Extension;
+import hudson.model.PeriodicWork;
+import jenkins.model.Jenkins;
+
+/**
+ * Evicts idle WebSphere connections from the pool of the
+ * {@link WebSphereDeployerPlugin}, also when no deployment is running.
+ */
+@Extension
+public class ConnectionPoolMaintenance extends PeriodicWork {
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see hudson.model.PeriodicWork#getRecurrencePeriod()
+	 */
+	@Override
+	public long getRecurrencePeriod() {
+		return MIN;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see hudson.model.PeriodicWork#doRun()
+	 */
+	@Override
+	protected void doRun() throws Exception {
+		Jenkins jenkins = Jenkins.getInstance();
+		if (jenkins == null) {
+			return;
+		}
+		WebSphereDeployerPlugin.DescriptorImpl descriptor = jenkins
+				.getDescriptorByType(WebSphereDeployerPlugin.DescriptorImpl.class);
+		if (descriptor != null) {
+			descriptor.getConnectionPool().evictIdle();
+		}
+	}
+}
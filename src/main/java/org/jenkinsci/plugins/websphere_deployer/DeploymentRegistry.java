@@ -0,0 +1,357 @@
+/*
+ *
+ */
+package org.jenkinsci.plugins.websphere_deployer;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.jenkinsci.plugins.websphere.services.deployment.ArchiveManifest;
+import org.jenkinsci.plugins.websphere.services.deployment.Digests;
+
+/**
+ * Remembers which content is live for every application, per deployment
+ * manager and targets, as a fingerprint and as the manifest of the archive.
+ * An entry is only recorded after a deployment has completed successfully and
+ * is forgotten as soon as a new deployment of the same application begins, so
+ * an entry never describes a half-deployed application.
+ * <p>
+ * A registry can also be created from entries checked out of the registry of
+ * the controller, so deployments running on an agent can use it. Its changes
+ * are then kept in memory and checked in once the deployments are done.
+ */
+public class DeploymentRegistry {
+
+	/** The log. */
+	private static Logger log = Logger.getLogger(DeploymentRegistry.class.getName());
+
+	/** The file, null if the registry is kept in memory. */
+	private final File file;
+
+	/** The manifest directory. */
+	private final File manifestDirectory;
+
+	/** The entries, loaded on first use. */
+	private Properties entries;
+
+	/**
+	 * The fingerprints recorded (or null for forgotten applications) since
+	 * the registry was created, if it is kept in memory.
+	 */
+	private final HashMap<String, String> changes = new HashMap<String, String>();
+
+	/**
+	 * Instantiates a new deployment registry.
+	 *
+	 * @param file
+	 *            the file
+	 */
+	public DeploymentRegistry(File file) {
+		this.file = file;
+		this.manifestDirectory = new File(file.getParentFile(), "manifests");
+	}
+
+	/**
+	 * Instantiates a new deployment registry kept in memory.
+	 *
+	 * @param entries
+	 *            the entries, see {@link #checkout(String)}
+	 * @param manifestDirectory
+	 *            the manifest directory
+	 */
+	public DeploymentRegistry(Properties entries, File manifestDirectory) {
+		this.file = null;
+		this.manifestDirectory = manifestDirectory;
+		this.entries = new Properties();
+		this.entries.putAll(entries);
+	}
+
+	/**
+	 * Gets the key of an application. Keys of applications deployed to the
+	 * same targets start with the same {@link #targetKey(String, String, String)
+	 * target key}.
+	 *
+	 * @param host
+	 *            the host of the deployment manager
+	 * @param port
+	 *            the port of the deployment manager
+	 * @param targets
+	 *            the targets
+	 * @param appName
+	 *            the app name
+	 * @return the key
+	 */
+	public static String key(String host, String port, String targets, String appName) {
+		return targetKey(host, port, targets) + "-" + Digests.digest(appName);
+	}
+
+	/**
+	 * Gets the key of the targets of a deployment manager.
+	 *
+	 * @param host
+	 *            the host of the deployment manager
+	 * @param port
+	 *            the port of the deployment manager
+	 * @param targets
+	 *            the targets
+	 * @return the target key
+	 */
+	public static String targetKey(String host, String port, String targets) {
+		return Digests.digest(host, port, targets);
+	}
+
+	/**
+	 * Gets the fingerprint of the live content of an application.
+	 *
+	 * @param key
+	 *            the key
+	 * @return the fingerprint, null if unknown
+	 */
+	public synchronized String get(String key) {
+		return getEntries().getProperty(key);
+	}
+
+	/**
+	 * Records the fingerprint of a successfully deployed application.
+	 *
+	 * @param key
+	 *            the key
+	 * @param fingerprint
+	 *            the fingerprint
+	 * @param manifest
+	 *            the manifest of the deployed archive, null if not needed
+	 * @throws IOException
+	 *             if the registry cannot be saved, the application is not
+	 *             recorded then
+	 */
+	public synchronized void record(String key, String fingerprint, ArchiveManifest manifest) throws IOException {
+		if (manifest != null) {
+			storeManifest(key, fingerprint, manifest);
+		}
+		getEntries().setProperty(key, fingerprint);
+		try {
+			changed(key, fingerprint);
+		} catch (IOException e) {
+			getEntries().remove(key);
+			throw e;
+		}
+	}
+
+	/**
+	 * Forgets an application, before it is deployed again.
+	 *
+	 * @param key
+	 *            the key
+	 * @throws IOException
+	 *             if the registry cannot be saved, the saved registry may
+	 *             still describe the application then
+	 */
+	public synchronized void forget(String key) throws IOException {
+		if (getEntries().remove(key) != null) {
+			changed(key, null);
+		}
+	}
+
+	/**
+	 * Gets the manifest of the live content of an application. Manifests are
+	 * stored by fingerprint, so a manifest is only found if it describes the
+	 * content recorded in this registry.
+	 *
+	 * @param key
+	 *            the key
+	 * @return the manifest, null if unknown
+	 */
+	public synchronized ArchiveManifest getManifest(String key) {
+		String fingerprint = get(key);
+		if (fingerprint == null) {
+			return null;
+		}
+		File manifestFile = getManifestFile(key, fingerprint);
+		try {
+			return ArchiveManifest.load(manifestFile);
+		} catch (IOException e) {
+			log.log(Level.WARNING, "Failed to read " + manifestFile.getAbsolutePath(), e);
+			return null;
+		}
+	}
+
+	/**
+	 * Checks out the entries of all applications deployed to the same
+	 * targets. They are forgotten until they are checked in again, so they
+	 * stay forgotten if the deployments using them never complete.
+	 *
+	 * @param targetKey
+	 *            the target key
+	 * @return the entries
+	 * @throws IOException
+	 *             if the registry cannot be saved, nothing is checked out then
+	 */
+	public synchronized Properties checkout(String targetKey) throws IOException {
+		Properties checkedOut = new Properties();
+		for (String key : getEntries().stringPropertyNames()) {
+			if (key.startsWith(targetKey + "-")) {
+				checkedOut.setProperty(key, (String) getEntries().remove(key));
+			}
+		}
+		if (!checkedOut.isEmpty()) {
+			try {
+				save();
+			} catch (IOException e) {
+				getEntries().putAll(checkedOut);
+				throw e;
+			}
+		}
+		return checkedOut;
+	}
+
+	/**
+	 * Checks in entries checked out before, together with the changes of the
+	 * deployments that used them. Entries recorded by other deployments in
+	 * the meantime are kept.
+	 *
+	 * @param checkedOut
+	 *            the checked out entries
+	 * @param changes
+	 *            the changes, see {@link #getChanges()}
+	 * @throws IOException
+	 *             if the registry cannot be saved
+	 */
+	public synchronized void checkin(Properties checkedOut, Map<String, String> changes) throws IOException {
+		for (String key : checkedOut.stringPropertyNames()) {
+			if (!changes.containsKey(key) && !getEntries().containsKey(key)) {
+				getEntries().setProperty(key, checkedOut.getProperty(key));
+			}
+		}
+		for (Map.Entry<String, String> change : changes.entrySet()) {
+			if (change.getValue() == null) {
+				getEntries().remove(change.getKey());
+			} else {
+				getEntries().setProperty(change.getKey(), change.getValue());
+			}
+		}
+		save();
+	}
+
+	/**
+	 * Gets the changes of a registry kept in memory.
+	 *
+	 * @return the fingerprints recorded, null for forgotten applications
+	 */
+	public synchronized HashMap<String, String> getChanges() {
+		return new HashMap<String, String>(changes);
+	}
+
+	/**
+	 * Saves a change.
+	 *
+	 * @param key
+	 *            the key
+	 * @param fingerprint
+	 *            the fingerprint, null if forgotten
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private void changed(String key, String fingerprint) throws IOException {
+		if (file == null) {
+			changes.put(key, fingerprint);
+		} else {
+			save();
+		}
+	}
+
+	/**
+	 * Stores the manifest of an application, replacing the manifests of its
+	 * previous versions.
+	 *
+	 * @param key
+	 *            the key
+	 * @param fingerprint
+	 *            the fingerprint
+	 * @param manifest
+	 *            the manifest
+	 */
+	private void storeManifest(String key, String fingerprint, ArchiveManifest manifest) {
+		File manifestFile = getManifestFile(key, fingerprint);
+		File parent = manifestFile.getParentFile();
+		if (!parent.isDirectory() && !parent.mkdirs()) {
+			log.warning("Failed to create " + parent.getAbsolutePath());
+			return;
+		}
+		File[] previous = parent.listFiles();
+		for (File other : previous == null ? new File[0] : previous) {
+			if (!other.equals(manifestFile) && !other.delete()) {
+				log.warning("Failed to delete " + other.getAbsolutePath());
+			}
+		}
+		try {
+			manifest.store(manifestFile);
+		} catch (IOException e) {
+			log.log(Level.WARNING, "Failed to save " + manifestFile.getAbsolutePath(), e);
+			manifestFile.delete();
+		}
+	}
+
+	/**
+	 * Gets the manifest file of a version of an application.
+	 *
+	 * @param key
+	 *            the key
+	 * @param fingerprint
+	 *            the fingerprint
+	 * @return the manifest file
+	 */
+	private File getManifestFile(String key, String fingerprint) {
+		return new File(new File(manifestDirectory, key), fingerprint + ".properties");
+	}
+
+	/**
+	 * Gets the entries.
+	 *
+	 * @return the entries
+	 */
+	private Properties getEntries() {
+		if (entries == null) {
+			entries = new Properties();
+			if (file != null && file.isFile()) {
+				try (InputStream in = new FileInputStream(file)) {
+					entries.load(in);
+				} catch (IOException e) {
+					log.log(Level.WARNING, "Failed to read " + file.getAbsolutePath(), e);
+				}
+			}
+		}
+		return entries;
+	}
+
+	/**
+	 * Save.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private void save() throws IOException {
+		if (file == null) {
+			return;
+		}
+		File parent = file.getParentFile();
+		if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+			throw new IOException("Cannot create directory " + parent.getAbsolutePath());
+		}
+		File temp = new File(parent, file.getName() + ".tmp");
+		try (OutputStream out = new FileOutputStream(temp)) {
+			entries.store(out, "Fingerprints of the applications deployed by the WebSphere Deployer Plugin");
+		}
+		if (file.exists() && !file.delete() || !temp.renameTo(file)) {
+			throw new IOException("Failed to save " + file.getAbsolutePath());
+		}
+	}
+}
@@ -0,0 +1,86 @@
+/*
+ *
+ */
+package org.jenkinsci.plugins.websphere_deployer;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.jenkinsci.plugins.websphere.services.deployment.DeploymentScheduler;
+
+import hudson.Extension;
+import hudson.model.ManagementLink;
+import jenkins.model.Jenkins;
+
+/**
+ * Shows the operations the deployments of the controller are running and
+ * queueing per cell, and how long they had to wait, on the Manage Jenkins
+ * page.
+ */
+@Extension
+public class DeploymentSchedulerLink extends ManagementLink {
+
+	/**
+	 * Gets the scheduler of the controller.
+	 *
+	 * @return the scheduler, null if Jenkins is not running
+	 */
+	public DeploymentScheduler getScheduler() {
+		Jenkins jenkins = Jenkins.getInstance();
+		if (jenkins == null) {
+			return null;
+		}
+		WebSphereDeployerPlugin.DescriptorImpl descriptor = jenkins
+				.getDescriptorByType(WebSphereDeployerPlugin.DescriptorImpl.class);
+		return descriptor != null ? descriptor.getScheduler() : null;
+	}
+
+	/**
+	 * Gets the state of every cell.
+	 *
+	 * @return the cells
+	 */
+	public List<DeploymentScheduler.CellStatus> getCells() {
+		DeploymentScheduler scheduler = getScheduler();
+		return scheduler != null ? scheduler.getCells() : Collections.<DeploymentScheduler.CellStatus> emptyList();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see hudson.model.ManagementLink#getIconFileName()
+	 */
+	@Override
+	public String getIconFileName() {
+		return "network.png";
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see hudson.model.ModelObject#getDisplayName()
+	 */
+	public String getDisplayName() {
+		return "WebSphere Deployments";
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see hudson.model.ManagementLink#getDescription()
+	 */
+	@Override
+	public String getDescription() {
+		return "Operations running and queued per WebSphere cell";
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see hudson.model.ManagementLink#getUrlName()
+	 */
+	@Override
+	public String getUrlName() {
+		return "websphere-deployments";
+	}
+}
@@ -0,0 +1,169 @@
+/*
+ *
+ */
+package org.jenkinsci.plugins.websphere_deployer;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.jenkinsci.plugins.websphere.services.deployment.AdminClientPool;
+import org.jenkinsci.plugins.websphere.services.deployment.DeploymentScheduler;
+import org.jenkinsci.plugins.websphere.services.deployment.EarCache;
+
+/**
+ * The connection pool, scheduler, caches and repositories a deployment works
+ * with. On the controller these are shared by all builds, on an agent the
+ * caches and repositories are kept in the root directory of the agent and
+ * shared by all builds running on it. Deployments from an agent are admitted
+ * by the scheduler of the controller before they start, so agents have none.
+ */
+public class DeploymentStores {
+
+	/** The EAR caches of the agent, by directory. */
+	private static final Map<File, EarCache> EAR_CACHES = new HashMap<File, EarCache>();
+
+	/** The rollback repositories of the agent, by directory. */
+	private static final Map<File, RollbackRepository> ROLLBACK_REPOSITORIES = new HashMap<File, RollbackRepository>();
+
+	/** The connection pool, null if connections are not pooled. */
+	private final AdminClientPool connectionPool;
+
+	/** The scheduler, null if operations are not limited. */
+	private final DeploymentScheduler scheduler;
+
+	/** The EAR cache. */
+	private final EarCache earCache;
+
+	/** The deployment registry. */
+	private final DeploymentRegistry deploymentRegistry;
+
+	/** The rollback repository. */
+	private final RollbackRepository rollbackRepository;
+
+	/**
+	 * Instantiates new deployment stores.
+	 *
+	 * @param connectionPool
+	 *            the connection pool, null if connections are not pooled
+	 * @param scheduler
+	 *            the scheduler, null if operations are not limited
+	 * @param earCache
+	 *            the EAR cache
+	 * @param deploymentRegistry
+	 *            the deployment registry
+	 * @param rollbackRepository
+	 *            the rollback repository
+	 */
+	public DeploymentStores(AdminClientPool connectionPool, DeploymentScheduler scheduler, EarCache earCache,
+			DeploymentRegistry deploymentRegistry, RollbackRepository rollbackRepository) {
+		this.connectionPool = connectionPool;
+		this.scheduler = scheduler;
+		this.earCache = earCache;
+		this.deploymentRegistry = deploymentRegistry;
+		this.rollbackRepository = rollbackRepository;
+	}
+
+	/**
+	 * Gets the stores of an agent. Connections are not pooled on agents, as
+	 * there is no maintenance closing idle connections, and operations are
+	 * not limited, as the controller admitted the deployment as a whole.
+	 *
+	 * @param rootDirectory
+	 *            the root directory of the agent
+	 * @param deploymentRegistry
+	 *            the deployment registry
+	 * @return the deployment stores
+	 */
+	public static DeploymentStores forAgent(File rootDirectory, DeploymentRegistry deploymentRegistry) {
+		File directory = new File(rootDirectory, "websphere-deployer");
+		return new DeploymentStores(null, null, getEarCache(new File(directory, "ear-cache")), deploymentRegistry,
+				getRollbackRepository(new File(directory, "rollbacks")));
+	}
+
+	/**
+	 * Gets the EAR cache of an agent.
+	 *
+	 * @param directory
+	 *            the directory
+	 * @return the EAR cache
+	 */
+	private static EarCache getEarCache(File directory) {
+		synchronized (EAR_CACHES) {
+			EarCache earCache = EAR_CACHES.get(directory);
+			if (earCache == null) {
+				earCache = new EarCache(directory,
+						Long.getLong(EarCache.class.getName() + ".maxSize", EarCache.DEFAULT_MAX_SIZE));
+				EAR_CACHES.put(directory, earCache);
+			}
+			return earCache;
+		}
+	}
+
+	/**
+	 * Gets the rollback repository of an agent.
+	 *
+	 * @param directory
+	 *            the directory
+	 * @return the rollback repository
+	 */
+	private static RollbackRepository getRollbackRepository(File directory) {
+		synchronized (ROLLBACK_REPOSITORIES) {
+			RollbackRepository rollbackRepository = ROLLBACK_REPOSITORIES.get(directory);
+			if (rollbackRepository == null) {
+				rollbackRepository = new RollbackRepository(directory,
+						Integer.getInteger(RollbackRepository.class.getName() + ".maxVersions",
+								RollbackRepository.DEFAULT_MAX_VERSIONS),
+						Long.getLong(RollbackRepository.class.getName() + ".maxSize",
+								RollbackRepository.DEFAULT_MAX_SIZE));
+				ROLLBACK_REPOSITORIES.put(directory, rollbackRepository);
+			}
+			return rollbackRepository;
+		}
+	}
+
+	/**
+	 * Gets the connection pool.
+	 *
+	 * @return the connection pool, null if connections are not pooled
+	 */
+	public AdminClientPool getConnectionPool() {
+		return connectionPool;
+	}
+
+	/**
+	 * Gets the scheduler.
+	 *
+	 * @return the scheduler, null if operations are not limited
+	 */
+	public DeploymentScheduler getScheduler() {
+		return scheduler;
+	}
+
+	/**
+	 * Gets the EAR cache.
+	 *
+	 * @return the EAR cache
+	 */
+	public EarCache getEarCache() {
+		return earCache;
+	}
+
+	/**
+	 * Gets the deployment registry.
+	 *
+	 * @return the deployment registry
+	 */
+	public DeploymentRegistry getDeploymentRegistry() {
+		return deploymentRegistry;
+	}
+
+	/**
+	 * Gets the rollback repository.
+	 *
+	 * @return the rollback repository
+	 */
+	public RollbackRepository getRollbackRepository() {
+		return rollbackRepository;
+	}
+}
@@ -0,0 +1,169 @@
+/*
+ *
+ */
+package org.jenkinsci.plugins.websphere_deployer;
+
+import java.util.List;
+import java.util.Map;
+
+import org.jenkinsci.plugins.websphere.services.deployment.DeploymentTimings;
+
+import hudson.model.Run;
+import jenkins.model.RunAction2;
+
+/**
+ * The time a build spent in every phase of its deployment, shown on the build
+ * page and collected for the trend on the project page.
+ */
+public class DeploymentTimingAction implements RunAction2 {
+
+	/** The timings. */
+	private final DeploymentTimings timings;
+
+	/** The build. */
+	private transient Run<?, ?> build;
+
+	/**
+	 * Instantiates a new deployment timing action.
+	 *
+	 * @param timings
+	 *            the timings
+	 */
+	public DeploymentTimingAction(DeploymentTimings timings) {
+		this.timings = timings;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see jenkins.model.RunAction2#onAttached(hudson.model.Run)
+	 */
+	public void onAttached(Run<?, ?> build) {
+		this.build = build;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see jenkins.model.RunAction2#onLoad(hudson.model.Run)
+	 */
+	public void onLoad(Run<?, ?> build) {
+		this.build = build;
+	}
+
+	/**
+	 * Gets the build.
+	 *
+	 * @return the build
+	 */
+	public Run<?, ?> getBuild() {
+		return build;
+	}
+
+	/**
+	 * Gets the timings.
+	 *
+	 * @return the timings
+	 */
+	public DeploymentTimings getTimings() {
+		return timings;
+	}
+
+	/**
+	 * Gets the phases, in the order they happen.
+	 *
+	 * @return the phases
+	 */
+	public List<String> getPhases() {
+		return DeploymentTimings.PHASES;
+	}
+
+	/**
+	 * Gets the artifacts.
+	 *
+	 * @return the artifacts
+	 */
+	public List<String> getArtifacts() {
+		return timings.getArtifacts();
+	}
+
+	/**
+	 * Gets the milliseconds by phase of an artifact.
+	 *
+	 * @param artifact
+	 *            the artifact
+	 * @return the phases
+	 */
+	public Map<String, Long> getPhases(String artifact) {
+		return timings.getPhases(artifact);
+	}
+
+	/**
+	 * Gets the milliseconds by target of an artifact.
+	 *
+	 * @param artifact
+	 *            the artifact
+	 * @return the targets
+	 */
+	public Map<String, Long> getTargets(String artifact) {
+		return timings.getTargets(artifact);
+	}
+
+	/**
+	 * Gets the milliseconds by synchronized node of an artifact.
+	 *
+	 * @param artifact
+	 *            the artifact
+	 * @return the nodes
+	 */
+	public Map<String, Long> getSyncs(String artifact) {
+		return timings.getSyncs(artifact);
+	}
+
+	/**
+	 * Gets the milliseconds of a phase, added up for all artifacts.
+	 *
+	 * @param phase
+	 *            the phase
+	 * @return the milliseconds
+	 */
+	public long getTotal(String phase) {
+		return timings.getTotal(phase);
+	}
+
+	/**
+	 * Gets the milliseconds of all phases.
+	 *
+	 * @return the milliseconds
+	 */
+	public long getTotal() {
+		return timings.getTotal();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see hudson.model.Action#getIconFileName()
+	 */
+	public String getIconFileName() {
+		return "clock.png";
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see hudson.model.ModelObject#getDisplayName()
+	 */
+	public String getDisplayName() {
+		return "Deployment Timings";
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see hudson.model.Action#getUrlName()
+	 */
+	public String getUrlName() {
+		return "deploymentTimings";
+	}
+}
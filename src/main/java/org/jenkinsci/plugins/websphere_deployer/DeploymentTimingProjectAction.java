@@ -0,0 +1,147 @@
+/*
+ *
+ */
+package org.jenkinsci.plugins.websphere_deployer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.jenkinsci.plugins.websphere.services.deployment.DeploymentTimings;
+
+import hudson.model.AbstractBuild;
+import hudson.model.AbstractProject;
+import hudson.model.Action;
+
+/**
+ * The trend of the deployment phases of the last builds of a project, shown
+ * as stacked bars on the project page.
+ */
+public class DeploymentTimingProjectAction implements Action {
+
+	/** The Constant MAX_BUILDS. */
+	public static final int MAX_BUILDS = 20;
+
+	/** The Constant COLORS, one per phase. */
+	private static final String[] COLORS = { "#4e79a7", "#f28e2b", "#e15759", "#76b7b2", "#59a14f", "#edc948",
+			"#b07aa1", "#ff9da7", "#9c755f", "#bab0ac", "#86bcb6", "#d37295" };
+
+	/** The project. */
+	private final AbstractProject<?, ?> project;
+
+	/**
+	 * Instantiates a new deployment timing project action.
+	 *
+	 * @param project
+	 *            the project
+	 */
+	public DeploymentTimingProjectAction(AbstractProject<?, ?> project) {
+		this.project = project;
+	}
+
+	/**
+	 * Gets the project.
+	 *
+	 * @return the project
+	 */
+	public AbstractProject<?, ?> getProject() {
+		return project;
+	}
+
+	/**
+	 * Gets the timings of the last builds that deployed, oldest first.
+	 *
+	 * @return the timing actions
+	 */
+	public List<DeploymentTimingAction> getBuilds() {
+		List<DeploymentTimingAction> builds = new ArrayList<DeploymentTimingAction>();
+		int checked = 0;
+		for (AbstractBuild<?, ?> build = project.getLastBuild(); build != null
+				&& checked < MAX_BUILDS; build = build.getPreviousBuild()) {
+			DeploymentTimingAction action = build.getAction(DeploymentTimingAction.class);
+			if (action != null) {
+				builds.add(action);
+			}
+			checked++;
+		}
+		Collections.reverse(builds);
+		return builds;
+	}
+
+	/**
+	 * Gets the phases, in the order they happen.
+	 *
+	 * @return the phases
+	 */
+	public List<String> getPhases() {
+		return DeploymentTimings.PHASES;
+	}
+
+	/**
+	 * Gets the color of a phase.
+	 *
+	 * @param phase
+	 *            the phase
+	 * @return the color
+	 */
+	public String getColor(String phase) {
+		return COLORS[DeploymentTimings.PHASES.indexOf(phase) % COLORS.length];
+	}
+
+	/**
+	 * Gets the longest deployment of the trend, the bars are scaled to.
+	 *
+	 * @return the milliseconds
+	 */
+	public long getMaxTotal() {
+		long max = 1;
+		for (DeploymentTimingAction build : getBuilds()) {
+			max = Math.max(max, build.getTotal());
+		}
+		return max;
+	}
+
+	/**
+	 * Gets the height of a phase in the bar of a build.
+	 *
+	 * @param build
+	 *            the build
+	 * @param phase
+	 *            the phase
+	 * @param maxTotal
+	 *            the longest deployment of the trend
+	 * @param height
+	 *            the height of the longest bar in pixels
+	 * @return the height in pixels
+	 */
+	public long getHeight(DeploymentTimingAction build, String phase, long maxTotal, int height) {
+		return build.getTotal(phase) * height / Math.max(maxTotal, 1);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see hudson.model.Action#getIconFileName()
+	 */
+	public String getIconFileName() {
+		return null;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see hudson.model.ModelObject#getDisplayName()
+	 */
+	public String getDisplayName() {
+		return "Deployment Timing Trend";
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see hudson.model.Action#getUrlName()
+	 */
+	public String getUrlName() {
+		return "deploymentTimingTrend";
+	}
+}
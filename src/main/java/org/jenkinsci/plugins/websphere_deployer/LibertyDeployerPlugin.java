@@ -7,11 +7,13 @@ import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.io.Serializable;
 
 import javax.servlet.ServletException;
 
 import org.jenkinsci.plugins.websphere.services.deployment.Artifact;
 import org.jenkinsci.plugins.websphere.services.deployment.LibertyDeploymentService;
+import org.jenkinsci.plugins.websphere.services.deployment.RemoteCallStatistics;
 import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.QueryParameter;
 import org.kohsuke.stapler.StaplerRequest;
@@ -23,12 +25,14 @@ import hudson.model.AbstractBuild;
 import hudson.model.AbstractProject;
 import hudson.model.BuildListener;
 import hudson.model.Result;
+import hudson.remoting.VirtualChannel;
 import hudson.tasks.BuildStepDescriptor;
 import hudson.tasks.BuildStepMonitor;
 import hudson.tasks.Notifier;
 import hudson.tasks.Publisher;
 import hudson.util.FormValidation;
 import hudson.util.Scrambler;
+import jenkins.MasterToSlaveFileCallable;
 import net.sf.json.JSONObject;
 
 /**
@@ -37,7 +41,10 @@ import net.sf.json.JSONObject;
  *
  * @author Greg Peters
  */
-public class LibertyDeployerPlugin extends Notifier {
+public class LibertyDeployerPlugin extends Notifier implements Serializable {
+
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
 
 	/** The ip address. */
 	private final String ipAddress;
@@ -60,6 +67,9 @@ public class LibertyDeployerPlugin extends Notifier {
 	/** The artifacts. */
 	private final String artifacts;
 
+	/** The deploy on agent. */
+	private final boolean deployOnAgent;
+
 	/**
 	 * Instantiates a new liberty deployer plugin.
 	 *
@@ -77,10 +87,12 @@ public class LibertyDeployerPlugin extends Notifier {
 	 *            the client trust password
 	 * @param artifacts
 	 *            the artifacts
+	 * @param deployOnAgent
+	 *            the deploy on agent
 	 */
 	@DataBoundConstructor
 	public LibertyDeployerPlugin(String ipAddress, String port, String username, String consolePassword,
-			String clientTrustFile, String clientTrustPassword, String artifacts) {
+			String clientTrustFile, String clientTrustPassword, String artifacts, boolean deployOnAgent) {
 		this.ipAddress = ipAddress;
 		this.port = port;
 		this.username = username;
@@ -88,6 +100,7 @@ public class LibertyDeployerPlugin extends Notifier {
 		this.clientTrustFile = clientTrustFile;
 		this.clientTrustPassword = Scrambler.scramble(clientTrustPassword);
 		this.artifacts = artifacts;
+		this.deployOnAgent = deployOnAgent;
 	}
 
 	/**
@@ -153,6 +166,15 @@ public class LibertyDeployerPlugin extends Notifier {
 		return artifacts;
 	}
 
+	/**
+	 * Checks if is deploy on agent.
+	 *
+	 * @return true, if is deploy on agent
+	 */
+	public boolean isDeployOnAgent() {
+		return deployOnAgent;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -163,36 +185,76 @@ public class LibertyDeployerPlugin extends Notifier {
 	public boolean perform(AbstractBuild<?, ?> build, Launcher launcher, BuildListener listener) {
 
 		if (build.getResult().equals(Result.SUCCESS)) {
-			LibertyDeploymentService service = new LibertyDeploymentService();
+			FilePath workspace = build.getWorkspace().getParent();
+			RemoteCallStatistics remoteCalls = new RemoteCallStatistics();
+			boolean successful;
 			try {
-				connect(listener, service);
-				for (FilePath path : gatherArtifactPaths(build, listener)) {
-					Artifact artifact = createArtifact(path);
-					stopArtifact(artifact.getAppName(), listener, service);
-					uninstallArtifact(artifact.getAppName(), listener, service);
-					deployArtifact(artifact, listener, service);
-					Thread.sleep(2000); // wait 2 seconds for deployment to
-										// settle
-					startArtifact(artifact.getAppName(), listener, service);
+				if (deployOnAgent && workspace.isRemote()) {
+					listener.getLogger().println("Deploying from agent '" + build.getBuiltOn().getDisplayName() + "'...");
+					AgentDeploymentResult result = workspace.act(new AgentDeployment(this, listener));
+					remoteCalls.merge(result.getRemoteCalls());
+					successful = result.isSuccessful();
+				} else {
+					successful = deploy(workspace, listener, remoteCalls);
 				}
 			} catch (Exception e) {
-				ByteArrayOutputStream out = new ByteArrayOutputStream();
-				PrintStream p = new PrintStream(out);
-				e.printStackTrace(p);
-				listener.getLogger()
-						.println("Error deploying to IBM WebSphere Liberty Profile: " + new String(out.toByteArray()));
+				listener.getLogger().println("Error deploying to IBM WebSphere Liberty Profile: " + e.getMessage());
+				successful = false;
+			}
+			build.addAction(new RemoteCallAction(remoteCalls));
+			if (!successful) {
 				build.setResult(Result.FAILURE);
-			} finally {
-				try {
-					disconnect(listener, service);
-				} catch (Exception e) {
-					e.printStackTrace();
-				}
 			}
 		}
 		return true;
 	}
 
+	/**
+	 * Deploys the artifacts found in a workspace. This runs on the controller
+	 * or, when deploying on the agent, on the agent owning the workspace.
+	 *
+	 * @param workspace
+	 *            the workspace
+	 * @param listener
+	 *            the listener
+	 * @param remoteCalls
+	 *            the statistics to record the remote calls in
+	 * @return true, if all artifacts were deployed
+	 */
+	private boolean deploy(FilePath workspace, BuildListener listener, RemoteCallStatistics remoteCalls) {
+		LibertyDeploymentService service = new LibertyDeploymentService();
+		service.setRemoteCalls(remoteCalls);
+		try {
+			connect(listener, service);
+			for (FilePath path : gatherArtifactPaths(workspace, listener)) {
+				Artifact artifact = createArtifact(path);
+				stopArtifact(artifact.getAppName(), listener, service);
+				uninstallArtifact(artifact.getAppName(), listener, service);
+				deployArtifact(artifact, listener, service);
+				Thread.sleep(2000); // wait 2 seconds for deployment to
+									// settle
+				startArtifact(artifact.getAppName(), listener, service);
+			}
+			return true;
+		} catch (Exception e) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			PrintStream p = new PrintStream(out);
+			e.printStackTrace(p);
+			listener.getLogger()
+					.println("Error deploying to IBM WebSphere Liberty Profile: " + new String(out.toByteArray()));
+			return false;
+		} finally {
+			try {
+				disconnect(listener, service);
+			} catch (Exception e) {
+				e.printStackTrace();
+			}
+			for (String line : remoteCalls.getSummary()) {
+				listener.getLogger().println(line);
+			}
+		}
+	}
+
 	/**
 	 * Creates the artifact.
 	 *
@@ -331,19 +393,19 @@ public class LibertyDeployerPlugin extends Notifier {
 	/**
 	 * Gather artifact paths.
 	 *
-	 * @param build
-	 *            the build
+	 * @param workspace
+	 *            the workspace
 	 * @param listener
 	 *            the listener
 	 * @return the file path[]
 	 * @throws Exception
 	 *             the exception
 	 */
-	private FilePath[] gatherArtifactPaths(AbstractBuild<?, ?> build, BuildListener listener) throws Exception {
-		FilePath[] paths = build.getWorkspace().getParent().list(getArtifacts());
+	private FilePath[] gatherArtifactPaths(FilePath workspace, BuildListener listener) throws Exception {
+		FilePath[] paths = workspace.list(getArtifacts());
 		if (paths.length == 0) {
-			listener.getLogger().println("No deployable artifacts found in path: " + build.getWorkspace().getParent()
-					+ File.separator + getArtifacts());
+			listener.getLogger().println(
+					"No deployable artifacts found in path: " + workspace + File.separator + getArtifacts());
 			throw new Exception("No deployable artifacts found!");
 		} else {
 			listener.getLogger().println("The following artifacts will be deployed in this order...");
@@ -356,6 +418,92 @@ public class LibertyDeployerPlugin extends Notifier {
 		return paths;
 	}
 
+	/**
+	 * The deployment of all artifacts on the agent owning the workspace.
+	 */
+	private static final class AgentDeployment extends MasterToSlaveFileCallable<AgentDeploymentResult> {
+
+		/** The Constant serialVersionUID. */
+		private static final long serialVersionUID = 1L;
+
+		/** The plugin. */
+		private final LibertyDeployerPlugin plugin;
+
+		/** The listener. */
+		private final BuildListener listener;
+
+		/**
+		 * Instantiates a new agent deployment.
+		 *
+		 * @param plugin
+		 *            the plugin
+		 * @param listener
+		 *            the listener
+		 */
+		private AgentDeployment(LibertyDeployerPlugin plugin, BuildListener listener) {
+			this.plugin = plugin;
+			this.listener = listener;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see hudson.FilePath.FileCallable#invoke(java.io.File,
+		 * hudson.remoting.VirtualChannel)
+		 */
+		public AgentDeploymentResult invoke(File workspace, VirtualChannel channel) {
+			RemoteCallStatistics remoteCalls = new RemoteCallStatistics();
+			boolean successful = plugin.deploy(new FilePath(workspace), listener, remoteCalls);
+			return new AgentDeploymentResult(successful, remoteCalls);
+		}
+	}
+
+	/**
+	 * The result of a deployment on an agent.
+	 */
+	private static final class AgentDeploymentResult implements Serializable {
+
+		/** The Constant serialVersionUID. */
+		private static final long serialVersionUID = 1L;
+
+		/** The successful. */
+		private final boolean successful;
+
+		/** The remote calls. */
+		private final RemoteCallStatistics remoteCalls;
+
+		/**
+		 * Instantiates a new agent deployment result.
+		 *
+		 * @param successful
+		 *            the successful
+		 * @param remoteCalls
+		 *            the remote calls
+		 */
+		private AgentDeploymentResult(boolean successful, RemoteCallStatistics remoteCalls) {
+			this.successful = successful;
+			this.remoteCalls = remoteCalls;
+		}
+
+		/**
+		 * Checks if is successful.
+		 *
+		 * @return true, if all artifacts were deployed
+		 */
+		public boolean isSuccessful() {
+			return successful;
+		}
+
+		/**
+		 * Gets the remote calls made on the agent.
+		 *
+		 * @return the remote calls
+		 */
+		public RemoteCallStatistics getRemoteCalls() {
+			return remoteCalls;
+		}
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -0,0 +1,126 @@
+/*
+ *
+ */
+package org.jenkinsci.plugins.websphere_deployer;
+
+import java.util.List;
+
+import org.jenkinsci.plugins.websphere.services.deployment.RemoteCallStatistics;
+
+import hudson.model.Run;
+import jenkins.model.RunAction2;
+
+/**
+ * The calls a build made to the deployment manager or server, by method, and
+ * the slowest of them.
+ */
+public class RemoteCallAction implements RunAction2 {
+
+	/** The remote calls. */
+	private final RemoteCallStatistics remoteCalls;
+
+	/** The build. */
+	private transient Run<?, ?> build;
+
+	/**
+	 * Instantiates a new remote call action.
+	 *
+	 * @param remoteCalls
+	 *            the remote calls
+	 */
+	public RemoteCallAction(RemoteCallStatistics remoteCalls) {
+		this.remoteCalls = remoteCalls;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see jenkins.model.RunAction2#onAttached(hudson.model.Run)
+	 */
+	public void onAttached(Run<?, ?> build) {
+		this.build = build;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see jenkins.model.RunAction2#onLoad(hudson.model.Run)
+	 */
+	public void onLoad(Run<?, ?> build) {
+		this.build = build;
+	}
+
+	/**
+	 * Gets the build.
+	 *
+	 * @return the build
+	 */
+	public Run<?, ?> getBuild() {
+		return build;
+	}
+
+	/**
+	 * Gets the remote calls.
+	 *
+	 * @return the remote calls
+	 */
+	public RemoteCallStatistics getRemoteCalls() {
+		return remoteCalls;
+	}
+
+	/**
+	 * Gets the methods called, the most expensive first.
+	 *
+	 * @return the methods
+	 */
+	public List<String> getMethods() {
+		return remoteCalls.getMethods();
+	}
+
+	/**
+	 * Gets the slowest calls.
+	 *
+	 * @return the calls, slowest first
+	 */
+	public List<RemoteCallStatistics.Call> getSlowest() {
+		return remoteCalls.getSlowest();
+	}
+
+	/**
+	 * Formats milliseconds.
+	 *
+	 * @param millis
+	 *            the milliseconds
+	 * @return the formatted milliseconds
+	 */
+	public String format(double millis) {
+		return RemoteCallStatistics.format(millis);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see hudson.model.Action#getIconFileName()
+	 */
+	public String getIconFileName() {
+		return remoteCalls.getCount() == 0 ? null : "network.png";
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see hudson.model.ModelObject#getDisplayName()
+	 */
+	public String getDisplayName() {
+		return "Remote Calls";
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see hudson.model.Action#getUrlName()
+	 */
+	public String getUrlName() {
+		return "remoteCalls";
+	}
+}
@@ -0,0 +1,392 @@
+/*
+ *
+ */
+package org.jenkinsci.plugins.websphere_deployer;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.jenkinsci.plugins.websphere.services.deployment.Digests;
+
+/**
+ * Keeps the last versions of every deployed application for rollbacks. The
+ * archives are stored once per content digest and shared by all applications
+ * and versions referring to them. Archives that are not referenced by any
+ * application anymore are deleted, so the repository never holds more than
+ * the configured number of versions per application. When the archives
+ * exceed the configured total size, the least recently stored versions are
+ * dropped first, but the newest version of every application is always kept.
+ */
+public class RollbackRepository {
+
+	/** The log. */
+	private static Logger log = Logger.getLogger(RollbackRepository.class.getName());
+
+	/** The Constant DEFAULT_MAX_VERSIONS. */
+	public static final int DEFAULT_MAX_VERSIONS = 3;
+
+	/** The Constant DEFAULT_MAX_SIZE. */
+	public static final long DEFAULT_MAX_SIZE = 4L * 1024 * 1024 * 1024;
+
+	/** The directory. */
+	private final File directory;
+
+	/** The max versions per application. */
+	private final int maxVersions;
+
+	/** The max total size of the archives. */
+	private final long maxSize;
+
+	/**
+	 * Instantiates a new rollback repository.
+	 *
+	 * @param directory
+	 *            the directory
+	 * @param maxVersions
+	 *            the max versions per application
+	 * @param maxSize
+	 *            the max total size of the archives in bytes
+	 */
+	public RollbackRepository(File directory, int maxVersions, long maxSize) {
+		this.directory = directory;
+		this.maxVersions = Math.max(1, maxVersions);
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * Stores a deployed version of an application as its newest version.
+	 *
+	 * @param key
+	 *            the key of the application, see
+	 *            {@link DeploymentRegistry#key(String, String, String, String)}
+	 * @param archive
+	 *            the deployed archive
+	 * @param typeName
+	 *            the type name of the archive
+	 * @param description
+	 *            the description of the version, e.g. the build
+	 * @param immutable
+	 *            true if the archive is never changed in place, so it can be
+	 *            hard linked instead of copied
+	 * @return the stored version
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public synchronized Version store(String key, File archive, String typeName, String description,
+			boolean immutable) throws IOException {
+		String digest = Digests.digest(archive);
+		File blob = getBlob(digest, typeName);
+		if (!blob.isFile()) {
+			File blobs = blob.getParentFile();
+			if (!blobs.isDirectory() && !blobs.mkdirs()) {
+				throw new IOException("Cannot create directory " + blobs.getAbsolutePath());
+			}
+			File temp = File.createTempFile("blob", ".tmp", blobs);
+			if (!temp.delete() || !link(archive, temp, immutable)) {
+				Files.copy(archive.toPath(), temp.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+			Files.move(temp.toPath(), blob.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+		List<Version> versions = new ArrayList<Version>(getVersions(key));
+		Version version = new Version(digest, typeName, description, System.currentTimeMillis());
+		if (!versions.isEmpty() && versions.get(0).getDigest().equals(digest)) {
+			versions.remove(0); // redeployment of the newest version
+		}
+		versions.add(0, version);
+		while (versions.size() > maxVersions) {
+			versions.remove(versions.size() - 1);
+		}
+		saveVersions(key, versions);
+		deleteUnreferencedBlobs();
+		return version;
+	}
+
+	/**
+	 * Gets the stored versions of an application, newest first.
+	 *
+	 * @param key
+	 *            the key of the application
+	 * @return the versions
+	 */
+	public synchronized List<Version> getVersions(String key) {
+		File index = getIndex(key);
+		if (!index.isFile()) {
+			return Collections.emptyList();
+		}
+		Properties properties = new Properties();
+		try (InputStream in = new FileInputStream(index)) {
+			properties.load(in);
+		} catch (IOException e) {
+			log.log(Level.WARNING, "Failed to read the versions of " + key + " from " + index.getAbsolutePath(), e);
+			return Collections.emptyList();
+		}
+		List<Version> versions = new ArrayList<Version>();
+		for (int i = 0; properties.getProperty(i + ".digest") != null; i++) {
+			Version version = new Version(properties.getProperty(i + ".digest"), properties.getProperty(i + ".type"),
+					properties.getProperty(i + ".description"), Long.parseLong(properties.getProperty(i + ".time", "0")));
+			if (version.getArchive().isFile()) {
+				versions.add(version);
+			}
+		}
+		return versions;
+	}
+
+	/**
+	 * Save versions.
+	 *
+	 * @param key
+	 *            the key
+	 * @param versions
+	 *            the versions
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private void saveVersions(String key, List<Version> versions) throws IOException {
+		File index = getIndex(key);
+		File parent = index.getParentFile();
+		if (!parent.isDirectory() && !parent.mkdirs()) {
+			throw new IOException("Cannot create directory " + parent.getAbsolutePath());
+		}
+		Properties properties = new Properties();
+		for (int i = 0; i < versions.size(); i++) {
+			Version version = versions.get(i);
+			properties.setProperty(i + ".digest", version.getDigest());
+			properties.setProperty(i + ".type", version.getTypeName());
+			properties.setProperty(i + ".description", version.getDescription());
+			properties.setProperty(i + ".time", String.valueOf(version.getTime()));
+		}
+		try (OutputStream out = new FileOutputStream(index)) {
+			properties.store(out, null);
+		}
+	}
+
+	/**
+	 * Deletes the archives that no application refers to anymore. While the
+	 * referenced archives exceed the max size, the archive stored least
+	 * recently is dropped from the versions referring to it, unless it is the
+	 * newest version of an application.
+	 */
+	private void deleteUnreferencedBlobs() {
+		File[] indexes = new File(directory, "versions").listFiles();
+		File[] blobs = new File(directory, "blobs").listFiles();
+		if (indexes == null || blobs == null) {
+			return;
+		}
+		Map<String, List<Version>> versionsByKey = new HashMap<String, List<Version>>();
+		Map<String, Long> lastStored = new HashMap<String, Long>();
+		Set<String> newest = new HashSet<String>();
+		for (File index : indexes) {
+			String name = index.getName();
+			if (name.endsWith(".properties")) {
+				String key = name.substring(0, name.length() - ".properties".length());
+				List<Version> versions = new ArrayList<Version>(getVersions(key));
+				versionsByKey.put(key, versions);
+				for (Version version : versions) {
+					String blob = version.getArchive().getName();
+					Long stored = lastStored.get(blob);
+					lastStored.put(blob, stored == null ? version.getTime() : Math.max(stored, version.getTime()));
+				}
+				if (!versions.isEmpty()) {
+					newest.add(versions.get(0).getArchive().getName());
+				}
+			}
+		}
+		long size = 0;
+		Map<String, Long> sizes = new HashMap<String, Long>();
+		for (File blob : blobs) {
+			if (lastStored.containsKey(blob.getName())) {
+				sizes.put(blob.getName(), blob.length());
+				size += blob.length();
+			}
+		}
+		Set<String> changedKeys = new HashSet<String>();
+		while (size > maxSize) {
+			String evicted = null;
+			for (Map.Entry<String, Long> entry : lastStored.entrySet()) {
+				if (!newest.contains(entry.getKey())
+						&& (evicted == null || entry.getValue() < lastStored.get(evicted))) {
+					evicted = entry.getKey();
+				}
+			}
+			if (evicted == null) {
+				break; // only the newest versions are left
+			}
+			for (Map.Entry<String, List<Version>> entry : versionsByKey.entrySet()) {
+				for (Iterator<Version> it = entry.getValue().iterator(); it.hasNext();) {
+					if (it.next().getArchive().getName().equals(evicted)) {
+						it.remove();
+						changedKeys.add(entry.getKey());
+					}
+				}
+			}
+			lastStored.remove(evicted);
+			Long evictedSize = sizes.get(evicted);
+			size -= evictedSize == null ? 0 : evictedSize;
+			log.fine("Dropping " + evicted + " from the rollback repository, it exceeds " + maxSize + " bytes");
+		}
+		for (String key : changedKeys) {
+			try {
+				saveVersions(key, versionsByKey.get(key));
+			} catch (IOException e) {
+				// keep the archives, the index still refers to them
+				log.log(Level.WARNING, "Failed to save the versions of " + key, e);
+				for (Version version : getVersions(key)) {
+					lastStored.put(version.getArchive().getName(), version.getTime());
+				}
+			}
+		}
+		for (File blob : blobs) {
+			if (!lastStored.containsKey(blob.getName()) && !blob.getName().endsWith(".tmp") && !blob.delete()) {
+				log.warning("Failed to delete " + blob.getAbsolutePath());
+			}
+		}
+	}
+
+	/**
+	 * Links an archive, if it is immutable and on the same file system.
+	 *
+	 * @param archive
+	 *            the archive
+	 * @param link
+	 *            the link
+	 * @param immutable
+	 *            the immutable
+	 * @return true, if successful
+	 */
+	private boolean link(File archive, File link, boolean immutable) {
+		if (!immutable) {
+			return false;
+		}
+		try {
+			Files.createLink(link.toPath(), archive.toPath());
+			return true;
+		} catch (IOException e) {
+			return false;
+		} catch (UnsupportedOperationException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Gets the index of the versions of an application.
+	 *
+	 * @param key
+	 *            the key
+	 * @return the index
+	 */
+	private File getIndex(String key) {
+		return new File(new File(directory, "versions"), key + ".properties");
+	}
+
+	/**
+	 * Gets the blob of an archive.
+	 *
+	 * @param digest
+	 *            the digest
+	 * @param typeName
+	 *            the type name
+	 * @return the blob
+	 */
+	private File getBlob(String digest, String typeName) {
+		return new File(new File(directory, "blobs"), digest + "." + typeName);
+	}
+
+	/**
+	 * A stored version of an application.
+	 */
+	public final class Version {
+
+		/** The digest. */
+		private final String digest;
+
+		/** The type name. */
+		private final String typeName;
+
+		/** The description. */
+		private final String description;
+
+		/** The time. */
+		private final long time;
+
+		/**
+		 * Instantiates a new version.
+		 *
+		 * @param digest
+		 *            the digest
+		 * @param typeName
+		 *            the type name
+		 * @param description
+		 *            the description
+		 * @param time
+		 *            the time
+		 */
+		private Version(String digest, String typeName, String description, long time) {
+			this.digest = digest;
+			this.typeName = typeName;
+			this.description = description == null ? "" : description;
+			this.time = time;
+		}
+
+		/**
+		 * Gets the digest.
+		 *
+		 * @return the digest
+		 */
+		public String getDigest() {
+			return digest;
+		}
+
+		/**
+		 * Gets the type name.
+		 *
+		 * @return the type name
+		 */
+		public String getTypeName() {
+			return typeName;
+		}
+
+		/**
+		 * Gets the description.
+		 *
+		 * @return the description
+		 */
+		public String getDescription() {
+			return description;
+		}
+
+		/**
+		 * Gets the time.
+		 *
+		 * @return the time
+		 */
+		public long getTime() {
+			return time;
+		}
+
+		/**
+		 * Gets the stored archive, which can be deployed as it is.
+		 *
+		 * @return the archive
+		 */
+		public File getArchive() {
+			return getBlob(digest, typeName);
+		}
+	}
+}
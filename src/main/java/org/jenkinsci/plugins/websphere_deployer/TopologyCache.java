@@ -0,0 +1,181 @@
+/*
+ *
+ */
+package org.jenkinsci.plugins.websphere_deployer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Caches the topology of every cell by the deployment manager it was loaded
+ * from. A topology older than the time to live is still served, but it is
+ * reloaded in the background, so looking up targets never waits for the
+ * deployment manager unless a topology is refreshed explicitly.
+ */
+public class TopologyCache {
+
+	/** The Constant DEFAULT_TTL_MILLIS. */
+	public static final long DEFAULT_TTL_MILLIS = 10 * 60 * 1000L;
+
+	/** The log. */
+	private static Logger log = Logger.getLogger(TopologyCache.class.getName());
+
+	/** The entries by connection key. */
+	private final Map<String, Entry> entries = new HashMap<String, Entry>();
+
+	/** The time to live in milliseconds. */
+	private final long ttlMillis;
+
+	/**
+	 * Instantiates a new topology cache.
+	 *
+	 * @param ttlMillis
+	 *            the time to live in milliseconds
+	 */
+	public TopologyCache(long ttlMillis) {
+		this.ttlMillis = ttlMillis;
+	}
+
+	/**
+	 * Gets the key of a deployment manager.
+	 *
+	 * @param host
+	 *            the host
+	 * @param port
+	 *            the port
+	 * @return the key
+	 */
+	public static String key(String host, String port) {
+		return (host == null ? "" : host.trim().toLowerCase(Locale.ENGLISH)) + ":"
+				+ (port == null ? "" : port.trim());
+	}
+
+	/**
+	 * Gets a cached topology. If it has expired, it is returned anyway and
+	 * reloaded in the background with the loader it was last loaded with.
+	 *
+	 * @param key
+	 *            the key
+	 * @return the topology, null if none has been loaded
+	 */
+	public CellTopology get(String key) {
+		final Entry entry;
+		synchronized (this) {
+			entry = entries.get(key);
+			if (entry == null) {
+				return null;
+			}
+			if (entry.isExpired() && !entry.refreshing) {
+				entry.refreshing = true;
+			} else {
+				return entry.topology;
+			}
+		}
+		Thread refresh = new Thread(new Runnable() {
+			public void run() {
+				try {
+					load(entry.key, entry.loader);
+				} catch (Exception e) {
+					log.log(Level.WARNING, "Failed to refresh the topology of " + entry.key, e);
+					synchronized (TopologyCache.this) {
+						entry.refreshing = false;
+					}
+				}
+			}
+		}, "WebSphere Deployer topology refresh " + key);
+		refresh.setDaemon(true);
+		refresh.start();
+		return entry.topology;
+	}
+
+	/**
+	 * Gets all cached topologies, without refreshing them.
+	 *
+	 * @return the topologies
+	 */
+	public synchronized List<CellTopology> getAll() {
+		List<CellTopology> topologies = new ArrayList<CellTopology>();
+		for (Entry entry : entries.values()) {
+			topologies.add(entry.topology);
+		}
+		return topologies;
+	}
+
+	/**
+	 * Loads a topology now and caches it.
+	 *
+	 * @param key
+	 *            the key
+	 * @param loader
+	 *            the loader, also used for later refreshes
+	 * @return the topology
+	 * @throws Exception
+	 *             the exception
+	 */
+	public CellTopology load(String key, Callable<CellTopology> loader) throws Exception {
+		CellTopology topology = loader.call();
+		synchronized (this) {
+			entries.put(key, new Entry(key, topology, loader));
+		}
+		return topology;
+	}
+
+	/**
+	 * Drops a cached topology.
+	 *
+	 * @param key
+	 *            the key
+	 */
+	public synchronized void invalidate(String key) {
+		entries.remove(key);
+	}
+
+	/**
+	 * A cached topology.
+	 */
+	private final class Entry {
+
+		/** The key. */
+		private final String key;
+
+		/** The topology. */
+		private final CellTopology topology;
+
+		/** The loader. */
+		private final Callable<CellTopology> loader;
+
+		/** Whether the topology is being refreshed. */
+		private boolean refreshing;
+
+		/**
+		 * Instantiates a new entry.
+		 *
+		 * @param key
+		 *            the key
+		 * @param topology
+		 *            the topology
+		 * @param loader
+		 *            the loader
+		 */
+		private Entry(String key, CellTopology topology, Callable<CellTopology> loader) {
+			this.key = key;
+			this.topology = topology;
+			this.loader = loader;
+		}
+
+		/**
+		 * Checks if is expired.
+		 *
+		 * @return true, if is expired
+		 */
+		private boolean isExpired() {
+			return System.currentTimeMillis() - topology.getLoadedAt() > ttlMillis;
+		}
+	}
+}
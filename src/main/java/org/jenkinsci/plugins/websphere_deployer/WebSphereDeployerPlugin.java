@@ -6,13 +6,42 @@ package org.jenkinsci.plugins.websphere_deployer;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.PrintStream;
+import java.io.Serializable;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.StringTokenizer;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import javax.servlet.ServletException;
 
 import org.apache.commons.lang.StringUtils;
+import org.jenkinsci.plugins.websphere_deployer.ArtifactDiscovery.DiscoveredArtifact;
+import org.jenkinsci.plugins.websphere.services.deployment.AdminClientPool;
+import org.jenkinsci.plugins.websphere.services.deployment.ArchiveDelta;
+import org.jenkinsci.plugins.websphere.services.deployment.ArchiveManifest;
 import org.jenkinsci.plugins.websphere.services.deployment.Artifact;
-import org.jenkinsci.plugins.websphere.services.deployment.DeploymentServiceException;
+import org.jenkinsci.plugins.websphere.services.deployment.DeploymentScheduler;
+import org.jenkinsci.plugins.websphere.services.deployment.DeploymentTimings;
+import org.jenkinsci.plugins.websphere.services.deployment.Digests;
+import org.jenkinsci.plugins.websphere.services.deployment.EarCache;
+import org.jenkinsci.plugins.websphere.services.deployment.RemoteCallStatistics;
 import org.jenkinsci.plugins.websphere.services.deployment.WebSphereDeploymentService;
 import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.QueryParameter;
@@ -26,13 +55,22 @@ import hudson.FilePath;
 import hudson.Launcher;
 import hudson.model.AbstractBuild;
 import hudson.model.AbstractProject;
+import hudson.model.Action;
+import hudson.model.AutoCompletionCandidates;
 import hudson.model.BuildListener;
+import hudson.model.FingerprintMap;
+import hudson.model.Node;
 import hudson.model.Result;
+import hudson.model.StreamBuildListener;
 import hudson.tasks.BuildStepDescriptor;
 import hudson.tasks.BuildStepMonitor;
+import hudson.tasks.Fingerprinter;
 import hudson.tasks.Notifier;
 import hudson.tasks.Publisher;
+import hudson.remoting.VirtualChannel;
 import hudson.util.FormValidation;
+import jenkins.MasterToSlaveFileCallable;
+import jenkins.model.Jenkins;
 import net.sf.json.JSONObject;
 
 /**
@@ -41,11 +79,32 @@ import net.sf.json.JSONObject;
  *
  * @author Greg Peters
  */
-public class WebSphereDeployerPlugin extends Notifier {
+public class WebSphereDeployerPlugin extends Notifier implements Serializable {
+
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
 
 	/** The Constant OPERATION_REINSTALL. */
 	private final static String OPERATION_REINSTALL = "1";
 
+	/** The Constant DEFAULT_MAX_PARALLEL_DEPLOYMENTS. */
+	private final static int DEFAULT_MAX_PARALLEL_DEPLOYMENTS = 4;
+
+	/** The Constant DEFAULT_DEPLOYMENT_TIMEOUT, in minutes. */
+	private final static int DEFAULT_DEPLOYMENT_TIMEOUT = 5;
+
+	/** The Constant DEFAULT_ROLLING_WAVE_SIZE. */
+	private final static int DEFAULT_ROLLING_WAVE_SIZE = 1;
+
+	/**
+	 * The share of an archive or module that may change before it is
+	 * deployed as a whole instead of partially.
+	 */
+	private final static double DELTA_MAX_CHANGE_RATIO = 0.3;
+
+	/** The maximum number of targets suggested per cell. */
+	private final static int MAX_TARGET_CANDIDATES = 20;
+
 	/** The ip address. */
 	private final String ipAddress;
 
@@ -109,6 +168,36 @@ public class WebSphereDeployerPlugin extends Notifier {
 	/** The unstable deploy. */
 	private final boolean unstableDeploy;
 
+	/** The parallel deploy. */
+	private final boolean parallelDeploy;
+
+	/** The max parallel deployments. */
+	private final String maxParallelDeployments;
+
+	/** The staged deploy. */
+	private final boolean stagedDeploy;
+
+	/** The skip unchanged. */
+	private final boolean skipUnchanged;
+
+	/** The delta update. */
+	private final boolean deltaUpdate;
+
+	/** The deploy on agent. */
+	private final boolean deployOnAgent;
+
+	/** The rolling deploy. */
+	private final boolean rollingDeploy;
+
+	/** The rolling wave size. */
+	private final String rollingWaveSize;
+
+	/** The sync nodes. */
+	private final boolean syncNodes;
+
+	/** The rollback version. */
+	private final String rollbackVersion;
+
 	/** The security. */
 	private final WebSphereSecurity security;
 
@@ -159,13 +248,36 @@ public class WebSphereDeployerPlugin extends Notifier {
 	 *            the class loader policy
 	 * @param classLoaderOrder
 	 *            the class loader order
+	 * @param parallelDeploy
+	 *            the parallel deploy
+	 * @param maxParallelDeployments
+	 *            the max parallel deployments
+	 * @param stagedDeploy
+	 *            the staged deploy
+	 * @param skipUnchanged
+	 *            the skip unchanged
+	 * @param deltaUpdate
+	 *            the delta update
+	 * @param deployOnAgent
+	 *            the deploy on agent
+	 * @param rollingDeploy
+	 *            the rolling deploy
+	 * @param rollingWaveSize
+	 *            the rolling wave size
+	 * @param syncNodes
+	 *            the sync nodes
+	 * @param rollbackVersion
+	 *            the rollback version
 	 */
 	@DataBoundConstructor
 	public WebSphereDeployerPlugin(String ipAddress, String connectorType, String port, String installPath,
 			WebSphereSecurity security, String artifacts, String earLevel, String deploymentTimeout, String operations,
 			String context, String targets, String virtualHost, String applicationName, boolean precompile,
 			boolean reloading, boolean jspReloading, boolean verbose, boolean distribute, boolean rollback,
-			boolean unstableDeploy, String classLoaderPolicy, String classLoaderOrder) {
+			boolean unstableDeploy, String classLoaderPolicy, String classLoaderOrder, boolean parallelDeploy,
+			String maxParallelDeployments, boolean stagedDeploy, boolean skipUnchanged, boolean deltaUpdate,
+			boolean deployOnAgent, boolean rollingDeploy, String rollingWaveSize, boolean syncNodes,
+			String rollbackVersion) {
 		this.context = context;
 		this.targets = targets;
 		this.virtualHost = virtualHost;
@@ -188,6 +300,16 @@ public class WebSphereDeployerPlugin extends Notifier {
 		this.classLoaderPolicy = classLoaderPolicy;
 		this.classLoaderOrder = classLoaderOrder;
 		this.applicationName = applicationName;
+		this.parallelDeploy = parallelDeploy;
+		this.maxParallelDeployments = maxParallelDeployments;
+		this.stagedDeploy = stagedDeploy;
+		this.skipUnchanged = skipUnchanged;
+		this.deltaUpdate = deltaUpdate;
+		this.deployOnAgent = deployOnAgent;
+		this.rollingDeploy = rollingDeploy;
+		this.rollingWaveSize = rollingWaveSize;
+		this.syncNodes = syncNodes;
+		this.rollbackVersion = rollbackVersion;
 	}
 
 	/**
@@ -316,6 +438,96 @@ public class WebSphereDeployerPlugin extends Notifier {
 		return unstableDeploy;
 	}
 
+	/**
+	 * Checks if is parallel deploy.
+	 *
+	 * @return true, if is parallel deploy
+	 */
+	public boolean isParallelDeploy() {
+		return parallelDeploy;
+	}
+
+	/**
+	 * Gets the max parallel deployments.
+	 *
+	 * @return the max parallel deployments
+	 */
+	public String getMaxParallelDeployments() {
+		return maxParallelDeployments;
+	}
+
+	/**
+	 * Checks if is staged deploy.
+	 *
+	 * @return true, if is staged deploy
+	 */
+	public boolean isStagedDeploy() {
+		return stagedDeploy;
+	}
+
+	/**
+	 * Checks if is skip unchanged.
+	 *
+	 * @return true, if is skip unchanged
+	 */
+	public boolean isSkipUnchanged() {
+		return skipUnchanged;
+	}
+
+	/**
+	 * Checks if is delta update.
+	 *
+	 * @return true, if is delta update
+	 */
+	public boolean isDeltaUpdate() {
+		return deltaUpdate;
+	}
+
+	/**
+	 * Checks if is deploy on agent.
+	 *
+	 * @return true, if is deploy on agent
+	 */
+	public boolean isDeployOnAgent() {
+		return deployOnAgent;
+	}
+
+	/**
+	 * Checks if is rolling deploy.
+	 *
+	 * @return true, if is rolling deploy
+	 */
+	public boolean isRollingDeploy() {
+		return rollingDeploy;
+	}
+
+	/**
+	 * Gets the rolling wave size.
+	 *
+	 * @return the rolling wave size
+	 */
+	public String getRollingWaveSize() {
+		return rollingWaveSize;
+	}
+
+	/**
+	 * Checks if is sync nodes.
+	 *
+	 * @return true, if is sync nodes
+	 */
+	public boolean isSyncNodes() {
+		return syncNodes;
+	}
+
+	/**
+	 * Gets the rollback version.
+	 *
+	 * @return the rollback version
+	 */
+	public String getRollbackVersion() {
+		return rollbackVersion;
+	}
+
 	/**
 	 * Gets the ip address.
 	 *
@@ -397,46 +609,33 @@ public class WebSphereDeployerPlugin extends Notifier {
 	@Override
 	public boolean perform(AbstractBuild<?, ?> build, Launcher launcher, BuildListener listener) {
 		if (shouldDeploy(build.getResult())) {
-			WebSphereDeploymentService service = new WebSphereDeploymentService();
-			Artifact artifact = null;
+			DeploymentTimings timings = new DeploymentTimings();
+			RemoteCallStatistics remoteCalls = new RemoteCallStatistics();
 			try {
 				EnvVars env = build.getEnvironment(listener);
-				preInitializeService(listener, service, env);
-				service.connect();
-				for (FilePath path : gatherArtifactPaths(build, listener)) {
-					artifact = createArtifact(path, listener, service);
-					stopArtifact(artifact.getAppName(), listener, service);
-					if (getOperations().equals(OPERATION_REINSTALL)) {
-						uninstallArtifact(artifact.getAppName(), listener, service);
-						deployArtifact(artifact, listener, service);
-					} else { // otherwise update application
-						if (!service.isArtifactInstalled(artifact.getAppName())) {
-							deployArtifact(artifact, listener, service); // do
-																			// initial
-																			// deployment
-						} else {
-							updateArtifact(artifact, listener, service);
-						}
-					}
-					startArtifact(artifact.getAppName(), listener, service);
-					if (rollback) {
-						saveArtifactToRollbackRepository(build, listener, artifact);
-					}
+				FilePath workspace = build.getWorkspace().getParent();
+				long start = System.currentTimeMillis();
+				ArrayList<DiscoveredArtifact> artifacts = gatherArtifacts(build, workspace, listener);
+				timings.recordSince(DeploymentTimings.ALL_ARTIFACTS, DeploymentTimings.DISCOVERY, start);
+				boolean successful;
+				if (deployOnAgent && workspace.isRemote()) {
+					successful = deployFromAgent(build, workspace, artifacts, env, listener, timings, remoteCalls);
+				} else {
+					successful = deploy(artifacts, env, build.getFullDisplayName(), listener,
+							getDescriptor().getStores(), timings, remoteCalls);
+				}
+				if (!successful) {
+					build.setResult(Result.FAILURE);
 				}
 			} catch (Exception e) {
-				ByteArrayOutputStream out = new ByteArrayOutputStream();
-				PrintStream p = new PrintStream(out);
-				e.printStackTrace(p);
 				if (verbose) {
-					logVerbose(listener,
-							"Error deploying to IBM WebSphere Application Server: " + new String(out.toByteArray()));
-				} else {
-					log(listener, "Error deploying to IBM WebSphere Application Server: " + e.getMessage());
+					e.printStackTrace(listener.getLogger());
 				}
-				rollbackArtifact(service, build, listener, artifact);
+				log(listener, "Error deploying to IBM WebSphere Application Server: " + e.getMessage());
 				build.setResult(Result.FAILURE);
 			} finally {
-				service.disconnect();
+				build.addAction(new DeploymentTimingAction(timings));
+				build.addAction(new RemoteCallAction(remoteCalls));
 			}
 		} else {
 			listener.getLogger().println(
@@ -445,225 +644,801 @@ public class WebSphereDeployerPlugin extends Notifier {
 		return true;
 	}
 
-	/**
-	 * Should deploy.
-	 *
-	 * @param result
-	 *            the result
-	 * @return true, if successful
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see hudson.tasks.BuildStepCompatibilityLayer#getProjectActions(hudson.
+	 * model.AbstractProject)
 	 */
-	private boolean shouldDeploy(Result result) {
-		if (result.equals(Result.SUCCESS))
-			return true;
-		if (unstableDeploy && result.equals(Result.UNSTABLE))
-			return true;
-		return false;
+	@Override
+	public Collection<? extends Action> getProjectActions(AbstractProject<?, ?> project) {
+		return Collections.singletonList(new DeploymentTimingProjectAction(project));
 	}
 
 	/**
-	 * Log.
+	 * Deploys the artifacts found in a workspace. This runs on the controller
+	 * or, when deploying on the agent, on the agent owning the workspace.
 	 *
+	 * @param artifacts
+	 *            the artifacts
+	 * @param env
+	 *            the env
+	 * @param buildName
+	 *            the build name
 	 * @param listener
 	 *            the listener
-	 * @param data
-	 *            the data
+	 * @param stores
+	 *            the stores
+	 * @param timings
+	 *            the timings to record the phases in
+	 * @param remoteCalls
+	 *            the statistics to record the remote calls in
+	 * @return true, if all artifacts were deployed
 	 */
-	private void log(BuildListener listener, String data) {
-		listener.getLogger().println(data);
+	private boolean deploy(List<DiscoveredArtifact> artifacts, EnvVars env, String buildName,
+			BuildListener listener, DeploymentStores stores, DeploymentTimings timings,
+			RemoteCallStatistics remoteCalls) {
+		WebSphereDeploymentService service = new WebSphereDeploymentService();
+		service.setTimings(timings);
+		service.setRemoteCalls(remoteCalls);
+		Artifact artifact = null;
+		String rollbackTo = env.expand(rollbackVersion);
+		try {
+			long start = System.currentTimeMillis();
+			preInitializeService(listener, service, env, buildName, stores);
+			service.connect();
+			service.loadInventory();
+			timings.recordSince(DeploymentTimings.ALL_ARTIFACTS, DeploymentTimings.CONNECT, start);
+			if (parallelDeploy && artifacts.size() > 1) {
+				return deployArtifactsInParallel(artifacts, buildName, listener, service, stores, rollbackTo);
+			}
+			for (DiscoveredArtifact discovered : artifacts) {
+				releaseArtifact(artifact, stores);
+				artifact = createArtifact(discovered, listener, service, stores);
+				deployArtifact(artifact, buildName, listener, service, stores);
+			}
+			return true;
+		} catch (Exception e) {
+			service.checkConnectionFailure(e);
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			PrintStream p = new PrintStream(out);
+			e.printStackTrace(p);
+			if (verbose) {
+				logVerbose(listener,
+						"Error deploying to IBM WebSphere Application Server: " + new String(out.toByteArray()));
+			} else {
+				log(listener, "Error deploying to IBM WebSphere Application Server: " + e.getMessage());
+			}
+			rollbackArtifact(service, listener, artifact, rollbackTo, stores);
+			return false;
+		} finally {
+			releaseArtifact(artifact, stores);
+			service.disconnect();
+			for (String line : remoteCalls.getSummary()) {
+				listener.getLogger().println(line);
+			}
+		}
 	}
 
 	/**
-	 * Log verbose.
+	 * Deploys the artifacts on the agent owning the workspace, so artifacts
+	 * are never copied to the controller. The entries of the deployment
+	 * registry for the targets are checked out for the agent and checked in
+	 * with its changes afterwards. EARs and rollback versions are kept on
+	 * the agent. The run is admitted by the scheduler of the controller as one
+	 * operation on the cell, so it is limited together with the deployments
+	 * of all other builds and shows up on the scheduler page.
 	 *
+	 * @param build
+	 *            the build
+	 * @param workspace
+	 *            the workspace
+	 * @param artifacts
+	 *            the artifacts
+	 * @param env
+	 *            the env
 	 * @param listener
 	 *            the listener
-	 * @param data
-	 *            the data
+	 * @param timings
+	 *            the timings to add the timings recorded on the agent to
+	 * @param remoteCalls
+	 *            the statistics to add the remote calls made on the agent to
+	 * @return true, if all artifacts were deployed
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 * @throws InterruptedException
+	 *             the interrupted exception
 	 */
-	private void logVerbose(BuildListener listener, String data) {
-		if (verbose) {
-			log(listener, data);
+	private boolean deployFromAgent(AbstractBuild<?, ?> build, FilePath workspace,
+			ArrayList<DiscoveredArtifact> artifacts, EnvVars env, BuildListener listener, DeploymentTimings timings,
+			RemoteCallStatistics remoteCalls) throws IOException, InterruptedException {
+		Node node = build.getBuiltOn();
+		FilePath rootPath = node == null ? null : node.getRootPath();
+		DeploymentRegistry registry = getDescriptor().getDeploymentRegistry();
+		Properties checkedOut = registry.checkout(
+				DeploymentRegistry.targetKey(env.expand(getIpAddress()), env.expand(getPort()), getTargets()));
+		String agentName = node == null ? "unknown" : node.getDisplayName();
+		String cell = env.expand(getIpAddress()) + ":" + env.expand(getPort());
+		String operation = "deploy " + artifacts.size() + " artifact(s) from agent '" + agentName + "'";
+		DeploymentScheduler.Permit permit = getDescriptor().getScheduler().enqueue(cell, build.getFullDisplayName(),
+				operation);
+		AgentDeploymentResult result;
+		try {
+			if (!permit.isAdmitted()) {
+				log(listener, "Waiting to " + operation + " on " + cell + ", " + permit.getQueueDepth()
+						+ " operation(s) running or queued ahead");
+				permit.await();
+				log(listener, "Admitted to " + operation + " on " + cell + " after " + permit.getWaitMillis() + " ms");
+			}
+			timings.record(DeploymentTimings.ALL_ARTIFACTS, DeploymentTimings.ADMISSION, permit.getWaitMillis());
+			log(listener, "Deploying from agent '" + agentName + "'...");
+			result = workspace.act(new AgentDeployment(this, artifacts, env, build.getFullDisplayName(), listener,
+					(rootPath == null ? workspace : rootPath).getRemote(), checkedOut));
+		} finally {
+			permit.release();
 		}
+		registry.checkin(checkedOut, result.getRegistryChanges());
+		timings.merge(result.getTimings());
+		remoteCalls.merge(result.getRemoteCalls());
+		return result.isSuccessful();
 	}
 
 	/**
-	 * Rollback artifact.
+	 * Deploy artifact. In staged mode the artifact is prepared before the
+	 * installed version is touched and an update replaces the binaries of the
+	 * running application instead of stopping it first. The update still
+	 * uploads the archive, so the time until the new version runs includes the
+	 * upload.
 	 *
-	 * @param service
-	 *            the service
-	 * @param build
-	 *            the build
-	 * @param listener
-	 *            the listener
 	 * @param artifact
 	 *            the artifact
+	 * @param buildName
+	 *            the build name
+	 * @param listener
+	 *            the listener
+	 * @param service
+	 *            the service
+	 * @param stores
+	 *            the stores
+	 * @throws Exception
+	 *             the exception
 	 */
-	private void rollbackArtifact(WebSphereDeploymentService service, AbstractBuild<?, ?> build, BuildListener listener,
-			Artifact artifact) {
-		if (artifact == null) {
-			log(listener, "Cannot rollback to previous version: artifact is null");
-			return;
+	private void deployArtifact(Artifact artifact, String buildName, BuildListener listener,
+			WebSphereDeploymentService service, DeploymentStores stores) throws Exception {
+		DeploymentRegistry registry = stores.getDeploymentRegistry();
+		String registryKey = getRegistryKey(artifact, service);
+		String fingerprint = skipUnchanged || deltaUpdate ? getFingerprint(artifact) : null;
+		if (skipUnchanged) {
+			if (fingerprint.equals(registry.get(registryKey)) && service.isArtifactInstalled(artifact.getAppName())) {
+				if (!service.isArtifactRunning(artifact.getAppName())) {
+					startArtifact(artifact.getAppName(), listener, service, false);
+				}
+				log(listener, "'" + artifact.getAppName()
+						+ "' is unchanged since its last deployment and is running, skipping deployment");
+				return;
+			}
 		}
-		log(listener, "Performing rollback of '" + artifact.getAppName() + "'");
-		File installablePath = new File(build.getWorkspace().getRemote() + File.separator + "Rollbacks" + File.separator
-				+ artifact.getAppName() + "." + artifact.getTypeName());
-		if (installablePath.exists()) {
-			artifact.setSourcePath(installablePath);
-			try {
-				updateArtifact(artifact, listener, service);
-				startArtifact(artifact.getAppName(), listener, service);
-				log(listener, "Rollback of '" + artifact.getAppName() + "' was successful");
-			} catch (Exception e) {
-				e.printStackTrace();
-				log(listener, "Error while trying to rollback to previous version: " + e.getMessage());
+		ArchiveManifest deployedManifest = deltaUpdate ? registry.getManifest(registryKey) : null;
+		ArchiveManifest manifest = null;
+		List<String> rollingMembers = null;
+		boolean updatedWhileRunning = false;
+		registry.forget(registryKey);
+		if (stagedDeploy) {
+			stageArtifact(artifact, listener, service);
+		}
+		if (getOperations().equals(OPERATION_REINSTALL)) {
+			stopArtifact(artifact.getAppName(), listener, service);
+			uninstallArtifact(artifact.getAppName(), listener, service);
+			deployArtifact(artifact, listener, service);
+		} else { // otherwise update application
+			if (!service.isArtifactInstalled(artifact.getAppName())) {
+				deployArtifact(artifact, listener, service); // do initial
+																// deployment
+			} else {
+				if (rollingDeploy) {
+					rollingMembers = getRollingMembers(artifact, listener, service);
+					// the waves restart the application, WebSphere must not restart it everywhere first
+					artifact.setRestartOnUpdate(rollingMembers == null);
+				}
+				if (deltaUpdate) {
+					manifest = ArchiveManifest.read(artifact.getSourcePath());
+				}
+				if (!deltaUpdate || !updateArtifactDelta(artifact, deployedManifest, manifest, listener, service)) {
+					if (!stagedDeploy && rollingMembers == null) {
+						stopArtifact(artifact.getAppName(), listener, service);
+					} else {
+						updatedWhileRunning = true;
+					}
+					updateArtifact(artifact, listener, service);
+				} else {
+					updatedWhileRunning = true;
+				}
 			}
+		}
+		if (rollingMembers != null) {
+			startArtifactInWaves(artifact.getAppName(), rollingMembers, listener, service);
 		} else {
-			log(listener, "WARNING: Artifact doesn't exist rollback repository");
+			startArtifact(artifact.getAppName(), listener, service, updatedWhileRunning);
+		}
+		if (fingerprint != null) {
+			if (deltaUpdate && manifest == null) {
+				manifest = ArchiveManifest.read(artifact.getSourcePath());
+			}
+			try {
+				registry.record(registryKey, fingerprint, manifest);
+			} catch (IOException e) {
+				log(listener, "WARNING: Could not record the deployment of '" + artifact.getAppName()
+						+ "', it is deployed in full next time: " + e.getMessage());
+			}
+		}
+		if (rollback) {
+			saveArtifactToRollbackRepository(buildName, listener, artifact, service, stores);
 		}
 	}
 
 	/**
-	 * Save artifact to rollback repository.
+	 * Updates an installed application with the changes since the deployed
+	 * version only, unless they require a full redeployment.
 	 *
-	 * @param build
-	 *            the build
-	 * @param listener
-	 *            the listener
 	 * @param artifact
 	 *            the artifact
+	 * @param deployed
+	 *            the manifest of the deployed version, null if unknown
+	 * @param manifest
+	 *            the manifest of the artifact
+	 * @param listener
+	 *            the listener
+	 * @param service
+	 *            the service
+	 * @return true, if the application was updated, false if a full
+	 *         redeployment is required
 	 */
-	private void saveArtifactToRollbackRepository(AbstractBuild<?, ?> build, BuildListener listener,
-			Artifact artifact) {
-		listener.getLogger()
-				.println("Performing save operations on '" + artifact.getAppName() + "' for future rollbacks");
-		File rollbackDir = new File(build.getWorkspace().getRemote() + File.separator + "Rollbacks");
-		createIfNotExists(rollbackDir);
-		logVerbose(listener, "Rollback Path: " + rollbackDir.getAbsolutePath());
-		File destination = new File(rollbackDir, artifact.getAppName() + "." + artifact.getTypeName());
-		if (destination.exists()) {
-			log(listener, "Deleting old rollback version...");
-			if (!destination.delete()) {
-				log(listener, "Failed to delete old rollback version, permissions?: " + destination.getAbsolutePath());
-				return;
-			}
+	private boolean updateArtifactDelta(Artifact artifact, ArchiveManifest deployed, ArchiveManifest manifest,
+			BuildListener listener, WebSphereDeploymentService service) {
+		ArchiveDelta delta = manifest.diff(deployed, DELTA_MAX_CHANGE_RATIO);
+		if (delta.isFullRedeploy()) {
+			log(listener, "Updating '" + artifact.getAppName() + "' completely, " + delta.getFullRedeployReason());
+			return false;
 		}
-		log(listener, "Saving new rollback version...");
-		if (!artifact.getSourcePath().renameTo(destination)) {
-			logVerbose(listener, "Failed to save '" + artifact.getAppName() + "' to rollback repository");
-		} else {
-			log(listener, "Saved '" + artifact.getAppName() + "' to rollback repository");
+		log(listener, "Updating '" + artifact.getAppName() + "' partially: " + delta);
+		if (!delta.isEmpty()) {
+			service.updateArtifactDelta(artifact, delta);
 		}
+		return true;
 	}
 
 	/**
-	 * Creates the if not exists.
+	 * Gets the fingerprint of an artifact and of all settings its deployment
+	 * depends on.
 	 *
-	 * @param directory
-	 *            the directory
+	 * @param artifact
+	 *            the artifact
+	 * @return the fingerprint
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
 	 */
-	private void createIfNotExists(File directory) {
-		if (directory.exists() || directory.mkdir()) {
-			return;
-		}
-		throw new DeploymentServiceException(
-				"Failed to create directory, is write access allowed?: " + directory.getAbsolutePath());
+	private String getFingerprint(Artifact artifact) throws IOException {
+		return Digests.digest(getDigest(artifact), artifact.getTypeName(), getEarLevel(), getOperations(),
+				artifact.getContext(), artifact.getVirtualHost(), artifact.getInstallPath(),
+				artifact.getClassLoaderOrder(), artifact.getClassLoaderPolicy(),
+				String.valueOf(artifact.isDistribute()), String.valueOf(artifact.isPrecompile()),
+				String.valueOf(artifact.isJspReloading()), String.valueOf(artifact.isReloading()));
 	}
 
 	/**
-	 * Deploy artifact.
+	 * Gets the digest of the content of an artifact, computing it on first
+	 * use.
 	 *
 	 * @param artifact
 	 *            the artifact
-	 * @param listener
-	 *            the listener
-	 * @param service
-	 *            the service
-	 * @throws Exception
-	 *             the exception
+	 * @return the digest
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
 	 */
-	private void deployArtifact(Artifact artifact, BuildListener listener, WebSphereDeploymentService service)
-			throws Exception {
-		listener.getLogger().println("Deploying '" + artifact.getAppName() + "' to IBM WebSphere Application Server");
-		service.installArtifact(artifact);
+	private String getDigest(Artifact artifact) throws IOException {
+		if (artifact.getDigest() == null) {
+			artifact.setDigest(Digests.digest(artifact.getSourcePath()));
+		}
+		return artifact.getDigest();
 	}
 
 	/**
-	 * Uninstall artifact.
+	 * Deploy artifacts in parallel. Every artifact runs its own
+	 * stop/update/start sequence on a worker thread, its output is written to
+	 * the build log as it goes, every line prefixed with the artifact name.
 	 *
-	 * @param appName
-	 *            the app name
+	 * @param artifacts
+	 *            the artifacts
+	 * @param buildName
+	 *            the build name
 	 * @param listener
 	 *            the listener
 	 * @param service
-	 *            the service
-	 * @throws Exception
-	 *             the exception
+	 *            the connected service
+	 * @param stores
+	 *            the stores
+	 * @param rollbackTo
+	 *            the version to roll back to if an artifact fails, see
+	 *            {@link #getRollbackVersion()}
+	 * @return true, if all artifacts were deployed
+	 * @throws InterruptedException
+	 *             the interrupted exception
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
 	 */
-	private void uninstallArtifact(String appName, BuildListener listener, WebSphereDeploymentService service)
-			throws Exception {
-		if (service.isArtifactInstalled(appName)) {
-			listener.getLogger().println("Uninstalling Old Application '" + appName + "'...");
-			service.uninstallArtifact(appName);
+	private boolean deployArtifactsInParallel(List<DiscoveredArtifact> artifacts, String buildName,
+			BuildListener listener, WebSphereDeploymentService service, DeploymentStores stores, String rollbackTo)
+			throws InterruptedException, IOException {
+		int threads = Math.min(artifacts.size(), getMaxParallelDeploymentsValue());
+		log(listener,
+				"Deploying " + artifacts.size() + " artifacts with up to " + threads + " parallel deployments...");
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		CompletionService<ParallelDeployment> completion = new ExecutorCompletionService<ParallelDeployment>(
+				executor);
+		List<String> failures = new ArrayList<String>();
+		try {
+			for (DiscoveredArtifact discovered : artifacts) {
+				completion.submit(new ParallelDeployment(discovered, buildName, listener, service, stores, rollbackTo));
+			}
+			for (int i = 0; i < artifacts.size(); i++) {
+				ParallelDeployment deployment;
+				try {
+					deployment = completion.take().get();
+				} catch (ExecutionException e) {
+					failures.add(String.valueOf(e.getCause()));
+					continue;
+				}
+				if (!deployment.isSuccessful()) {
+					failures.add(deployment.getName() + ": " + deployment.getError());
+				}
+			}
+		} finally {
+			executor.shutdownNow();
 		}
+		log(listener, "-------------------------------------------");
+		log(listener, "Parallel deployment finished: " + (artifacts.size() - failures.size()) + " succeeded, "
+				+ failures.size() + " failed");
+		for (String failure : failures) {
+			log(listener, "FAILED " + failure);
+		}
+		return failures.isEmpty();
 	}
 
 	/**
-	 * Start artifact.
+	 * Gets the max parallel deployments value.
 	 *
-	 * @param appName
-	 *            the app name
-	 * @param listener
-	 *            the listener
-	 * @param service
-	 *            the service
-	 * @throws Exception
-	 *             the exception
+	 * @return the max parallel deployments value
 	 */
-	private void startArtifact(String appName, BuildListener listener, WebSphereDeploymentService service)
-			throws Exception {
-		listener.getLogger().println("Starting Application '" + appName + "'...");
+	private int getMaxParallelDeploymentsValue() {
 		try {
-			service.startArtifact(appName, Integer.parseInt(getDeploymentTimeout()));
+			return Math.max(1, Integer.parseInt(StringUtils.trimToEmpty(maxParallelDeployments)));
 		} catch (NumberFormatException e) {
-			service.startArtifact(appName);
+			return DEFAULT_MAX_PARALLEL_DEPLOYMENTS;
 		}
 	}
 
 	/**
-	 * Stop artifact.
+	 * Gets the deployment timeout value.
 	 *
-	 * @param appName
-	 *            the app name
-	 * @param listener
-	 *            the listener
-	 * @param service
-	 *            the service
-	 * @throws Exception
-	 *             the exception
+	 * @return the deployment timeout in minutes
 	 */
-	private void stopArtifact(String appName, BuildListener listener, WebSphereDeploymentService service)
-			throws Exception {
-		if (service.isArtifactInstalled(appName)) {
-			listener.getLogger().println("Stopping Old Application '" + appName + "'...");
-			service.stopArtifact(appName);
+	private int getDeploymentTimeoutValue() {
+		try {
+			return Integer.parseInt(StringUtils.trimToEmpty(deploymentTimeout));
+		} catch (NumberFormatException e) {
+			return DEFAULT_DEPLOYMENT_TIMEOUT;
 		}
 	}
 
 	/**
-	 * Update artifact.
+	 * Gets the rolling wave size value.
 	 *
-	 * @param artifact
-	 *            the artifact
-	 * @param listener
-	 *            the listener
-	 * @param service
-	 *            the service
-	 * @throws Exception
-	 *             the exception
+	 * @return the rolling wave size value
 	 */
-	private void updateArtifact(Artifact artifact, BuildListener listener, WebSphereDeploymentService service)
-			throws Exception {
-		if (service.isArtifactInstalled(artifact.getAppName())) {
+	private int getRollingWaveSizeValue() {
+		try {
+			return Math.max(1, Integer.parseInt(StringUtils.trimToEmpty(rollingWaveSize)));
+		} catch (NumberFormatException e) {
+			return DEFAULT_ROLLING_WAVE_SIZE;
+		}
+	}
+
+	/**
+	 * Should deploy.
+	 *
+	 * @param result
+	 *            the result
+	 * @return true, if successful
+	 */
+	private boolean shouldDeploy(Result result) {
+		if (result.equals(Result.SUCCESS))
+			return true;
+		if (unstableDeploy && result.equals(Result.UNSTABLE))
+			return true;
+		return false;
+	}
+
+	/**
+	 * Log.
+	 *
+	 * @param listener
+	 *            the listener
+	 * @param data
+	 *            the data
+	 */
+	private void log(BuildListener listener, String data) {
+		listener.getLogger().println(data);
+	}
+
+	/**
+	 * Log verbose.
+	 *
+	 * @param listener
+	 *            the listener
+	 * @param data
+	 *            the data
+	 */
+	private void logVerbose(BuildListener listener, String data) {
+		if (verbose) {
+			log(listener, data);
+		}
+	}
+
+	/**
+	 * Rollback artifact to the configured version in the rollback repository.
+	 *
+	 * @param service
+	 *            the service
+	 * @param listener
+	 *            the listener
+	 * @param artifact
+	 *            the artifact
+	 * @param rollbackTo
+	 *            the version, see {@link #getRollbackVersion()}
+	 * @param stores
+	 *            the stores
+	 */
+	private void rollbackArtifact(WebSphereDeploymentService service, BuildListener listener, Artifact artifact,
+			String rollbackTo, DeploymentStores stores) {
+		if (artifact == null) {
+			log(listener, "Cannot rollback to previous version: artifact is null");
+			return;
+		}
+		List<RollbackRepository.Version> versions = stores.getRollbackRepository()
+				.getVersions(getRegistryKey(artifact, service));
+		int version = findRollbackVersion(versions, rollbackTo);
+		if (version < 0) {
+			log(listener, "WARNING: Version '" + rollbackTo + "' of '" + artifact.getAppName()
+					+ "' doesn't exist in rollback repository, the stored versions are:");
+			for (int i = 0; i < versions.size(); i++) {
+				log(listener, "  " + i + ": " + versions.get(i).getDigest() + " of " + versions.get(i).getDescription());
+			}
+			return;
+		}
+		rollbackArtifact(service, listener, artifact, version, stores);
+	}
+
+	/**
+	 * Finds the version to roll back to.
+	 *
+	 * @param versions
+	 *            the stored versions, newest first
+	 * @param rollbackTo
+	 *            the index of the version, 0 being the newest, or the
+	 *            beginning of its digest, the newest version if blank
+	 * @return the index of the version, -1 if there is no such version
+	 */
+	static int findRollbackVersion(List<RollbackRepository.Version> versions, String rollbackTo) {
+		String version = StringUtils.trimToEmpty(rollbackTo);
+		if (version.isEmpty()) {
+			return 0;
+		}
+		if (StringUtils.isNumeric(version)) {
+			try {
+				int index = Integer.parseInt(version);
+				return index < versions.size() ? index : -1;
+			} catch (NumberFormatException e) {
+				return -1;
+			}
+		}
+		for (int i = 0; i < versions.size(); i++) {
+			if (versions.get(i).getDigest().toLowerCase().startsWith(version.toLowerCase())) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Rollback artifact to a version in the rollback repository. The stored
+	 * archive is deployed as it is.
+	 *
+	 * @param service
+	 *            the service
+	 * @param listener
+	 *            the listener
+	 * @param artifact
+	 *            the artifact
+	 * @param version
+	 *            the index of the version, 0 being the newest
+	 * @param stores
+	 *            the stores
+	 */
+	private void rollbackArtifact(WebSphereDeploymentService service, BuildListener listener, Artifact artifact,
+			int version, DeploymentStores stores) {
+		if (artifact == null) {
+			log(listener, "Cannot rollback to previous version: artifact is null");
+			return;
+		}
+		log(listener, "Performing rollback of '" + artifact.getAppName() + "'");
+		List<RollbackRepository.Version> versions = stores.getRollbackRepository()
+				.getVersions(getRegistryKey(artifact, service));
+		if (version < versions.size()) {
+			RollbackRepository.Version target = versions.get(version);
+			log(listener, "Rolling back to the version of " + target.getDescription() + " ("
+					+ new SimpleDateFormat("MMM dd, yyyy HH:mm:ss").format(target.getTime()) + ")");
+			artifact.setSourcePath(target.getArchive());
+			try {
+				updateArtifact(artifact, listener, service);
+				startArtifact(artifact.getAppName(), listener, service, false);
+				log(listener, "Rollback of '" + artifact.getAppName() + "' was successful");
+			} catch (Exception e) {
+				if (verbose) {
+					e.printStackTrace(listener.getLogger());
+				}
+				log(listener, "Error while trying to rollback to previous version: " + e.getMessage());
+			}
+		} else {
+			log(listener, "WARNING: Artifact doesn't exist rollback repository");
+		}
+	}
+
+	/**
+	 * Save artifact to rollback repository.
+	 *
+	 * @param buildName
+	 *            the build name
+	 * @param listener
+	 *            the listener
+	 * @param artifact
+	 *            the artifact
+	 * @param service
+	 *            the service
+	 * @param stores
+	 *            the stores
+	 */
+	private void saveArtifactToRollbackRepository(String buildName, BuildListener listener, Artifact artifact,
+			WebSphereDeploymentService service, DeploymentStores stores) {
+		listener.getLogger()
+				.println("Performing save operations on '" + artifact.getAppName() + "' for future rollbacks");
+		long start = System.currentTimeMillis();
+		File archive = artifact.getSourcePath();
+		String typeName = archive.getName().substring(archive.getName().lastIndexOf('.') + 1);
+		// generated EARs are never changed once they are in the cache
+		boolean immutable = archive.getAbsoluteFile().toPath()
+				.startsWith(stores.getEarCache().getDirectory().getAbsoluteFile().toPath());
+		try {
+			stores.getRollbackRepository().store(getRegistryKey(artifact, service), archive, typeName, buildName,
+					immutable);
+			log(listener, "Saved '" + artifact.getAppName() + "' to rollback repository");
+		} catch (IOException e) {
+			e.printStackTrace();
+			logVerbose(listener, "Failed to save '" + artifact.getAppName() + "' to rollback repository");
+		}
+		time(service, artifact.getAppName(), DeploymentTimings.ROLLBACK_SAVE, start);
+	}
+
+	/**
+	 * Gets the key of an artifact in the deployment registry and rollback
+	 * repository.
+	 *
+	 * @param artifact
+	 *            the artifact
+	 * @param service
+	 *            the service
+	 * @return the registry key
+	 */
+	private String getRegistryKey(Artifact artifact, WebSphereDeploymentService service) {
+		return DeploymentRegistry.key(service.getHost(), service.getPort(), artifact.getTargets(),
+				artifact.getAppName());
+	}
+
+	/**
+	 * Deploy artifact.
+	 *
+	 * @param artifact
+	 *            the artifact
+	 * @param listener
+	 *            the listener
+	 * @param service
+	 *            the service
+	 * @throws Exception
+	 *             the exception
+	 */
+	private void deployArtifact(Artifact artifact, BuildListener listener, WebSphereDeploymentService service)
+			throws Exception {
+		listener.getLogger().println("Deploying '" + artifact.getAppName() + "' to IBM WebSphere Application Server");
+		service.installArtifact(artifact);
+	}
+
+	/**
+	 * Stage artifact.
+	 *
+	 * @param artifact
+	 *            the artifact
+	 * @param listener
+	 *            the listener
+	 * @param service
+	 *            the service
+	 */
+	private void stageArtifact(Artifact artifact, BuildListener listener, WebSphereDeploymentService service) {
+		listener.getLogger().println("Staging '" + artifact.getAppName() + "' while the installed version is running");
+		service.prepareArtifact(artifact);
+	}
+
+	/**
+	 * Uninstall artifact.
+	 *
+	 * @param appName
+	 *            the app name
+	 * @param listener
+	 *            the listener
+	 * @param service
+	 *            the service
+	 * @throws Exception
+	 *             the exception
+	 */
+	private void uninstallArtifact(String appName, BuildListener listener, WebSphereDeploymentService service)
+			throws Exception {
+		if (service.isArtifactInstalled(appName)) {
+			listener.getLogger().println("Uninstalling Old Application '" + appName + "'...");
+			service.uninstallArtifact(appName);
+		}
+	}
+
+	/**
+	 * Start artifact.
+	 *
+	 * @param appName
+	 *            the app name
+	 * @param listener
+	 *            the listener
+	 * @param service
+	 *            the service
+	 * @param updatedWhileRunning
+	 *            whether the application was updated without being stopped
+	 * @throws Exception
+	 *             the exception
+	 */
+	private void startArtifact(String appName, BuildListener listener, WebSphereDeploymentService service,
+			boolean updatedWhileRunning) throws Exception {
+		listener.getLogger().println("Starting Application '" + appName + "'...");
+		service.startArtifact(appName, getDeploymentTimeoutValue(), updatedWhileRunning);
+	}
+
+	/**
+	 * Gets the servers an installed application is restarted on wave by wave:
+	 * the servers it is running on, e.g. the members of the clusters it is
+	 * deployed to, and the servers among its deployment targets.
+	 *
+	 * @param artifact
+	 *            the artifact
+	 * @param listener
+	 *            the listener
+	 * @param service
+	 *            the service
+	 * @return the servers, null if there are too few of them to keep any
+	 *         running while the others are restarted
+	 */
+	private List<String> getRollingMembers(Artifact artifact, BuildListener listener,
+			WebSphereDeploymentService service) {
+		Set<String> members = new TreeSet<String>(service.getRunningTargets(artifact.getAppName()));
+		for (StringTokenizer st = new StringTokenizer(StringUtils.trimToEmpty(artifact.getTargets()), "\r\n"); st
+				.hasMoreTokens();) {
+			WebSphereTarget target = WebSphereTarget.parse(st.nextToken());
+			if (target.getCluster() == null && target.getNode() != null && target.getServer() != null) {
+				members.add(target.getTarget());
+			}
+		}
+		if (members.size() < 2) {
+			log(listener, "'" + artifact.getAppName() + "' runs on " + members.size()
+					+ " server(s) only, restarting it without waves");
+			return null;
+		}
+		return new ArrayList<String>(members);
+	}
+
+	/**
+	 * Splits servers into waves of at most the rolling wave size, but never
+	 * all of them. Servers are taken from every node in turn, so each wave
+	 * spreads over as many nodes as it can.
+	 *
+	 * @param members
+	 *            the servers, e.g. <code>WebSphere:cell=c,node=n,server=s</code>
+	 * @return the waves
+	 */
+	List<List<String>> planWaves(List<String> members) {
+		Map<String, LinkedList<String>> membersByNode = new TreeMap<String, LinkedList<String>>();
+		for (String member : members) {
+			String node = StringUtils.trimToEmpty(WebSphereTarget.parse(member).getNode());
+			if (!membersByNode.containsKey(node)) {
+				membersByNode.put(node, new LinkedList<String>());
+			}
+			membersByNode.get(node).add(member);
+		}
+		List<String> ordered = new ArrayList<String>();
+		while (ordered.size() < members.size()) {
+			for (LinkedList<String> nodeMembers : membersByNode.values()) {
+				if (!nodeMembers.isEmpty()) {
+					ordered.add(nodeMembers.removeFirst());
+				}
+			}
+		}
+		int waveSize = Math.min(getRollingWaveSizeValue(), members.size() - 1);
+		List<List<String>> waves = new ArrayList<List<String>>();
+		for (int i = 0; i < ordered.size(); i += waveSize) {
+			waves.add(new ArrayList<String>(ordered.subList(i, Math.min(i + waveSize, ordered.size()))));
+		}
+		return waves;
+	}
+
+	/**
+	 * Start artifact wave by wave.
+	 *
+	 * @param appName
+	 *            the app name
+	 * @param members
+	 *            the servers to restart it on
+	 * @param listener
+	 *            the listener
+	 * @param service
+	 *            the service
+	 * @throws Exception
+	 *             the exception
+	 */
+	private void startArtifactInWaves(String appName, List<String> members, BuildListener listener,
+			WebSphereDeploymentService service) throws Exception {
+		List<List<String>> waves = planWaves(members);
+		listener.getLogger().println("Starting Application '" + appName + "' on " + members.size()
+				+ " servers in " + waves.size() + " waves...");
+		service.startArtifactInWaves(appName, waves, getDeploymentTimeoutValue());
+	}
+
+	/**
+	 * Stop artifact.
+	 *
+	 * @param appName
+	 *            the app name
+	 * @param listener
+	 *            the listener
+	 * @param service
+	 *            the service
+	 * @throws Exception
+	 *             the exception
+	 */
+	private void stopArtifact(String appName, BuildListener listener, WebSphereDeploymentService service)
+			throws Exception {
+		if (service.isArtifactInstalled(appName)) {
+			listener.getLogger().println("Stopping Old Application '" + appName + "'...");
+			service.stopArtifact(appName);
+		}
+	}
+
+	/**
+	 * Update artifact.
+	 *
+	 * @param artifact
+	 *            the artifact
+	 * @param listener
+	 *            the listener
+	 * @param service
+	 *            the service
+	 * @throws Exception
+	 *             the exception
+	 */
+	private void updateArtifact(Artifact artifact, BuildListener listener, WebSphereDeploymentService service)
+			throws Exception {
+		if (service.isArtifactInstalled(artifact.getAppName())) {
 			listener.getLogger()
 					.println("Updating '" + artifact.getAppName() + "' on IBM WebSphere Application Server");
 			service.updateArtifact(artifact);
@@ -673,19 +1448,22 @@ public class WebSphereDeployerPlugin extends Notifier {
 	/**
 	 * Creates the artifact.
 	 *
-	 * @param path
-	 *            the path
+	 * @param discovered
+	 *            the discovered artifact
 	 * @param listener
 	 *            the listener
 	 * @param service
 	 *            the service
+	 * @param stores
+	 *            the stores
 	 * @return the artifact
 	 */
-	private Artifact createArtifact(FilePath path, BuildListener listener, WebSphereDeploymentService service) {
+	private Artifact createArtifact(DiscoveredArtifact discovered, BuildListener listener,
+			WebSphereDeploymentService service, DeploymentStores stores) {
 		Artifact artifact = new Artifact();
-		if (path.getRemote().endsWith(".ear")) {
+		if (discovered.getName().endsWith(".ear")) {
 			artifact.setType(Artifact.TYPE_EAR);
-		} else if (path.getRemote().endsWith(".war")) {
+		} else if (discovered.getName().endsWith(".war")) {
 			artifact.setType(Artifact.TYPE_WAR);
 		}
 		if (StringUtils.trimToNull(context) != null) {
@@ -699,111 +1477,553 @@ public class WebSphereDeployerPlugin extends Notifier {
 		artifact.setJspReloading(reloading);
 		artifact.setDistribute(distribute);
 		artifact.setPrecompile(isPrecompile());
-		artifact.setSourcePath(new File(path.getRemote()));
+		artifact.setSourcePath(new File(discovered.getPath()));
+		artifact.setDigest(discovered.getDigest());
 		if (StringUtils.trimToNull(applicationName) != null) {
 			artifact.setAppName(applicationName);
 		} else {
 			artifact.setAppName(getAppName(artifact, service));
 		}
-		if (artifact.getType() == Artifact.TYPE_WAR) {
-			generateEAR(artifact, listener, service);
+		if (artifact.getType() == Artifact.TYPE_WAR) {
+			generateEAR(artifact, listener, service, stores);
+		}
+		return artifact;
+	}
+
+	/**
+	 * Gathers the artifacts to deploy. They are digested by the machine
+	 * owning the workspace while they are found, only the digests are sent
+	 * to the controller and recorded as fingerprints of the build.
+	 *
+	 * @param build
+	 *            the build
+	 * @param workspace
+	 *            the workspace
+	 * @param listener
+	 *            the listener
+	 * @return the artifacts
+	 * @throws Exception
+	 *             the exception
+	 */
+	private ArrayList<DiscoveredArtifact> gatherArtifacts(AbstractBuild<?, ?> build, FilePath workspace,
+			BuildListener listener) throws Exception {
+		ArrayList<DiscoveredArtifact> artifacts = workspace.act(new ArtifactDiscovery(getArtifacts()));
+		if (artifacts.isEmpty()) {
+			listener.getLogger().println(
+					"No deployable artifacts found in path: " + workspace + File.separator + getArtifacts());
+			throw new Exception("No deployable artifacts found!");
+		}
+		listener.getLogger().println("The following artifacts will be deployed in this order...");
+		listener.getLogger().println("-------------------------------------------");
+		SimpleDateFormat sdf = new SimpleDateFormat("MMM dd, yyyy HH:mm:ss");
+		long bytes = 0;
+		long nanos = 0;
+		for (DiscoveredArtifact artifact : artifacts) {
+			listener.getLogger()
+					.println(artifact.getPath() + " Last modified on " + sdf.format(artifact.getLastModified()));
+			logVerbose(listener, "    SHA-256 " + artifact.getDigest() + ", MD5 " + artifact.getMd5());
+			bytes += artifact.getSize();
+			nanos += artifact.getDigestNanos();
+		}
+		listener.getLogger().println("-------------------------------------------");
+		log(listener, "Digested " + (bytes / 1024) + " KB in " + (nanos / 1000000) + " ms ("
+				+ (long) (bytes / (1024.0 * 1024.0) / Math.max(nanos, 1) * 1000000000L) + " MB/s)");
+		recordFingerprints(build, artifacts, listener);
+		return artifacts;
+	}
+
+	/**
+	 * Records the artifacts as fingerprints of the build.
+	 *
+	 * @param build
+	 *            the build
+	 * @param artifacts
+	 *            the artifacts
+	 * @param listener
+	 *            the listener
+	 */
+	private void recordFingerprints(AbstractBuild<?, ?> build, List<DiscoveredArtifact> artifacts,
+			BuildListener listener) {
+		try {
+			FingerprintMap fingerprints = Jenkins.getInstance().getFingerprintMap();
+			Map<String, String> record = new HashMap<String, String>();
+			for (DiscoveredArtifact artifact : artifacts) {
+				fingerprints.getOrCreate(build, artifact.getName(), artifact.getMd5());
+				record.put(artifact.getName(), artifact.getMd5());
+			}
+			Fingerprinter.FingerprintAction action = build.getAction(Fingerprinter.FingerprintAction.class);
+			if (action == null) {
+				build.addAction(new Fingerprinter.FingerprintAction(build, record));
+			} else {
+				action.add(record);
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			log(listener, "Failed to record fingerprints: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Pre initialize service.
+	 *
+	 * @param listener
+	 *            the listener
+	 * @param service
+	 *            the service
+	 * @param env
+	 *            the env
+	 * @param buildName
+	 *            the build name
+	 * @param stores
+	 *            the stores
+	 * @throws Exception
+	 *             the exception
+	 */
+	private void preInitializeService(BuildListener listener, WebSphereDeploymentService service, EnvVars env,
+			String buildName, DeploymentStores stores) throws Exception {
+		listener.getLogger().println("Connecting to IBM WebSphere Application Server...");
+		service.setVerbose(isVerbose());
+		service.setBuildListener(listener);
+		service.setConnectionPool(stores.getConnectionPool());
+		service.setScheduler(stores.getScheduler(), buildName);
+		service.setSyncNodes(isSyncNodes());
+		service.setDeploymentTimeout(getDeploymentTimeoutValue());
+		service.setConnectorType(getConnectorType());
+		service.setHost(env.expand(getIpAddress()));
+		service.setPort(env.expand(getPort()));
+		if (security != null) {
+			service.setUsername(env.expand(security.getUsername()));
+			service.setPassword(env.expand(security.getPassword()));
+			service.setKeyStoreLocation(new File(env.expand(security.getClientKeyFile())));
+			service.setKeyStorePassword(env.expand(security.getClientKeyPassword()));
+			service.setTrustStoreLocation(new File(env.expand(security.getClientTrustFile())));
+			service.setTrustStorePassword(env.expand(security.getClientTrustPassword()));
+		}
+	}
+
+	/**
+	 * Gets the app name.
+	 *
+	 * @param artifact
+	 *            the artifact
+	 * @param service
+	 *            the service
+	 * @return the app name
+	 */
+	private String getAppName(Artifact artifact, WebSphereDeploymentService service) {
+		if (artifact.getType() == Artifact.TYPE_EAR) {
+			return service.getAppName(artifact);
+		} else {
+			String filename = artifact.getSourcePath().getName();
+			return filename.substring(0, filename.lastIndexOf("."));
+		}
+	}
+
+	/**
+	 * Generate EAR.
+	 *
+	 * @param artifact
+	 *            the artifact
+	 * @param listener
+	 *            the listener
+	 * @param service
+	 *            the service
+	 * @param stores
+	 *            the stores
+	 */
+	private void generateEAR(Artifact artifact, BuildListener listener, WebSphereDeploymentService service,
+			DeploymentStores stores) {
+		String fileName = artifact.getAppName() + ".ear";
+		EarCache cache = stores.getEarCache();
+		long start = System.currentTimeMillis();
+		try {
+			String key = EarCache.key(getDigest(artifact), artifact.getSourcePath().getName(), getEarLevel(),
+					artifact.getContext(), artifact.getAppName());
+			File cached = cache.get(key, fileName);
+			if (cached == null) {
+				listener.getLogger().println("Generating EAR For Artifact: " + artifact.getAppName());
+				File generated = cache.createTempFile();
+				service.generateEAR(artifact, generated, getEarLevel());
+				cached = cache.put(key, fileName, generated);
+			} else {
+				listener.getLogger().println("Using cached EAR For Artifact: " + artifact.getAppName());
+			}
+			logVerbose(listener, "EAR cache: " + cache.getHits() + " hit(s), " + cache.getMisses() + " miss(es)");
+			artifact.setSourcePath(cached);
+		} catch (IOException e) {
+			e.printStackTrace();
+			log(listener, "EAR cache is not available, generating EAR in workspace: " + e.getMessage());
+			File modified = new File(artifact.getSourcePath().getParent(), fileName);
+			service.generateEAR(artifact, modified, getEarLevel());
+			artifact.setSourcePath(modified);
+		}
+		time(service, artifact.getAppName(), DeploymentTimings.EAR_GENERATION, start);
+	}
+
+	/**
+	 * Releases the EAR generated for an artifact once it was deployed, so it
+	 * can be evicted from the EAR cache again.
+	 *
+	 * @param artifact
+	 *            the artifact, may be null
+	 * @param stores
+	 *            the stores
+	 */
+	private void releaseArtifact(Artifact artifact, DeploymentStores stores) {
+		if (artifact != null && artifact.getSourcePath() != null) {
+			stores.getEarCache().release(artifact.getSourcePath());
+		}
+	}
+
+	/**
+	 * Records the time since a phase of a deployment started.
+	 *
+	 * @param service
+	 *            the service recording the timings
+	 * @param appName
+	 *            the app name
+	 * @param phase
+	 *            the phase
+	 * @param start
+	 *            the start
+	 */
+	private void time(WebSphereDeploymentService service, String appName, String phase, long start) {
+		if (service.getTimings() != null) {
+			service.getTimings().recordSince(appName, phase, start);
+		}
+	}
+
+	/**
+	 * The deployment of a single artifact when artifacts are deployed in
+	 * parallel.
+	 */
+	private final class ParallelDeployment implements Callable<ParallelDeployment> {
+
+		/** The discovered artifact. */
+		private final DiscoveredArtifact discovered;
+
+		/** The build name. */
+		private final String buildName;
+
+		/** The service. */
+		private final WebSphereDeploymentService service;
+
+		/** The stores. */
+		private final DeploymentStores stores;
+
+		/** The version to roll back to. */
+		private final String rollbackTo;
+
+		/** The listener of the build. */
+		private final BuildListener buildListener;
+
+		/** The failure, null if the artifact was deployed. */
+		private Throwable failure;
+
+		/**
+		 * Instantiates a new parallel deployment.
+		 *
+		 * @param discovered
+		 *            the discovered artifact
+		 * @param buildName
+		 *            the build name
+		 * @param buildListener
+		 *            the listener of the build
+		 * @param service
+		 *            the service
+		 * @param stores
+		 *            the stores
+		 * @param rollbackTo
+		 *            the version to roll back to
+		 */
+		private ParallelDeployment(DiscoveredArtifact discovered, String buildName, BuildListener buildListener,
+				WebSphereDeploymentService service, DeploymentStores stores, String rollbackTo) {
+			this.discovered = discovered;
+			this.buildName = buildName;
+			this.buildListener = buildListener;
+			this.service = service;
+			this.stores = stores;
+			this.rollbackTo = rollbackTo;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see java.util.concurrent.Callable#call()
+		 */
+		public ParallelDeployment call() {
+			BuildListener listener = new StreamBuildListener(
+					new PrefixedOutputStream(buildListener.getLogger(), "[" + getName() + "] "),
+					Charset.defaultCharset());
+			WebSphereDeploymentService session = service.createSession(listener);
+			Artifact artifact = null;
+			try {
+				artifact = createArtifact(discovered, listener, session, stores);
+				deployArtifact(artifact, buildName, listener, session, stores);
+			} catch (Exception e) {
+				failure = e;
+				session.checkConnectionFailure(e);
+				if (verbose) {
+					e.printStackTrace(listener.getLogger());
+				}
+				log(listener, "Error deploying to IBM WebSphere Application Server: " + String.valueOf(e));
+				rollbackArtifact(session, listener, artifact, rollbackTo, stores);
+			} finally {
+				releaseArtifact(artifact, stores);
+				session.disconnect();
+				// writes the last line, even if it is incomplete
+				listener.getLogger().close();
+			}
+			return this;
+		}
+
+		/**
+		 * Gets the name.
+		 *
+		 * @return the name
+		 */
+		public String getName() {
+			return discovered.getName();
+		}
+
+		/**
+		 * Checks if is successful.
+		 *
+		 * @return true, if is successful
+		 */
+		public boolean isSuccessful() {
+			return failure == null;
+		}
+
+		/**
+		 * Gets the error.
+		 *
+		 * @return the error, null if the artifact was deployed
+		 */
+		public String getError() {
+			return failure == null ? null : String.valueOf(failure);
 		}
-		return artifact;
 	}
 
 	/**
-	 * Gather artifact paths.
-	 *
-	 * @param build
-	 *            the build
-	 * @param listener
-	 *            the listener
-	 * @return the file path[]
-	 * @throws Exception
-	 *             the exception
+	 * Writes the log of a parallel deployment to the log of the build as it
+	 * goes, line by line and every line prefixed, so the lines of deployments
+	 * running at the same time can be told apart.
 	 */
-	private FilePath[] gatherArtifactPaths(AbstractBuild<?, ?> build, BuildListener listener) throws Exception {
-		FilePath[] paths = build.getWorkspace().getParent().list(getArtifacts());
-		if (paths.length == 0) {
-			listener.getLogger().println("No deployable artifacts found in path: " + build.getWorkspace().getParent()
-					+ File.separator + getArtifacts());
-			throw new Exception("No deployable artifacts found!");
-		} else {
-			listener.getLogger().println("The following artifacts will be deployed in this order...");
-			listener.getLogger().println("-------------------------------------------");
-			SimpleDateFormat sdf = new SimpleDateFormat("MMM dd, yyyy HH:mm:ss");
-			for (FilePath path : paths) {
-				listener.getLogger().println(path.getRemote() + " Last modified on " + sdf.format(path.lastModified()));
+	static final class PrefixedOutputStream extends OutputStream {
+
+		/** The log of the build. */
+		private final PrintStream target;
+
+		/** The prefix. */
+		private final byte[] prefix;
+
+		/** The current line. */
+		private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+
+		/**
+		 * Instantiates a new prefixed output stream.
+		 *
+		 * @param target
+		 *            the log of the build
+		 * @param prefix
+		 *            the prefix
+		 */
+		PrefixedOutputStream(PrintStream target, String prefix) {
+			this.target = target;
+			this.prefix = prefix.getBytes(Charset.defaultCharset());
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see java.io.OutputStream#write(int)
+		 */
+		@Override
+		public synchronized void write(int b) throws IOException {
+			line.write(b);
+			if (b == '\n') {
+				writeLine();
 			}
-			listener.getLogger().println("-------------------------------------------");
 		}
-		return paths;
-	}
 
-	/**
-	 * Pre initialize service.
-	 *
-	 * @param listener
-	 *            the listener
-	 * @param service
-	 *            the service
-	 * @param env
-	 *            the env
-	 * @throws Exception
-	 *             the exception
-	 */
-	private void preInitializeService(BuildListener listener, WebSphereDeploymentService service, EnvVars env)
-			throws Exception {
-		listener.getLogger().println("Connecting to IBM WebSphere Application Server...");
-		service.setVerbose(isVerbose());
-		service.setBuildListener(listener);
-		;
-		service.setConnectorType(getConnectorType());
-		service.setHost(env.expand(getIpAddress()));
-		service.setPort(env.expand(getPort()));
-		if (security != null) {
-			service.setUsername(env.expand(security.getUsername()));
-			service.setPassword(env.expand(security.getPassword()));
-			service.setKeyStoreLocation(new File(env.expand(security.getClientKeyFile())));
-			service.setKeyStorePassword(env.expand(security.getClientKeyPassword()));
-			service.setTrustStoreLocation(new File(env.expand(security.getClientTrustFile())));
-			service.setTrustStorePassword(env.expand(security.getClientTrustPassword()));
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see java.io.OutputStream#close()
+		 */
+		@Override
+		public synchronized void close() throws IOException {
+			if (line.size() > 0) {
+				line.write('\n');
+				writeLine();
+			}
+		}
+
+		/**
+		 * Writes the current line to the log of the build.
+		 */
+		private void writeLine() {
+			synchronized (target) {
+				target.write(prefix, 0, prefix.length);
+				target.write(line.toByteArray(), 0, line.size());
+				target.flush();
+			}
+			line.reset();
 		}
 	}
 
 	/**
-	 * Gets the app name.
-	 *
-	 * @param artifact
-	 *            the artifact
-	 * @param service
-	 *            the service
-	 * @return the app name
+	 * The deployment of all artifacts on the agent owning the workspace.
 	 */
-	private String getAppName(Artifact artifact, WebSphereDeploymentService service) {
-		if (artifact.getType() == Artifact.TYPE_EAR) {
-			return service.getAppName(artifact.getSourcePath().getAbsolutePath());
-		} else {
-			String filename = artifact.getSourcePath().getName();
-			return filename.substring(0, filename.lastIndexOf("."));
+	private static final class AgentDeployment extends MasterToSlaveFileCallable<AgentDeploymentResult> {
+
+		/** The Constant serialVersionUID. */
+		private static final long serialVersionUID = 1L;
+
+		/** The plugin. */
+		private final WebSphereDeployerPlugin plugin;
+
+		/** The artifacts. */
+		private final ArrayList<DiscoveredArtifact> artifacts;
+
+		/** The env. */
+		private final EnvVars env;
+
+		/** The build name. */
+		private final String buildName;
+
+		/** The listener. */
+		private final BuildListener listener;
+
+		/** The root directory of the agent. */
+		private final String rootDirectory;
+
+		/** The entries checked out of the deployment registry. */
+		private final Properties registryEntries;
+
+		/**
+		 * Instantiates a new agent deployment.
+		 *
+		 * @param plugin
+		 *            the plugin
+		 * @param artifacts
+		 *            the artifacts
+		 * @param env
+		 *            the env
+		 * @param buildName
+		 *            the build name
+		 * @param listener
+		 *            the listener
+		 * @param rootDirectory
+		 *            the root directory of the agent
+		 * @param registryEntries
+		 *            the entries checked out of the deployment registry
+		 */
+		private AgentDeployment(WebSphereDeployerPlugin plugin, ArrayList<DiscoveredArtifact> artifacts, EnvVars env,
+				String buildName, BuildListener listener, String rootDirectory, Properties registryEntries) {
+			this.plugin = plugin;
+			this.artifacts = artifacts;
+			this.env = env;
+			this.buildName = buildName;
+			this.listener = listener;
+			this.rootDirectory = rootDirectory;
+			this.registryEntries = registryEntries;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see hudson.FilePath.FileCallable#invoke(java.io.File,
+		 * hudson.remoting.VirtualChannel)
+		 */
+		public AgentDeploymentResult invoke(File workspace, VirtualChannel channel) {
+			File root = new File(rootDirectory);
+			DeploymentRegistry registry = new DeploymentRegistry(registryEntries,
+					new File(root, "websphere-deployer" + File.separator + "manifests"));
+			DeploymentTimings timings = new DeploymentTimings();
+			RemoteCallStatistics remoteCalls = new RemoteCallStatistics();
+			boolean successful = plugin.deploy(artifacts, env, buildName, listener,
+					DeploymentStores.forAgent(root, registry), timings, remoteCalls);
+			return new AgentDeploymentResult(successful, registry.getChanges(), timings, remoteCalls);
 		}
 	}
 
 	/**
-	 * Generate EAR.
-	 *
-	 * @param artifact
-	 *            the artifact
-	 * @param listener
-	 *            the listener
-	 * @param service
-	 *            the service
+	 * The result of a deployment on an agent.
 	 */
-	private void generateEAR(Artifact artifact, BuildListener listener, WebSphereDeploymentService service) {
-		listener.getLogger().println("Generating EAR For Artifact: " + artifact.getAppName());
-		File modified = new File(artifact.getSourcePath().getParent(), artifact.getAppName() + ".ear");
-		service.generateEAR(artifact, modified, getEarLevel());
-		artifact.setSourcePath(modified);
+	private static final class AgentDeploymentResult implements Serializable {
+
+		/** The Constant serialVersionUID. */
+		private static final long serialVersionUID = 1L;
+
+		/** The successful. */
+		private final boolean successful;
+
+		/** The changes of the deployment registry. */
+		private final HashMap<String, String> registryChanges;
+
+		/** The timings. */
+		private final DeploymentTimings timings;
+
+		/** The remote calls. */
+		private final RemoteCallStatistics remoteCalls;
+
+		/**
+		 * Instantiates a new agent deployment result.
+		 *
+		 * @param successful
+		 *            the successful
+		 * @param registryChanges
+		 *            the changes of the deployment registry
+		 * @param timings
+		 *            the timings
+		 * @param remoteCalls
+		 *            the remote calls
+		 */
+		private AgentDeploymentResult(boolean successful, HashMap<String, String> registryChanges,
+				DeploymentTimings timings, RemoteCallStatistics remoteCalls) {
+			this.successful = successful;
+			this.registryChanges = registryChanges;
+			this.timings = timings;
+			this.remoteCalls = remoteCalls;
+		}
+
+		/**
+		 * Checks if is successful.
+		 *
+		 * @return true, if all artifacts were deployed
+		 */
+		public boolean isSuccessful() {
+			return successful;
+		}
+
+		/**
+		 * Gets the changes of the deployment registry.
+		 *
+		 * @return the registry changes
+		 */
+		public HashMap<String, String> getRegistryChanges() {
+			return registryChanges;
+		}
+
+		/**
+		 * Gets the timings recorded on the agent.
+		 *
+		 * @return the timings
+		 */
+		public DeploymentTimings getTimings() {
+			return timings;
+		}
+
+		/**
+		 * Gets the remote calls made on the agent.
+		 *
+		 * @return the remote calls
+		 */
+		public RemoteCallStatistics getRemoteCalls() {
+			return remoteCalls;
+		}
 	}
 
 	/*
@@ -837,6 +2057,24 @@ public class WebSphereDeployerPlugin extends Notifier {
 		/** The orb client path. */
 		private String orbClientPath;
 
+		/** The connection pool shared by all builds. */
+		private transient AdminClientPool connectionPool;
+
+		/** The cache of generated EARs shared by all builds. */
+		private transient EarCache earCache;
+
+		/** The registry of deployed content shared by all builds. */
+		private transient DeploymentRegistry deploymentRegistry;
+
+		/** The rollback repository shared by all builds. */
+		private transient RollbackRepository rollbackRepository;
+
+		/** The cell topologies shared by all job configurations. */
+		private transient TopologyCache topologyCache;
+
+		/** The deployment scheduler. */
+		private transient DeploymentScheduler scheduler;
+
 		/**
 		 * Instantiates a new descriptor impl.
 		 */
@@ -889,6 +2127,7 @@ public class WebSphereDeployerPlugin extends Notifier {
 							"Cannot find the required IBM WebSphere Application Server jar files in '" + destination
 									+ "'. Please copy them from IBM WebSphere Application Server (see plugin documentation)");
 				}
+				service.setConnectionPool(getConnectionPool());
 				service.setConnectorType(connectorType);
 				service.setHost(ipAddress);
 				service.setPort(port);
@@ -910,6 +2149,123 @@ public class WebSphereDeployerPlugin extends Notifier {
 			}
 		}
 
+		/**
+		 * Loads the servers and clusters of the cell, so they can be looked
+		 * up while entering the deployment targets.
+		 *
+		 * @param ipAddress
+		 *            the ip address
+		 * @param connectorType
+		 *            the connector type
+		 * @param port
+		 *            the port
+		 * @param username
+		 *            the username
+		 * @param password
+		 *            the password
+		 * @param clientKeyFile
+		 *            the client key file
+		 * @param clientTrustFile
+		 *            the client trust file
+		 * @param clientKeyPassword
+		 *            the client key password
+		 * @param clientTrustPassword
+		 *            the client trust password
+		 * @return the form validation
+		 * @throws IOException
+		 *             Signals that an I/O exception has occurred.
+		 * @throws ServletException
+		 *             the servlet exception
+		 */
+		public FormValidation doLoadTargets(@QueryParameter("ipAddress") final String ipAddress,
+				@QueryParameter("connectorType") final String connectorType, @QueryParameter("port") final String port,
+				@QueryParameter("username") final String username, @QueryParameter("password") final String password,
+				@QueryParameter("clientKeyFile") final String clientKeyFile,
+				@QueryParameter("clientTrustFile") final String clientTrustFile,
+				@QueryParameter("clientKeyPassword") final String clientKeyPassword,
+				@QueryParameter("clientTrustPassword") final String clientTrustPassword)
+				throws IOException, ServletException {
+			try {
+				CellTopology topology = getTopologyCache().load(TopologyCache.key(ipAddress, port),
+						new Callable<CellTopology>() {
+							public CellTopology call() throws Exception {
+								WebSphereDeploymentService service = new WebSphereDeploymentService();
+								try {
+									service.setConnectionPool(getConnectionPool());
+									service.setConnectorType(connectorType);
+									service.setHost(ipAddress);
+									service.setPort(port);
+									service.setUsername(username);
+									service.setPassword(password);
+									service.setKeyStoreLocation(new File(clientKeyFile));
+									service.setKeyStorePassword(clientKeyPassword);
+									service.setTrustStoreLocation(new File(clientTrustFile));
+									service.setTrustStorePassword(clientTrustPassword);
+									service.connect();
+									return new CellTopology(service.listServers(), service.listClusters(),
+											System.currentTimeMillis());
+								} finally {
+									service.disconnect();
+								}
+							}
+						});
+				return FormValidation.ok("Loaded " + topology);
+			} catch (Exception e) {
+				return FormValidation.error("Loading targets failed: " + e.getMessage());
+			}
+		}
+
+		/**
+		 * Suggests servers and clusters of the loaded cells.
+		 *
+		 * @param value
+		 *            the value
+		 * @return the auto completion candidates
+		 */
+		public AutoCompletionCandidates doAutoCompleteTargetSearch(@QueryParameter String value) {
+			AutoCompletionCandidates candidates = new AutoCompletionCandidates();
+			if (StringUtils.trimToNull(value) == null) {
+				return candidates;
+			}
+			for (CellTopology topology : getTopologyCache().getAll()) {
+				for (String target : topology.find(value, MAX_TARGET_CANDIDATES)) {
+					candidates.add(target);
+				}
+			}
+			return candidates;
+		}
+
+		/**
+		 * Do check targets. Targets are only checked once the topology of the
+		 * cell has been loaded.
+		 *
+		 * @param value
+		 *            the value
+		 * @param ipAddress
+		 *            the ip address
+		 * @param port
+		 *            the port
+		 * @return the form validation
+		 */
+		public FormValidation doCheckTargets(@QueryParameter String value, @QueryParameter String ipAddress,
+				@QueryParameter String port) {
+			CellTopology topology = getTopologyCache().get(TopologyCache.key(ipAddress, port));
+			if (topology == null || value == null) {
+				return FormValidation.ok();
+			}
+			List<String> unknown = new ArrayList<String>();
+			for (StringTokenizer st = new StringTokenizer(value.trim(), "\r\n"); st.hasMoreTokens();) {
+				String target = st.nextToken().trim();
+				if (target.length() > 0 && !topology.contains(target)) {
+					unknown.add(target);
+				}
+			}
+			if (!unknown.isEmpty()) {
+				return FormValidation.warning("Not found in the cell (" + topology + "): " + unknown);
+			}
+			return FormValidation.ok();
+		}
+
 		/**
 		 * Do check port.
 		 *
@@ -1037,5 +2393,113 @@ public class WebSphereDeployerPlugin extends Notifier {
 		public String getOrbClientPath() {
 			return orbClientPath;
 		}
+
+		/**
+		 * Gets the connection pool.
+		 *
+		 * @return the connection pool
+		 */
+		public synchronized AdminClientPool getConnectionPool() {
+			if (connectionPool == null) {
+				connectionPool = new AdminClientPool();
+			}
+			return connectionPool;
+		}
+
+		/**
+		 * Gets the scheduler limiting the concurrent operations per cell. The
+		 * limit can be changed with the system property
+		 * <code>org.jenkinsci.plugins.websphere.services.deployment.DeploymentScheduler.maxConcurrentOperations</code>.
+		 *
+		 * @return the scheduler
+		 */
+		public synchronized DeploymentScheduler getScheduler() {
+			if (scheduler == null) {
+				scheduler = new DeploymentScheduler(
+						Integer.getInteger(DeploymentScheduler.class.getName() + ".maxConcurrentOperations",
+								DeploymentScheduler.DEFAULT_MAX_CONCURRENT_OPERATIONS));
+			}
+			return scheduler;
+		}
+
+		/**
+		 * Gets the cache of cell topologies. Its time to live can be changed
+		 * with the system property
+		 * <code>org.jenkinsci.plugins.websphere_deployer.TopologyCache.ttl</code>
+		 * (milliseconds).
+		 *
+		 * @return the topology cache
+		 */
+		public synchronized TopologyCache getTopologyCache() {
+			if (topologyCache == null) {
+				topologyCache = new TopologyCache(
+						Long.getLong(TopologyCache.class.getName() + ".ttl", TopologyCache.DEFAULT_TTL_MILLIS));
+			}
+			return topologyCache;
+		}
+
+		/**
+		 * Gets the stores used by deployments running on the controller.
+		 *
+		 * @return the stores
+		 */
+		public DeploymentStores getStores() {
+			return new DeploymentStores(getConnectionPool(), getScheduler(), getEarCache(),
+					getDeploymentRegistry(), getRollbackRepository());
+		}
+
+		/**
+		 * Gets the EAR cache, kept in the Jenkins root directory. Its size can
+		 * be changed with the system property
+		 * <code>org.jenkinsci.plugins.websphere.services.deployment.EarCache.maxSize</code>
+		 * (bytes).
+		 *
+		 * @return the EAR cache
+		 */
+		public synchronized EarCache getEarCache() {
+			if (earCache == null) {
+				File directory = new File(Jenkins.getInstance().getRootDir(), "websphere-deployer" + File.separator
+						+ "ear-cache");
+				earCache = new EarCache(directory,
+						Long.getLong(EarCache.class.getName() + ".maxSize", EarCache.DEFAULT_MAX_SIZE));
+			}
+			return earCache;
+		}
+
+		/**
+		 * Gets the registry of deployed content, kept in the Jenkins root
+		 * directory.
+		 *
+		 * @return the deployment registry
+		 */
+		public synchronized DeploymentRegistry getDeploymentRegistry() {
+			if (deploymentRegistry == null) {
+				deploymentRegistry = new DeploymentRegistry(new File(Jenkins.getInstance().getRootDir(),
+						"websphere-deployer" + File.separator + "deployments.properties"));
+			}
+			return deploymentRegistry;
+		}
+
+		/**
+		 * Gets the rollback repository, kept in the Jenkins root directory.
+		 * The number of versions kept per application and the total size of
+		 * the archives can be changed with the system properties
+		 * <code>org.jenkinsci.plugins.websphere_deployer.RollbackRepository.maxVersions</code>
+		 * and
+		 * <code>org.jenkinsci.plugins.websphere_deployer.RollbackRepository.maxSize</code>.
+		 *
+		 * @return the rollback repository
+		 */
+		public synchronized RollbackRepository getRollbackRepository() {
+			if (rollbackRepository == null) {
+				rollbackRepository = new RollbackRepository(
+						new File(Jenkins.getInstance().getRootDir(), "websphere-deployer" + File.separator + "rollbacks"),
+						Integer.getInteger(RollbackRepository.class.getName() + ".maxVersions",
+								RollbackRepository.DEFAULT_MAX_VERSIONS),
+						Long.getLong(RollbackRepository.class.getName() + ".maxSize",
+								RollbackRepository.DEFAULT_MAX_SIZE));
+			}
+			return rollbackRepository;
+		}
 	}
 }
@@ -3,6 +3,8 @@
  */
 package org.jenkinsci.plugins.websphere_deployer;
 
+import java.io.Serializable;
+
 import org.kohsuke.stapler.DataBoundConstructor;
 
 import hudson.util.Scrambler;
@@ -10,7 +12,10 @@ import hudson.util.Scrambler;
 /**
  * The Class WebSphereSecurity.
  */
-public class WebSphereSecurity {
+public class WebSphereSecurity implements Serializable {
+
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
 
 	/** The username. */
 	private String username;
@@ -117,4 +117,50 @@ public class WebSphereTarget {
 	public void setSelected(boolean selected) {
 		this.selected = selected;
 	}
+
+	/**
+	 * Parses a target, e.g. <code>WebSphere:cell=c,node=n,server=s</code> or
+	 * <code>WebSphere:cell=c,cluster=c</code>.
+	 *
+	 * @param target
+	 *            the target
+	 * @return the WebSphere target
+	 */
+	public static WebSphereTarget parse(String target) {
+		WebSphereTarget result = new WebSphereTarget();
+		String properties = target.trim();
+		if (properties.startsWith("WebSphere:")) {
+			properties = properties.substring("WebSphere:".length());
+		}
+		for (String property : properties.split(",")) {
+			int separator = property.indexOf('=');
+			if (separator < 0) {
+				continue;
+			}
+			String key = property.substring(0, separator).trim();
+			String value = property.substring(separator + 1).trim();
+			if (key.equals("cell")) {
+				result.setCell(value);
+			} else if (key.equals("node")) {
+				result.setNode(value);
+			} else if (key.equals("server") || key.equals("name")) {
+				result.setServer(value);
+			} else if (key.equals("cluster")) {
+				result.setCluster(value);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Gets the target, as expected by the deployment targets setting.
+	 *
+	 * @return the target
+	 */
+	public String getTarget() {
+		if (cluster != null) {
+			return "WebSphere:cell=" + cell + ",cluster=" + cluster;
+		}
+		return "WebSphere:cell=" + cell + ",node=" + node + ",server=" + server;
+	}
 }
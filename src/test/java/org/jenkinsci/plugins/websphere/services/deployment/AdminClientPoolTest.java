@@ -0,0 +1,130 @@
+/*
+ *
+ */
+package org.jenkinsci.plugins.websphere.services.deployment;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.io.OutputStream;
+import java.util.Properties;
+
+import org.jenkinsci.plugins.websphere.services.deployment.fake.FakeWebSphereCell;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ibm.websphere.management.AdminClient;
+
+import hudson.model.StreamBuildListener;
+
+/**
+ * Tests the {@link AdminClientPool} with connections to a
+ * {@link FakeWebSphereCell}.
+ */
+public class AdminClientPoolTest {
+
+	/** The cell. */
+	private FakeWebSphereCell cell;
+
+	/** The pool. */
+	private AdminClientPool pool;
+
+	/**
+	 * Creates the cell and the pool.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Before
+	public void setUp() throws Exception {
+		cell = new FakeWebSphereCell("cell", 1, 1);
+		pool = new AdminClientPool();
+	}
+
+	/**
+	 * Closes the pool and the cell.
+	 */
+	@After
+	public void tearDown() {
+		pool.clear();
+		cell.shutdown();
+	}
+
+	/**
+	 * Tests that a released connection is handed out again for the same
+	 * configuration only.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test
+	public void testLeaseReusesReleasedConnection() throws Exception {
+		AdminClient client = pool.lease(getConfig("8879"), cell.getConnectionFactory());
+		pool.release(client);
+		assertEquals(1, pool.getIdleCount());
+		assertNotSame(client, pool.lease(getConfig("8880"), cell.getConnectionFactory()));
+		assertSame(client, pool.lease(getConfig("8879"), cell.getConnectionFactory()));
+		assertEquals(0, pool.getIdleCount());
+		assertEquals(2, pool.getLeasedCount());
+	}
+
+	/**
+	 * Tests that an invalidated connection is not handed out again.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test
+	public void testInvalidatedConnectionIsNotReused() throws Exception {
+		AdminClient client = pool.lease(getConfig("8879"), cell.getConnectionFactory());
+		pool.invalidate(client);
+		assertEquals(0, pool.getIdleCount());
+		assertEquals(0, pool.getLeasedCount());
+		assertNotSame(client, pool.lease(getConfig("8879"), cell.getConnectionFactory()));
+	}
+
+	/**
+	 * Tests that connecting a service twice hands the first connection back
+	 * to the pool instead of leaking it.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test
+	public void testConnectTwiceReleasesPreviousConnection() throws Exception {
+		WebSphereDeploymentService service = new WebSphereDeploymentService();
+		service.setConnectionFactory(cell.getConnectionFactory());
+		service.setConnectionPool(pool);
+		service.setBuildListener(new StreamBuildListener(new OutputStream() {
+			@Override
+			public void write(int b) {
+			}
+		}));
+		service.setHost("localhost");
+		service.setPort("8879");
+		service.setConnectorType("SOAP");
+		service.connect();
+		service.connect();
+		assertEquals(1, pool.getLeasedCount());
+		service.disconnect();
+		assertEquals(0, pool.getLeasedCount());
+		assertEquals(1, pool.getIdleCount());
+	}
+
+	/**
+	 * Gets the connector configuration of a port.
+	 *
+	 * @param port
+	 *            the port
+	 * @return the config
+	 */
+	private static Properties getConfig(String port) {
+		Properties config = new Properties();
+		config.put(AdminClient.CONNECTOR_HOST, "localhost");
+		config.put(AdminClient.CONNECTOR_PORT, port);
+		config.put(AdminClient.CONNECTOR_TYPE, "SOAP");
+		return config;
+	}
+}
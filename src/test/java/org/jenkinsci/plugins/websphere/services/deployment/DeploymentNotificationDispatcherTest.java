@@ -0,0 +1,259 @@
+/*
+ *
+ */
+package org.jenkinsci.plugins.websphere.services.deployment;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.util.Hashtable;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.Notification;
+
+import org.jenkinsci.plugins.websphere.services.deployment.fake.FakeWebSphereCell;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ibm.websphere.management.AdminClient;
+import com.ibm.websphere.management.application.AppConstants;
+import com.ibm.websphere.management.application.AppNotification;
+
+import hudson.model.BuildListener;
+import hudson.model.StreamBuildListener;
+
+/**
+ * Tests how the {@link DeploymentNotificationDispatcher} routes
+ * notifications to the operations waiting for them.
+ */
+public class DeploymentNotificationDispatcherTest {
+
+	/** The listener. */
+	private static final BuildListener LISTENER = new StreamBuildListener(new OutputStream() {
+		@Override
+		public void write(int b) {
+		}
+	});
+
+	/** The cell. */
+	private FakeWebSphereCell cell;
+
+	/** The admin client. */
+	private AdminClient adminClient;
+
+	/** The dispatcher. */
+	private DeploymentNotificationDispatcher dispatcher;
+
+	/**
+	 * Registers a dispatcher with a connection to the cell.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Before
+	public void setUp() throws Exception {
+		cell = new FakeWebSphereCell("cell", 1, 1);
+		adminClient = cell.newAdminClient(new Properties());
+		dispatcher = DeploymentNotificationDispatcher.getInstance(adminClient);
+	}
+
+	/**
+	 * Unregisters the dispatcher.
+	 */
+	@After
+	public void tearDown() {
+		DeploymentNotificationDispatcher.close(adminClient);
+		cell.shutdown();
+	}
+
+	/**
+	 * Tests that a notification naming an application only completes the
+	 * operation of that application.
+	 */
+	@Test
+	public void testRoutesByAppName() {
+		DeploymentCompletion alpha = dispatcher.expect(AppNotification.INSTALL, "alpha", LISTENER, false);
+		DeploymentCompletion beta = dispatcher.expect(AppNotification.INSTALL, "beta", LISTENER, false);
+		send(AppNotification.INSTALL, AppNotification.STATUS_COMPLETED, "beta", "Completed");
+		assertFalse(alpha.isDone());
+		assertTrue(beta.isSuccessful());
+	}
+
+	/**
+	 * Tests that a notification of another task is not routed.
+	 */
+	@Test
+	public void testRoutesByTaskName() {
+		DeploymentCompletion alpha = dispatcher.expect(AppNotification.INSTALL, "alpha", LISTENER, false);
+		send(AppNotification.UNINSTALL, AppNotification.STATUS_COMPLETED, "alpha", "Completed");
+		assertFalse(alpha.isDone());
+	}
+
+	/**
+	 * Tests that a failure notification fails the operation.
+	 */
+	@Test
+	public void testFailureFailsOperation() {
+		DeploymentCompletion alpha = dispatcher.expect(AppNotification.INSTALL, "alpha", LISTENER, false);
+		send(AppNotification.INSTALL, AppNotification.STATUS_FAILED, "alpha", "ADMA5014E: Installation failed");
+		assertTrue(alpha.isDone());
+		assertFalse(alpha.isSuccessful());
+		assertTrue(alpha.getMessage().contains("ADMA5014E"));
+	}
+
+	/**
+	 * Tests that a notification without an application name completes the
+	 * only pending operation of its task.
+	 */
+	@Test
+	public void testRoutesAnonymousNotificationToOnlyPendingOperation() {
+		DeploymentCompletion alpha = dispatcher.expect(AppNotification.INSTALL, "alpha", LISTENER, false);
+		send(AppNotification.INSTALL, AppNotification.STATUS_COMPLETED, null, "Completed");
+		assertTrue(alpha.isSuccessful());
+	}
+
+	/**
+	 * Tests that a notification without an application name completes the
+	 * operation of the application its message names.
+	 */
+	@Test
+	public void testRoutesAnonymousNotificationByMessage() {
+		DeploymentCompletion alpha = dispatcher.expect(AppNotification.INSTALL, "alpha", LISTENER, false);
+		DeploymentCompletion beta = dispatcher.expect(AppNotification.INSTALL, "beta", LISTENER, false);
+		send(AppNotification.INSTALL, AppNotification.STATUS_COMPLETED, null,
+				"ADMA5013I: Application beta installed successfully.");
+		assertFalse(alpha.isDone());
+		assertTrue(beta.isSuccessful());
+	}
+
+	/**
+	 * Tests that a notification that cannot be told apart makes the pending
+	 * operations check their outcome, completing only those that have.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test
+	public void testChecksOutcomesOfAmbiguousNotification() throws Exception {
+		DeploymentCompletion alpha = dispatcher.expect(AppNotification.INSTALL, "alpha", LISTENER, false);
+		DeploymentCompletion beta = dispatcher.expect(AppNotification.INSTALL, "beta", LISTENER, false);
+		alpha.setOutcomeCheck(new Outcome(true));
+		beta.setOutcomeCheck(new Outcome(false));
+		send(AppNotification.INSTALL, AppNotification.STATUS_COMPLETED, null, "Completed");
+		assertTrue(alpha.await(5, TimeUnit.SECONDS));
+		assertTrue(alpha.isSuccessful());
+		assertFalse(beta.await(100, TimeUnit.MILLISECONDS));
+	}
+
+	/**
+	 * Tests that operations complete against a cell whose notifications never
+	 * name the application.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test
+	public void testConcurrentOperationsWithAnonymousNotifications() throws Exception {
+		cell.setAnonymousNotifications(true);
+		cell.setOperationMillis(20);
+		WebSphereDeploymentService service = new WebSphereDeploymentService();
+		service.setConnectionFactory(cell.getConnectionFactory());
+		service.setBuildListener(LISTENER);
+		service.setHost("localhost");
+		service.setPort("8879");
+		service.setConnectorType("SOAP");
+		service.connect();
+		try {
+			DeploymentFuture<Void> alpha = service.installArtifactAsync(newArtifact("alpha"));
+			DeploymentFuture<Void> beta = service.installArtifactAsync(newArtifact("beta"));
+			alpha.get(10, TimeUnit.SECONDS);
+			beta.get(10, TimeUnit.SECONDS);
+			assertTrue(cell.getApplications().contains("alpha"));
+			assertTrue(cell.getApplications().contains("beta"));
+			alpha = service.uninstallArtifactAsync("alpha");
+			beta = service.uninstallArtifactAsync("beta");
+			alpha.get(10, TimeUnit.SECONDS);
+			beta.get(10, TimeUnit.SECONDS);
+			assertTrue(cell.getApplications().isEmpty());
+		} finally {
+			service.disconnect();
+		}
+	}
+
+	/**
+	 * Sends an application notification to the dispatcher.
+	 *
+	 * @param taskName
+	 *            the task name
+	 * @param taskStatus
+	 *            the task status
+	 * @param appName
+	 *            the app name, null to leave it out
+	 * @param message
+	 *            the message
+	 */
+	private void send(String taskName, String taskStatus, String appName, String message) {
+		Properties props = new Properties();
+		if (appName != null) {
+			props.setProperty(AppConstants.APPDEPL_APPNAME, appName);
+		}
+		AppNotification appNotification = new AppNotification(taskName, null, taskStatus, message, props);
+		appNotification.taskName = taskName;
+		appNotification.taskStatus = taskStatus;
+		appNotification.message = message;
+		appNotification.props = props;
+		Notification notification = new Notification(AppConstants.NotificationType, dispatcher.getObjectName(), 1,
+				message);
+		notification.setUserData(appNotification);
+		dispatcher.handleNotification(notification, null);
+	}
+
+	/**
+	 * Creates the artifact of an application.
+	 *
+	 * @param appName
+	 *            the app name
+	 * @return the artifact
+	 */
+	private static Artifact newArtifact(String appName) {
+		Artifact artifact = new Artifact();
+		artifact.setType(Artifact.TYPE_WAR);
+		artifact.setAppName(appName);
+		artifact.setSourcePath(new File(appName + ".war"));
+		artifact.setDeploymentPreferences(new Hashtable<String, Object>());
+		return artifact;
+	}
+
+	/**
+	 * An outcome check with a fixed answer.
+	 */
+	private static final class Outcome implements Callable<Boolean> {
+
+		/** The completed. */
+		private final boolean completed;
+
+		/**
+		 * Instantiates a new outcome.
+		 *
+		 * @param completed
+		 *            whether the operation has completed
+		 */
+		private Outcome(boolean completed) {
+			this.completed = completed;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see java.util.concurrent.Callable#call()
+		 */
+		public Boolean call() {
+			return completed;
+		}
+	}
+}
@@ -0,0 +1,137 @@
+/*
+ *
+ */
+package org.jenkinsci.plugins.websphere.services.deployment;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * Tests the {@link DeploymentScheduler}.
+ */
+public class DeploymentSchedulerTest {
+
+	/** The executor running the actions of admitted permits right away. */
+	private static final Executor DIRECT = new Executor() {
+		public void execute(Runnable command) {
+			command.run();
+		}
+	};
+
+	/**
+	 * Tests that operations beyond the limit of a cell wait until another one
+	 * ends, while other cells are not affected.
+	 */
+	@Test
+	public void testLimitsOperationsPerCell() {
+		DeploymentScheduler scheduler = new DeploymentScheduler(2);
+		DeploymentScheduler.Permit first = scheduler.enqueue("dmgr:8879", "build #1", "install 'a'");
+		DeploymentScheduler.Permit second = scheduler.enqueue("dmgr:8879", "build #1", "install 'b'");
+		DeploymentScheduler.Permit third = scheduler.enqueue("dmgr:8879", "build #1", "install 'c'");
+		DeploymentScheduler.Permit other = scheduler.enqueue("other:8879", "build #1", "install 'd'");
+		assertTrue(first.isAdmitted());
+		assertTrue(second.isAdmitted());
+		assertFalse(third.isAdmitted());
+		assertTrue(other.isAdmitted());
+		assertEquals(2, third.getQueueDepth());
+		first.release();
+		assertTrue(third.isAdmitted());
+		assertFalse(first.isAdmitted());
+	}
+
+	/**
+	 * Tests that a build queueing many operations takes turns with a build
+	 * queueing later.
+	 */
+	@Test
+	public void testTakesTurnsBetweenOwners() {
+		DeploymentScheduler scheduler = new DeploymentScheduler(1);
+		DeploymentScheduler.Permit a1 = scheduler.enqueue("dmgr:8879", "build #1", "install 'a1'");
+		DeploymentScheduler.Permit a2 = scheduler.enqueue("dmgr:8879", "build #1", "install 'a2'");
+		DeploymentScheduler.Permit a3 = scheduler.enqueue("dmgr:8879", "build #1", "install 'a3'");
+		DeploymentScheduler.Permit b1 = scheduler.enqueue("dmgr:8879", "build #2", "install 'b1'");
+		DeploymentScheduler.Permit b2 = scheduler.enqueue("dmgr:8879", "build #2", "install 'b2'");
+		a1.release();
+		assertTrue(b1.isAdmitted());
+		b1.release();
+		assertTrue(a2.isAdmitted());
+		a2.release();
+		assertTrue(b2.isAdmitted());
+		b2.release();
+		assertTrue(a3.isAdmitted());
+		assertEquals(5, scheduler.getCells().get(0).getAdmitted());
+	}
+
+	/**
+	 * Tests that the action of a permit runs once it is admitted, without a
+	 * thread waiting for it.
+	 */
+	@Test
+	public void testWhenAdmittedRunsActionOnceAdmitted() {
+		DeploymentScheduler scheduler = new DeploymentScheduler(1);
+		AtomicInteger runs = new AtomicInteger();
+		DeploymentScheduler.Permit first = scheduler.enqueue("dmgr:8879", "build #1", "install 'a'");
+		first.whenAdmitted(new Counter(runs), DIRECT);
+		assertEquals(1, runs.get());
+		DeploymentScheduler.Permit second = scheduler.enqueue("dmgr:8879", "build #1", "install 'b'");
+		second.whenAdmitted(new Counter(runs), DIRECT);
+		assertEquals(1, runs.get());
+		first.release();
+		assertEquals(2, runs.get());
+		second.release();
+		assertEquals(2, runs.get());
+	}
+
+	/**
+	 * Tests that the action of a withdrawn permit never runs and the next
+	 * operation is admitted instead.
+	 */
+	@Test
+	public void testWhenAdmittedSkipsWithdrawnPermit() {
+		DeploymentScheduler scheduler = new DeploymentScheduler(1);
+		AtomicInteger runs = new AtomicInteger();
+		DeploymentScheduler.Permit first = scheduler.enqueue("dmgr:8879", "build #1", "install 'a'");
+		DeploymentScheduler.Permit withdrawn = scheduler.enqueue("dmgr:8879", "build #1", "install 'b'");
+		withdrawn.whenAdmitted(new Counter(runs), DIRECT);
+		DeploymentScheduler.Permit third = scheduler.enqueue("dmgr:8879", "build #1", "install 'c'");
+		withdrawn.release();
+		first.release();
+		assertEquals(0, runs.get());
+		assertTrue(third.isAdmitted());
+		assertTrue(scheduler.getCells().get(0).getWaiting().isEmpty());
+	}
+
+	/**
+	 * Counts its runs.
+	 */
+	private static final class Counter implements Runnable {
+
+		/** The runs. */
+		private final AtomicInteger runs;
+
+		/**
+		 * Instantiates a new counter.
+		 *
+		 * @param runs
+		 *            the runs
+		 */
+		private Counter(AtomicInteger runs) {
+			this.runs = runs;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see java.lang.Runnable#run()
+		 */
+		public void run() {
+			runs.incrementAndGet();
+		}
+	}
+}
@@ -0,0 +1,218 @@
+/*
+ *
+ */
+package org.jenkinsci.plugins.websphere.services.deployment;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.jenkinsci.plugins.websphere.services.deployment.fake.FakeWebSphereCell;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import hudson.model.BuildListener;
+import hudson.model.StreamBuildListener;
+
+/**
+ * Tests the {@link WebSphereDeploymentService} against a
+ * {@link FakeWebSphereCell}.
+ */
+public class WebSphereDeploymentServiceTest {
+
+	/** The temporary folder. */
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/** The cell. */
+	private FakeWebSphereCell cell;
+
+	/** The service. */
+	private WebSphereDeploymentService service;
+
+	/** The listener. */
+	private BuildListener listener;
+
+	/**
+	 * Connects to a cell of two nodes with two servers each.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Before
+	public void setUp() throws Exception {
+		cell = new FakeWebSphereCell("cell", 2, 2);
+		cell.setOperationMillis(10);
+		cell.setDistributionMillis(20);
+		service = new WebSphereDeploymentService();
+		service.setConnectionFactory(cell.getConnectionFactory());
+		listener = new StreamBuildListener(new OutputStream() {
+			@Override
+			public void write(int b) {
+			}
+		});
+		service.setBuildListener(listener);
+		service.setHost("localhost");
+		service.setPort("8879");
+		service.setConnectorType("SOAP");
+		service.connect();
+	}
+
+	/**
+	 * Disconnects from the cell.
+	 */
+	@After
+	public void tearDown() {
+		service.disconnect();
+		cell.shutdown();
+	}
+
+	/**
+	 * Tests that WebSphere restarts an updated application everywhere unless
+	 * told otherwise.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test
+	public void testUpdateRestartsApplication() throws Exception {
+		Artifact artifact = installAndStart("app");
+		service.updateArtifact(artifact);
+		assertEquals(4, cell.getRestartsOnUpdate());
+	}
+
+	/**
+	 * Tests that a rolling update leaves the restarts to the waves, so the
+	 * servers of the other waves keep running the old version meanwhile.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test
+	public void testRollingUpdateDoesNotRestartOnUpdate() throws Exception {
+		Artifact artifact = installAndStart("app");
+		List<String> servers = new ArrayList<String>(cell.getRunningOn("app"));
+		artifact.setRestartOnUpdate(false);
+		service.updateArtifact(artifact);
+		service.startArtifactInWaves("app", Arrays.asList(servers.subList(0, 2), servers.subList(2, 4)), 1);
+		assertEquals(0, cell.getRestartsOnUpdate());
+		assertEquals(4, cell.getRunningOn("app").size());
+	}
+
+	/**
+	 * Tests that asynchronous installs beyond the limit of the scheduler are
+	 * queued and still complete.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test
+	public void testScheduledInstallsComplete() throws Exception {
+		DeploymentScheduler scheduler = new DeploymentScheduler(1);
+		service.setScheduler(scheduler, "build #1");
+		List<DeploymentFuture<Void>> futures = new ArrayList<DeploymentFuture<Void>>();
+		for (String appName : Arrays.asList("a", "b", "c")) {
+			futures.add(service.installArtifactAsync(newArtifact(appName)));
+		}
+		for (DeploymentFuture<Void> future : futures) {
+			future.get(10, TimeUnit.SECONDS);
+		}
+		assertEquals(new HashSet<String>(Arrays.asList("a", "b", "c")), cell.getApplications());
+		assertEquals(3, scheduler.getCells().get(0).getAdmitted());
+		assertTrue(scheduler.getCells().get(0).getRunning().isEmpty());
+	}
+
+	/**
+	 * Tests that sessions sharing the connection of the service deploy
+	 * artifacts at the same time, and that disconnecting a session leaves
+	 * the shared connection open.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test
+	public void testSessionsDeployInParallel() throws Exception {
+		cell.setOperationMillis(200);
+		List<String> appNames = Arrays.asList("a", "b", "c", "d");
+		ExecutorService executor = Executors.newFixedThreadPool(appNames.size());
+		try {
+			List<Future<?>> deployments = new ArrayList<Future<?>>();
+			long start = System.currentTimeMillis();
+			for (String appName : appNames) {
+				final WebSphereDeploymentService session = service.createSession(listener);
+				final Artifact artifact = newArtifact(appName);
+				deployments.add(executor.submit(new Callable<Void>() {
+					public Void call() throws Exception {
+						try {
+							session.installArtifact(artifact);
+							session.startArtifact(artifact.getAppName(), 1);
+						} finally {
+							session.disconnect();
+						}
+						return null;
+					}
+				}));
+			}
+			for (Future<?> deployment : deployments) {
+				deployment.get(10, TimeUnit.SECONDS);
+			}
+			// one after the other, the installs alone would take 800 ms
+			assertTrue(System.currentTimeMillis() - start < 800);
+		} finally {
+			executor.shutdownNow();
+		}
+		for (String appName : appNames) {
+			assertTrue(cell.isRunning(appName));
+		}
+		assertTrue(service.isConnected());
+	}
+
+	/**
+	 * Creates the artifact of an application.
+	 *
+	 * @param appName
+	 *            the app name
+	 * @return the artifact
+	 * @throws Exception
+	 *             the exception
+	 */
+	private Artifact newArtifact(String appName) throws Exception {
+		Artifact artifact = new Artifact();
+		artifact.setType(Artifact.TYPE_WAR);
+		artifact.setAppName(appName);
+		artifact.setSourcePath(folder.newFile(appName + ".war"));
+		artifact.setDeploymentPreferences(new Hashtable<String, Object>());
+		return artifact;
+	}
+
+	/**
+	 * Installs and starts an application on every server of the cell.
+	 *
+	 * @param appName
+	 *            the app name
+	 * @return the artifact
+	 * @throws Exception
+	 *             the exception
+	 */
+	private Artifact installAndStart(String appName) throws Exception {
+		Artifact artifact = newArtifact(appName);
+		service.installArtifact(artifact);
+		service.startArtifact(appName, 1);
+		assertTrue(cell.isRunning(appName));
+		return artifact;
+	}
+}
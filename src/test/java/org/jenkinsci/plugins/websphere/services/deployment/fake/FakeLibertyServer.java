@@ -0,0 +1,718 @@
+/*
+ *
+ */
+package org.jenkinsci.plugins.websphere.services.deployment.fake;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.MBeanServerConnection;
+import javax.management.MBeanServerFactory;
+import javax.management.NotificationFilter;
+import javax.management.NotificationListener;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import javax.management.remote.JMXConnector;
+import javax.management.remote.JMXServiceURL;
+import javax.security.auth.Subject;
+
+import org.jenkinsci.plugins.websphere.services.deployment.LibertyConnectionFactory;
+
+import com.ibm.websphere.application.ApplicationMBean;
+import com.ibm.websphere.filetransfer.FileTransferMBean;
+
+/**
+ * An in-process stand-in for a WebSphere Liberty server, for running and
+ * measuring deployments without a server. It is an <code>MBeanServer</code>
+ * with the FileTransfer MBean of the REST connector and an Application MBean
+ * per installed application, reached by a
+ * {@link org.jenkinsci.plugins.websphere.services.deployment.LibertyDeploymentService}
+ * through the same <code>connect()</code> as a real server.
+ * <p>
+ * Like Liberty, the server polls its dropins directory: an uploaded archive
+ * is installed at the next poll and started after the start time, a changed
+ * archive is restarted and a deleted one is removed. Every call waits for
+ * the configured call latency and failures can be injected per operation.
+ */
+public class FakeLibertyServer {
+
+	/** The Constant FILE_TRANSFER_M_BEAN_NAME. */
+	public static final String FILE_TRANSFER_M_BEAN_NAME = "WebSphere:feature=restConnector,type=FileTransfer,name=FileTransfer";
+
+	/** The Constant APPLICATION_M_BEAN_NAME. */
+	public static final String APPLICATION_M_BEAN_NAME = "WebSphere:service=com.ibm.websphere.application.ApplicationMBean,name=";
+
+	/** The Constant SERVER_OUTPUT_DIR, the variable of the output directory. */
+	private static final String SERVER_OUTPUT_DIR = "${server.output.dir}";
+
+	/** The username. */
+	private final String username;
+
+	/** The password. */
+	private final String password;
+
+	/** The output directory of the server. */
+	private final File outputDir;
+
+	/** The dropins directory. */
+	private final File dropins;
+
+	/** The MBean server. */
+	private final MBeanServer mbeanServer = MBeanServerFactory.newMBeanServer();
+
+	/** The latency of every call in milliseconds. */
+	private volatile long callLatencyMillis;
+
+	/** The interval the dropins directory is polled at in milliseconds. */
+	private volatile long monitorIntervalMillis = 500;
+
+	/** The time starting or stopping an application takes in milliseconds. */
+	private volatile long startMillis = 200;
+
+	/** The number of injected failures left, by operation. */
+	private final Map<String, Integer> failures = new HashMap<String, Integer>();
+
+	/** The installed applications, by name. */
+	private final Map<String, Application> applications = new TreeMap<String, Application>();
+
+	/** The number of calls made to the server. */
+	private final AtomicLong calls = new AtomicLong();
+
+	/** The sequence number of the application pids. */
+	private final AtomicInteger pids = new AtomicInteger();
+
+	/** The scheduler polling the dropins directory and starting applications. */
+	private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "Fake Liberty server");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+
+	/**
+	 * Instantiates a new fake Liberty server in a temporary directory.
+	 *
+	 * @param username
+	 *            the username of the administrator
+	 * @param password
+	 *            the password of the administrator
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 * @throws JMException
+	 *             the JM exception
+	 */
+	public FakeLibertyServer(String username, String password) throws IOException, JMException {
+		this.username = username;
+		this.password = password;
+		this.outputDir = Files.createTempDirectory("fake-liberty").toFile();
+		this.dropins = new File(outputDir, "dropins");
+		if (!dropins.mkdirs()) {
+			throw new IOException("Could not create " + dropins);
+		}
+		mbeanServer.registerMBean(new StandardMBean(new FileTransfer(), FileTransferMBean.class),
+				new ObjectName(FILE_TRANSFER_M_BEAN_NAME));
+		scheduleScan();
+	}
+
+	/**
+	 * Sets the latency of every call.
+	 *
+	 * @param callLatencyMillis
+	 *            the call latency in milliseconds
+	 */
+	public void setCallLatencyMillis(long callLatencyMillis) {
+		this.callLatencyMillis = callLatencyMillis;
+	}
+
+	/**
+	 * Sets the interval the dropins directory is polled at. Liberty polls
+	 * every 500 milliseconds by default.
+	 *
+	 * @param monitorIntervalMillis
+	 *            the monitor interval in milliseconds
+	 */
+	public void setMonitorIntervalMillis(long monitorIntervalMillis) {
+		this.monitorIntervalMillis = monitorIntervalMillis;
+	}
+
+	/**
+	 * Sets the time starting or stopping an application takes.
+	 *
+	 * @param startMillis
+	 *            the start time in milliseconds
+	 */
+	public void setStartMillis(long startMillis) {
+		this.startMillis = startMillis;
+	}
+
+	/**
+	 * Makes the next calls of an operation fail.
+	 *
+	 * @param operation
+	 *            the operation, e.g. <code>uploadFile</code> or
+	 *            <code>start</code>
+	 * @param times
+	 *            the number of calls to fail
+	 */
+	public synchronized void failNext(String operation, int times) {
+		failures.put(operation, times);
+	}
+
+	/**
+	 * Gets the number of calls made to the server.
+	 *
+	 * @return the calls
+	 */
+	public long getCalls() {
+		return calls.get();
+	}
+
+	/**
+	 * Gets the dropins directory.
+	 *
+	 * @return the dropins directory
+	 */
+	public File getDropins() {
+		return dropins;
+	}
+
+	/**
+	 * Gets the state of an application.
+	 *
+	 * @param appName
+	 *            the app name
+	 * @return the state, e.g. <code>STARTED</code>, null if it is not
+	 *         installed
+	 */
+	public synchronized String getState(String appName) {
+		Application application = applications.get(appName);
+		return application == null ? null : application.getState();
+	}
+
+	/**
+	 * Gets a connection factory connecting to this server, see
+	 * {@link org.jenkinsci.plugins.websphere.services.deployment.LibertyDeploymentService#setConnectionFactory(LibertyConnectionFactory)}.
+	 *
+	 * @return the connection factory
+	 */
+	public LibertyConnectionFactory getConnectionFactory() {
+		return new LibertyConnectionFactory() {
+			@Override
+			public JMXConnector createConnector(JMXServiceURL url, Map<String, ?> environment) {
+				return new Connector(url, environment);
+			}
+		};
+	}
+
+	/**
+	 * Stops polling the dropins directory and deletes the server directory.
+	 */
+	public void shutdown() {
+		scheduler.shutdownNow();
+		for (File file : dropins.listFiles()) {
+			file.delete();
+		}
+		dropins.delete();
+		outputDir.delete();
+	}
+
+	/**
+	 * Creates a connection to the MBean server that waits for the call latency
+	 * on every call.
+	 *
+	 * @return the connection
+	 */
+	private MBeanServerConnection newConnection() {
+		return (MBeanServerConnection) Proxy.newProxyInstance(MBeanServerConnection.class.getClassLoader(),
+				new Class<?>[] { MBeanServerConnection.class }, new InvocationHandler() {
+					public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+						if (method.getName().equals("equals") && args != null && args.length == 1) {
+							return proxy == args[0];
+						} else if (method.getName().equals("hashCode") && args == null) {
+							return System.identityHashCode(proxy);
+						} else if (method.getDeclaringClass() == Object.class) {
+							return method.invoke(mbeanServer, args);
+						}
+						calls.incrementAndGet();
+						if (callLatencyMillis > 0) {
+							Thread.sleep(callLatencyMillis);
+						}
+						try {
+							return method.invoke(mbeanServer, args);
+						} catch (InvocationTargetException e) {
+							throw e.getCause();
+						}
+					}
+				});
+	}
+
+	/**
+	 * Schedules the next poll of the dropins directory.
+	 */
+	private void scheduleScan() {
+		scheduler.schedule(new Runnable() {
+			public void run() {
+				try {
+					scan();
+				} catch (Exception e) {
+					e.printStackTrace();
+				} finally {
+					if (!scheduler.isShutdown()) {
+						scheduleScan();
+					}
+				}
+			}
+		}, monitorIntervalMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Installs, restarts and removes applications for the archives added to,
+	 * changed in and deleted from the dropins directory since the last poll.
+	 *
+	 * @throws JMException
+	 *             the JM exception
+	 */
+	private synchronized void scan() throws JMException {
+		Map<String, File> archives = new HashMap<String, File>();
+		for (File file : dropins.listFiles()) {
+			if (file.isFile() && !file.getName().startsWith(".") && file.getName().contains(".")) {
+				archives.put(file.getName().substring(0, file.getName().lastIndexOf('.')), file);
+			}
+		}
+		for (String appName : applications.keySet().toArray(new String[0])) {
+			if (!archives.containsKey(appName)) {
+				applications.remove(appName).setState(ApplicationMBean.STATE_STOPPED);
+				mbeanServer.unregisterMBean(new ObjectName(APPLICATION_M_BEAN_NAME + appName));
+			}
+		}
+		for (Map.Entry<String, File> archive : archives.entrySet()) {
+			File file = archive.getValue();
+			Application application = applications.get(archive.getKey());
+			if (application == null) {
+				application = new Application(archive.getKey(), file);
+				applications.put(archive.getKey(), application);
+				mbeanServer.registerMBean(new StandardMBean(application, ApplicationMBean.class),
+						new ObjectName(APPLICATION_M_BEAN_NAME + archive.getKey()));
+				startLater(application);
+			} else if (application.lastModified != file.lastModified() || application.length != file.length()) {
+				application.lastModified = file.lastModified();
+				application.length = file.length();
+				startLater(application);
+			}
+		}
+	}
+
+	/**
+	 * Starts an application installed or changed by the dropins monitor after
+	 * the start time.
+	 *
+	 * @param application
+	 *            the application
+	 */
+	private void startLater(final Application application) {
+		application.setState(ApplicationMBean.STATE_STARTING);
+		scheduler.schedule(new Runnable() {
+			public void run() {
+				application.setState(ApplicationMBean.STATE_STARTED);
+			}
+		}, startMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Resolves a path of the server, which must be in the output directory.
+	 *
+	 * @param path
+	 *            the path, starting with <code>${server.output.dir}</code>
+	 * @return the file
+	 * @throws IOException
+	 *             if the path is not in the output directory
+	 */
+	private File resolve(String path) throws IOException {
+		if (!path.startsWith(SERVER_OUTPUT_DIR) || path.contains("..")) {
+			throw new IOException("The path " + path + " is not in an allowed directory");
+		}
+		return new File(outputDir, path.substring(SERVER_OUTPUT_DIR.length()));
+	}
+
+	/**
+	 * Fails an operation if a failure was injected.
+	 *
+	 * @param operation
+	 *            the operation
+	 */
+	private void failIfInjected(String operation) {
+		if (consumeFailure(operation)) {
+			throw new IllegalStateException("Injected failure of " + operation);
+		}
+	}
+
+	/**
+	 * Consumes an injected failure.
+	 *
+	 * @param operation
+	 *            the operation
+	 * @return true, if the operation is to fail
+	 */
+	private synchronized boolean consumeFailure(String operation) {
+		Integer remaining = failures.get(operation);
+		if (remaining == null || remaining <= 0) {
+			return false;
+		}
+		failures.put(operation, remaining - 1);
+		return true;
+	}
+
+	/**
+	 * Waits while an application starts or stops.
+	 */
+	private void pause() {
+		try {
+			Thread.sleep(startMillis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * The FileTransfer MBean of the REST connector. Uploads copy the local
+	 * file, as the client runs in the same process.
+	 */
+	private final class FileTransfer implements FileTransferMBean {
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see
+		 * com.ibm.websphere.filetransfer.FileTransferMBean#downloadFile(java.
+		 * lang.String, java.lang.String)
+		 */
+		public void downloadFile(String remoteSourceFile, String localTargetFile) throws IOException {
+			failIfInjected("downloadFile");
+			File source = resolve(remoteSourceFile);
+			if (!source.isFile()) {
+				throw new FileNotFoundException(remoteSourceFile);
+			}
+			Files.copy(source.toPath(), new File(localTargetFile).toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see
+		 * com.ibm.websphere.filetransfer.FileTransferMBean#uploadFile(java.lang
+		 * .String, java.lang.String, boolean)
+		 */
+		public void uploadFile(String localSourceFile, String remoteTargetFile, boolean expandOnCompletion)
+				throws IOException {
+			failIfInjected("uploadFile");
+			if (expandOnCompletion) {
+				throw new IOException("Expanding uploaded archives is not supported");
+			}
+			File target = resolve(remoteTargetFile);
+			File upload = new File(target.getParentFile(), "." + target.getName() + ".upload");
+			// written next to the target and moved, so the monitor never sees
+			// a partial archive
+			Files.copy(new File(localSourceFile).toPath(), upload.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			Files.move(upload.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see
+		 * com.ibm.websphere.filetransfer.FileTransferMBean#deleteFile(java.lang
+		 * .String)
+		 */
+		public void deleteFile(String remoteSourceFile) throws IOException {
+			failIfInjected("deleteFile");
+			File file = resolve(remoteSourceFile);
+			if (!file.exists()) {
+				throw new FileNotFoundException(remoteSourceFile);
+			}
+			if (!file.delete()) {
+				throw new IOException("Could not delete " + remoteSourceFile);
+			}
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see
+		 * com.ibm.websphere.filetransfer.FileTransferMBean#deleteAll(java.util.
+		 * List)
+		 */
+		public void deleteAll(List<String> remoteArtifacts) throws IOException {
+			for (String remoteArtifact : remoteArtifacts) {
+				deleteFile(remoteArtifact);
+			}
+		}
+	}
+
+	/**
+	 * The Application MBean of an installed application. Starting and
+	 * stopping return once the application is started or stopped.
+	 */
+	private final class Application implements ApplicationMBean {
+
+		/** The name. */
+		private final String name;
+
+		/** The pid. */
+		private final String pid;
+
+		/** The last modified time of the archive. */
+		private long lastModified;
+
+		/** The length of the archive. */
+		private long length;
+
+		/** The state. */
+		private volatile String state = ApplicationMBean.STATE_INSTALLED;
+
+		/**
+		 * Instantiates a new application.
+		 *
+		 * @param name
+		 *            the name
+		 * @param archive
+		 *            the archive
+		 */
+		private Application(String name, File archive) {
+			this.name = name;
+			this.pid = "com.ibm.ws.app.manager_" + pids.getAndIncrement();
+			this.lastModified = archive.lastModified();
+			this.length = archive.length();
+		}
+
+		/**
+		 * Sets the state.
+		 *
+		 * @param state
+		 *            the new state
+		 */
+		private void setState(String state) {
+			this.state = state;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see com.ibm.websphere.application.ApplicationMBean#getState()
+		 */
+		public String getState() {
+			return state;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see com.ibm.websphere.application.ApplicationMBean#getPid()
+		 */
+		public String getPid() {
+			return pid;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see com.ibm.websphere.application.ApplicationMBean#start()
+		 */
+		public void start() {
+			failIfInjected("start");
+			if (ApplicationMBean.STATE_STARTED.equals(state)) {
+				return;
+			}
+			state = ApplicationMBean.STATE_STARTING;
+			pause();
+			state = ApplicationMBean.STATE_STARTED;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see com.ibm.websphere.application.ApplicationMBean#stop()
+		 */
+		public void stop() {
+			failIfInjected("stop");
+			if (ApplicationMBean.STATE_STOPPED.equals(state)) {
+				return;
+			}
+			state = ApplicationMBean.STATE_STOPPING;
+			pause();
+			state = ApplicationMBean.STATE_STOPPED;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see com.ibm.websphere.application.ApplicationMBean#restart()
+		 */
+		public void restart() {
+			stop();
+			start();
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see java.lang.Object#toString()
+		 */
+		@Override
+		public String toString() {
+			return name + " (" + state + ")";
+		}
+	}
+
+	/**
+	 * A connector to the server, checking the url and the credentials like
+	 * the REST connector does.
+	 */
+	private final class Connector implements JMXConnector {
+
+		/** The url. */
+		private final JMXServiceURL url;
+
+		/** The environment. */
+		private final Map<String, ?> environment;
+
+		/** The connection, null if not connected. */
+		private MBeanServerConnection connection;
+
+		/**
+		 * Instantiates a new connector.
+		 *
+		 * @param url
+		 *            the url
+		 * @param environment
+		 *            the environment
+		 */
+		private Connector(JMXServiceURL url, Map<String, ?> environment) {
+			this.url = url;
+			this.environment = environment;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see javax.management.remote.JMXConnector#connect()
+		 */
+		public void connect() throws IOException {
+			connect(null);
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see javax.management.remote.JMXConnector#connect(java.util.Map)
+		 */
+		public synchronized void connect(Map<String, ?> env) throws IOException {
+			if (!"rest".equals(url.getProtocol()) || !"/IBMJMXConnectorREST".equals(url.getURLPath())) {
+				throw new IOException("No REST connector at " + url);
+			}
+			Object credentials = (env != null ? env : environment).get(JMXConnector.CREDENTIALS);
+			if (!(credentials instanceof String[]) || ((String[]) credentials).length != 2
+					|| !username.equals(((String[]) credentials)[0])
+					|| !password.equals(((String[]) credentials)[1])) {
+				throw new SecurityException("Invalid credentials");
+			}
+			calls.incrementAndGet();
+			connection = newConnection();
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see javax.management.remote.JMXConnector#getMBeanServerConnection()
+		 */
+		public synchronized MBeanServerConnection getMBeanServerConnection() throws IOException {
+			if (connection == null) {
+				throw new IOException("Not connected");
+			}
+			return connection;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see
+		 * javax.management.remote.JMXConnector#getMBeanServerConnection(javax.
+		 * security.auth.Subject)
+		 */
+		public MBeanServerConnection getMBeanServerConnection(Subject delegationSubject) throws IOException {
+			return getMBeanServerConnection();
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see javax.management.remote.JMXConnector#close()
+		 */
+		public synchronized void close() {
+			connection = null;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see
+		 * javax.management.remote.JMXConnector#addConnectionNotificationListener
+		 * (javax.management.NotificationListener,
+		 * javax.management.NotificationFilter, java.lang.Object)
+		 */
+		public void addConnectionNotificationListener(NotificationListener listener, NotificationFilter filter,
+				Object handback) {
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see javax.management.remote.JMXConnector#
+		 * removeConnectionNotificationListener(javax.management.
+		 * NotificationListener)
+		 */
+		public void removeConnectionNotificationListener(NotificationListener listener) {
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see javax.management.remote.JMXConnector#
+		 * removeConnectionNotificationListener(javax.management.
+		 * NotificationListener, javax.management.NotificationFilter,
+		 * java.lang.Object)
+		 */
+		public void removeConnectionNotificationListener(NotificationListener l, NotificationFilter f,
+				Object handback) {
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see javax.management.remote.JMXConnector#getConnectionId()
+		 */
+		public String getConnectionId() {
+			return "rest://" + url.getHost() + ":" + url.getPort() + " " + username;
+		}
+	}
+}
@@ -0,0 +1,993 @@
+/*
+ *
+ */
+package org.jenkinsci.plugins.websphere.services.deployment.fake;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Hashtable;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.Vector;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.enterprise.deploy.spi.Target;
+import javax.management.InstanceNotFoundException;
+import javax.management.MBeanException;
+import javax.management.MalformedObjectNameException;
+import javax.management.Notification;
+import javax.management.NotificationFilter;
+import javax.management.NotificationListener;
+import javax.management.ObjectName;
+
+import org.apache.commons.lang.StringUtils;
+import org.jenkinsci.plugins.websphere.services.deployment.AdminConnectionFactory;
+import org.jenkinsci.plugins.websphere.services.deployment.WebSphereDeploymentService;
+
+import com.ibm.websphere.management.AdminClient;
+import com.ibm.websphere.management.Session;
+import com.ibm.websphere.management.application.AppConstants;
+import com.ibm.websphere.management.application.AppManagement;
+import com.ibm.websphere.management.application.AppNotification;
+import com.ibm.websphere.management.exception.AdminException;
+
+/**
+ * An in-process stand-in for a WebSphere cell, for running and measuring
+ * deployments without a deployment manager. It answers the calls a
+ * {@link WebSphereDeploymentService}
+ * makes through the <code>AdminClient</code> and <code>AppManagement</code>
+ * interfaces: MBean queries, the targets of the cell, installing, updating,
+ * uninstalling, starting and stopping applications, the distribution
+ * status, reported by <code>AppNotification</code>s like a real deployment
+ * manager does, and synchronizing nodes.
+ * <p>
+ * Every call waits for the configured call latency, asynchronous operations
+ * complete after the operation time and every node receives an application a
+ * little later than the previous one, until the last node has it after the
+ * distribution time, unless the node is synchronized earlier. Failures can be
+ * injected per operation.
+ */
+public class FakeWebSphereCell {
+
+	/** The cell name. */
+	private final String cell;
+
+	/** The number of nodes. */
+	private final int nodes;
+
+	/** The number of servers per node. */
+	private final int serversPerNode;
+
+	/** The object name of the AppManagement MBean. */
+	private final ObjectName appManagementName;
+
+	/** The object name of the J2EEAppDeployment MBean. */
+	private final ObjectName appDeploymentName;
+
+	/** The latency of every call in milliseconds. */
+	private volatile long callLatencyMillis;
+
+	/** The time an asynchronous operation takes in milliseconds. */
+	private volatile long operationMillis = 50;
+
+	/** The time until the last node has received an application. */
+	private volatile long distributionMillis = 100;
+
+	/** The time a node agent takes to synchronize. */
+	private volatile long syncMillis = 20;
+
+	/** Whether the notifications of operations leave out the application. */
+	private volatile boolean anonymousNotifications;
+
+	/** The number of injected failures left, by operation. */
+	private final Map<String, Integer> failures = new HashMap<String, Integer>();
+
+	/** The installed applications, by name. */
+	private final Map<String, Application> applications = new TreeMap<String, Application>();
+
+	/** The notification listeners. */
+	private final List<Registration> registrations = new CopyOnWriteArrayList<Registration>();
+
+	/** The sequence number of the notifications. */
+	private final AtomicLong sequence = new AtomicLong();
+
+	/** The number of calls made to the cell. */
+	private final AtomicLong calls = new AtomicLong();
+
+	/** The number of servers an application was restarted on right after it was updated. */
+	private final AtomicLong restartsOnUpdate = new AtomicLong();
+
+	/** The scheduler completing asynchronous operations. */
+	private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "Fake WebSphere cell");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+
+	/**
+	 * Instantiates a new fake WebSphere cell.
+	 *
+	 * @param cell
+	 *            the cell name
+	 * @param nodes
+	 *            the number of nodes
+	 * @param serversPerNode
+	 *            the number of servers per node
+	 * @throws MalformedObjectNameException
+	 *             the malformed object name exception
+	 */
+	public FakeWebSphereCell(String cell, int nodes, int serversPerNode) throws MalformedObjectNameException {
+		this.cell = cell;
+		this.nodes = nodes;
+		this.serversPerNode = serversPerNode;
+		this.appManagementName = new ObjectName(
+				"WebSphere:type=AppManagement,cell=" + cell + ",node=dmgrNode,process=dmgr,name=AppManagement");
+		this.appDeploymentName = new ObjectName(
+				"WebSphere:type=J2EEAppDeployment,cell=" + cell + ",node=dmgrNode,process=dmgr");
+	}
+
+	/**
+	 * Sets the latency of every call.
+	 *
+	 * @param callLatencyMillis
+	 *            the call latency in milliseconds
+	 */
+	public void setCallLatencyMillis(long callLatencyMillis) {
+		this.callLatencyMillis = callLatencyMillis;
+	}
+
+	/**
+	 * Sets the time an asynchronous operation like an installation takes.
+	 *
+	 * @param operationMillis
+	 *            the operation time in milliseconds
+	 */
+	public void setOperationMillis(long operationMillis) {
+		this.operationMillis = operationMillis;
+	}
+
+	/**
+	 * Sets the time until the last node has received an installed or updated
+	 * application.
+	 *
+	 * @param distributionMillis
+	 *            the distribution time in milliseconds
+	 */
+	public void setDistributionMillis(long distributionMillis) {
+		this.distributionMillis = distributionMillis;
+	}
+
+	/**
+	 * Sets the time a node agent takes to synchronize.
+	 *
+	 * @param syncMillis
+	 *            the sync time in milliseconds
+	 */
+	public void setSyncMillis(long syncMillis) {
+		this.syncMillis = syncMillis;
+	}
+
+	/**
+	 * Makes the notifications of installations, updates and uninstallations
+	 * leave out the application, neither naming it in their properties nor in
+	 * their message, like some WebSphere versions do.
+	 *
+	 * @param anonymousNotifications
+	 *            true to leave out the application
+	 */
+	public void setAnonymousNotifications(boolean anonymousNotifications) {
+		this.anonymousNotifications = anonymousNotifications;
+	}
+
+	/**
+	 * Makes the next calls of an operation fail. Asynchronous operations fail
+	 * by notification, the others by an <code>AdminException</code>.
+	 *
+	 * @param operation
+	 *            the operation, e.g. <code>installApplication</code>
+	 * @param times
+	 *            the number of calls to fail
+	 */
+	public synchronized void failNext(String operation, int times) {
+		failures.put(operation, times);
+	}
+
+	/**
+	 * Gets the number of calls made to the cell.
+	 *
+	 * @return the calls
+	 */
+	public long getCalls() {
+		return calls.get();
+	}
+
+	/**
+	 * Gets the installed applications.
+	 *
+	 * @return the application names
+	 */
+	public synchronized Set<String> getApplications() {
+		return new LinkedHashSet<String>(applications.keySet());
+	}
+
+	/**
+	 * Gets the number of servers an application was restarted on by the cell
+	 * itself right after it was updated, all at once.
+	 *
+	 * @return the restarts
+	 */
+	public long getRestartsOnUpdate() {
+		return restartsOnUpdate.get();
+	}
+
+	/**
+	 * Checks if an application is running.
+	 *
+	 * @param appName
+	 *            the app name
+	 * @return true, if it is running on at least one server
+	 */
+	public synchronized boolean isRunning(String appName) {
+		Application application = applications.get(appName);
+		return application != null && !application.runningOn.isEmpty();
+	}
+
+	/**
+	 * Gets the servers an application is running on.
+	 *
+	 * @param appName
+	 *            the app name
+	 * @return the targets, e.g. <code>WebSphere:cell=c,node=n,server=s</code>
+	 */
+	public synchronized Set<String> getRunningOn(String appName) {
+		Application application = applications.get(appName);
+		return application != null ? new TreeSet<String>(application.runningOn) : new TreeSet<String>();
+	}
+
+	/**
+	 * Gets a connection factory connecting to this cell, see
+	 * {@link WebSphereDeploymentService#setConnectionFactory(AdminConnectionFactory)}.
+	 *
+	 * @return the connection factory
+	 */
+	public AdminConnectionFactory getConnectionFactory() {
+		return new AdminConnectionFactory() {
+			@Override
+			public AdminClient createAdminClient(Properties config) {
+				return newAdminClient(config);
+			}
+
+			@Override
+			public AppManagement createAppManagement(AdminClient adminClient) {
+				return newAppManagement(adminClient);
+			}
+		};
+	}
+
+	/**
+	 * Stops completing asynchronous operations.
+	 */
+	public void shutdown() {
+		scheduler.shutdownNow();
+	}
+
+	/**
+	 * Creates an admin client connected to this cell.
+	 *
+	 * @param config
+	 *            the connector properties
+	 * @return the admin client
+	 */
+	public AdminClient newAdminClient(Properties config) {
+		final Properties connectorProperties = new Properties();
+		if (config != null) {
+			connectorProperties.putAll(config);
+		}
+		return (AdminClient) Proxy.newProxyInstance(AdminClient.class.getClassLoader(),
+				new Class<?>[] { AdminClient.class }, new InvocationHandler() {
+					public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+						if (method.getDeclaringClass() == Object.class) {
+							return identity(proxy, method, args);
+						}
+						call();
+						return adminClient(method.getName(), args, connectorProperties);
+					}
+				});
+	}
+
+	/**
+	 * Creates an app management proxy that invokes the AppManagement MBean
+	 * through an admin client, like the proxy of the WebSphere libraries.
+	 *
+	 * @param adminClient
+	 *            the admin client
+	 * @return the app management
+	 */
+	public AppManagement newAppManagement(final AdminClient adminClient) {
+		return (AppManagement) Proxy.newProxyInstance(AppManagement.class.getClassLoader(),
+				new Class<?>[] { AppManagement.class }, new InvocationHandler() {
+					public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+						if (method.getDeclaringClass() == Object.class) {
+							return identity(proxy, method, args);
+						}
+						String[] signature = new String[method.getParameterTypes().length];
+						for (int i = 0; i < signature.length; i++) {
+							signature[i] = method.getParameterTypes()[i].getName();
+						}
+						try {
+							return adminClient.invoke(appManagementName, method.getName(), args, signature);
+						} catch (MBeanException e) {
+							throw e.getTargetException();
+						}
+					}
+				});
+	}
+
+	/**
+	 * Answers the methods of <code>Object</code> called on a proxy by the
+	 * identity of the proxy, so it can be used as a key.
+	 *
+	 * @param proxy
+	 *            the proxy
+	 * @param method
+	 *            the method
+	 * @param args
+	 *            the args
+	 * @return the result
+	 */
+	private static Object identity(Object proxy, Method method, Object[] args) {
+		if (method.getName().equals("equals")) {
+			return proxy == args[0];
+		} else if (method.getName().equals("hashCode")) {
+			return System.identityHashCode(proxy);
+		}
+		return proxy.getClass().getInterfaces()[0].getSimpleName() + "@"
+				+ Integer.toHexString(System.identityHashCode(proxy));
+	}
+
+	/**
+	 * Waits for the call latency.
+	 *
+	 * @throws InterruptedException
+	 *             the interrupted exception
+	 */
+	private void call() throws InterruptedException {
+		calls.incrementAndGet();
+		if (callLatencyMillis > 0) {
+			Thread.sleep(callLatencyMillis);
+		}
+	}
+
+	/**
+	 * Answers a call of an admin client.
+	 *
+	 * @param method
+	 *            the method
+	 * @param args
+	 *            the args
+	 * @param connectorProperties
+	 *            the connector properties of the client
+	 * @return the result
+	 * @throws Exception
+	 *             the exception
+	 */
+	private Object adminClient(String method, Object[] args, Properties connectorProperties) throws Exception {
+		if (method.equals("queryNames")) {
+			return queryNames((ObjectName) args[0]);
+		} else if (method.equals("isRegistered")) {
+			return queryNames((ObjectName) args[0]).contains(args[0]);
+		} else if (method.equals("invoke")) {
+			return invoke((ObjectName) args[0], (String) args[1], (Object[]) args[2]);
+		} else if (method.equals("addNotificationListener") && args.length == 4) {
+			registrations.add(new Registration((NotificationListener) args[1], (NotificationFilter) args[2], args[3]));
+			return null;
+		} else if (method.equals("removeNotificationListener")) {
+			for (Registration registration : registrations) {
+				if (registration.listener == args[1]) {
+					registrations.remove(registration);
+				}
+			}
+			return null;
+		} else if (method.equals("isAlive")) {
+			return new Session();
+		} else if (method.equals("getConnectorProperties")) {
+			return connectorProperties;
+		} else if (method.equals("getType")) {
+			return connectorProperties.getProperty(AdminClient.CONNECTOR_TYPE, AdminClient.CONNECTOR_TYPE_SOAP);
+		}
+		throw new UnsupportedOperationException("AdminClient." + method + " is not simulated");
+	}
+
+	/**
+	 * Gets the MBeans matching a query.
+	 *
+	 * @param query
+	 *            the query
+	 * @return the object names
+	 * @throws MalformedObjectNameException
+	 *             the malformed object name exception
+	 */
+	private Set<ObjectName> queryNames(ObjectName query) throws MalformedObjectNameException {
+		Set<ObjectName> names = new LinkedHashSet<ObjectName>();
+		for (ObjectName name : getMBeans()) {
+			if (query == null || query.apply(name)) {
+				names.add(name);
+			}
+		}
+		return names;
+	}
+
+	/**
+	 * Gets all MBeans of the cell.
+	 *
+	 * @return the object names
+	 * @throws MalformedObjectNameException
+	 *             the malformed object name exception
+	 */
+	private synchronized List<ObjectName> getMBeans() throws MalformedObjectNameException {
+		List<ObjectName> names = new ArrayList<ObjectName>();
+		names.add(appManagementName);
+		names.add(appDeploymentName);
+		names.add(new ObjectName("WebSphere:type=Cluster,cell=" + cell + ",name=cluster1"));
+		for (int node = 1; node <= nodes; node++) {
+			names.add(getNodeSyncName(node));
+			for (int server = 1; server <= serversPerNode; server++) {
+				String process = ",cell=" + cell + ",node=" + getNode(node) + ",process=" + getServer(server);
+				names.add(new ObjectName("WebSphere:type=Server,name=" + getServer(server) + process));
+				for (Application application : applications.values()) {
+					if (application.runningOn.contains(getTarget(node, server))) {
+						names.add(new ObjectName("WebSphere:type=Application,name=" + application.name + process));
+					}
+				}
+			}
+		}
+		return names;
+	}
+
+	/**
+	 * Invokes an MBean operation.
+	 *
+	 * @param name
+	 *            the MBean
+	 * @param operation
+	 *            the operation
+	 * @param params
+	 *            the params
+	 * @return the result
+	 * @throws Exception
+	 *             the exception
+	 */
+	private Object invoke(ObjectName name, String operation, Object[] params) throws Exception {
+		if (name.equals(appDeploymentName) && operation.equals("getTargets")) {
+			return getTargets();
+		} else if ("NodeSync".equals(name.getKeyProperty("type")) && operation.equals("sync")) {
+			return sync(name);
+		} else if (name.equals(appManagementName)) {
+			try {
+				return appManagement(operation, params);
+			} catch (AdminException e) {
+				throw new MBeanException(e, e.getMessage());
+			}
+		}
+		throw new InstanceNotFoundException(name + " has no operation " + operation);
+	}
+
+	/**
+	 * Synchronizes a node, which then has received every installed
+	 * application.
+	 *
+	 * @param nodeSyncName
+	 *            the NodeSync MBean of the node
+	 * @return true, if the node was synchronized, false if a failure was
+	 *         injected
+	 * @throws Exception
+	 *             the exception
+	 */
+	private Boolean sync(ObjectName nodeSyncName) throws Exception {
+		Thread.sleep(syncMillis);
+		if (consumeFailure("sync")) {
+			return Boolean.FALSE;
+		}
+		synchronized (this) {
+			for (int node = 1; node <= nodes; node++) {
+				if (getNodeSyncName(node).equals(nodeSyncName)) {
+					for (Application application : applications.values()) {
+						application.syncedNodes.add(node);
+					}
+					return Boolean.TRUE;
+				}
+			}
+		}
+		throw new InstanceNotFoundException(nodeSyncName.toString());
+	}
+
+	/**
+	 * Gets the servers of the cell as deployment targets.
+	 *
+	 * @return the targets
+	 */
+	private Target[] getTargets() {
+		List<Target> targets = new ArrayList<Target>();
+		for (int node = 1; node <= nodes; node++) {
+			for (int server = 1; server <= serversPerNode; server++) {
+				final String name = "WebSphere:server=" + getServer(server) + ",node=" + getNode(node) + ",cell="
+						+ cell + ",j2eeType=J2EEServer";
+				targets.add(new Target() {
+					public String getName() {
+						return name;
+					}
+
+					public String getDescription() {
+						return name;
+					}
+				});
+			}
+		}
+		return targets.toArray(new Target[targets.size()]);
+	}
+
+	/**
+	 * Invokes an operation of the AppManagement MBean.
+	 *
+	 * @param operation
+	 *            the operation
+	 * @param params
+	 *            the params, as declared by <code>AppManagement</code>
+	 * @return the result
+	 * @throws Exception
+	 *             the exception
+	 */
+	private Object appManagement(String operation, Object[] params) throws Exception {
+		if (operation.equals("installApplication") || operation.equals("redeployApplication")) {
+			final String appName = getAppName((String) params[0], params[1], params[2]);
+			final boolean redeploy = operation.equals("redeployApplication");
+			final Object preferences = params[2];
+			submit(operation, AppNotification.INSTALL, appName, new Operation() {
+				public String run(Application application) {
+					if (application != null && !redeploy) {
+						return "Application " + appName + " already exists";
+					}
+					Application installed = new Application(appName);
+					if (application != null) {
+						installed.runningOn.addAll(application.runningOn);
+						restartOnUpdate(installed, preferences);
+					}
+					applications.put(appName, installed);
+					return null;
+				}
+			});
+			return null;
+		} else if (operation.equals("updateApplication")) {
+			final String appName = (String) params[0];
+			final Object preferences = params[5];
+			submit(operation, AppNotification.UPDATE, appName, new Operation() {
+				public String run(Application application) {
+					if (application == null) {
+						return "Application " + appName + " does not exist";
+					}
+					application.distribute();
+					restartOnUpdate(application, preferences);
+					return null;
+				}
+			});
+			return null;
+		} else if (operation.equals("uninstallApplication")) {
+			final String appName = (String) params[0];
+			submit(operation, AppNotification.UNINSTALL, appName, new Operation() {
+				public String run(Application application) {
+					if (application == null) {
+						return "Application " + appName + " does not exist";
+					}
+					applications.remove(appName);
+					return null;
+				}
+			});
+			return null;
+		} else if (operation.equals("getDistributionStatus")) {
+			reportDistributionStatus((String) params[0]);
+			return null;
+		}
+		failIfInjected(operation);
+		synchronized (this) {
+			if (operation.equals("listApplications")) {
+				return new Vector<String>(applications.keySet());
+			} else if (operation.equals("checkIfAppExists")) {
+				return applications.containsKey(params[0]);
+			}
+			Application application = applications.get(params[0]);
+			// the target list is only passed to the overloads with four params
+			List<String> targets = params.length == 4 ? Arrays.asList(((String) params[1]).split("\\+"))
+					: getServers();
+			if (operation.equals("startApplication")) {
+				if (application == null || !application.isDistributed()) {
+					return null;
+				}
+				List<String> started = new ArrayList<String>(targets);
+				started.removeAll(application.runningOn);
+				application.runningOn.addAll(started);
+				return started.isEmpty() ? null : StringUtils.join(started, ",");
+			} else if (operation.equals("stopApplication")) {
+				if (application == null) {
+					return null;
+				}
+				List<String> stopped = new ArrayList<String>(targets);
+				stopped.retainAll(application.runningOn);
+				application.runningOn.removeAll(stopped);
+				return stopped.isEmpty() ? null : StringUtils.join(stopped, ",");
+			}
+		}
+		throw new UnsupportedOperationException("AppManagement." + operation + " is not simulated");
+	}
+
+	/**
+	 * Gets the name of the application installed by an install request.
+	 *
+	 * @param path
+	 *            the path of the archive
+	 * @param appName
+	 *            the app name, may be null
+	 * @param preferences
+	 *            the preferences
+	 * @return the app name
+	 */
+	private static String getAppName(String path, Object appName, Object preferences) {
+		if (appName != null) {
+			return (String) appName;
+		}
+		Object preferredName = preferences instanceof Hashtable
+				? ((Hashtable<?, ?>) preferences).get(AppConstants.APPDEPL_APPNAME) : null;
+		if (preferredName != null) {
+			return (String) preferredName;
+		}
+		String fileName = path.substring(Math.max(path.lastIndexOf('/'), path.lastIndexOf('\\')) + 1);
+		return fileName.contains(".") ? fileName.substring(0, fileName.lastIndexOf('.')) : fileName;
+	}
+
+	/**
+	 * Counts the servers an updated application is restarted on, unless the
+	 * preferences of the update turn the restart off.
+	 *
+	 * @param application
+	 *            the application
+	 * @param preferences
+	 *            the preferences of the update
+	 */
+	private void restartOnUpdate(Application application, Object preferences) {
+		Object restartBehavior = preferences instanceof Hashtable
+				? ((Hashtable<?, ?>) preferences).get(WebSphereDeploymentService.APPDEPL_RESTART_BEHAVIOR_ON_UPDATE) : null;
+		if (!WebSphereDeploymentService.RESTART_BEHAVIOR_NONE.equals(restartBehavior)) {
+			restartsOnUpdate.addAndGet(application.runningOn.size());
+		}
+	}
+
+	/**
+	 * Fails an operation if a failure was injected.
+	 *
+	 * @param operation
+	 *            the operation
+	 * @throws AdminException
+	 *             the injected failure
+	 */
+	private void failIfInjected(String operation) throws AdminException {
+		if (consumeFailure(operation)) {
+			throw new AdminException("Injected failure of " + operation);
+		}
+	}
+
+	/**
+	 * Consumes an injected failure.
+	 *
+	 * @param operation
+	 *            the operation
+	 * @return true, if the operation is to fail
+	 */
+	private synchronized boolean consumeFailure(String operation) {
+		Integer remaining = failures.get(operation);
+		if (remaining == null || remaining <= 0) {
+			return false;
+		}
+		failures.put(operation, remaining - 1);
+		return true;
+	}
+
+	/**
+	 * Submits an asynchronous operation, which reports its progress and
+	 * completion by notification after the operation time.
+	 *
+	 * @param operation
+	 *            the operation
+	 * @param taskName
+	 *            the task name of the notifications
+	 * @param appName
+	 *            the app name
+	 * @param work
+	 *            the work, returning an error message if it fails
+	 */
+	private void submit(String operation, final String taskName, final String appName, final Operation work) {
+		final boolean fail = consumeFailure(operation);
+		final String notifiedApp = anonymousNotifications ? null : appName;
+		sendNotification(taskName, AppNotification.STATUS_INPROGRESS, notifiedApp,
+				"Started " + taskName + (notifiedApp != null ? " of " + notifiedApp : ""), null);
+		scheduler.schedule(new Runnable() {
+			public void run() {
+				String error;
+				if (fail) {
+					error = "Injected failure of " + taskName + " of " + appName;
+				} else {
+					synchronized (FakeWebSphereCell.this) {
+						error = work.run(applications.get(appName));
+					}
+				}
+				if (error != null) {
+					sendNotification(taskName, AppNotification.STATUS_FAILED, notifiedApp,
+							notifiedApp != null ? error : "Failed " + taskName, null);
+				} else {
+					sendNotification(taskName, AppNotification.STATUS_COMPLETED, notifiedApp,
+							"Completed " + taskName + (notifiedApp != null ? " of " + notifiedApp : ""),
+							new Properties());
+				}
+			}
+		}, operationMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Reports the distribution status of an application by notification.
+	 *
+	 * @param appName
+	 *            the app name
+	 */
+	private void reportDistributionStatus(final String appName) {
+		final boolean fail = consumeFailure("getDistributionStatus");
+		scheduler.execute(new Runnable() {
+			public void run() {
+				String composite = null;
+				synchronized (FakeWebSphereCell.this) {
+					Application application = applications.get(appName);
+					if (application != null) {
+						List<String> servers = new ArrayList<String>();
+						for (int node = 1; node <= nodes; node++) {
+							for (int server = 1; server <= serversPerNode; server++) {
+								servers.add("WebSphere:cell=" + cell + ",node=" + getNode(node) + ",server="
+										+ getServer(server) + ",distribution=" + application.isDistributed(node));
+							}
+						}
+						composite = StringUtils.join(servers, "+");
+					}
+				}
+				if (fail || composite == null) {
+					sendNotification(AppNotification.DISTRIBUTION_STATUS_NODE, AppNotification.STATUS_FAILED, appName,
+							fail ? "Injected failure of getDistributionStatus" : "Application does not exist", null);
+				} else {
+					Properties props = new Properties();
+					props.setProperty(AppNotification.DISTRIBUTION_STATUS_COMPOSITE, composite);
+					sendNotification(AppNotification.DISTRIBUTION_STATUS_NODE, AppNotification.STATUS_COMPLETED, appName,
+							"Distribution status of " + appName, props);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Sends a notification to all listeners.
+	 *
+	 * @param taskName
+	 *            the task name
+	 * @param taskStatus
+	 *            the task status
+	 * @param appName
+	 *            the app name, null to leave it out
+	 * @param message
+	 *            the message
+	 * @param props
+	 *            the props, may be null
+	 */
+	private void sendNotification(String taskName, String taskStatus, String appName, String message, Properties props) {
+		Properties notificationProps = props == null ? new Properties() : props;
+		if (appName != null) {
+			notificationProps.setProperty(AppConstants.APPDEPL_APPNAME, appName);
+		}
+		AppNotification appNotification = new AppNotification(taskName, null, taskStatus, message, notificationProps);
+		// set explicitly, the constructor arguments differ between versions
+		appNotification.taskName = taskName;
+		appNotification.taskStatus = taskStatus;
+		appNotification.message = message;
+		appNotification.props = notificationProps;
+		Notification notification = new Notification(AppConstants.NotificationType, appManagementName,
+				sequence.incrementAndGet(), System.currentTimeMillis(), message);
+		notification.setUserData(appNotification);
+		for (Registration registration : registrations) {
+			if (registration.filter == null || registration.filter.isNotificationEnabled(notification)) {
+				registration.listener.handleNotification(notification, registration.handback);
+			}
+		}
+	}
+
+	/**
+	 * Gets the servers of the cell.
+	 *
+	 * @return the targets, e.g. <code>WebSphere:cell=c,node=n,server=s</code>
+	 */
+	private List<String> getServers() {
+		List<String> servers = new ArrayList<String>();
+		for (int node = 1; node <= nodes; node++) {
+			for (int server = 1; server <= serversPerNode; server++) {
+				servers.add(getTarget(node, server));
+			}
+		}
+		return servers;
+	}
+
+	/**
+	 * Gets the NodeSync MBean of the node agent of a node.
+	 *
+	 * @param node
+	 *            the node number
+	 * @return the object name
+	 * @throws MalformedObjectNameException
+	 *             the malformed object name exception
+	 */
+	private ObjectName getNodeSyncName(int node) throws MalformedObjectNameException {
+		return new ObjectName("WebSphere:type=NodeSync,cell=" + cell + ",node=" + getNode(node) + ",process=nodeagent");
+	}
+
+	/**
+	 * Gets the target of a server.
+	 *
+	 * @param node
+	 *            the node number
+	 * @param server
+	 *            the server number
+	 * @return the target, e.g. <code>WebSphere:cell=c,node=n,server=s</code>
+	 */
+	private String getTarget(int node, int server) {
+		return "WebSphere:cell=" + cell + ",node=" + getNode(node) + ",server=" + getServer(server);
+	}
+
+	/**
+	 * Gets the name of a node.
+	 *
+	 * @param node
+	 *            the node number
+	 * @return the node name
+	 */
+	private static String getNode(int node) {
+		return "node" + node;
+	}
+
+	/**
+	 * Gets the name of a server.
+	 *
+	 * @param server
+	 *            the server number
+	 * @return the server name
+	 */
+	private static String getServer(int server) {
+		return "server" + server;
+	}
+
+	/**
+	 * An asynchronous operation on an application.
+	 */
+	private interface Operation {
+
+		/**
+		 * Runs the operation.
+		 *
+		 * @param application
+		 *            the application, null if it is not installed
+		 * @return an error message, null if the operation succeeded
+		 */
+		String run(Application application);
+	}
+
+	/**
+	 * An installed application.
+	 */
+	private final class Application {
+
+		/** The name. */
+		private final String name;
+
+		/** The time the last distribution started. */
+		private long distributedAt;
+
+		/** The nodes synchronized since the last distribution started. */
+		private final Set<Integer> syncedNodes = new HashSet<Integer>();
+
+		/** The servers the application is running on. */
+		private final Set<String> runningOn = new HashSet<String>();
+
+		/**
+		 * Instantiates a new application.
+		 *
+		 * @param name
+		 *            the name
+		 */
+		private Application(String name) {
+			this.name = name;
+			distribute();
+		}
+
+		/**
+		 * Starts distributing the application to the nodes.
+		 */
+		private void distribute() {
+			distributedAt = System.currentTimeMillis();
+			syncedNodes.clear();
+		}
+
+		/**
+		 * Checks if a node has received the application.
+		 *
+		 * @param node
+		 *            the node number
+		 * @return true, if it is distributed to the node
+		 */
+		private boolean isDistributed(int node) {
+			return syncedNodes.contains(node)
+					|| System.currentTimeMillis() - distributedAt >= distributionMillis * node / nodes;
+		}
+
+		/**
+		 * Checks if all nodes have received the application.
+		 *
+		 * @return true, if it is distributed
+		 */
+		private boolean isDistributed() {
+			for (int node = 1; node <= nodes; node++) {
+				if (!isDistributed(node)) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * A registered notification listener.
+	 */
+	private static final class Registration {
+
+		/** The listener. */
+		private final NotificationListener listener;
+
+		/** The filter. */
+		private final NotificationFilter filter;
+
+		/** The handback. */
+		private final Object handback;
+
+		/**
+		 * Instantiates a new registration.
+		 *
+		 * @param listener
+		 *            the listener
+		 * @param filter
+		 *            the filter
+		 * @param handback
+		 *            the handback
+		 */
+		private Registration(NotificationListener listener, NotificationFilter filter, Object handback) {
+			this.listener = listener;
+			this.filter = filter;
+			this.handback = handback;
+		}
+	}
+}
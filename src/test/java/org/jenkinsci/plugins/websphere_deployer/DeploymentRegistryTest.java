@@ -0,0 +1,187 @@
+/*
+ *
+ */
+package org.jenkinsci.plugins.websphere_deployer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Properties;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.jenkinsci.plugins.websphere.services.deployment.ArchiveManifest;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests the {@link DeploymentRegistry}.
+ */
+public class DeploymentRegistryTest {
+
+	/** The temporary folder. */
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/** The registry file. */
+	private File file;
+
+	/** The key of the targets the applications are deployed to. */
+	private String targetKey;
+
+	/**
+	 * Sets up the registry file.
+	 */
+	@Before
+	public void setUp() {
+		file = new File(folder.getRoot(), "registry.properties");
+		targetKey = DeploymentRegistry.targetKey("dmgr", "8879", "WebSphere:cell=c,cluster=c1");
+	}
+
+	/**
+	 * Tests that recorded and forgotten applications are saved.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test
+	public void testRecordAndForget() throws Exception {
+		new DeploymentRegistry(file).record(key("a"), "v1", null);
+		assertEquals("v1", new DeploymentRegistry(file).get(key("a")));
+		new DeploymentRegistry(file).forget(key("a"));
+		assertNull(new DeploymentRegistry(file).get(key("a")));
+	}
+
+	/**
+	 * Tests that the manifest of the live content is found by its
+	 * fingerprint only.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test
+	public void testManifestOfLiveContent() throws Exception {
+		DeploymentRegistry registry = new DeploymentRegistry(file);
+		ArchiveManifest manifest = ArchiveManifest.read(createArchive("app.war"));
+		registry.record(key("a"), "v1", manifest);
+		assertEquals(manifest.getEntries(), registry.getManifest(key("a")).getEntries());
+		registry.record(key("a"), "v2", null);
+		assertNull(registry.getManifest(key("a")));
+	}
+
+	/**
+	 * Tests that checked out entries are forgotten until the changes made on
+	 * the agent are checked in.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test
+	public void testCheckoutAndCheckin() throws Exception {
+		DeploymentRegistry registry = new DeploymentRegistry(file);
+		String other = DeploymentRegistry.key("dmgr", "8879", "WebSphere:cell=c,cluster=c2", "a");
+		registry.record(key("a"), "a1", null);
+		registry.record(key("b"), "b1", null);
+		registry.record(other, "o1", null);
+		Properties checkedOut = registry.checkout(targetKey);
+		assertEquals(2, checkedOut.size());
+		assertNull(new DeploymentRegistry(file).get(key("a")));
+		assertEquals("o1", new DeploymentRegistry(file).get(other));
+
+		DeploymentRegistry agent = new DeploymentRegistry(checkedOut, new File(folder.getRoot(), "manifests"));
+		assertEquals("b1", agent.get(key("b")));
+		agent.forget(key("a"));
+		agent.record(key("a"), "a2", null);
+		agent.forget(key("b"));
+		registry.checkin(checkedOut, agent.getChanges());
+		registry = new DeploymentRegistry(file);
+		assertEquals("a2", registry.get(key("a")));
+		assertNull(registry.get(key("b")));
+		assertEquals("o1", registry.get(other));
+	}
+
+	/**
+	 * Tests that checking in keeps entries recorded by other deployments
+	 * while the entries were checked out.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test
+	public void testCheckinKeepsNewerEntries() throws Exception {
+		DeploymentRegistry registry = new DeploymentRegistry(file);
+		registry.record(key("a"), "a1", null);
+		Properties checkedOut = registry.checkout(targetKey);
+		registry.record(key("a"), "a2", null);
+		registry.checkin(checkedOut, new DeploymentRegistry(checkedOut, folder.getRoot()).getChanges());
+		assertEquals("a2", new DeploymentRegistry(file).get(key("a")));
+	}
+
+	/**
+	 * Tests that nothing is recorded or checked out if the registry cannot be
+	 * saved.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test
+	public void testSaveFailures() throws Exception {
+		DeploymentRegistry registry = new DeploymentRegistry(file);
+		registry.record(key("a"), "a1", null);
+		// the temporary file cannot be written over a directory
+		assertTrue(new File(folder.getRoot(), "registry.properties.tmp/blocked").mkdirs());
+		try {
+			registry.record(key("b"), "b1", null);
+			fail("saving should have failed");
+		} catch (IOException e) {
+			assertNull(registry.get(key("b")));
+		}
+		try {
+			registry.checkout(targetKey);
+			fail("saving should have failed");
+		} catch (IOException e) {
+			assertEquals("a1", registry.get(key("a")));
+		}
+	}
+
+	/**
+	 * Gets the key of an application deployed to the targets.
+	 *
+	 * @param appName
+	 *            the app name
+	 * @return the key
+	 */
+	private static String key(String appName) {
+		return DeploymentRegistry.key("dmgr", "8879", "WebSphere:cell=c,cluster=c1", appName);
+	}
+
+	/**
+	 * Creates an archive with a few entries.
+	 *
+	 * @param name
+	 *            the name
+	 * @return the archive
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private File createArchive(String name) throws IOException {
+		File archive = folder.newFile(name);
+		try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(archive))) {
+			for (String entry : new String[] { "WEB-INF/web.xml", "index.html" }) {
+				out.putNextEntry(new ZipEntry(entry));
+				out.write(entry.getBytes("UTF-8"));
+				out.closeEntry();
+			}
+		}
+		assertNotNull(ArchiveManifest.read(archive));
+		return archive;
+	}
+}
@@ -0,0 +1,161 @@
+/*
+ *
+ */
+package org.jenkinsci.plugins.websphere_deployer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests the {@link RollbackRepository}.
+ */
+public class RollbackRepositoryTest {
+
+	/** The temporary folder. */
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * Tests that the newest versions are kept, newest first.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test
+	public void testKeepsNewestVersions() throws Exception {
+		RollbackRepository repository = newRepository(3, RollbackRepository.DEFAULT_MAX_SIZE);
+		for (int i = 1; i <= 4; i++) {
+			repository.store("app", createArchive("app" + i + ".ear", i, 100), "ear", "build #" + i, false);
+		}
+		List<RollbackRepository.Version> versions = repository.getVersions("app");
+		assertEquals(3, versions.size());
+		assertEquals("build #4", versions.get(0).getDescription());
+		assertEquals("build #2", versions.get(2).getDescription());
+		assertEquals(3, countBlobs());
+	}
+
+	/**
+	 * Tests that redeploying the newest version does not store it twice.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test
+	public void testRedeploymentReplacesNewestVersion() throws Exception {
+		RollbackRepository repository = newRepository(3, RollbackRepository.DEFAULT_MAX_SIZE);
+		File archive = createArchive("app.ear", 1, 100);
+		repository.store("app", archive, "ear", "build #1", false);
+		repository.store("app", archive, "ear", "build #2", false);
+		List<RollbackRepository.Version> versions = repository.getVersions("app");
+		assertEquals(1, versions.size());
+		assertEquals("build #2", versions.get(0).getDescription());
+	}
+
+	/**
+	 * Tests that applications with the same content share one archive.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test
+	public void testDeduplicatesArchives() throws Exception {
+		RollbackRepository repository = newRepository(3, RollbackRepository.DEFAULT_MAX_SIZE);
+		RollbackRepository.Version a = repository.store("a", createArchive("a.ear", 1, 100), "ear", "a", false);
+		RollbackRepository.Version b = repository.store("b", createArchive("b.ear", 1, 100), "ear", "b", false);
+		assertEquals(a.getDigest(), b.getDigest());
+		assertEquals(1, countBlobs());
+		assertTrue(Arrays.equals(Files.readAllBytes(new File(folder.getRoot(), "a.ear").toPath()),
+				Files.readAllBytes(b.getArchive().toPath())));
+	}
+
+	/**
+	 * Tests that the size limit drops older versions but keeps the newest
+	 * version of every application.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test
+	public void testSizeLimitKeepsNewestVersions() throws Exception {
+		RollbackRepository repository = newRepository(3, 2500);
+		repository.store("a", createArchive("a1.ear", 1, 1000), "ear", "a1", false);
+		repository.store("a", createArchive("a2.ear", 2, 1000), "ear", "a2", false);
+		assertEquals(2, repository.getVersions("a").size());
+		repository.store("b", createArchive("b1.ear", 3, 1000), "ear", "b1", false);
+		assertEquals(1, repository.getVersions("a").size());
+		assertEquals("a2", repository.getVersions("a").get(0).getDescription());
+		assertEquals(1, repository.getVersions("b").size());
+		assertEquals(2, countBlobs());
+	}
+
+	/**
+	 * Tests that a version larger than the size limit is still kept as the
+	 * newest version.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test
+	public void testSizeLimitNeverDropsNewestVersion() throws Exception {
+		RollbackRepository repository = newRepository(3, 500);
+		repository.store("a", createArchive("a1.ear", 1, 1000), "ear", "a1", false);
+		repository.store("a", createArchive("a2.ear", 2, 1000), "ear", "a2", false);
+		assertEquals(1, repository.getVersions("a").size());
+		assertEquals("a2", repository.getVersions("a").get(0).getDescription());
+		assertEquals(1, countBlobs());
+	}
+
+	/**
+	 * Creates a repository in the temporary folder.
+	 *
+	 * @param maxVersions
+	 *            the max versions per application
+	 * @param maxSize
+	 *            the max total size of the archives
+	 * @return the repository
+	 */
+	private RollbackRepository newRepository(int maxVersions, long maxSize) {
+		return new RollbackRepository(new File(folder.getRoot(), "rollback"), maxVersions, maxSize);
+	}
+
+	/**
+	 * Creates an archive.
+	 *
+	 * @param name
+	 *            the name
+	 * @param content
+	 *            the byte the archive is filled with
+	 * @param size
+	 *            the size in bytes
+	 * @return the archive
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private File createArchive(String name, int content, int size) throws IOException {
+		byte[] bytes = new byte[size];
+		Arrays.fill(bytes, (byte) content);
+		File archive = folder.newFile(name);
+		Files.write(archive.toPath(), bytes);
+		return archive;
+	}
+
+	/**
+	 * Counts the stored archives.
+	 *
+	 * @return the count
+	 */
+	private int countBlobs() {
+		String[] blobs = new File(new File(folder.getRoot(), "rollback"), "blobs").list();
+		return blobs == null ? 0 : blobs.length;
+	}
+}
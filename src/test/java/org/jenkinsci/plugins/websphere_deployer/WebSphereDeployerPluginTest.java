@@ -0,0 +1,127 @@
+/*
+ *
+ */
+package org.jenkinsci.plugins.websphere_deployer;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests the {@link WebSphereDeployerPlugin}.
+ */
+public class WebSphereDeployerPluginTest {
+
+	/** The Constant N1S1. */
+	private static final String N1S1 = "WebSphere:cell=c,node=n1,server=s1";
+
+	/** The Constant N1S2. */
+	private static final String N1S2 = "WebSphere:cell=c,node=n1,server=s2";
+
+	/** The Constant N2S1. */
+	private static final String N2S1 = "WebSphere:cell=c,node=n2,server=s1";
+
+	/** The Constant N2S2. */
+	private static final String N2S2 = "WebSphere:cell=c,node=n2,server=s2";
+
+	/** The temporary folder. */
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * Tests that every wave spreads over the nodes.
+	 */
+	@Test
+	public void testPlanWavesSpreadsOverNodes() {
+		List<List<String>> waves = newPlugin("2").planWaves(Arrays.asList(N1S1, N1S2, N2S1, N2S2));
+		assertEquals(Arrays.asList(Arrays.asList(N1S1, N2S1), Arrays.asList(N1S2, N2S2)), waves);
+	}
+
+	/**
+	 * Tests that a wave never restarts all servers at once.
+	 */
+	@Test
+	public void testPlanWavesKeepsOneServerRunning() {
+		List<List<String>> waves = newPlugin("5").planWaves(Arrays.asList(N1S1, N1S2, N2S1));
+		assertEquals(Arrays.asList(Arrays.asList(N1S1, N2S1), Arrays.asList(N1S2)), waves);
+	}
+
+	/**
+	 * Tests that an invalid wave size restarts one server at a time.
+	 */
+	@Test
+	public void testPlanWavesDefaultsToOneServer() {
+		List<List<String>> waves = newPlugin("many").planWaves(Arrays.asList(N1S1, N2S1));
+		assertEquals(Arrays.asList(Arrays.asList(N1S1), Arrays.asList(N2S1)), waves);
+	}
+
+	/**
+	 * Tests that the version to roll back to is found by index or by the
+	 * beginning of its digest.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test
+	public void testFindRollbackVersion() throws Exception {
+		RollbackRepository repository = new RollbackRepository(folder.newFolder("rollback"), 3,
+				RollbackRepository.DEFAULT_MAX_SIZE);
+		for (int i = 1; i <= 3; i++) {
+			File archive = folder.newFile("app" + i + ".ear");
+			Files.write(archive.toPath(), new byte[] { (byte) i });
+			repository.store("app", archive, "ear", "build #" + i, false);
+		}
+		List<RollbackRepository.Version> versions = repository.getVersions("app");
+		assertEquals(0, WebSphereDeployerPlugin.findRollbackVersion(versions, " "));
+		assertEquals(2, WebSphereDeployerPlugin.findRollbackVersion(versions, "2"));
+		assertEquals(-1, WebSphereDeployerPlugin.findRollbackVersion(versions, "3"));
+		assertEquals(1, WebSphereDeployerPlugin.findRollbackVersion(versions,
+				versions.get(1).getDigest().substring(0, 8).toUpperCase()));
+		assertEquals(-1, WebSphereDeployerPlugin.findRollbackVersion(versions, "build #1"));
+	}
+
+	/**
+	 * Tests that the logs of parallel deployments are written line by line,
+	 * every line prefixed with its artifact, and that an incomplete last line
+	 * is written once the log is closed.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test
+	public void testPrefixedOutputStreamWritesWholeLines() throws Exception {
+		ByteArrayOutputStream log = new ByteArrayOutputStream();
+		PrintStream target = new PrintStream(log, true, "UTF-8");
+		OutputStream a = new WebSphereDeployerPlugin.PrefixedOutputStream(target, "[a.war] ");
+		OutputStream b = new WebSphereDeployerPlugin.PrefixedOutputStream(target, "[b.war] ");
+		a.write("Installing ".getBytes("UTF-8"));
+		b.write("Installing b\n".getBytes("UTF-8"));
+		a.write("a\nStarting a".getBytes("UTF-8"));
+		assertEquals("[b.war] Installing b\n[a.war] Installing a\n", log.toString("UTF-8"));
+		a.close();
+		assertEquals("[b.war] Installing b\n[a.war] Installing a\n[a.war] Starting a\n", log.toString("UTF-8"));
+	}
+
+	/**
+	 * Creates a plugin deploying in rolling waves.
+	 *
+	 * @param rollingWaveSize
+	 *            the rolling wave size
+	 * @return the plugin
+	 */
+	private static WebSphereDeployerPlugin newPlugin(String rollingWaveSize) {
+		return new WebSphereDeployerPlugin("localhost", "SOAP", "8879", null, null, "*.war", "5", "5", "0", null,
+				null, null, null, false, false, false, false, false, false, false, null, null, false, null, false,
+				false, false, false, true, rollingWaveSize, false, null);
+	}
+}